@@ -0,0 +1,83 @@
+package jFloodlightPlus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Bulk ARP flow pushes to switchCount switches of a controller answering
+ * latencyMillis late, on a fixed pool of platform threads versus one virtual
+ * thread per call, both limited to parallelism calls in flight. <br>
+ * The transport pools parallelism connections, so the threads are the only
+ * difference. Virtual threads need Java 21+, on older versions the virtual
+ * runs fall back to platform threads.
+ *
+ * @author KmnTree
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FanOutBenchmark {
+    @Param({ "fixed", "virtual" })
+    public String threads;
+
+    @Param({ "64", "1024" })
+    public int parallelism;
+
+    @Param({ "1000", "10000" })
+    public int switchCount;
+
+    @Param({ "10" })
+    public long latencyMillis;
+
+    private MockController controller;
+    private FloodlightClient client;
+    private List<String> switchIds;
+
+    @Setup
+    public void setUp() throws IOException {
+        controller = MockController.start(switchCount, 1);
+        controller.setLatencyMillis(latencyMillis);
+
+        client = new FloodlightClient(controller.getAddress(), new RestTransport(
+                parallelism, parallelism, RestTransport.DEFAULT_CONNECT_TIMEOUT_MILLIS,
+                RestTransport.DEFAULT_SOCKET_TIMEOUT_MILLIS));
+        client.setFanOut(new SwitchFanOut(parallelism,
+                SwitchFanOut.DEFAULT_TIMEOUT_MILLIS, threads.equals("virtual")));
+
+        switchIds = new ArrayList<String>(switchCount);
+        for (int i = 1; i <= switchCount; i++) {
+            switchIds.add(MockController.dpid(i));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+        controller.close();
+    }
+
+    @Benchmark
+    public FanOutResult<JSONObject> addARPFloodFlows() throws InterruptedException {
+        return client.addARPFloodFlows(switchIds);
+    }
+}
@@ -0,0 +1,69 @@
+package jFloodlightPlus;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end latency of the multi-request client calls on a linear topology
+ * of switchCount switches served by the mock controller. <br>
+ * pushCircuit pushes two flow entries per switch of the route,
+ * addAllARPFloodFlows one per switch.
+ *
+ * @author KmnTree
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FloodlightClientBenchmark {
+    @Param({ "10", "100", "1000" })
+    public int switchCount;
+
+    private MockController controller;
+    private FloodlightClient client;
+
+    @Setup
+    public void setUp() throws IOException {
+        controller = MockController.start(switchCount, 1);
+        client = new FloodlightClient(controller.getAddress());
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+        controller.close();
+    }
+
+    @Benchmark
+    public JSONArray pushCircuit() throws IOException, JSONException {
+        return client.pushCircuit("bench", "10.0.0.1", "10.0.0.2");
+    }
+
+    @Benchmark
+    public JSONArray addAllARPFloodFlows() throws IOException, JSONException {
+        return client.addAllARPFloodFlows();
+    }
+
+    @Benchmark
+    public Object getAggregateFlowStats() throws IOException, JSONException {
+        return client.getAggregateFlowStats();
+    }
+}
@@ -0,0 +1,123 @@
+package jFloodlightPlus;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of decoding a /wm/core/switch/all/flow/json body of flowCount entries,
+ * without any network in between: the org.json tree, the typed FlowStat
+ * decoder and a visitor walking the tokens.
+ *
+ * @author KmnTree
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonDecodeBenchmark {
+    @Param({ "10", "100", "1000", "10000" })
+    public int flowCount;
+
+    private String body;
+
+    @Setup
+    public void setUp() {
+        body = MockController.flowStatsJson(1, flowCount);
+    }
+
+    @Benchmark
+    public JSONObject jsonObject() throws IOException, JSONException {
+        return ResponseParser.JSON_OBJECT.parse(new StringReader(body));
+    }
+
+    @Benchmark
+    public List<FlowStat> flowStats() throws IOException, JSONException {
+        JsonStreamReader in = new JsonStreamReader(new StringReader(body));
+        List<FlowStat> result = new ArrayList<FlowStat>();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            long dpid = AddressUtils.parseDpid(in.nextName());
+
+            in.beginArray();
+            while (in.hasNext()) {
+                result.add(FlowStat.read(in, dpid));
+            }
+            in.endArray();
+        }
+        in.endObject();
+
+        return result;
+    }
+
+    @Benchmark
+    public void visitor(Blackhole blackhole) throws IOException, JSONException {
+        ResponseParser.visit(new JsonVisitor() {
+            @Override
+            public void startObject() {
+            }
+
+            @Override
+            public void endObject() {
+            }
+
+            @Override
+            public void startArray() {
+            }
+
+            @Override
+            public void endArray() {
+            }
+
+            @Override
+            public void key(String name) {
+                blackhole.consume(name);
+            }
+
+            @Override
+            public void stringValue(String value) {
+                blackhole.consume(value);
+            }
+
+            @Override
+            public void longValue(long value) {
+                blackhole.consume(value);
+            }
+
+            @Override
+            public void doubleValue(double value) {
+                blackhole.consume(value);
+            }
+
+            @Override
+            public void booleanValue(boolean value) {
+                blackhole.consume(value);
+            }
+
+            @Override
+            public void nullValue() {
+            }
+        }).parse(new StringReader(body));
+    }
+}
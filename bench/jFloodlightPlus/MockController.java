@@ -0,0 +1,361 @@
+package jFloodlightPlus;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process stand-in for a Floodlight controller, serving canned responses of
+ * a linear topology. <br>
+ * <br>
+ * Switch i (1..switchCount) has DPID i, port 1 faces the previous switch (or
+ * host 10.0.0.1 on the first switch) and port 2 the next switch (or host
+ * 10.0.0.2 on the last switch). Every switch reports flowsPerSwitch flow
+ * stats entries. <br>
+ * Static flow pushes, deletes, clears and virtual network calls are accepted
+ * and answered like the controller does, nothing is stored. <br>
+ * <br>
+ * The benchmarks next to this class are JMH benchmarks: compile bench/ with
+ * src/, lib/ and JMH (jmh-core, jmh-generator-annprocess) on the classpath and
+ * run org.openjdk.jmh.Main.
+ *
+ * @author KmnTree
+ *
+ */
+public class MockController implements Closeable {
+    static {
+        // the JDK server delays small responses by Nagle otherwise
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        // and closes pooled connections beyond 200 idle ones
+        System.setProperty("sun.net.httpserver.maxIdleConnections", "16384");
+    }
+
+    private static final byte[] ENTRY_PUSHED = bytes("{\"status\":\"Entry pushed\"}");
+    private static final byte[] ENTRY_DELETED = bytes("{\"status\":\"Entry deleted\"}");
+    private static final byte[] OK = bytes("{\"status\":\"ok\"}");
+    private static final byte[] EMPTY_ARRAY = bytes("[]");
+    private static final byte[] HEALTHY = bytes("{\"healthy\":true}");
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService delayer;
+    private final AtomicLong requestCount = new AtomicLong();
+    private volatile long latencyMillis;
+
+    private final byte[] switches;
+    private final byte[] flowStats;
+    private final byte[] portStats;
+    private final byte[] links;
+    private final byte[] devices;
+    private final byte[] srcDevice;
+    private final byte[] dstDevice;
+    private final byte[] route;
+
+    /**
+     * Start a mock controller on a free port of 127.0.0.1, see getAddress()
+     * for the FloodlightClient to use.
+     *
+     * @param switchCount
+     *            number of switches of the linear topology
+     * @param flowsPerSwitch
+     *            flow stats entries reported per switch
+     *
+     * @return the running mock
+     *
+     * @throws IOException
+     *             if the server cannot be started
+     */
+    public static MockController start(int switchCount, int flowsPerSwitch)
+            throws IOException {
+        return new MockController(new InetSocketAddress("127.0.0.1", 0), switchCount,
+                flowsPerSwitch);
+    }
+
+    /**
+     * @param address
+     *            address to listen on
+     * @param switchCount
+     *            number of switches of the linear topology
+     * @param flowsPerSwitch
+     *            flow stats entries reported per switch
+     *
+     * @throws IOException
+     *             if the address is in use
+     */
+    public MockController(InetSocketAddress address, int switchCount, int flowsPerSwitch)
+            throws IOException {
+        switches = bytes(switchesJson(switchCount));
+        flowStats = bytes(flowStatsJson(switchCount, flowsPerSwitch));
+        portStats = bytes(portStatsJson(switchCount));
+        links = bytes(linksJson(switchCount));
+        srcDevice = bytes("[" + deviceJson(1, "10.0.0.1", 1, 1) + "]");
+        dstDevice = bytes("[" + deviceJson(2, "10.0.0.2", switchCount, 2) + "]");
+        devices = bytes("[" + deviceJson(1, "10.0.0.1", 1, 1) + ","
+                + deviceJson(2, "10.0.0.2", switchCount, 2) + "]");
+        route = bytes(routeJson(switchCount));
+
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime()
+                .availableProcessors() * 2, SwitchFanOut.daemonThreadFactory("mock-controller"));
+        delayer = Executors.newSingleThreadScheduledExecutor(SwitchFanOut
+                .daemonThreadFactory("mock-controller-delay"));
+        server = HttpServer.create(address, 1024);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return ip:port of the mock, e.g. for a FloodlightClient
+     */
+    public String getAddress() {
+        InetSocketAddress address = server.getAddress();
+        return address.getHostString() + ":" + address.getPort();
+    }
+
+    /**
+     * @return http://host:port of the mock, e.g. for a RestTransport
+     */
+    public String getBaseUrl() {
+        return "http://" + getAddress();
+    }
+
+    /**
+     * Answer every request latencyMillis late, like a remote or busy
+     * controller. Delayed responses do not hold a server thread, so any
+     * number of requests can be outstanding.
+     *
+     * @param latencyMillis
+     *            delay of every response, 0 for none
+     */
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * @return number of requests served so far
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        delayer.shutdownNow();
+    }
+
+    // ---------------
+    // canned responses
+    // ---------------
+
+    public static String dpid(int switchIndex) {
+        return AddressUtils.dpidToString(switchIndex);
+    }
+
+    public static String switchesJson(int switchCount) {
+        StringBuilder sb = new StringBuilder("[");
+
+        for (int i = 1; i <= switchCount; i++) {
+            if (i > 1)
+                sb.append(',');
+            sb.append("{\"dpid\":\"").append(dpid(i))
+                    .append("\",\"inetAddress\":\"/10.1.0.").append(i % 250)
+                    .append(":43210\",\"connectedSince\":1392000000000,\"ports\":[")
+                    .append("{\"portNumber\":1},{\"portNumber\":2},{\"portNumber\":65534}]}");
+        }
+
+        return sb.append(']').toString();
+    }
+
+    public static String flowStatsJson(int switchCount, int flowsPerSwitch) {
+        StringBuilder sb = new StringBuilder("{");
+
+        for (int i = 1; i <= switchCount; i++) {
+            if (i > 1)
+                sb.append(',');
+            sb.append('"').append(dpid(i)).append("\":[");
+            for (int f = 0; f < flowsPerSwitch; f++) {
+                if (f > 0)
+                    sb.append(',');
+                sb.append("{\"tableId\":0,\"match\":{\"dataLayerDestination\":\"00:00:00:00:00:00\",")
+                        .append("\"dataLayerSource\":\"00:00:00:00:00:00\",")
+                        .append("\"dataLayerType\":\"0x0800\",\"dataLayerVirtualLan\":-1,")
+                        .append("\"dataLayerVirtualLanPriorityCodePoint\":0,\"inputPort\":0,")
+                        .append("\"networkDestination\":\"10.0.").append(f / 250 % 250)
+                        .append('.').append(f % 250)
+                        .append("\",\"networkDestinationMaskLen\":32,")
+                        .append("\"networkProtocol\":0,\"networkSource\":\"10.0.0.1\",")
+                        .append("\"networkSourceMaskLen\":32,\"networkTypeOfService\":0,")
+                        .append("\"transportDestination\":0,\"transportSource\":0,")
+                        .append("\"wildcards\":3145968},\"durationSeconds\":").append(f)
+                        .append(",\"durationNanoseconds\":1000,\"priority\":32767,")
+                        .append("\"idleTimeout\":0,\"hardTimeout\":0,\"cookie\":")
+                        .append("45035996273704960,\"packetCount\":").append(f * 10)
+                        .append(",\"byteCount\":").append(f * 1000L)
+                        .append(",\"actions\":[{\"port\":2,\"maxLength\":32767,")
+                        .append("\"length\":8,\"type\":\"OUTPUT\",\"lengthU\":8}]}");
+            }
+            sb.append(']');
+        }
+
+        return sb.append('}').toString();
+    }
+
+    public static String portStatsJson(int switchCount) {
+        StringBuilder sb = new StringBuilder("{");
+
+        for (int i = 1; i <= switchCount; i++) {
+            if (i > 1)
+                sb.append(',');
+            sb.append('"').append(dpid(i)).append("\":[");
+            for (int p = 1; p <= 2; p++) {
+                if (p > 1)
+                    sb.append(',');
+                sb.append("{\"portNumber\":").append(p)
+                        .append(",\"receivePackets\":1000,\"transmitPackets\":900,")
+                        .append("\"receiveBytes\":120000,\"transmitBytes\":110000,")
+                        .append("\"receiveDropped\":0,\"transmitDropped\":0,")
+                        .append("\"receiveErrors\":0,\"transmitErrors\":0,")
+                        .append("\"receiveFrameErrors\":0,\"receiveOverrunErrors\":0,")
+                        .append("\"receiveCRCErrors\":0,\"collisions\":0}");
+            }
+            sb.append(']');
+        }
+
+        return sb.append('}').toString();
+    }
+
+    public static String linksJson(int switchCount) {
+        StringBuilder sb = new StringBuilder("[");
+
+        for (int i = 1; i < switchCount; i++) {
+            if (i > 1)
+                sb.append(',');
+            sb.append("{\"src-switch\":\"").append(dpid(i))
+                    .append("\",\"src-port\":2,\"dst-switch\":\"").append(dpid(i + 1))
+                    .append("\",\"dst-port\":1,\"type\":\"internal\",")
+                    .append("\"direction\":\"bidirectional\"}");
+        }
+
+        return sb.append(']').toString();
+    }
+
+    // ingress and egress port of every switch from host 10.0.0.1 to 10.0.0.2
+    public static String routeJson(int switchCount) {
+        StringBuilder sb = new StringBuilder("[");
+
+        for (int i = 1; i <= switchCount; i++) {
+            if (i > 1)
+                sb.append(',');
+            sb.append("{\"switch\":\"").append(dpid(i)).append("\",\"port\":1},")
+                    .append("{\"switch\":\"").append(dpid(i)).append("\",\"port\":2}");
+        }
+
+        return sb.append(']').toString();
+    }
+
+    private static String deviceJson(int host, String ip, int switchIndex, int port) {
+        return "{\"entityClass\":\"DefaultEntityClass\",\"mac\":[\""
+                + AddressUtils.macToString(host) + "\"],\"ipv4\":[\"" + ip
+                + "\"],\"vlan\":[],\"attachmentPoint\":[{\"port\":" + port
+                + ",\"switchDPID\":\"" + dpid(switchIndex)
+                + "\",\"errorStatus\":null}],\"lastSeen\":1392000000000}";
+    }
+
+    // --------------
+    // helper methods
+    // --------------
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        String query = exchange.getRequestURI().getRawQuery();
+        byte[] body;
+        int status = 200;
+
+        requestCount.incrementAndGet();
+        drain(exchange.getRequestBody());
+
+        if (path.startsWith("/wm/staticflowentrypusher/clear/"))
+            body = EMPTY_ARRAY;
+        else if (path.startsWith("/wm/staticflowentrypusher/list/"))
+            body = bytes("{}");
+        else if (path.startsWith("/wm/staticflowentrypusher/"))
+            body = method.equals("DELETE") ? ENTRY_DELETED : ENTRY_PUSHED;
+        else if (path.equals("/wm/core/switch/all/flow/json"))
+            body = flowStats;
+        else if (path.equals("/wm/core/switch/all/port/json"))
+            body = portStats;
+        else if (path.equals("/wm/core/controller/switches/json"))
+            body = switches;
+        else if (path.equals("/wm/topology/links/json"))
+            body = links;
+        else if (path.startsWith("/wm/topology/route/"))
+            body = route;
+        else if (path.startsWith("/wm/device/"))
+            body = query == null || query.isEmpty() ? devices
+                    : query.contains("10.0.0.1") ? srcDevice
+                    : query.contains("10.0.0.2") ? dstDevice : EMPTY_ARRAY;
+        else if (path.equals("/wm/core/health/json"))
+            body = HEALTHY;
+        else if (path.startsWith("/networkService/"))
+            body = method.equals("GET") ? EMPTY_ARRAY : OK;
+        else {
+            status = 404;
+            body = bytes("{\"error\":\"not found\"}");
+        }
+
+        if (latencyMillis > 0) {
+            int delayedStatus = status;
+
+            delayer.schedule(() -> respondQuietly(exchange, delayedStatus, body),
+                    latencyMillis, TimeUnit.MILLISECONDS);
+        }
+        else
+            respond(exchange, status, body);
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void respondQuietly(HttpExchange exchange, int status, byte[] body) {
+        try {
+            respond(exchange, status, body);
+        }
+        catch (IOException e) {
+            // the client gave up
+            exchange.close();
+        }
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[4096];
+
+        while (in.read(buffer) >= 0) {
+            // request bodies are not looked at
+        }
+        in.close();
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,94 @@
+package jFloodlightPlus;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput and latency of the single REST verbs against the in-process mock
+ * controller, through a RestTransport and through the static RestUtils. <br>
+ * Run with more client threads (JMH -t) to see the connection pool at work.
+ *
+ * @author KmnTree
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RestTransportBenchmark {
+    private static final String FLOW = "{\"switch\":\"00:00:00:00:00:00:00:01\","
+            + "\"name\":\"bench\",\"ether-type\":\"0x0800\",\"src-ip\":\"10.0.0.1\","
+            + "\"dst-ip\":\"10.0.0.2\",\"actions\":\"output=2\",\"priority\":\"32767\"}";
+    private static final String FLOW_NAME = "{\"name\":\"bench\"}";
+    private static final String NETWORK = "{\"network\":{\"gateway\":null,\"name\":\"bench\"}}";
+
+    private MockController controller;
+    private RestTransport transport;
+    private String linksUrl;
+    private String flowUrl;
+    private String networkUrl;
+
+    @Setup
+    public void setUp() throws IOException {
+        controller = new MockController(new InetSocketAddress("127.0.0.1", 0), 16, 1);
+        transport = new RestTransport();
+
+        linksUrl = controller.getBaseUrl() + "/wm/topology/links/json";
+        flowUrl = controller.getBaseUrl() + "/wm/staticflowentrypusher/json";
+        networkUrl = controller.getBaseUrl()
+                + "/networkService/v1.1/tenants/default/networks/bench";
+    }
+
+    @TearDown
+    public void tearDown() {
+        transport.close();
+        controller.close();
+    }
+
+    @Benchmark
+    public String doGet() throws IOException {
+        return transport.doGet(linksUrl);
+    }
+
+    @Benchmark
+    public Object doGetParsed() throws IOException, JSONException {
+        return transport.doGet(linksUrl, ResponseParser.JSON_ARRAY);
+    }
+
+    @Benchmark
+    public String doPost() throws IOException {
+        return transport.doPost(flowUrl, FLOW);
+    }
+
+    @Benchmark
+    public String doPut() throws IOException {
+        return transport.doPut(networkUrl, NETWORK);
+    }
+
+    @Benchmark
+    public String doDelete() throws IOException {
+        return transport.doDelete(flowUrl, FLOW_NAME);
+    }
+
+    // same request through the shared transport of the static API
+    @Benchmark
+    public String restUtilsDoGet() throws IOException {
+        return RestUtils.doGet(linksUrl);
+    }
+}
@@ -0,0 +1,223 @@
+package jFloodlightPlus;
+
+/**
+ * Conversions between the textual DPID/MAC/IPv4 format used by the REST API and
+ * their primitive representation. <br>
+ * Parsing works on the characters directly, without splitting the String.
+ */
+public class AddressUtils {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    // -----
+    // DPID
+    // -----
+
+    /**
+     * @param dpid
+     *            XX:XX:XX:XX:XX:XX:XX:XX
+     *
+     * @return the 64 bit datapath id
+     */
+    public static long parseDpid(CharSequence dpid) {
+        return parseColonHex(dpid);
+    }
+
+    /**
+     * @param dpid
+     *            64 bit datapath id
+     *
+     * @return XX:XX:XX:XX:XX:XX:XX:XX
+     */
+    public static String dpidToString(long dpid) {
+        return toColonHex(dpid, 8);
+    }
+
+    // -----
+    // MAC
+    // -----
+
+    /**
+     * @param mac
+     *            xx:xx:xx:xx:xx:xx
+     *
+     * @return the 48 bit MAC address in the lower bits of a long
+     */
+    public static long parseMac(CharSequence mac) {
+        return parseColonHex(mac);
+    }
+
+    /**
+     * @param mac
+     *            48 bit MAC address in the lower bits of a long
+     *
+     * @return xx:xx:xx:xx:xx:xx
+     */
+    public static String macToString(long mac) {
+        return toColonHex(mac, 6);
+    }
+
+    // -----
+    // IPv4
+    // -----
+
+    /**
+     * @param ip
+     *            dotted decimal xx.xx.xx.xx, an optional /mask is ignored
+     *
+     * @return the IPv4 address as int (network byte order)
+     *
+     * @throws IllegalArgumentException
+     *             if an octet is empty, above 255 or not decimal
+     */
+    public static int parseIpv4(CharSequence ip) {
+        int result = 0, octet = 0, dots = 0, digits = 0;
+
+        for (int i = 0; i < ip.length(); i++) {
+            char c = ip.charAt(i);
+
+            if (c >= '0' && c <= '9') {
+                octet = octet * 10 + (c - '0');
+                digits++;
+                if (octet > 255)
+                    throw new IllegalArgumentException("Invalid IPv4 address: " + ip);
+            }
+            else if (c == '.' && digits > 0) {
+                result = (result << 8) | octet;
+                octet = 0;
+                digits = 0;
+                dots++;
+            }
+            else if (c == '/') {
+                break;
+            }
+            else {
+                throw new IllegalArgumentException("Invalid IPv4 address: " + ip);
+            }
+        }
+
+        if (dots != 3 || digits == 0)
+            throw new IllegalArgumentException("Invalid IPv4 address: " + ip);
+
+        return (result << 8) | octet;
+    }
+
+    /**
+     * @param ip
+     *            IPv4 address as int (network byte order)
+     *
+     * @return dotted decimal xx.xx.xx.xx
+     */
+    public static String ipv4ToString(int ip) {
+        return ((ip >>> 24) & 0xff) + "." + ((ip >>> 16) & 0xff) + "."
+                + ((ip >>> 8) & 0xff) + "." + (ip & 0xff);
+    }
+
+    // ------
+    // helper
+    // ------
+
+    /**
+     * @param value
+     *            decimal or 0x prefixed hexadecimal number, e.g. ether-type
+     *            "0x0800"
+     *
+     * @return the number, hexadecimal of 16 digits at most taken as the bits
+     *         of a long
+     *
+     * @throws NumberFormatException
+     *             if a digit is invalid or the number does not fit in a long
+     */
+    public static long parseHexOrDecimal(CharSequence value) {
+        long result = 0;
+        int radix = 10, start = 0;
+        boolean negative = false;
+
+        if (value.length() > 2 && value.charAt(0) == '0'
+                && (value.charAt(1) == 'x' || value.charAt(1) == 'X')) {
+            radix = 16;
+            start = 2;
+        }
+        else if (value.length() > 1 && value.charAt(0) == '-') {
+            negative = true;
+            start = 1;
+        }
+
+        if (start == value.length() || radix == 16 && value.length() - start > 16)
+            throw new NumberFormatException("Invalid number: " + value);
+
+        for (int i = start; i < value.length(); i++) {
+            int digit = Character.digit(value.charAt(i), radix);
+            if (digit < 0)
+                throw new NumberFormatException("Invalid number: " + value);
+
+            if (radix == 16) {
+                result = (result << 4) | digit;
+                continue;
+            }
+            // accumulated with its sign, so Long.MIN_VALUE fits
+            try {
+                result = Math.addExact(Math.multiplyExact(result, 10), negative ? -digit
+                        : digit);
+            }
+            catch (ArithmeticException e) {
+                throw new NumberFormatException("Number out of range: " + value);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @param value
+     *            up to 8 colon separated groups of hex digits, 16 digits at
+     *            most, e.g. a DPID or MAC
+     *
+     * @return the number
+     *
+     * @throws IllegalArgumentException
+     *             if a group is empty, a digit is not hex or the number does
+     *             not fit in 64 bits
+     */
+    static long parseColonHex(CharSequence value) {
+        long result = 0;
+        int groups = 1, digits = 0, groupDigits = 0;
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c == ':') {
+                if (groupDigits == 0 || ++groups > 8)
+                    throw new IllegalArgumentException("Invalid hex string: " + value);
+                groupDigits = 0;
+            }
+            else {
+                int digit = Character.digit(c, 16);
+                if (digit < 0 || ++digits > 16)
+                    throw new IllegalArgumentException("Invalid hex string: " + value);
+                result = (result << 4) | digit;
+                groupDigits++;
+            }
+        }
+
+        if (groupDigits == 0)
+            throw new IllegalArgumentException("Invalid hex string: " + value);
+
+        return result;
+    }
+
+    private static String toColonHex(long value, int bytes) {
+        char[] result = new char[bytes * 3 - 1];
+
+        for (int i = 0; i < bytes; i++) {
+            int b = (int) (value >>> ((bytes - 1 - i) * 8)) & 0xff;
+            int pos = i * 3;
+
+            if (i > 0)
+                result[pos - 1] = ':';
+            result[pos] = HEX_DIGITS[b >>> 4];
+            result[pos + 1] = HEX_DIGITS[b & 0x0f];
+        }
+
+        return new String(result);
+    }
+}
@@ -22,5 +22,8 @@ public class ApplicationStarter {
 
         // do something
         System.out.println(fc.getAggregateSwitchesStats("flow"));
+
+        // release pooled connections
+        fc.close();
     }
 }
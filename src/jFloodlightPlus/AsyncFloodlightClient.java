@@ -0,0 +1,785 @@
+package jFloodlightPlus;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Non-blocking counterpart of FloodlightClient. <br>
+ * Every endpoint returns a CompletableFuture instead of blocking the calling
+ * thread. Requests are driven by the NIO based java.net.http engine on a small
+ * number of I/O threads, so thousands of calls can be outstanding at once. <br>
+ * <br>
+ * At most maxInFlight requests are sent to the controller at the same time,
+ * further requests are queued (without blocking the caller) until a response
+ * comes back. <br>
+ * Futures are completed on the I/O threads, so dependent stages should not
+ * block.
+ *
+ * @author KmnTree
+ *
+ */
+public class AsyncFloodlightClient implements Closeable {
+    public static final int DEFAULT_IO_THREADS = 2;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 1024;
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 5000;
+    public static final int DEFAULT_REQUEST_TIMEOUT_MILLIS = 30000;
+
+    private String uriPrefix;
+
+    private ExecutorService ioExecutor;
+    private HttpClient httpClient;
+    private Duration requestTimeout;
+
+    // in-flight bound
+    private int maxInFlight;
+    private AtomicInteger inFlight;
+    private Queue<Runnable> pending;
+
+    // futures not completed yet, failed by close()
+    private Set<CompletableFuture<String>> outstanding;
+    private volatile boolean closed;
+
+    // ------------
+    // constructors
+    // ------------
+
+    /**
+     * Default constructor with ip=localhost
+     */
+    public AsyncFloodlightClient() {
+        this(FloodlightClient.LOCALHOST);
+    }
+
+    /**
+     * Constructor with ip parameter and default engine settings
+     *
+     * @param ip
+     *            "ip", "ip:port" or "http://ip:port" of the controller
+     */
+    public AsyncFloodlightClient(String ip) {
+        this(ip, DEFAULT_IO_THREADS, DEFAULT_MAX_IN_FLIGHT,
+                DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_REQUEST_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Base constructor
+     *
+     * @param ip
+     *            "ip", "ip:port" or "http://ip:port" of the controller
+     * @param ioThreads
+     *            number of threads driving the HTTP engine
+     * @param maxInFlight
+     *            maximum number of requests sent to the controller at the same
+     *            time
+     * @param connectTimeoutMillis
+     *            timeout to establish a connection
+     * @param requestTimeoutMillis
+     *            timeout for a whole request/response exchange
+     */
+    public AsyncFloodlightClient(String ip, int ioThreads, int maxInFlight,
+            int connectTimeoutMillis, int requestTimeoutMillis) {
+        this.uriPrefix = ControllerCluster.toBaseUri(ip);
+
+        this.ioExecutor = Executors.newFixedThreadPool(ioThreads,
+                SwitchFanOut.daemonThreadFactory("floodlight-async"));
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .executor(ioExecutor)
+                .build();
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMillis);
+
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new AtomicInteger();
+        this.pending = new ConcurrentLinkedQueue<Runnable>();
+        this.outstanding = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Stop the I/O threads. Every queued or in-flight request and every
+     * request made afterwards completes exceptionally with an IOException.
+     */
+    @Override
+    public void close() {
+        IOException error = closedError();
+
+        closed = true;
+        pending.clear();
+        ioExecutor.shutdownNow();
+
+        for (CompletableFuture<String> result : outstanding) {
+            result.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * @return number of requests currently sent and waiting for a response
+     */
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return number of requests queued behind the in-flight bound
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    // ------------------
+    // API implementation
+    // ------------------
+
+    /**
+     * @see FloodlightClient#getAggregateSwitchesStats(String)
+     */
+    public CompletableFuture<JSONObject> getAggregateSwitchesStats(String statType) {
+        String mountPoint = "/wm/core/switch/all/" + statType + "/json";
+        return getJSONObject(uriPrefix + mountPoint);
+    }
+
+    /**
+     * @see FloodlightClient#getSwitchStats(String, String)
+     */
+    public CompletableFuture<JSONObject> getSwitchStats(String switchId, String statType) {
+        String mountPoint = "/wm/core/switch/" + switchId + "/" + statType + "/json";
+        return getJSONObject(uriPrefix + mountPoint);
+    }
+
+    /**
+     * @see FloodlightClient#getSwitchesInformations()
+     */
+    public CompletableFuture<JSONArray> getSwitchesInformations() {
+        String mountPoint = "/wm/core/controller/switches/json";
+        return getJSONArray(uriPrefix + mountPoint);
+    }
+
+    /**
+     * @see FloodlightClient#getAllSwitchDPIDs()
+     */
+    public CompletableFuture<List<String>> getAllSwitchDPIDs() {
+        return getSwitchesInformations().thenApply(allSwitchInformations -> {
+            ArrayList<String> result = new ArrayList<String>();
+
+            try {
+                for (int i = 0; i < allSwitchInformations.length(); i++) {
+                    result.add(allSwitchInformations.getJSONObject(i).getString("dpid"));
+                }
+            }
+            catch (JSONException e) {
+                throw new RuntimeException(e);
+            }
+
+            return result;
+        });
+    }
+
+    /**
+     * @see FloodlightClient#getControllerSummary()
+     */
+    public CompletableFuture<JSONObject> getControllerSummary() {
+        String mountPoint = "/wm/core/controller/summary/json";
+        return getJSONObject(uriPrefix + mountPoint);
+    }
+
+    /**
+     * @see FloodlightClient#getGlobalTrafficCounters(String)
+     */
+    public CompletableFuture<JSONObject> getGlobalTrafficCounters(String counterTitle) {
+        String mountPoint = "/wm/core/counter/" + counterTitle + "/json";
+        return getJSONObject(uriPrefix + mountPoint);
+    }
+
+    /**
+     * @see FloodlightClient#getSwitchTrafficCounters(String, String)
+     */
+    public CompletableFuture<JSONObject> getSwitchTrafficCounters(String switchId,
+            String counterName) {
+        String mountPoint = "/wm/core/counter/" + switchId + "/" + counterName + "/json";
+        return getJSONObject(uriPrefix + mountPoint);
+    }
+
+    /**
+     * @see FloodlightClient#getControllerMemoryUsage()
+     */
+    public CompletableFuture<JSONObject> getControllerMemoryUsage() {
+        String mountPoint = "/wm/core/memory/json";
+        return getJSONObject(uriPrefix + mountPoint);
+    }
+
+    /**
+     * @see FloodlightClient#getRestApiHealthStatus()
+     */
+    public CompletableFuture<JSONObject> getRestApiHealthStatus() {
+        String mountPoint = "/wm/core/health/json";
+        return getJSONObject(uriPrefix + mountPoint);
+    }
+
+    /**
+     * @see FloodlightClient#isRestApiHealthy()
+     */
+    public CompletableFuture<Boolean> isRestApiHealthy() {
+        return getRestApiHealthStatus().thenApply(status -> {
+            try {
+                return status.getBoolean("healthy");
+            }
+            catch (JSONException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    /**
+     * @see FloodlightClient#getSystemUptime()
+     */
+    public CompletableFuture<JSONObject> getSystemUptime() {
+        String mountPoint = "/wm/core/system/uptime/json";
+        return getJSONObject(uriPrefix + mountPoint);
+    }
+
+    /**
+     * @see FloodlightClient#getSystemUptimeMsec()
+     */
+    public CompletableFuture<Long> getSystemUptimeMsec() {
+        return getSystemUptime().thenApply(uptime -> {
+            try {
+                return uptime.getLong("systemUptimeMsec");
+            }
+            catch (JSONException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    /**
+     * @see FloodlightClient#getInterSwitchLinks()
+     */
+    public CompletableFuture<JSONArray> getInterSwitchLinks() {
+        String mountPoint = "/wm/topology/links/json";
+        return getJSONArray(uriPrefix + mountPoint);
+    }
+
+    /**
+     * @see FloodlightClient#getSwitchClusters()
+     */
+    public CompletableFuture<JSONObject> getSwitchClusters() {
+        String mountPoint = "/wm/topology/switchclusters/json";
+        return getJSONObject(uriPrefix + mountPoint);
+    }
+
+    /**
+     * @see FloodlightClient#getExternalLinks()
+     */
+    public CompletableFuture<JSONArray> getExternalLinks() {
+        String mountPoint = "/wm/topology/external-links/json";
+        return getJSONArray(uriPrefix + mountPoint);
+    }
+
+    /**
+     * @see FloodlightClient#getDirectAndTunnelLinks()
+     */
+    public CompletableFuture<JSONArray> getDirectAndTunnelLinks() {
+        String mountPoint = "/wm/topology/links/json";
+        return getJSONArray(uriPrefix + mountPoint);
+    }
+
+    /**
+     * @see FloodlightClient#getRoute(String, int, String, int)
+     */
+    public CompletableFuture<JSONArray> getRoute(String srcId, int srcPort, String dstId,
+            int dstPort) {
+        String mountPoint = "/wm/topology/route/" + srcId + "/" + srcPort + "/" + dstId
+                + "/" + dstPort + "/json";
+        return getJSONArray(uriPrefix + mountPoint);
+    }
+
+    /**
+     * @see FloodlightClient#getDevices(Map)
+     */
+    public CompletableFuture<JSONArray> getDevices(Map<String, String> paraMap) {
+        String mountPoint = "/wm/device/";
+        return getJSONArray(uriPrefix + mountPoint + "?"
+                + RestUtils.prepareGetParameterString(paraMap));
+    }
+
+    /**
+     * @see FloodlightClient#getDevices(String, String)
+     */
+    public CompletableFuture<JSONArray> getDevices(String key, String value) {
+        Map<String, String> paraMap = new HashMap<String, String>();
+        paraMap.put(key, value);
+
+        return getDevices(paraMap);
+    }
+
+    /**
+     * @see FloodlightClient#addFlow(String, Map)
+     */
+    public CompletableFuture<JSONObject> addFlow(String name, Map<String, String> paraMap) {
+        String mountPoint = "/wm/staticflowentrypusher/json";
+
+        // Force user to provide flowName in paras to avoid error
+        paraMap.put("name", name);
+
+        return send(post(uriPrefix + mountPoint, toJSONBody(paraMap)),
+                true).thenApply(AsyncFloodlightClient::toJSONObject);
+    }
+
+    /**
+     * @see FloodlightClient#addFlow(String, FlowSpec)
+     */
+    public CompletableFuture<JSONObject> addFlow(String name, FlowSpec spec) {
+        return addFlow(name, spec.toParameters());
+    }
+
+    /**
+     * The body is encoded on the calling thread and copied, the encoder may be
+     * changed as soon as this returns.
+     * 
+     * @see FloodlightClient#addFlow(FlowTemplate.Encoder)
+     */
+    public CompletableFuture<JSONObject> addFlow(FlowTemplate.Encoder encoder) {
+        String mountPoint = "/wm/staticflowentrypusher/json";
+
+        return send(post(uriPrefix + mountPoint, encoder.encode().toByteArray()),
+                true).thenApply(AsyncFloodlightClient::toJSONObject);
+    }
+
+    /**
+     * @see FloodlightClient#addIPv4Flow(String, String, String, String, int, int)
+     */
+    public CompletableFuture<JSONObject> addIPv4Flow(String name, String switchId,
+            String srcIp, String dstIp, int outputPort, int priority) {
+        return addFlow(FloodlightClient.IPV4_FLOW_ENCODER.get().setName(name)
+                .set(FlowTemplate.Field.SWITCH, switchId)
+                .set(FlowTemplate.Field.SRC_IP, srcIp)
+                .set(FlowTemplate.Field.DST_IP, dstIp)
+                .set(FlowTemplate.Field.OUTPUT, outputPort)
+                .set(FlowTemplate.Field.PRIORITY, priority));
+    }
+
+    /**
+     * @see FloodlightClient#addIPv4Flow(String, String, String, String, int)
+     */
+    public CompletableFuture<JSONObject> addIPv4Flow(String name, String switchId,
+            String srcIp, String dstIp, int outputPort) {
+        return addIPv4Flow(name, switchId, srcIp, dstIp, outputPort,
+                FloodlightClient.DEFAULT_PRIORITY);
+    }
+
+    /**
+     * Push circuit between two hosts according to their IPs. <br>
+     * Both attachment points are looked up concurrently, and all flow entries
+     * along the route are pushed concurrently.
+     *
+     * @see FloodlightClient#pushCircuit(String, String, String)
+     */
+    public CompletableFuture<JSONArray> pushCircuit(String namePrefix, String srcIp,
+            String dstIp) {
+        CompletableFuture<JSONObject> srcAp, dstAp;
+
+        // get attachmentPoints of these hosts
+        srcAp = getDevices("ipv4", srcIp).thenApply(AsyncFloodlightClient::firstAttachmentPoint);
+        dstAp = getDevices("ipv4", dstIp).thenApply(AsyncFloodlightClient::firstAttachmentPoint);
+
+        // get default route between these attachmentPoints
+        return srcAp.thenCombine(dstAp, (src, dst) -> {
+            try {
+                return getRoute(src.getString("switchDPID"), src.getInt("port"),
+                        dst.getString("switchDPID"), dst.getInt("port"));
+            }
+            catch (JSONException e) {
+                throw new RuntimeException(e);
+            }
+        }).thenCompose(route -> route).thenCompose(route -> {
+            List<CompletableFuture<JSONObject>> results;
+            results = new ArrayList<CompletableFuture<JSONObject>>();
+
+            // add IPv4 flow entries along the path
+            try {
+                for (int i = 0; i < route.length(); i += 2) {
+                    String flowName, switchId;
+                    JSONObject fnc, rnc;
+
+                    rnc = route.getJSONObject(i);
+                    fnc = route.getJSONObject(i + 1);
+
+                    // set forward flow entry
+                    switchId = fnc.getString("switch");
+                    flowName = "circuit_" + namePrefix + "_" + switchId + "_forward";
+                    results.add(addIPv4Flow(flowName, switchId, srcIp, dstIp,
+                            fnc.getInt("port")));
+
+                    // set reverse flow entry
+                    switchId = rnc.getString("switch");
+                    flowName = "circuit_" + namePrefix + "_" + switchId + "_reverse";
+                    results.add(addIPv4Flow(flowName, switchId, dstIp, srcIp,
+                            rnc.getInt("port")));
+                }
+            }
+            catch (JSONException e) {
+                throw new RuntimeException(e);
+            }
+
+            return collect(results);
+        });
+    }
+
+    /**
+     * @see FloodlightClient#addARPFloodFlow(String)
+     */
+    public CompletableFuture<JSONObject> addARPFloodFlow(String switchId) {
+        return addFlow(FloodlightClient.ARP_FLOOD_FLOW_ENCODER.get()
+                .setName(FloodlightClient.arpFloodFlowName(switchId))
+                .set(FlowTemplate.Field.SWITCH, switchId));
+    }
+
+    /**
+     * Add static ARP flow entries with flood action on all switches, all
+     * switches are handled concurrently.
+     *
+     * @see FloodlightClient#addAllARPFloodFlows()
+     */
+    public CompletableFuture<JSONArray> addAllARPFloodFlows() {
+        return getAllSwitchDPIDs().thenCompose(switchIds -> {
+            List<CompletableFuture<JSONObject>> results;
+            results = new ArrayList<CompletableFuture<JSONObject>>();
+
+            for (String switchId : switchIds) {
+                results.add(addARPFloodFlow(switchId));
+            }
+
+            return collect(results);
+        });
+    }
+
+    /**
+     * @see FloodlightClient#deleteFlow(String)
+     */
+    public CompletableFuture<JSONObject> deleteFlow(String name) {
+        Map<String, String> paraMap;
+        String mountPoint = "/wm/staticflowentrypusher/json";
+
+        paraMap = new HashMap<String, String>();
+        paraMap.put("name", name);
+
+        return send(delete(uriPrefix + mountPoint, toJSONBody(paraMap)),
+                false).thenApply(AsyncFloodlightClient::toJSONObject);
+    }
+
+    /**
+     * @see FloodlightClient#getFlows(String)
+     */
+    public CompletableFuture<JSONObject> getFlows(String switchId) {
+        String mountPoint = "/wm/staticflowentrypusher/list/" + switchId + "/json";
+        return getJSONObject(uriPrefix + mountPoint);
+    }
+
+    /**
+     * @see FloodlightClient#clearFlows(String)
+     */
+    public CompletableFuture<Void> clearFlows(String switchId) {
+        String mountPoint = "/wm/staticflowentrypusher/clear/" + switchId + "/json";
+        return send(get(uriPrefix + mountPoint), true).thenApply(body -> null);
+    }
+
+    /**
+     * @see FloodlightClient#createVirtualNetwork(String, String)
+     */
+    public CompletableFuture<JSONObject> createVirtualNetwork(String networkId,
+            String gatewayIp) {
+        HashMap<String, String> paraMap;
+
+        paraMap = new HashMap<String, String>();
+        paraMap.put("gateway", gatewayIp);
+        paraMap.put("name", networkId);
+
+        return send(post(uriPrefix + "/networkService/v1.1/tenants/default/networks/"
+                + networkId, toJSONBody("network", paraMap)), true)
+                .thenApply(AsyncFloodlightClient::toJSONObject);
+    }
+
+    /**
+     * @see FloodlightClient#createVirtualNetwork(String)
+     */
+    public CompletableFuture<JSONObject> createVirtualNetwork(String networkId) {
+        return createVirtualNetwork(networkId, null);
+    }
+
+    /**
+     * @see FloodlightClient#updateVirtualNetwork(String, String)
+     */
+    public CompletableFuture<JSONObject> updateVirtualNetwork(String networkId,
+            String gatewayIp) {
+        HashMap<String, String> paraMap;
+
+        paraMap = new HashMap<String, String>();
+        paraMap.put("gateway", gatewayIp);
+        paraMap.put("name", networkId);
+
+        return send(put(uriPrefix + "/networkService/v1.1/tenants/default/networks/"
+                + networkId, toJSONBody("network", paraMap)), false)
+                .thenApply(AsyncFloodlightClient::toJSONObject);
+    }
+
+    /**
+     * @see FloodlightClient#updateVirtualNetwork(String)
+     */
+    public CompletableFuture<JSONObject> updateVirtualNetwork(String networkId) {
+        return updateVirtualNetwork(networkId, null);
+    }
+
+    /**
+     * @see FloodlightClient#deleteVirtualNetwork(String)
+     */
+    public CompletableFuture<JSONObject> deleteVirtualNetwork(String networkId) {
+        return send(delete(uriPrefix + "/networkService/v1.1/tenants/default/networks/"
+                + networkId, null), false).thenApply(AsyncFloodlightClient::toJSONObject);
+    }
+
+    /**
+     * @see FloodlightClient#attachHostToVirtualNetwork(String, int, String)
+     */
+    public CompletableFuture<JSONObject> attachHostToVirtualNetwork(String networkId,
+            int logicalPort, String hostMac) {
+        HashMap<String, String> paraMap;
+
+        paraMap = new HashMap<String, String>();
+        paraMap.put("id", networkId);
+        paraMap.put("mac", hostMac);
+
+        return send(put(uriPrefix + "/networkService/v1.1/tenants/default/networks/"
+                + networkId + "/ports/" + logicalPort + "/attachment",
+                toJSONBody("attachment", paraMap)), false)
+                .thenApply(AsyncFloodlightClient::toJSONObject);
+    }
+
+    /**
+     * @see FloodlightClient#detachHostFromVirtualNetwork(String, int)
+     */
+    public CompletableFuture<JSONObject> detachHostFromVirtualNetwork(String networkId,
+            int logicalPort) {
+        return send(delete(uriPrefix + "/networkService/v1.1/tenants/default/networks/"
+                + networkId + "/ports/" + logicalPort + "/attachment", null), false)
+                .thenApply(AsyncFloodlightClient::toJSONObject);
+    }
+
+    /**
+     * @see FloodlightClient#getAllVirtualNetworks()
+     */
+    public CompletableFuture<JSONArray> getAllVirtualNetworks() {
+        return getJSONArray(uriPrefix + "/networkService/v1.1/tenants/default/networks");
+    }
+
+    // --------------
+    // helper methods
+    // --------------
+
+    private CompletableFuture<JSONObject> getJSONObject(String urlString) {
+        return send(get(urlString), true).thenApply(AsyncFloodlightClient::toJSONObject);
+    }
+
+    private CompletableFuture<JSONArray> getJSONArray(String urlString) {
+        return send(get(urlString), true).thenApply(AsyncFloodlightClient::toJSONArray);
+    }
+
+    private HttpRequest get(String urlString) {
+        return HttpRequest.newBuilder(URI.create(urlString))
+                .timeout(requestTimeout)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+    }
+
+    private HttpRequest post(String urlString, byte[] body) {
+        return HttpRequest.newBuilder(URI.create(urlString))
+                .timeout(requestTimeout)
+                .header("Accept", "application/json")
+                .header("Content-Type", JsonBodyEncoder.CONTENT_TYPE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+    }
+
+    private HttpRequest put(String urlString, byte[] body) {
+        return HttpRequest.newBuilder(URI.create(urlString))
+                .timeout(requestTimeout)
+                .header("Content-Type", JsonBodyEncoder.CONTENT_TYPE)
+                .PUT(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+    }
+
+    // body == null means a normal DELETE without entity
+    private HttpRequest delete(String urlString, byte[] body) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(urlString))
+                .timeout(requestTimeout);
+
+        if (body == null)
+            return builder.DELETE().build();
+        else
+            return builder.header("Content-Type", JsonBodyEncoder.CONTENT_TYPE)
+                    .method("DELETE", HttpRequest.BodyPublishers.ofByteArray(body))
+                    .build();
+    }
+
+    // checkStatus: GET/POST only accept 200 (and 204 as empty content),
+    // PUT/DELETE return whatever the controller answers
+    private CompletableFuture<String> send(HttpRequest request, boolean checkStatus) {
+        CompletableFuture<String> result = new CompletableFuture<String>();
+
+        // tracked before the closed check, so close() either sees it or it
+        // sees closed
+        outstanding.add(result);
+        result.whenComplete((body, error) -> outstanding.remove(result));
+        if (closed) {
+            result.completeExceptionally(closedError());
+            return result;
+        }
+
+        pending.add(() -> start(request, checkStatus, result));
+        dispatch();
+
+        return result;
+    }
+
+    // runs with an in-flight slot taken, which is released once the response
+    // is in or right away if the request could not be sent
+    private void start(HttpRequest request, boolean checkStatus,
+            CompletableFuture<String> result) {
+        CompletableFuture<HttpResponse<String>> response;
+
+        try {
+            if (closed)
+                throw closedError();
+
+            response = httpClient.sendAsync(request, HttpResponse.BodyHandlers
+                    .ofString(StandardCharsets.UTF_8));
+        }
+        catch (IOException | RuntimeException e) {
+            // the dispatch loop goes on with the next request
+            inFlight.decrementAndGet();
+            result.completeExceptionally(e);
+            return;
+        }
+
+        response.whenComplete((answer, error) -> {
+            // free the slot before handing the result out
+            inFlight.decrementAndGet();
+            dispatch();
+
+            if (error != null) {
+                result.completeExceptionally(error);
+            }
+            else if (checkStatus && answer.statusCode() == 204) {
+                result.complete("");
+            }
+            else if (checkStatus && answer.statusCode() != 200) {
+                result.completeExceptionally(new RestException(answer.statusCode(),
+                        request.uri().toString()));
+            }
+            else {
+                result.complete(answer.body());
+            }
+        });
+    }
+
+    // start queued requests while there are free in-flight slots
+    private void dispatch() {
+        while (!pending.isEmpty()) {
+            int current = inFlight.get();
+
+            if (current >= maxInFlight)
+                return;
+
+            if (inFlight.compareAndSet(current, current + 1)) {
+                Runnable task = pending.poll();
+
+                if (task == null) {
+                    // somebody else took it
+                    inFlight.decrementAndGet();
+                    return;
+                }
+
+                task.run();
+            }
+        }
+    }
+
+    private static IOException closedError() {
+        return new IOException("AsyncFloodlightClient is closed");
+    }
+
+    private static <T> CompletableFuture<JSONArray> collect(
+            List<CompletableFuture<T>> futures) {
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> {
+                    JSONArray results = new JSONArray();
+
+                    for (CompletableFuture<T> future : futures) {
+                        results.put(future.join());
+                    }
+
+                    return results;
+                });
+    }
+
+    private static JSONObject firstAttachmentPoint(JSONArray devices) {
+        try {
+            return devices.getJSONObject(0).getJSONArray("attachmentPoint")
+                    .getJSONObject(0);
+        }
+        catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static JSONObject toJSONObject(String body) {
+        try {
+            return new JSONObject(body);
+        }
+        catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static JSONArray toJSONArray(String body) {
+        try {
+            return new JSONArray(body);
+        }
+        catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // requests are sent later from the I/O threads, so they own a copy of
+    // the encoded body
+    private static byte[] toJSONBody(Map<String, String> paraMap) {
+        return JsonBodyEncoder.toByteArray(null, paraMap);
+    }
+
+    // type: network or attachment
+    private static byte[] toJSONBody(String type, Map<String, String> paraMap) {
+        return JsonBodyEncoder.toByteArray(type, paraMap);
+    }
+}
@@ -0,0 +1,71 @@
+package jFloodlightPlus;
+
+import java.io.IOException;
+
+import org.json.JSONException;
+
+/**
+ * Switch port a device is attached to.
+ *
+ * @author KmnTree
+ *
+ */
+public class AttachmentPoint {
+    private long switchDpid;
+    private int port;
+    private String errorStatus;
+
+    public long getSwitchDpid() {
+        return switchDpid;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * @return error status reported by the controller, null if none
+     */
+    public String getErrorStatus() {
+        return errorStatus;
+    }
+
+    @Override
+    public String toString() {
+        return AddressUtils.dpidToString(switchDpid) + "/" + port;
+    }
+
+    // --------
+    // decoding
+    // --------
+
+    static AttachmentPoint read(JsonStreamReader in) throws IOException, JSONException {
+        AttachmentPoint result = new AttachmentPoint();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+
+            if (in.skipNull())
+                continue;
+
+            switch (name) {
+            case "switchDPID":
+                result.switchDpid = in.nextColonHex();
+                break;
+            case "port":
+                result.port = in.nextInt();
+                break;
+            case "errorStatus":
+                result.errorStatus = in.nextString();
+                break;
+            default:
+                in.skipValue();
+                break;
+            }
+        }
+        in.endObject();
+
+        return result;
+    }
+}
@@ -0,0 +1,318 @@
+package jFloodlightPlus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Installs a circuit between two hosts as one transaction. <br>
+ * <br>
+ * Both attachment points are looked up concurrently, then the route is
+ * fetched and the forward and reverse flow entries of all hops are pushed in
+ * parallel. If any push fails, or the installation times out or is
+ * interrupted while pushing, all flow entries of the circuit are deleted
+ * again, so no half-installed circuit is left in the network. <br>
+ * With a DeviceIndex set on the client, attachment points of indexed hosts
+ * are taken from the index without a device query. <br>
+ * Setup takes about three round trips instead of one per flow entry. <br>
+ * Requests run on the shared threads of the client's SwitchFanOut, on
+ * virtual threads if it uses them; no pool is created per circuit.
+ *
+ * @author KmnTree
+ *
+ */
+public class CircuitInstaller {
+    public static final int DEFAULT_PARALLELISM = 16;
+
+    private final FloodlightClient client;
+    private final int parallelism;
+
+    /**
+     * @param client
+     *            client to talk to the controller with
+     * @param parallelism
+     *            maximum number of concurrent requests of one installation
+     */
+    public CircuitInstaller(FloodlightClient client, int parallelism) {
+        if (parallelism < 2)
+            throw new IllegalArgumentException("parallelism must be at least 2: "
+                    + parallelism);
+
+        this.client = client;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @param client
+     *            client to talk to the controller with
+     */
+    public CircuitInstaller(FloodlightClient client) {
+        this(client, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * Push circuit between two hosts according to their IPs. <br>
+     * The name of each flow entries will be generated in the format of
+     * circuit_namePrefix_switchId_direction, direction could be forward or
+     * reverse.
+     *
+     * @param namePrefix
+     *            name of the circuit
+     * @param srcIp
+     *            xx.xx.xx.xx
+     * @param dstIp
+     *            xx.xx.xx.xx
+     *
+     * @return pushed flow entries or the failure, with per phase latency; if
+     *         interrupted while pushing, the circuit is rolled back, the error
+     *         is an InterruptedException and the interrupt is kept
+     *
+     * @throws InterruptedException
+     *             if the calling thread is interrupted before any push
+     */
+    public CircuitResult install(String namePrefix, String srcIp, String dstIp)
+            throws InterruptedException {
+        List<String> names = new ArrayList<String>();
+        JSONArray results = new JSONArray();
+        long resolveNanos = 0, routeNanos = 0, installNanos = 0, rollbackNanos = 0;
+        long phaseStart;
+        Throwable error = null;
+        boolean rolledBack = false;
+        SwitchFanOut fanOut = client.getFanOut();
+
+        try {
+            AttachmentPoint srcAp, dstAp;
+            JSONArray route;
+
+            // phase 1: attachment points of both hosts at the same time
+            phaseStart = System.nanoTime();
+            List<Future<AttachmentPoint>> attachmentPoints = fanOut.submitAll(Arrays
+                    .<Callable<AttachmentPoint>> asList(() -> firstAttachmentPoint(srcIp),
+                            () -> firstAttachmentPoint(dstIp)), parallelism);
+            try {
+                srcAp = attachmentPoints.get(0).get();
+                dstAp = attachmentPoints.get(1).get();
+            }
+            finally {
+                resolveNanos = System.nanoTime() - phaseStart;
+            }
+
+            // phase 2: default route between these attachmentPoints
+            phaseStart = System.nanoTime();
+            try {
+                route = client.getRoute(AddressUtils.dpidToString(srcAp.getSwitchDpid()),
+                        srcAp.getPort(), AddressUtils.dpidToString(dstAp.getSwitchDpid()),
+                        dstAp.getPort());
+            }
+            finally {
+                routeNanos = System.nanoTime() - phaseStart;
+            }
+
+            // phase 3: all flow entries along the path at the same time, each
+            // body encoded from the IPv4 template on its pushing thread
+            List<Callable<JSONObject>> pushCalls = new ArrayList<Callable<JSONObject>>();
+            addRouteFlows(namePrefix, srcIp, dstIp, route, (name, switchId, from, to,
+                    port) -> {
+                names.add(name);
+                pushCalls.add(() -> client.addIPv4Flow(name, switchId, from, to, port));
+            });
+
+            phaseStart = System.nanoTime();
+            // aborted with the calling task, e.g. by a fan-out timeout
+            List<Future<JSONObject>> pushes = fanOut.submitAll(pushCalls, parallelism);
+
+            // every push is waited for even when interrupted, a rollback must
+            // not race with a push still in flight
+            for (Future<JSONObject> push : pushes) {
+                try {
+                    results.put(getUninterruptibly(push));
+                }
+                catch (ExecutionException e) {
+                    if (error == null)
+                        error = e.getCause();
+                }
+            }
+            installNanos = System.nanoTime() - phaseStart;
+
+            if (error == null && Thread.currentThread().isInterrupted())
+                error = new InterruptedException("Circuit " + namePrefix
+                        + " interrupted while pushing");
+
+            // phase 4: undo the whole circuit on failure
+            if (error != null) {
+                phaseStart = System.nanoTime();
+                rollback(fanOut, names);
+                rollbackNanos = System.nanoTime() - phaseStart;
+
+                rolledBack = true;
+                results = new JSONArray();
+            }
+        }
+        catch (ExecutionException e) {
+            error = e.getCause();
+        }
+        catch (JSONException | IOException | RuntimeException e) {
+            error = e;
+        }
+
+        return new CircuitResult(namePrefix, names, results, error, rolledBack,
+                resolveNanos, routeNanos, installNanos, rollbackNanos);
+    }
+
+    /**
+     * Install many circuits in parallel on the client's SwitchFanOut, each of
+     * them as its own transaction.
+     *
+     * @param namePrefixes
+     *            names of the circuits, unique
+     * @param srcIps
+     *            source host of each circuit, xx.xx.xx.xx
+     * @param dstIps
+     *            destination host of each circuit, xx.xx.xx.xx
+     *
+     * @return name to outcome of every circuit, a failed installation is a
+     *         CircuitResult with its error, a timed out one an error; a
+     *         circuit timed out or cancelled while pushing was rolled back
+     *         before this returns
+     *
+     * @throws InterruptedException
+     *             if the calling thread is interrupted while waiting
+     */
+    public FanOutResult<CircuitResult> installAll(List<String> namePrefixes,
+            List<String> srcIps, List<String> dstIps) throws InterruptedException {
+        Map<String, Integer> indexes = new HashMap<String, Integer>();
+
+        if (srcIps.size() != namePrefixes.size() || dstIps.size() != namePrefixes.size())
+            throw new IllegalArgumentException("one source and destination per circuit");
+
+        for (int i = 0; i < namePrefixes.size(); i++) {
+            if (indexes.put(namePrefixes.get(i), i) != null)
+                throw new IllegalArgumentException("duplicate circuit "
+                        + namePrefixes.get(i));
+        }
+
+        return client.getFanOut().run(namePrefixes, namePrefix -> {
+            int i = indexes.get(namePrefix);
+            return install(namePrefix, srcIps.get(i), dstIps.get(i));
+        });
+    }
+
+    /**
+     * Flow entries of a circuit along a route as returned by getRoute(): pairs
+     * of (ingress, egress) switch ports, one pair per hop.
+     */
+    static void addRouteFlows(String namePrefix, String srcIp, String dstIp,
+            JSONArray route, List<String> names, List<Map<String, String>> paraMaps)
+            throws JSONException {
+        addRouteFlows(namePrefix, srcIp, dstIp, route, (name, switchId, from, to,
+                port) -> {
+            names.add(name);
+            paraMaps.add(FloodlightClient.ipv4FlowParameters(switchId, from, to, port,
+                    FloodlightClient.DEFAULT_PRIORITY));
+        });
+    }
+
+    // IPv4 flow entry of a route with the default priority
+    private interface RouteFlow {
+        void add(String name, String switchId, String srcIp, String dstIp,
+                int outputPort);
+    }
+
+    private static void addRouteFlows(String namePrefix, String srcIp, String dstIp,
+            JSONArray route, RouteFlow flows) throws JSONException {
+        for (int i = 0; i < route.length(); i += 2) {
+            String switchId;
+            JSONObject fnc, rnc;    // nc means nodeConnector in Opendaylight
+
+            // read data from default route
+            rnc = route.getJSONObject(i);
+            fnc = route.getJSONObject(i + 1);
+
+            // set forward flow entry
+            switchId = fnc.getString("switch");
+            flows.add("circuit_" + namePrefix + "_" + switchId + "_forward", switchId,
+                    srcIp, dstIp, fnc.getInt("port"));
+
+            // set reverse flow entry
+            switchId = rnc.getString("switch");
+            flows.add("circuit_" + namePrefix + "_" + switchId + "_reverse", switchId,
+                    dstIp, srcIp, rnc.getInt("port"));
+        }
+    }
+
+    // from the device index if the client has one and it knows the host
+    private AttachmentPoint firstAttachmentPoint(String ip) throws Exception {
+        DeviceIndex deviceIndex = client.getDeviceIndex();
+        AttachmentPoint result = null;
+        List<Device> devices;
+
+        if (deviceIndex != null)
+            result = deviceIndex.getAttachmentPoint(ip);
+        if (result != null)
+            return result;
+
+        devices = client.getDeviceList("ipv4", ip);
+        if (devices.isEmpty())
+            throw new IllegalStateException("No device with ipv4 " + ip);
+
+        result = devices.get(0).getAttachmentPoint();
+        if (result == null)
+            throw new IllegalStateException("No attachment point of ipv4 " + ip);
+
+        return result;
+    }
+
+    // delete every flow entry of the circuit, also the ones whose push failed
+    // since a timed out push may still have been installed; the deletes are
+    // not aborted with the calling task and are waited for even when
+    // interrupted
+    private void rollback(SwitchFanOut fanOut, List<String> names) {
+        List<Callable<JSONObject>> deleteCalls = new ArrayList<Callable<JSONObject>>();
+        List<Future<JSONObject>> deletes;
+
+        // outside the scope of the calling task, which may be aborted
+        for (String name : names) {
+            deleteCalls.add(RequestScope.detach(() -> client.deleteFlow(name)));
+        }
+        deletes = fanOut.submitAll(deleteCalls, parallelism);
+
+        for (Future<JSONObject> delete : deletes) {
+            try {
+                getUninterruptibly(delete);
+            }
+            catch (ExecutionException e) {
+                // best effort, the original failure is reported
+            }
+        }
+    }
+
+    // an interrupt while waiting is kept for the caller
+    private static <T> T getUninterruptibly(Future<T> future) throws ExecutionException {
+        boolean interrupted = false;
+
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package jFloodlightPlus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Outcome of a CircuitPlanner push: status of every circuit and the latency of
+ * every phase. <br>
+ * <br>
+ * It also counts which circuits rely on each flow entry, a shared entry is
+ * only deleted with the last of them, see FlowDeletion.circuit(String,
+ * CircuitPlanResult). These references are thread safe, the rest does not
+ * change.
+ *
+ * @author KmnTree
+ *
+ */
+public class CircuitPlanResult {
+    private final Map<String, List<String>> flowNames;
+    private final Map<String, Throwable> errors;
+    private final int routeCount;
+    private final int switchCount;
+    private final int pushedFlowCount;
+    private final int sharedFlowCount;
+    private final long resolveNanos;
+    private final long routeNanos;
+    private final long pushNanos;
+    // flow name to the circuits still relying on it, guarded by this
+    private final Map<String, Set<String>> references;
+
+    CircuitPlanResult(Map<String, List<String>> flowNames, Map<String, Throwable> errors,
+            int routeCount, int switchCount, int pushedFlowCount, int sharedFlowCount,
+            long resolveNanos, long routeNanos, long pushNanos) {
+        this.flowNames = flowNames;
+        this.errors = errors;
+        this.routeCount = routeCount;
+        this.switchCount = switchCount;
+        this.pushedFlowCount = pushedFlowCount;
+        this.sharedFlowCount = sharedFlowCount;
+        this.resolveNanos = resolveNanos;
+        this.routeNanos = routeNanos;
+        this.pushNanos = pushNanos;
+        this.references = new HashMap<String, Set<String>>();
+
+        for (Map.Entry<String, List<String>> circuit : flowNames.entrySet()) {
+            for (String name : circuit.getValue()) {
+                references.computeIfAbsent(name, k -> new LinkedHashSet<String>()).add(
+                        circuit.getKey());
+            }
+        }
+    }
+
+    /**
+     * @return names of all circuits in the order they were added
+     */
+    public List<String> getNamePrefixes() {
+        return new ArrayList<String>(flowNames.keySet());
+    }
+
+    /**
+     * @return true if all flow entries of the circuit were pushed
+     */
+    public boolean isSuccess(String namePrefix) {
+        return flowNames.containsKey(namePrefix) && !errors.containsKey(namePrefix);
+    }
+
+    /**
+     * @return the first error of the circuit, null on success
+     */
+    public Throwable getError(String namePrefix) {
+        return errors.get(namePrefix);
+    }
+
+    /**
+     * @return name to error of all failed circuits, in the order they were added
+     */
+    public Map<String, Throwable> getErrors() {
+        return Collections.unmodifiableMap(errors);
+    }
+
+    /**
+     * @return true if no circuit failed
+     */
+    public boolean isAllSucceeded() {
+        return errors.isEmpty();
+    }
+
+    /**
+     * @return number of succeeded circuits
+     */
+    public int getSuccessCount() {
+        return flowNames.size() - errors.size();
+    }
+
+    /**
+     * Flow entries of a circuit, forward and reverse per hop. An entry shared
+     * with a circuit added before is named after that circuit, see
+     * getCircuits(). A failed circuit may be partially installed, its entries
+     * are not deleted.
+     *
+     * @return names of the flow entries the circuit relies on, empty if it
+     *         failed before its route was known
+     */
+    public List<String> getFlowNames(String namePrefix) {
+        List<String> names = flowNames.get(namePrefix);
+
+        return names == null ? Collections.<String> emptyList() : Collections
+                .unmodifiableList(names);
+    }
+
+    /**
+     * @return circuits still relying on a flow entry, empty once all of them
+     *         were released
+     */
+    public synchronized Set<String> getCircuits(String flowName) {
+        Set<String> circuits = references.get(flowName);
+
+        return circuits == null ? Collections.<String> emptySet()
+                : new LinkedHashSet<String>(circuits);
+    }
+
+    /**
+     * Drop the references of a deleted circuit, the entries it shared then
+     * belong to the remaining circuits only. FlowDeletion releases the
+     * circuits it deleted by this result.
+     */
+    public synchronized void release(String namePrefix) {
+        for (String name : getFlowNames(namePrefix)) {
+            Set<String> circuits = references.get(name);
+
+            if (circuits != null)
+                circuits.remove(namePrefix);
+        }
+    }
+
+    /**
+     * @return names of the flow entries of the circuits no other circuit
+     *         relies on any more
+     */
+    synchronized Set<String> getUnsharedFlowNames(Collection<String> namePrefixes) {
+        Set<String> names = new LinkedHashSet<String>();
+
+        for (String namePrefix : namePrefixes) {
+            for (String name : getFlowNames(namePrefix)) {
+                if (namePrefixes.containsAll(references.get(name)))
+                    names.add(name);
+            }
+        }
+
+        return names;
+    }
+
+    /**
+     * @return number of distinct routes looked up
+     */
+    public int getRouteCount() {
+        return routeCount;
+    }
+
+    /**
+     * @return number of switches flow entries were pushed to
+     */
+    public int getSwitchCount() {
+        return switchCount;
+    }
+
+    /**
+     * @return number of flow entries pushed
+     */
+    public int getPushedFlowCount() {
+        return pushedFlowCount;
+    }
+
+    /**
+     * @return number of flow entries identical to one of another circuit,
+     *         pushed once for both
+     */
+    public int getSharedFlowCount() {
+        return sharedFlowCount;
+    }
+
+    /**
+     * @return time to look up the attachment points of all hosts
+     */
+    public double getResolveMillis() {
+        return resolveNanos / 1e6;
+    }
+
+    /**
+     * @return time to look up or compute all routes
+     */
+    public double getRouteMillis() {
+        return routeNanos / 1e6;
+    }
+
+    /**
+     * @return time to push all flow entries
+     */
+    public double getPushMillis() {
+        return pushNanos / 1e6;
+    }
+
+    public double getTotalMillis() {
+        return (resolveNanos + routeNanos + pushNanos) / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CircuitPlanResult [circuits=%d, failed=%d, routes=%d, "
+                + "switches=%d, flows=%d, shared=%d, resolveMillis=%.2f, "
+                + "routeMillis=%.2f, pushMillis=%.2f]", flowNames.size(), errors.size(),
+                routeCount, switchCount, pushedFlowCount, sharedFlowCount,
+                getResolveMillis(), getRouteMillis(), getPushMillis());
+    }
+}
@@ -0,0 +1,399 @@
+package jFloodlightPlus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+/**
+ * Sets up many circuits at once, with far fewer requests than one
+ * pushCircuit() per circuit. <br>
+ * <br>
+ * All hosts are resolved in one pass: from the client's DeviceIndex if set,
+ * the rest from a single device listing. Every distinct pair of attachment
+ * points is routed once, by the controller in parallel on the client's
+ * SwitchFanOut or locally by a TopologyGraph. Flow entries identical to one
+ * of another circuit are pushed once, entries with the same match but
+ * another action fail the later circuit. Delete circuits with
+ * FlowDeletion.circuit(String, CircuitPlanResult) to keep shared entries until
+ * no circuit relies on them. The entries are then grouped per
+ * switch and the switches are pushed in parallel, the entries of one switch
+ * one after the other. <br>
+ * Circuits are not transactional: a failed circuit may be partially
+ * installed, see CircuitPlanResult.getFlowNames(). <br>
+ * Flow names are the same as with pushCircuit().
+ *
+ * @author KmnTree
+ *
+ */
+public class CircuitPlanner {
+    private final FloodlightClient client;
+    private final Map<String, Circuit> circuits = new LinkedHashMap<String, Circuit>();
+    private TopologyGraph topology;
+
+    /**
+     * @param client
+     *            client to talk to the controller with
+     */
+    public CircuitPlanner(FloodlightClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Compute routes locally instead of asking the controller.
+     *
+     * @param topology
+     *            topology kept up to date by the caller, null to ask the
+     *            controller
+     */
+    public void setTopology(TopologyGraph topology) {
+        this.topology = topology;
+    }
+
+    /**
+     * Add a circuit between two hosts.
+     *
+     * @param namePrefix
+     *            name of the circuit, unique
+     * @param srcIp
+     *            xx.xx.xx.xx
+     * @param dstIp
+     *            xx.xx.xx.xx
+     *
+     * @return this
+     */
+    public CircuitPlanner add(String namePrefix, String srcIp, String dstIp) {
+        // fail early on malformed addresses
+        AddressUtils.parseIpv4(srcIp);
+        AddressUtils.parseIpv4(dstIp);
+
+        if (circuits.containsKey(namePrefix))
+            throw new IllegalArgumentException("duplicate circuit " + namePrefix);
+
+        circuits.put(namePrefix, new Circuit(namePrefix, srcIp, dstIp));
+        return this;
+    }
+
+    /**
+     * @return number of circuits added
+     */
+    public int size() {
+        return circuits.size();
+    }
+
+    /**
+     * Resolve, route and push all circuits added.
+     *
+     * @return status of every circuit with per phase latency
+     *
+     * @throws InterruptedException
+     *             if the calling thread is interrupted while waiting
+     */
+    public CircuitPlanResult push() throws InterruptedException {
+        Map<String, PlannedFlow> byMatch = new HashMap<String, PlannedFlow>();
+        Map<String, List<PlannedFlow>> bySwitch;
+        long resolveNanos, routeNanos, pushNanos;
+        long phaseStart;
+        int sharedFlowCount = 0;
+
+        bySwitch = new TreeMap<String, List<PlannedFlow>>();
+        for (Circuit circuit : circuits.values()) {
+            circuit.reset();
+        }
+
+        // phase 1: attachment points of all hosts
+        phaseStart = System.nanoTime();
+        resolve();
+        resolveNanos = System.nanoTime() - phaseStart;
+
+        // phase 2: every distinct route once
+        phaseStart = System.nanoTime();
+        route();
+        routeNanos = System.nanoTime() - phaseStart;
+
+        // phase 3: flow entries per switch, the same flow only once
+        for (Circuit circuit : circuits.values()) {
+            if (circuit.error == null)
+                sharedFlowCount += plan(circuit, byMatch, bySwitch);
+        }
+
+        phaseStart = System.nanoTime();
+        push(bySwitch);
+        pushNanos = System.nanoTime() - phaseStart;
+
+        return result(byMatch.size(), bySwitch.size(), sharedFlowCount, resolveNanos,
+                routeNanos, pushNanos);
+    }
+
+    // --------------
+    // helper methods
+    // --------------
+
+    private void resolve() {
+        DeviceIndex deviceIndex = client.getDeviceIndex();
+        DeviceIndex listing = null;
+        Throwable listingError = null;
+
+        for (Circuit circuit : circuits.values()) {
+            if (deviceIndex != null) {
+                circuit.srcAp = deviceIndex.getAttachmentPoint(circuit.srcIp);
+                circuit.dstAp = deviceIndex.getAttachmentPoint(circuit.dstIp);
+            }
+            if (circuit.srcAp != null && circuit.dstAp != null)
+                continue;
+
+            // one listing of all devices for every host not indexed
+            if (listing == null && listingError == null) {
+                try {
+                    listing = new DeviceIndex(client);
+                    listing.refresh();
+                }
+                catch (IOException | JSONException | RuntimeException e) {
+                    listingError = e;
+                }
+            }
+
+            try {
+                if (listingError != null)
+                    circuit.error = listingError;
+                if (listingError == null && circuit.srcAp == null)
+                    circuit.srcAp = attachmentPoint(listing, circuit.srcIp);
+                if (listingError == null && circuit.dstAp == null)
+                    circuit.dstAp = attachmentPoint(listing, circuit.dstIp);
+            }
+            catch (IllegalStateException e) {
+                circuit.error = e;
+            }
+        }
+    }
+
+    private static AttachmentPoint attachmentPoint(DeviceIndex listing, String ip) {
+        Device device = listing.getByIpv4(ip);
+
+        if (device == null)
+            throw new IllegalStateException("No device with ipv4 " + ip);
+        if (device.getAttachmentPoint() == null)
+            throw new IllegalStateException("No attachment point of ipv4 " + ip);
+
+        return device.getAttachmentPoint();
+    }
+
+    private void route() throws InterruptedException {
+        Set<String> routeKeys = new LinkedHashSet<String>();
+        Map<String, JSONArray> routes = new HashMap<String, JSONArray>();
+        Map<String, Throwable> errors = new HashMap<String, Throwable>();
+
+        for (Circuit circuit : circuits.values()) {
+            if (circuit.error == null)
+                routeKeys.add(circuit.routeKey());
+        }
+
+        if (topology != null) {
+            for (String routeKey : routeKeys) {
+                String[] key = routeKey.split("/");
+
+                try {
+                    routes.put(routeKey, topology.getRoute(key[0],
+                            Integer.parseInt(key[1]), key[2], Integer.parseInt(key[3])));
+                }
+                catch (JSONException e) {
+                    errors.put(routeKey, e);
+                }
+            }
+        }
+        else {
+            FanOutResult<JSONArray> fetched = client.getFanOut().run(
+                    new ArrayList<String>(routeKeys), routeKey -> {
+                        String[] key = routeKey.split("/");
+
+                        return client.getRoute(key[0], Integer.parseInt(key[1]), key[2],
+                                Integer.parseInt(key[3]));
+                    });
+
+            routes.putAll(fetched.getResults());
+            errors.putAll(fetched.getErrors());
+        }
+
+        for (Circuit circuit : circuits.values()) {
+            if (circuit.error != null)
+                continue;
+
+            circuit.route = routes.get(circuit.routeKey());
+            if (circuit.route == null)
+                circuit.error = errors.get(circuit.routeKey());
+            else if (circuit.route.length() == 0)
+                circuit.error = new IllegalStateException("No route between "
+                        + circuit.srcIp + " and " + circuit.dstIp);
+        }
+    }
+
+    // returns the number of flow entries shared with circuits planned before
+    private static int plan(Circuit circuit, Map<String, PlannedFlow> byMatch,
+            Map<String, List<PlannedFlow>> bySwitch) {
+        List<String> names = new ArrayList<String>();
+        List<Map<String, String>> paraMaps = new ArrayList<Map<String, String>>();
+        List<StaticFlowEntry> entries = new ArrayList<StaticFlowEntry>();
+        int shared = 0;
+
+        try {
+            CircuitInstaller.addRouteFlows(circuit.namePrefix, circuit.srcIp,
+                    circuit.dstIp, circuit.route, names, paraMaps);
+        }
+        catch (JSONException e) {
+            circuit.error = e;
+            return 0;
+        }
+
+        // a circuit with a conflicting entry is not planned at all
+        for (int i = 0; i < names.size(); i++) {
+            StaticFlowEntry entry = new StaticFlowEntry(names.get(i), paraMaps.get(i));
+            PlannedFlow other = byMatch.get(entry.getMatchKey());
+
+            if (other != null && !other.entry.isSameFlow(entry)) {
+                circuit.error = new IllegalStateException("Flow entry " + entry.getName()
+                        + " conflicts with " + other.entry.getName());
+                return 0;
+            }
+            entries.add(entry);
+        }
+
+        for (StaticFlowEntry entry : entries) {
+            PlannedFlow flow = byMatch.get(entry.getMatchKey());
+
+            if (flow == null) {
+                flow = new PlannedFlow(entry);
+                byMatch.put(entry.getMatchKey(), flow);
+                bySwitch.computeIfAbsent(entry.getSwitchId(),
+                        k -> new ArrayList<PlannedFlow>()).add(flow);
+            }
+            else
+                shared++;
+
+            circuit.flows.add(flow);
+        }
+
+        return shared;
+    }
+
+    private void push(Map<String, List<PlannedFlow>> bySwitch)
+            throws InterruptedException {
+        FanOutResult<Integer> pushed = client.getFanOut().run(
+                new ArrayList<String>(bySwitch.keySet()), switchId -> {
+                    int count = 0;
+
+                    for (PlannedFlow flow : bySwitch.get(switchId)) {
+                        try {
+                            client.addFlow(flow.entry.getName(),
+                                    flow.entry.toParameters());
+                            count++;
+                        }
+                        catch (IOException | JSONException | RuntimeException e) {
+                            flow.error = e;
+                        }
+                    }
+
+                    return count;
+                });
+
+        // entries of timed out switches may or may not be installed
+        for (Map.Entry<String, Throwable> error : pushed.getErrors().entrySet()) {
+            for (PlannedFlow flow : bySwitch.get(error.getKey())) {
+                if (flow.error == null)
+                    flow.error = error.getValue();
+            }
+        }
+    }
+
+    private CircuitPlanResult result(int flowCount, int switchCount, int sharedFlowCount,
+            long resolveNanos, long routeNanos, long pushNanos) {
+        Map<String, List<String>> flowNames = new LinkedHashMap<String, List<String>>();
+        Map<String, Throwable> errors = new LinkedHashMap<String, Throwable>();
+        Set<PlannedFlow> failedFlows = new HashSet<PlannedFlow>();
+
+        for (Circuit circuit : circuits.values()) {
+            List<String> names = new ArrayList<String>(circuit.flows.size());
+
+            for (PlannedFlow flow : circuit.flows) {
+                names.add(flow.entry.getName());
+                if (flow.error != null) {
+                    failedFlows.add(flow);
+                    if (circuit.error == null)
+                        circuit.error = flow.error;
+                }
+            }
+
+            flowNames.put(circuit.namePrefix, names);
+            if (circuit.error != null)
+                errors.put(circuit.namePrefix, circuit.error);
+        }
+
+        return new CircuitPlanResult(flowNames, errors, routeCount(), switchCount,
+                flowCount - failedFlows.size(), sharedFlowCount, resolveNanos,
+                routeNanos, pushNanos);
+    }
+
+    private int routeCount() {
+        Set<String> routeKeys = new LinkedHashSet<String>();
+
+        for (Circuit circuit : circuits.values()) {
+            if (circuit.srcAp != null && circuit.dstAp != null)
+                routeKeys.add(circuit.routeKey());
+        }
+
+        return routeKeys.size();
+    }
+
+    // one circuit and what is known about it so far
+    private static final class Circuit {
+        final String namePrefix;
+        final String srcIp;
+        final String dstIp;
+        final List<PlannedFlow> flows = new ArrayList<PlannedFlow>();
+        AttachmentPoint srcAp;
+        AttachmentPoint dstAp;
+        JSONArray route;
+        Throwable error;
+
+        Circuit(String namePrefix, String srcIp, String dstIp) {
+            this.namePrefix = namePrefix;
+            this.srcIp = srcIp;
+            this.dstIp = dstIp;
+        }
+
+        // state of a previous push
+        void reset() {
+            flows.clear();
+            srcAp = null;
+            dstAp = null;
+            route = null;
+            error = null;
+        }
+
+        // src DPID/port/dst DPID/port, one route per key
+        String routeKey() {
+            return AddressUtils.dpidToString(srcAp.getSwitchDpid()) + "/"
+                    + srcAp.getPort() + "/"
+                    + AddressUtils.dpidToString(dstAp.getSwitchDpid()) + "/"
+                    + dstAp.getPort();
+        }
+    }
+
+    // a flow entry to push, shared by all circuits needing it
+    private static final class PlannedFlow {
+        final StaticFlowEntry entry;
+        volatile Throwable error;
+
+        PlannedFlow(StaticFlowEntry entry) {
+            this.entry = entry;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package jFloodlightPlus;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.json.JSONArray;
+
+/**
+ * Outcome of a CircuitInstaller run with the latency of every phase.
+ */
+public class CircuitResult {
+    private final String namePrefix;
+    private final List<String> flowNames;
+    private final JSONArray results;
+    private final Throwable error;
+    private final boolean rolledBack;
+    private final long resolveNanos;
+    private final long routeNanos;
+    private final long installNanos;
+    private final long rollbackNanos;
+
+    CircuitResult(String namePrefix, List<String> flowNames, JSONArray results,
+            Throwable error, boolean rolledBack, long resolveNanos, long routeNanos,
+            long installNanos, long rollbackNanos) {
+        this.namePrefix = namePrefix;
+        this.flowNames = flowNames;
+        this.results = results;
+        this.error = error;
+        this.rolledBack = rolledBack;
+        this.resolveNanos = resolveNanos;
+        this.routeNanos = routeNanos;
+        this.installNanos = installNanos;
+        this.rollbackNanos = rollbackNanos;
+    }
+
+    public String getNamePrefix() {
+        return namePrefix;
+    }
+
+    /**
+     * @return true if all flow entries of the circuit were pushed
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * @return the first error, null on success
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * @return true if a failure caused the pushed flow entries to be deleted
+     */
+    public boolean isRolledBack() {
+        return rolledBack;
+    }
+
+    /**
+     * @return names of all flow entries of the circuit, forward and reverse per
+     *         hop
+     */
+    public List<String> getFlowNames() {
+        return Collections.unmodifiableList(flowNames);
+    }
+
+    /**
+     * @return JSONObjects {"status":"Entry pushed"} in the order of
+     *         getFlowNames(), empty if the circuit failed
+     */
+    public JSONArray getResults() {
+        return results;
+    }
+
+    /**
+     * @return time to look up both attachment points
+     */
+    public double getResolveMillis() {
+        return resolveNanos / 1e6;
+    }
+
+    /**
+     * @return time to look up the route
+     */
+    public double getRouteMillis() {
+        return routeNanos / 1e6;
+    }
+
+    /**
+     * @return time to push all flow entries
+     */
+    public double getInstallMillis() {
+        return installNanos / 1e6;
+    }
+
+    /**
+     * @return time to delete the pushed flow entries after a failure
+     */
+    public double getRollbackMillis() {
+        return rollbackNanos / 1e6;
+    }
+
+    public double getTotalMillis() {
+        return (resolveNanos + routeNanos + installNanos + rollbackNanos) / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CircuitResult [namePrefix=%s, success=%b, rolledBack=%b, "
+                + "flows=%d, resolveMillis=%.2f, routeMillis=%.2f, installMillis=%.2f, "
+                + "rollbackMillis=%.2f, error=%s]", namePrefix, isSuccess(), rolledBack,
+                flowNames.size(), getResolveMillis(), getRouteMillis(), getInstallMillis(),
+                getRollbackMillis(), error);
+    }
+}
@@ -0,0 +1,237 @@
+package jFloodlightPlus;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Per endpoint metrics of REST calls: latency histogram, byte counts,
+ * connection pool wait, status codes and retries. <br>
+ * <br>
+ * Install it with FloodlightClient.setRequestListener() and read it through
+ * getEndpointStats() or JMX after registerMBean(). Without a listener the
+ * transport measures nothing. <br>
+ * Endpoints are counted as method and mount point with ids replaced, e.g.
+ * "GET /wm/core/switch/{}/flow/json". Beyond maxEndpoints distinct endpoints
+ * calls are counted under "other".
+ *
+ * @author KmnTree
+ *
+ */
+public class ClientMetrics implements RequestListener, ClientMetricsMXBean {
+    public static final int DEFAULT_MAX_ENDPOINTS = 128;
+
+    private static final String OTHER = "other";
+
+    private final int maxEndpoints;
+    private final ConcurrentHashMap<String, Endpoint> endpoints;
+    private ObjectName objectName;
+
+    /**
+     * Default constructor with DEFAULT_MAX_ENDPOINTS
+     */
+    public ClientMetrics() {
+        this(DEFAULT_MAX_ENDPOINTS);
+    }
+
+    /**
+     * @param maxEndpoints
+     *            number of endpoints tracked separately
+     */
+    public ClientMetrics(int maxEndpoints) {
+        this.maxEndpoints = maxEndpoints;
+        this.endpoints = new ConcurrentHashMap<String, Endpoint>();
+    }
+
+    @Override
+    public void onRequest(RequestEvent event) {
+        String key = event.getMethod() + " " + event.getEndpoint();
+        Endpoint endpoint = endpoints.get(key);
+
+        if (endpoint == null) {
+            if (endpoints.size() >= maxEndpoints)
+                key = OTHER;
+            endpoint = endpoints.computeIfAbsent(key, k -> new Endpoint());
+        }
+
+        endpoint.record(event);
+    }
+
+    // --------
+    // registry
+    // --------
+
+    /**
+     * @return snapshot of all endpoints, sorted by endpoint
+     */
+    @Override
+    public List<EndpointStats> getEndpointStats() {
+        List<EndpointStats> result = new ArrayList<EndpointStats>();
+
+        for (Map.Entry<String, Endpoint> entry : new TreeMap<String, Endpoint>(endpoints)
+                .entrySet()) {
+            result.add(entry.getValue().snapshot(entry.getKey()));
+        }
+
+        return result;
+    }
+
+    /**
+     * @param endpoint
+     *            e.g. "GET /wm/topology/links/json"
+     *
+     * @return snapshot of the endpoint, null if it was never called
+     */
+    public EndpointStats getEndpointStats(String endpoint) {
+        Endpoint metrics = endpoints.get(endpoint);
+        return metrics == null ? null : metrics.snapshot(endpoint);
+    }
+
+    /**
+     * @param endpoint
+     *            e.g. "GET /wm/topology/links/json"
+     *
+     * @return live latency histogram of the endpoint, null if it was never
+     *         called
+     */
+    public LatencyHistogram getLatencyHistogram(String endpoint) {
+        Endpoint metrics = endpoints.get(endpoint);
+        return metrics == null ? null : metrics.latency;
+    }
+
+    @Override
+    public long getRequestCount() {
+        long result = 0;
+        for (Endpoint endpoint : endpoints.values()) {
+            result += endpoint.requests.sum();
+        }
+        return result;
+    }
+
+    @Override
+    public long getErrorCount() {
+        long result = 0;
+        for (Endpoint endpoint : endpoints.values()) {
+            result += endpoint.errors.sum();
+        }
+        return result;
+    }
+
+    /**
+     * @return requests sent again by HttpClient, or as retries and hedges of
+     *         the client's RetryPolicy
+     */
+    @Override
+    public long getRetryCount() {
+        long result = 0;
+        for (Endpoint endpoint : endpoints.values()) {
+            result += endpoint.retries.sum();
+        }
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        endpoints.clear();
+    }
+
+    // ---
+    // JMX
+    // ---
+
+    /**
+     * Register as jFloodlightPlus:type=ClientMetrics,name=name on the platform
+     * MBean server.
+     *
+     * @param name
+     *            e.g. the controller address
+     *
+     * @throws JMException
+     *             if the name is invalid or already registered
+     */
+    public synchronized void registerMBean(String name) throws JMException {
+        ObjectName objectName = new ObjectName("jFloodlightPlus:type=ClientMetrics,name="
+                + ObjectName.quote(name));
+
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        this.objectName = objectName;
+    }
+
+    public synchronized void unregisterMBean() throws JMException {
+        if (objectName != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            objectName = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("ClientMetrics [");
+
+        for (EndpointStats stats : getEndpointStats()) {
+            sb.append("\n  ").append(stats);
+        }
+
+        return sb.append(endpoints.isEmpty() ? "]" : "\n]").toString();
+    }
+
+    // -------------
+    // per endpoint
+    // -------------
+
+    private static final class Endpoint {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder requests = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder retries = new LongAdder();
+        final LongAdder requestBytes = new LongAdder();
+        final LongAdder responseBytes = new LongAdder();
+        final LongAdder wireBytes = new LongAdder();
+        final LongAdder poolWaitNanos = new LongAdder();
+        final AtomicLong maxPoolWaitNanos = new AtomicLong();
+        final ConcurrentHashMap<Integer, LongAdder> statusCodes = new ConcurrentHashMap<Integer, LongAdder>();
+
+        void record(RequestEvent event) {
+            long poolWait = event.getPoolWaitNanos(), max;
+
+            latency.record(event.getLatencyNanos());
+            requests.increment();
+            if (event.getError() != null)
+                errors.increment();
+            retries.add(event.getRetryCount());
+            requestBytes.add(event.getRequestBytes());
+            responseBytes.add(event.getResponseBytes());
+            wireBytes.add(event.getWireBytes());
+            poolWaitNanos.add(poolWait);
+            statusCodes.computeIfAbsent(event.getStatusCode(), k -> new LongAdder())
+                    .increment();
+
+            max = maxPoolWaitNanos.get();
+            while (poolWait > max && !maxPoolWaitNanos.compareAndSet(max, poolWait)) {
+                max = maxPoolWaitNanos.get();
+            }
+        }
+
+        EndpointStats snapshot(String name) {
+            Map<String, Long> codes = new TreeMap<String, Long>();
+            long count = requests.sum();
+
+            for (Map.Entry<Integer, LongAdder> entry : statusCodes.entrySet()) {
+                codes.put(String.valueOf(entry.getKey()), entry.getValue().sum());
+            }
+
+            return new EndpointStats(name, count, errors.sum(), retries.sum(),
+                    requestBytes.sum(), responseBytes.sum(), wireBytes.sum(), latency,
+                    count == 0 ? 0 : poolWaitNanos.sum() / 1e6 / count,
+                    maxPoolWaitNanos.get() / 1e6, codes);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package jFloodlightPlus;
+
+import java.util.List;
+
+/**
+ * JMX view of ClientMetrics.
+ *
+ * @author KmnTree
+ *
+ */
+public interface ClientMetricsMXBean {
+    long getRequestCount();
+
+    long getErrorCount();
+
+    long getRetryCount();
+
+    List<EndpointStats> getEndpointStats();
+
+    void reset();
+}
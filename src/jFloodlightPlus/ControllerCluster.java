@@ -0,0 +1,390 @@
+package jFloodlightPlus;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.json.JSONException;
+
+/**
+ * Controllers of an HA cluster and the routing of calls to them. <br>
+ * <br>
+ * Reads go to the available controller with the least outstanding requests.
+ * Writes stick to a leader, the first available controller in the given order,
+ * until it fails. <br>
+ * A controller that can not be connected or drops or times out a request is
+ * marked down and skipped, so following calls do not wait for its connect
+ * timeout again. A read is retried right away on the next controller, a write
+ * only if it could not connect, as it may have been applied otherwise. Down
+ * controllers are tried again after retryDownMillis or when a health check
+ * finds them up. <br>
+ * Requests aborted by the caller, e.g. a timed out fan-out call or a losing
+ * hedged read, say nothing about the controller: the node is not marked down
+ * and the call is not tried on the next one.
+ *
+ * @author KmnTree
+ *
+ */
+public class ControllerCluster {
+    public static final int DEFAULT_PORT = 8080;
+    public static final long DEFAULT_RETRY_DOWN_MILLIS = 5000;
+
+    /**
+     * One REST call against the controller at baseUri.
+     */
+    public interface Call<T> {
+        T call(String baseUri) throws IOException, JSONException;
+    }
+
+    private final List<ControllerNode> nodes;
+    private final long retryDownMillis;
+    private final AtomicInteger nextRead = new AtomicInteger();
+    private volatile ControllerNode leader;
+
+    // ------------
+    // constructors
+    // ------------
+
+    /**
+     * Cluster with DEFAULT_RETRY_DOWN_MILLIS
+     *
+     * @param controllers
+     *            "ip", "ip:port" or "http://ip:port", the first is the
+     *            preferred leader
+     */
+    public ControllerCluster(List<String> controllers) {
+        this(controllers, DEFAULT_RETRY_DOWN_MILLIS);
+    }
+
+    /**
+     * Base constructor
+     *
+     * @param controllers
+     *            "ip", "ip:port" or "http://ip:port", the first is the
+     *            preferred leader
+     * @param retryDownMillis
+     *            time after which a controller marked down is tried again
+     */
+    public ControllerCluster(List<String> controllers, long retryDownMillis) {
+        List<ControllerNode> nodes = new ArrayList<ControllerNode>();
+
+        if (controllers.isEmpty())
+            throw new IllegalArgumentException("no controllers given");
+
+        for (String controller : controllers) {
+            nodes.add(new ControllerNode(toBaseUri(controller)));
+        }
+
+        this.nodes = Collections.unmodifiableList(nodes);
+        this.retryDownMillis = retryDownMillis;
+        this.leader = nodes.get(0);
+    }
+
+    /**
+     * @return all controllers in the given order
+     */
+    public List<ControllerNode> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return controller receiving the writes
+     */
+    public ControllerNode getLeader() {
+        return leader;
+    }
+
+    // -------
+    // routing
+    // -------
+
+    /**
+     * Run an idempotent call on the least loaded available controller, and on
+     * the next ones if it fails with an I/O error.
+     *
+     * @param call
+     *            the REST call
+     *
+     * @return result of the call
+     *
+     * @throws IOException
+     *             of the last controller tried
+     * @throws JSONException
+     * @throws RuntimeException
+     */
+    public <T> T read(Call<T> call) throws IOException, JSONException,
+            RuntimeException {
+        List<ControllerNode> tried = new ArrayList<ControllerNode>(nodes.size());
+        IOException lastError = null;
+        ControllerNode node;
+
+        while ((node = selectRead(tried)) != null) {
+            tried.add(node);
+            try {
+                return run(node, call);
+            }
+            catch (IOException e) {
+                // the other nodes would fail right away as well
+                if (isAborted())
+                    throw e;
+                lastError = e;
+            }
+        }
+
+        throw lastError;
+    }
+
+    /**
+     * Run a call once on the least loaded available controller, without trying
+     * others on failure. For reads whose partial results were already handed
+     * out, e.g. to a JsonVisitor.
+     *
+     * @param call
+     *            the REST call
+     *
+     * @return result of the call
+     *
+     * @throws IOException
+     * @throws JSONException
+     * @throws RuntimeException
+     */
+    public <T> T readOnce(Call<T> call) throws IOException, JSONException,
+            RuntimeException {
+        return run(selectRead(Collections.<ControllerNode> emptyList()), call);
+    }
+
+    /**
+     * Run a call on the leader. If the leader can not be connected, the next
+     * available controller becomes leader and the call is sent there. Other
+     * I/O errors are thrown, the call may have been applied.
+     *
+     * @param call
+     *            the REST call
+     *
+     * @return result of the call
+     *
+     * @throws IOException
+     * @throws JSONException
+     * @throws RuntimeException
+     */
+    public <T> T write(Call<T> call) throws IOException, JSONException,
+            RuntimeException {
+        List<ControllerNode> tried = new ArrayList<ControllerNode>(nodes.size());
+        ControllerNode node;
+
+        while (true) {
+            node = selectLeader(tried);
+            tried.add(node);
+            try {
+                return run(node, call);
+            }
+            catch (IOException e) {
+                if (isAborted() || !isConnectFailure(e) || tried.size() == nodes.size())
+                    throw e;
+            }
+        }
+    }
+
+    /**
+     * @param node
+     *            controller to set up or down, e.g. by a health check
+     * @param up
+     *            false to skip it until retryDownMillis passed
+     */
+    public void setUp(ControllerNode node, boolean up) {
+        if (up)
+            node.markUp();
+        else
+            node.markDown();
+    }
+
+    @Override
+    public String toString() {
+        return "ControllerCluster [nodes=" + nodes + ", leader=" + leader.getBaseUri()
+                + "]";
+    }
+
+    // --------------
+    // helper methods
+    // --------------
+
+    private <T> T run(ControllerNode node, Call<T> call) throws IOException,
+            JSONException {
+        node.outstanding.incrementAndGet();
+        try {
+            T result = call.call(node.getBaseUri());
+            node.markUp();
+            return result;
+        }
+        catch (IOException e) {
+            if (isNodeFailure(e))
+                node.markDown();
+            throw e;
+        }
+        finally {
+            node.outstanding.decrementAndGet();
+        }
+    }
+
+    // least outstanding requests among available nodes, ties are spread round
+    // robin; if all are down the one down the longest is tried
+    private ControllerNode selectRead(List<ControllerNode> tried) {
+        ControllerNode fallback = null;
+        long now = System.currentTimeMillis();
+        int least = Integer.MAX_VALUE, ties = 0, pick;
+
+        for (ControllerNode node : nodes) {
+            if (tried.contains(node))
+                continue;
+
+            if (node.isAvailable(now, retryDownMillis)) {
+                int outstanding = node.getOutstanding();
+
+                if (outstanding < least) {
+                    least = outstanding;
+                    ties = 1;
+                }
+                else if (outstanding == least) {
+                    ties++;
+                }
+            }
+            else if (fallback == null || node.downSince < fallback.downSince) {
+                fallback = node;
+            }
+        }
+
+        if (ties == 0)
+            return fallback;
+
+        pick = (nextRead.getAndIncrement() & Integer.MAX_VALUE) % ties;
+        for (ControllerNode node : nodes) {
+            if (!tried.contains(node) && node.isAvailable(now, retryDownMillis)
+                    && node.getOutstanding() <= least && pick-- == 0)
+                return node;
+        }
+
+        // outstanding counts moved meanwhile
+        return fallback != null ? fallback : nodes.get(0);
+    }
+
+    // current leader while available, else the first available node in order
+    private ControllerNode selectLeader(List<ControllerNode> tried) {
+        ControllerNode current = leader, fallback = null;
+        long now = System.currentTimeMillis();
+
+        if (!tried.contains(current) && current.isAvailable(now, retryDownMillis))
+            return current;
+
+        for (ControllerNode node : nodes) {
+            if (tried.contains(node))
+                continue;
+
+            if (node.isAvailable(now, retryDownMillis)) {
+                leader = node;
+                return node;
+            }
+            if (fallback == null || node.downSince < fallback.downSince)
+                fallback = node;
+        }
+
+        leader = fallback;
+        return fallback;
+    }
+
+    // the controller could not be connected or failed to answer; not a request
+    // aborted by the caller or waiting too long for a pooled connection
+    private static boolean isNodeFailure(IOException e) {
+        if (isAborted() || e instanceof ConnectionPoolTimeoutException)
+            return false;
+        if (e instanceof InterruptedIOException)
+            return e instanceof SocketTimeoutException
+                    || e instanceof ConnectTimeoutException;
+        return true;
+    }
+
+    // the calling task was cancelled or timed out, see RequestScope
+    private static boolean isAborted() {
+        return RequestScope.isCurrentAborted() || Thread.currentThread().isInterrupted();
+    }
+
+    // nothing was sent, so any call may be repeated elsewhere; a dropped
+    // connection without response may follow an applied request, see
+    // RetryPolicy.isRetryable()
+    private static boolean isConnectFailure(IOException e) {
+        return e instanceof ConnectException || e instanceof ConnectTimeoutException;
+    }
+
+    static String toBaseUri(String controller) {
+        String result = controller.trim();
+
+        if (result.endsWith("/"))
+            result = result.substring(0, result.length() - 1);
+        if (!result.startsWith("http://") && !result.startsWith("https://"))
+            result = "http://" + result;
+        if (result.indexOf(':', result.indexOf("//") + 2) < 0)
+            result = result + ":" + DEFAULT_PORT;
+
+        return result;
+    }
+
+    // ----------
+    // controller
+    // ----------
+
+    /**
+     * One controller of the cluster.
+     */
+    public static final class ControllerNode {
+        private final String baseUri;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private volatile boolean up = true;
+        private volatile long downSince;
+
+        ControllerNode(String baseUri) {
+            this.baseUri = baseUri;
+        }
+
+        /**
+         * @return e.g. http://10.0.0.1:8080
+         */
+        public String getBaseUri() {
+            return baseUri;
+        }
+
+        public boolean isUp() {
+            return up;
+        }
+
+        /**
+         * @return requests sent to this controller and not answered yet
+         */
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+
+        boolean isAvailable(long now, long retryDownMillis) {
+            return up || now - downSince >= retryDownMillis;
+        }
+
+        void markUp() {
+            up = true;
+        }
+
+        void markDown() {
+            downSince = System.currentTimeMillis();
+            up = false;
+        }
+
+        @Override
+        public String toString() {
+            return baseUri + (up ? " up" : " down") + " outstanding=" + getOutstanding();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package jFloodlightPlus;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.json.JSONException;
+
+/**
+ * Device (i.e. host) tracked by the controller, as returned by /wm/device/. <br>
+ * MACs are kept as long, IPv4 addresses as int.
+ *
+ * @author KmnTree
+ *
+ */
+public class Device {
+    private static final long[] NO_LONGS = new long[0];
+    private static final int[] NO_INTS = new int[0];
+    private static final AttachmentPoint[] NO_ATTACHMENT_POINTS = new AttachmentPoint[0];
+
+    private String entityClass;
+    private long[] macs = NO_LONGS;
+    private int[] ipv4s = NO_INTS;
+    private int[] vlans = NO_INTS;
+    private AttachmentPoint[] attachmentPoints = NO_ATTACHMENT_POINTS;
+    private long lastSeen;
+
+    public String getEntityClass() {
+        return entityClass;
+    }
+
+    /**
+     * @return first MAC of the device, 0 if none
+     */
+    public long getMac() {
+        return macs.length > 0 ? macs[0] : 0;
+    }
+
+    public long[] getMacs() {
+        return macs.clone();
+    }
+
+    public int[] getIpv4s() {
+        return ipv4s.clone();
+    }
+
+    public int[] getVlans() {
+        return vlans.clone();
+    }
+
+    /**
+     * @return first attachment point of the device, null if none
+     */
+    public AttachmentPoint getAttachmentPoint() {
+        return attachmentPoints.length > 0 ? attachmentPoints[0] : null;
+    }
+
+    public AttachmentPoint[] getAttachmentPoints() {
+        return attachmentPoints.clone();
+    }
+
+    public long getLastSeen() {
+        return lastSeen;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder ips = new StringBuilder();
+
+        for (int ip : ipv4s) {
+            if (ips.length() > 0)
+                ips.append(',');
+            ips.append(AddressUtils.ipv4ToString(ip));
+        }
+
+        return "Device [mac=" + AddressUtils.macToString(getMac()) + ", ipv4=" + ips
+                + ", attachmentPoints=" + Arrays.toString(attachmentPoints) + "]";
+    }
+
+    // --------
+    // decoding
+    // --------
+
+    static Device read(JsonStreamReader in) throws IOException, JSONException {
+        Device result = new Device();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+
+            if (in.skipNull())
+                continue;
+
+            switch (name) {
+            case "entityClass":
+                result.entityClass = in.nextString();
+                break;
+            case "mac":
+                result.macs = readColonHexArray(in);
+                break;
+            case "ipv4":
+                result.ipv4s = readIpv4Array(in);
+                break;
+            case "vlan":
+                result.vlans = readIntArray(in);
+                break;
+            case "attachmentPoint":
+                result.attachmentPoints = readAttachmentPoints(in);
+                break;
+            case "lastSeen":
+                result.lastSeen = in.nextLong();
+                break;
+            default:
+                in.skipValue();
+                break;
+            }
+        }
+        in.endObject();
+
+        return result;
+    }
+
+    private static long[] readColonHexArray(JsonStreamReader in) throws IOException,
+            JSONException {
+        long[] values = new long[2];
+        int count = 0;
+
+        in.beginArray();
+        while (in.hasNext()) {
+            if (count == values.length)
+                values = Arrays.copyOf(values, count * 2);
+            values[count++] = in.nextColonHex();
+        }
+        in.endArray();
+
+        return count == 0 ? NO_LONGS : Arrays.copyOf(values, count);
+    }
+
+    private static int[] readIpv4Array(JsonStreamReader in) throws IOException,
+            JSONException {
+        int[] values = new int[2];
+        int count = 0;
+
+        in.beginArray();
+        while (in.hasNext()) {
+            if (count == values.length)
+                values = Arrays.copyOf(values, count * 2);
+            values[count++] = in.nextIpv4();
+        }
+        in.endArray();
+
+        return count == 0 ? NO_INTS : Arrays.copyOf(values, count);
+    }
+
+    private static int[] readIntArray(JsonStreamReader in) throws IOException,
+            JSONException {
+        int[] values = new int[2];
+        int count = 0;
+
+        in.beginArray();
+        while (in.hasNext()) {
+            if (count == values.length)
+                values = Arrays.copyOf(values, count * 2);
+            values[count++] = (int) in.nextHexOrDecimal();
+        }
+        in.endArray();
+
+        return count == 0 ? NO_INTS : Arrays.copyOf(values, count);
+    }
+
+    private static AttachmentPoint[] readAttachmentPoints(JsonStreamReader in)
+            throws IOException, JSONException {
+        AttachmentPoint[] values = new AttachmentPoint[1];
+        int count = 0;
+
+        in.beginArray();
+        while (in.hasNext()) {
+            if (count == values.length)
+                values = Arrays.copyOf(values, count * 2);
+            values[count++] = AttachmentPoint.read(in);
+        }
+        in.endArray();
+
+        return count == 0 ? NO_ATTACHMENT_POINTS : Arrays.copyOf(values, count);
+    }
+}
@@ -0,0 +1,306 @@
+package jFloodlightPlus;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONException;
+
+/**
+ * Index of all devices (i.e. hosts) tracked by the controller, for lookups by
+ * IPv4, MAC and attachment point without a /wm/device/ query. <br>
+ * <br>
+ * The whole device listing is loaded at once, on demand with refresh() or
+ * periodically after start(). Every refresh builds new primitive-keyed hash
+ * indexes and swaps them in, so lookups never lock and always see one
+ * consistent listing. <br>
+ * If an IPv4 or MAC is reported for more than one device, the one seen last
+ * wins.
+ *
+ * @author KmnTree
+ *
+ */
+public class DeviceIndex implements Closeable {
+    public static final long DEFAULT_INTERVAL_MILLIS = 10000;
+
+    private final FloodlightClient client;
+    private final long intervalMillis;
+    private volatile Snapshot snapshot = new Snapshot(Collections.<Device> emptyList(),
+            0);
+    private volatile Throwable lastError;
+    // held from the listing until the swap, so an older listing never wins
+    private final Object refreshLock = new Object();
+    private ScheduledExecutorService scheduler;
+
+    // ------------
+    // constructors
+    // ------------
+
+    /**
+     * Default constructor refreshing every DEFAULT_INTERVAL_MILLIS once started
+     *
+     * @param client
+     *            client to load the devices with
+     */
+    public DeviceIndex(FloodlightClient client) {
+        this(client, DEFAULT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Base constructor
+     *
+     * @param client
+     *            client to load the devices with
+     * @param intervalMillis
+     *            time between the starts of two refreshes once started
+     */
+    public DeviceIndex(FloodlightClient client, long intervalMillis) {
+        if (intervalMillis <= 0)
+            throw new IllegalArgumentException("intervalMillis must be positive: "
+                    + intervalMillis);
+
+        this.client = client;
+        this.intervalMillis = intervalMillis;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    // --------
+    // schedule
+    // --------
+
+    /**
+     * Refresh every intervalMillis on a daemon thread, the first refresh runs
+     * right away. A failed refresh keeps the previous listing, see
+     * getLastError().
+     */
+    public synchronized void start() {
+        if (scheduler != null)
+            throw new IllegalStateException("already started");
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(SwitchFanOut
+                .daemonThreadFactory("device-index"));
+        scheduler.scheduleAtFixedRate(this::refreshQuietly, 0, intervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop refreshing, the current listing is kept.
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    /**
+     * Load all devices and swap in new indexes. Refreshes, also the scheduled
+     * ones, run one after the other.
+     *
+     * @throws IOException
+     * @throws JSONException
+     * @throws RuntimeException
+     */
+    public void refresh() throws IOException, JSONException, RuntimeException {
+        synchronized (refreshLock) {
+            update(client.getDeviceList());
+        }
+    }
+
+    /**
+     * Swap in new indexes of a device listing, e.g. from getDeviceList().
+     *
+     * @param devices
+     *            all devices tracked by the controller
+     */
+    public void update(List<Device> devices) {
+        synchronized (refreshLock) {
+            snapshot = new Snapshot(new ArrayList<Device>(devices),
+                    System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * @return error of the last scheduled refresh, null if it succeeded
+     */
+    public Throwable getLastError() {
+        return lastError;
+    }
+
+    /**
+     * @return time of the last successful refresh in msec since epoch, 0 if
+     *         none
+     */
+    public long getLastRefreshMillis() {
+        return snapshot.refreshMillis;
+    }
+
+    // -------
+    // lookups
+    // -------
+
+    /**
+     * @return all indexed devices
+     */
+    public List<Device> getDevices() {
+        return snapshot.devices;
+    }
+
+    public int size() {
+        return snapshot.devices.size();
+    }
+
+    /**
+     * @param ip
+     *            IPv4 address as int (network byte order)
+     *
+     * @return device with this IPv4, null if none
+     */
+    public Device getByIpv4(int ip) {
+        return snapshot.byIpv4.get(ip & 0xffffffffL);
+    }
+
+    /**
+     * @param ip
+     *            xx.xx.xx.xx
+     *
+     * @return device with this IPv4, null if none
+     */
+    public Device getByIpv4(String ip) {
+        return getByIpv4(AddressUtils.parseIpv4(ip));
+    }
+
+    /**
+     * @param mac
+     *            48 bit MAC address in the lower bits of a long
+     *
+     * @return device with this MAC, null if none
+     */
+    public Device getByMac(long mac) {
+        return snapshot.byMac.get(mac);
+    }
+
+    /**
+     * @param mac
+     *            xx:xx:xx:xx:xx:xx
+     *
+     * @return device with this MAC, null if none
+     */
+    public Device getByMac(String mac) {
+        return getByMac(AddressUtils.parseMac(mac));
+    }
+
+    /**
+     * @param dpid
+     *            64 bit datapath id
+     * @param port
+     *            switch port
+     *
+     * @return devices attached to the switch port
+     */
+    public List<Device> getByAttachmentPoint(long dpid, int port) {
+        LongObjectHashMap<List<Device>> ports = snapshot.byAttachmentPoint.get(dpid);
+        List<Device> devices = ports == null ? null : ports.get(port);
+
+        return devices == null ? Collections.<Device> emptyList() : Collections
+                .unmodifiableList(devices);
+    }
+
+    /**
+     * @param ip
+     *            xx.xx.xx.xx
+     *
+     * @return first attachment point of the device with this IPv4, null if the
+     *         device or its attachment point is unknown
+     */
+    public AttachmentPoint getAttachmentPoint(String ip) {
+        Device device = getByIpv4(ip);
+
+        return device == null ? null : device.getAttachmentPoint();
+    }
+
+    // --------------
+    // helper methods
+    // --------------
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+            lastError = null;
+        }
+        catch (Throwable e) {
+            // an exception would cancel the schedule
+            lastError = e;
+        }
+    }
+
+    // immutable indexes of one listing
+    private static final class Snapshot {
+        final List<Device> devices;
+        final long refreshMillis;
+        final LongObjectHashMap<Device> byIpv4;
+        final LongObjectHashMap<Device> byMac;
+        final LongObjectHashMap<LongObjectHashMap<List<Device>>> byAttachmentPoint;
+
+        Snapshot(List<Device> devices, long refreshMillis) {
+            this.devices = Collections.unmodifiableList(devices);
+            this.refreshMillis = refreshMillis;
+            this.byIpv4 = new LongObjectHashMap<Device>(devices.size());
+            this.byMac = new LongObjectHashMap<Device>(devices.size());
+            this.byAttachmentPoint = new LongObjectHashMap<LongObjectHashMap<
+                    List<Device>>>(devices.size());
+
+            for (Device device : devices) {
+                for (int ip : device.getIpv4s()) {
+                    putLatest(byIpv4, ip & 0xffffffffL, device);
+                }
+                for (long mac : device.getMacs()) {
+                    putLatest(byMac, mac, device);
+                }
+                for (AttachmentPoint ap : device.getAttachmentPoints()) {
+                    addAttached(ap, device);
+                }
+            }
+        }
+
+        private static void putLatest(LongObjectHashMap<Device> index, long key,
+                Device device) {
+            Device other = index.get(key);
+
+            if (other == null || other.getLastSeen() <= device.getLastSeen())
+                index.put(key, device);
+        }
+
+        // lists grow in place, a port with many hosts is not copied per host
+        private void addAttached(AttachmentPoint ap, Device device) {
+            LongObjectHashMap<List<Device>> ports = byAttachmentPoint.get(ap
+                    .getSwitchDpid());
+            List<Device> devices;
+
+            if (ports == null) {
+                ports = new LongObjectHashMap<List<Device>>(8);
+                byAttachmentPoint.put(ap.getSwitchDpid(), ports);
+            }
+
+            devices = ports.get(ap.getPort());
+            if (devices == null) {
+                devices = new ArrayList<Device>(1);
+                ports.put(ap.getPort(), devices);
+            }
+            devices.add(device);
+        }
+    }
+}
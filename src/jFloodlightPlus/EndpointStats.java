@@ -0,0 +1,140 @@
+package jFloodlightPlus;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Snapshot of the metrics of one endpoint, see ClientMetrics.
+ *
+ * @author KmnTree
+ *
+ */
+public class EndpointStats {
+    private final String endpoint;
+    private final long requestCount;
+    private final long errorCount;
+    private final long retryCount;
+    private final long requestBytes;
+    private final long responseBytes;
+    private final long wireBytes;
+    private final double meanLatencyMillis;
+    private final double p50LatencyMillis;
+    private final double p90LatencyMillis;
+    private final double p99LatencyMillis;
+    private final double p999LatencyMillis;
+    private final double maxLatencyMillis;
+    private final double meanPoolWaitMillis;
+    private final double maxPoolWaitMillis;
+    private final Map<String, Long> statusCodeCounts;
+
+    EndpointStats(String endpoint, long requestCount, long errorCount, long retryCount,
+            long requestBytes, long responseBytes, long wireBytes,
+            LatencyHistogram latency, double meanPoolWaitMillis,
+            double maxPoolWaitMillis, Map<String, Long> statusCodeCounts) {
+        this.endpoint = endpoint;
+        this.requestCount = requestCount;
+        this.errorCount = errorCount;
+        this.retryCount = retryCount;
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+        this.wireBytes = wireBytes;
+        this.meanLatencyMillis = latency.getMeanNanos() / 1e6;
+        this.p50LatencyMillis = latency.getValueAtPercentile(50) / 1e6;
+        this.p90LatencyMillis = latency.getValueAtPercentile(90) / 1e6;
+        this.p99LatencyMillis = latency.getValueAtPercentile(99) / 1e6;
+        this.p999LatencyMillis = latency.getValueAtPercentile(99.9) / 1e6;
+        this.maxLatencyMillis = latency.getMaxNanos() / 1e6;
+        this.meanPoolWaitMillis = meanPoolWaitMillis;
+        this.maxPoolWaitMillis = maxPoolWaitMillis;
+        this.statusCodeCounts = Collections.unmodifiableMap(statusCodeCounts);
+    }
+
+    /**
+     * @return e.g. GET /wm/core/switch/{}/flow/json
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public long getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * @return calls that threw, including status codes other than 2xx
+     */
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * @return requests sent again, see RequestEvent.getRetryCount()
+     */
+    public long getRetryCount() {
+        return retryCount;
+    }
+
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    /**
+     * @return body bytes received, less than getResponseBytes() by what
+     *         compression and 304 Not Modified responses saved
+     */
+    public long getWireBytes() {
+        return wireBytes;
+    }
+
+    public double getMeanLatencyMillis() {
+        return meanLatencyMillis;
+    }
+
+    public double getP50LatencyMillis() {
+        return p50LatencyMillis;
+    }
+
+    public double getP90LatencyMillis() {
+        return p90LatencyMillis;
+    }
+
+    public double getP99LatencyMillis() {
+        return p99LatencyMillis;
+    }
+
+    public double getP999LatencyMillis() {
+        return p999LatencyMillis;
+    }
+
+    public double getMaxLatencyMillis() {
+        return maxLatencyMillis;
+    }
+
+    public double getMeanPoolWaitMillis() {
+        return meanPoolWaitMillis;
+    }
+
+    public double getMaxPoolWaitMillis() {
+        return maxPoolWaitMillis;
+    }
+
+    /**
+     * @return status code ("-1" for no response) to number of responses
+     */
+    public Map<String, Long> getStatusCodeCounts() {
+        return statusCodeCounts;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: requests=%d, errors=%d, retries=%d, p50=%.3fms, "
+                + "p99=%.3fms, max=%.3fms, poolWait=%.3fms, bytes=%d/%d/%d, status=%s",
+                endpoint, requestCount, errorCount, retryCount, p50LatencyMillis,
+                p99LatencyMillis, maxLatencyMillis, meanPoolWaitMillis, requestBytes,
+                responseBytes, wireBytes, statusCodeCounts);
+    }
+}
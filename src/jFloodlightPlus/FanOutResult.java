@@ -0,0 +1,84 @@
+package jFloodlightPlus;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Partial-failure report of a SwitchFanOut run. <br>
+ * Every DPID is mapped either to its result or to its error, in the order the
+ * DPIDs were given.
+ *
+ * @param <T>
+ *            result type of the operation
+ */
+public class FanOutResult<T> {
+    private final Map<String, T> results;
+    private final Map<String, Throwable> errors;
+    private long elapsedMillis;
+
+    FanOutResult() {
+        this.results = new LinkedHashMap<String, T>();
+        this.errors = new LinkedHashMap<String, Throwable>();
+    }
+
+    void putResult(String switchId, T result) {
+        results.put(switchId, result);
+    }
+
+    void putError(String switchId, Throwable error) {
+        errors.put(switchId, error);
+    }
+
+    void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * @return DPID to result of all succeeded switches
+     */
+    public Map<String, T> getResults() {
+        return Collections.unmodifiableMap(results);
+    }
+
+    /**
+     * @return DPID to error of all failed or timed out switches
+     */
+    public Map<String, Throwable> getErrors() {
+        return Collections.unmodifiableMap(errors);
+    }
+
+    /**
+     * @return true if no switch failed
+     */
+    public boolean isAllSucceeded() {
+        return errors.isEmpty();
+    }
+
+    /**
+     * @return number of succeeded switches
+     */
+    public int getSuccessCount() {
+        return results.size();
+    }
+
+    /**
+     * @return number of failed or timed out switches
+     */
+    public int getErrorCount() {
+        return errors.size();
+    }
+
+    /**
+     * @return wall clock time of the whole run
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "FanOutResult [succeeded=" + results.size() + ", failed=" + errors.size()
+                + ", elapsedMillis=" + elapsedMillis + ", errors=" + errors + "]";
+    }
+}
@@ -1,32 +1,64 @@
 package jFloodlightPlus;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringReader;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.http.HttpEntity;
 import org.apache.http.client.ClientProtocolException;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import jFloodlightPlus.ResponseCache.Region;
+
 /**
  * @author KmnTree
  * 
  */
-public class FloodlightClient {
-    private static final int DEFAULT_PRIORITY = 32767;
+public class FloodlightClient implements Closeable {
+    static final int DEFAULT_PRIORITY = 32767;
 
     private static final String ETHER_TYPE_IPV4 = "0x0800";
     private static final String ETHER_TYPE_ARP = "0x0806";
 
-    private static final String LOCALHOST = "127.0.0.1";
-
-    private String controllerIp;
-    private String uriPrefix;
+    static final String LOCALHOST = "127.0.0.1";
+
+    // bodies of addIPv4Flow() and addARPFloodFlow(), also of AsyncFloodlightClient,
+    // one encoder per thread. Reused on pooled platform threads only: a fan-out
+    // on virtual threads starts a thread per call, which builds a new encoder
+    // and buffer each time, no more than the parameter map it replaces
+    private static final FlowTemplate IPV4_FLOW = new FlowSpec().etherType(
+            FlowSpec.ETHER_TYPE_IPV4).compile(FlowTemplate.Field.SWITCH,
+            FlowTemplate.Field.SRC_IP, FlowTemplate.Field.DST_IP,
+            FlowTemplate.Field.OUTPUT, FlowTemplate.Field.PRIORITY);
+    private static final FlowTemplate ARP_FLOOD_FLOW = new FlowSpec().etherType(
+            FlowSpec.ETHER_TYPE_ARP).outputFlood().compile(FlowTemplate.Field.SWITCH);
+    static final ThreadLocal<FlowTemplate.Encoder> IPV4_FLOW_ENCODER =
+            ThreadLocal.withInitial(IPV4_FLOW::newEncoder);
+    static final ThreadLocal<FlowTemplate.Encoder> ARP_FLOOD_FLOW_ENCODER =
+            ThreadLocal.withInitial(ARP_FLOOD_FLOW::newEncoder);
+
+    private ControllerCluster cluster;
+    private RestTransport transport;
+    private SwitchFanOut fanOut;
+    private final CircuitInstaller circuitInstaller;
+    private volatile ResponseCache cache;
+    private volatile DeviceIndex deviceIndex;
+    private volatile WriteAdmission writeAdmission;
+    private volatile RetryPolicy retryPolicy;
+    private ScheduledExecutorService healthChecker;
 
     // ------------
     // constructors
@@ -46,8 +78,219 @@ public class FloodlightClient {
      *            The controller ip address
      */
     public FloodlightClient(String ip) {
-        this.controllerIp = ip;
-        this.uriPrefix = "http://" + controllerIp + ":8080";
+        this(ip, new RestTransport());
+    }
+
+    /**
+     * Constructor with a custom configured transport, e.g. another pool size or
+     * other timeouts. <br>
+     * The transport is owned by the client afterwards and released by close().
+     * 
+     * @param ip
+     *            The controller ip address
+     * @param transport
+     *            pooled HTTP transport used for all REST calls
+     */
+    public FloodlightClient(String ip, RestTransport transport) {
+        this(new ControllerCluster(Collections.singletonList(ip)), transport);
+    }
+
+    /**
+     * Constructor for an HA cluster of controllers. <br>
+     * Reads are spread over the cluster, writes go to the first available
+     * controller, see ControllerCluster.
+     * 
+     * @param controllers
+     *            "ip", "ip:port" or "http://ip:port" of each controller
+     */
+    public FloodlightClient(List<String> controllers) {
+        this(new ControllerCluster(controllers), new RestTransport());
+    }
+
+    /**
+     * Constructor for an HA cluster of controllers with a custom configured
+     * transport. A short connect timeout of the transport bounds the time
+     * until a dead controller is skipped.
+     * 
+     * @param cluster
+     *            controllers to send the calls to
+     * @param transport
+     *            pooled HTTP transport used for all REST calls
+     */
+    public FloodlightClient(ControllerCluster cluster, RestTransport transport) {
+        this.cluster = cluster;
+        this.transport = transport;
+        this.fanOut = new SwitchFanOut();
+        this.circuitInstaller = new CircuitInstaller(this);
+    }
+
+    /**
+     * Stop the health checks and release the pooled connections of this
+     * client.
+     */
+    @Override
+    public void close() {
+        stopHealthChecks();
+        transport.close();
+    }
+
+    /**
+     * @return controllers this client talks to
+     */
+    public ControllerCluster getCluster() {
+        return cluster;
+    }
+
+    /**
+     * Probe every controller of the cluster with the REST API health check in
+     * the background, down controllers are skipped by all calls until a probe
+     * finds them healthy again.
+     * 
+     * @param intervalMillis
+     *            time between two probes of a controller
+     */
+    public synchronized void startHealthChecks(long intervalMillis) {
+        if (healthChecker != null)
+            throw new IllegalStateException("health checks already started");
+
+        // one thread per controller, so a hanging one does not delay the others
+        healthChecker = Executors.newScheduledThreadPool(cluster.getNodes().size(),
+                SwitchFanOut.daemonThreadFactory("controller-health"));
+        for (ControllerCluster.ControllerNode node : cluster.getNodes()) {
+            healthChecker.scheduleWithFixedDelay(() -> checkHealth(node), 0,
+                    intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized void stopHealthChecks() {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+            healthChecker = null;
+        }
+    }
+
+    /**
+     * Probe every controller of the cluster once with the REST API health
+     * check and mark it up or down.
+     */
+    public void checkHealth() {
+        for (ControllerCluster.ControllerNode node : cluster.getNodes()) {
+            checkHealth(node);
+        }
+    }
+
+    /**
+     * @return fan-out used by the per-switch bulk methods
+     */
+    public SwitchFanOut getFanOut() {
+        return fanOut;
+    }
+
+    /**
+     * Set parallelism, per-call timeout and threads of the per-switch bulk
+     * methods and circuit installation, e.g. SwitchFanOut.virtual() to run
+     * every call on a virtual thread.
+     * 
+     * @param fanOut
+     *            fan-out used by the per-switch bulk methods
+     */
+    public void setFanOut(SwitchFanOut fanOut) {
+        this.fanOut = fanOut;
+    }
+
+    /**
+     * Measure every REST call of this client, e.g. with ClientMetrics.
+     * 
+     * @param listener
+     *            receives one event per call, null turns measuring off
+     */
+    public void setRequestListener(RequestListener listener) {
+        transport.setRequestListener(listener);
+    }
+
+    public RequestListener getRequestListener() {
+        return transport.getRequestListener();
+    }
+
+    /**
+     * @return cache of switch, topology, device, static flow and virtual
+     *         network lookups, null if caching is off
+     */
+    public ResponseCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Turn on caching of switch, topology, device, static flow and virtual
+     * network lookups. <br>
+     * Stats, counters and streamed listings are never cached. Calls that change
+     * flows or virtual networks invalidate the affected region themselves,
+     * changes made by other clients are seen after the TTL of the region.
+     * 
+     * @param cache
+     *            cache to use, null turns caching off
+     */
+    public void setCache(ResponseCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * @return index circuits resolve host attachment points with, null if
+     *         every circuit queries the controller
+     */
+    public DeviceIndex getDeviceIndex() {
+        return deviceIndex;
+    }
+
+    /**
+     * Resolve host attachment points of circuits from a DeviceIndex instead of
+     * one device query per host. Hosts missing from the index are still
+     * queried.
+     * 
+     * @param deviceIndex
+     *            index to use, kept up to date by the caller, null turns it off
+     */
+    public void setDeviceIndex(DeviceIndex deviceIndex) {
+        this.deviceIndex = deviceIndex;
+    }
+
+    /**
+     * @return admission control of flow and virtual network writes, null if
+     *         writes are not limited
+     */
+    public WriteAdmission getWriteAdmission() {
+        return writeAdmission;
+    }
+
+    /**
+     * Rate limit and adapt the concurrency of all static flow and virtual
+     * network writes of this client, including bulk and circuit methods.
+     * 
+     * @param writeAdmission
+     *            admission control to use, null turns it off
+     */
+    public void setWriteAdmission(WriteAdmission writeAdmission) {
+        this.writeAdmission = writeAdmission;
+    }
+
+    /**
+     * @return retry policy of requests, null if failures are not retried
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Retry transient failures of all requests of this client and hedge slow
+     * reads. Calls streaming into a JsonVisitor are neither retried nor
+     * hedged, their visitor already saw part of the response and is not
+     * thread safe.
+     * 
+     * @param retryPolicy
+     *            policy to use, null turns retries off
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
     }
 
     // ------------------
@@ -71,7 +314,60 @@ public class FloodlightClient {
             throws MalformedURLException, IOException, RuntimeException, JSONException {
         String mountPoint = "/wm/core/switch/all/" + statType + "/json";
 
-        return new JSONObject(RestUtils.doGet(uriPrefix + mountPoint));
+        return getJSONObject(mountPoint);
+    }
+
+    /**
+     * Stream aggregate stats across all switches into a visitor. <br>
+     * The response is never held in memory as a whole, use it for the flow
+     * stats of large networks.
+     * 
+     * @param statType
+     *            port, queue, flow, aggregate, desc, table, features
+     * @param visitor
+     *            receives every token of the stats
+     * 
+     * @throws MalformedURLException
+     * @throws IOException
+     * @throws RuntimeException
+     * @throws JSONException
+     */
+    public void getAggregateSwitchesStats(String statType, JsonVisitor visitor)
+            throws MalformedURLException, IOException, RuntimeException, JSONException {
+        String mountPoint = "/wm/core/switch/all/" + statType + "/json";
+        visit(mountPoint, visitor);
+    }
+
+    /**
+     * Retrieve flow stats across all switches, decoded into typed entries.
+     * 
+     * @return flow stats entries of all switches
+     * 
+     * @throws MalformedURLException
+     * @throws IOException
+     * @throws RuntimeException
+     * @throws JSONException
+     */
+    public List<FlowStat> getAggregateFlowStats() throws MalformedURLException,
+            IOException, RuntimeException, JSONException {
+        String mountPoint = "/wm/core/switch/all/flow/json";
+        return read(mountPoint, perSwitchParser(FlowStat::read));
+    }
+
+    /**
+     * Retrieve port stats across all switches, decoded into typed entries.
+     * 
+     * @return port stats entries of all switches
+     * 
+     * @throws MalformedURLException
+     * @throws IOException
+     * @throws RuntimeException
+     * @throws JSONException
+     */
+    public List<PortStat> getAggregatePortStats() throws MalformedURLException,
+            IOException, RuntimeException, JSONException {
+        String mountPoint = "/wm/core/switch/all/port/json";
+        return read(mountPoint, perSwitchParser(PortStat::read));
     }
 
     /**
@@ -93,7 +389,83 @@ public class FloodlightClient {
             throws MalformedURLException, JSONException, IOException, RuntimeException {
         String mountPoint = "/wm/core/switch/" + switchId + "/" + statType + "/json";
 
-        return new JSONObject(RestUtils.doGet(uriPrefix + mountPoint));
+        return getJSONObject(mountPoint);
+    }
+
+    /**
+     * Stream per switch stats into a visitor.
+     * 
+     * @param switchId
+     *            Valid Switch DPID (XX:XX:XX:XX:XX:XX:XX:XX)
+     * @param statType
+     *            port, queue, flow, aggregate, desc, table, features
+     * @param visitor
+     *            receives every token of the stats
+     * 
+     * @throws MalformedURLException
+     * @throws JSONException
+     * @throws IOException
+     * @throws RuntimeException
+     */
+    public void getSwitchStats(String switchId, String statType, JsonVisitor visitor)
+            throws MalformedURLException, JSONException, IOException, RuntimeException {
+        String mountPoint = "/wm/core/switch/" + switchId + "/" + statType + "/json";
+        visit(mountPoint, visitor);
+    }
+
+    /**
+     * Retrieve flow stats of a switch, decoded into typed entries.
+     * 
+     * @param switchId
+     *            Valid Switch DPID (XX:XX:XX:XX:XX:XX:XX:XX)
+     * 
+     * @return flow stats entries of the switch
+     * 
+     * @throws MalformedURLException
+     * @throws JSONException
+     * @throws IOException
+     * @throws RuntimeException
+     */
+    public List<FlowStat> getSwitchFlowStats(String switchId)
+            throws MalformedURLException, JSONException, IOException, RuntimeException {
+        String mountPoint = "/wm/core/switch/" + switchId + "/flow/json";
+        return read(mountPoint, perSwitchParser(FlowStat::read));
+    }
+
+    /**
+     * Retrieve port stats of a switch, decoded into typed entries.
+     * 
+     * @param switchId
+     *            Valid Switch DPID (XX:XX:XX:XX:XX:XX:XX:XX)
+     * 
+     * @return port stats entries of the switch
+     * 
+     * @throws MalformedURLException
+     * @throws JSONException
+     * @throws IOException
+     * @throws RuntimeException
+     */
+    public List<PortStat> getSwitchPortStats(String switchId)
+            throws MalformedURLException, JSONException, IOException, RuntimeException {
+        String mountPoint = "/wm/core/switch/" + switchId + "/port/json";
+        return read(mountPoint, perSwitchParser(PortStat::read));
+    }
+
+    /**
+     * Retrieve per switch stats of many switches in parallel.
+     * 
+     * @param switchIds
+     *            Valid Switch DPIDs (XX:XX:XX:XX:XX:XX:XX:XX)
+     * @param statType
+     *            port, queue, flow, aggregate, desc, table, features
+     * 
+     * @return per switch stats or error of every switch
+     * 
+     * @throws InterruptedException
+     */
+    public FanOutResult<JSONObject> getSwitchStats(List<String> switchIds,
+            String statType) throws InterruptedException {
+        return fanOut.run(switchIds, switchId -> getSwitchStats(switchId, statType));
     }
 
     /**
@@ -111,7 +483,24 @@ public class FloodlightClient {
     public JSONArray getSwitchesInformations() throws MalformedURLException,
             JSONException, IOException, RuntimeException {
         String mountPoint = "/wm/core/controller/switches/json";
-        return new JSONArray(RestUtils.doGet(uriPrefix + mountPoint));
+        return get(Region.SWITCHES, mountPoint, ResponseParser.JSON_ARRAY);
+    }
+
+    /**
+     * List of all switches connected to the controller, decoded into typed
+     * entries.
+     * 
+     * @return all switches connected to the controller
+     * 
+     * @throws MalformedURLException
+     * @throws JSONException
+     * @throws IOException
+     * @throws RuntimeException
+     */
+    public List<SwitchInfo> getSwitchInfoList() throws MalformedURLException,
+            JSONException, IOException, RuntimeException {
+        String mountPoint = "/wm/core/controller/switches/json";
+        return get(Region.SWITCHES, mountPoint, listParser(SwitchInfo::read));
     }
 
     /**
@@ -155,7 +544,7 @@ public class FloodlightClient {
     public JSONObject getControllerSummary() throws MalformedURLException, IOException,
             RuntimeException, JSONException {
         String mountPoint = "/wm/core/controller/summary/json";
-        return new JSONObject(RestUtils.doGet(uriPrefix + mountPoint));
+        return getJSONObject(mountPoint);
     }
 
     /**
@@ -183,7 +572,7 @@ public class FloodlightClient {
     public JSONObject getGlobalTrafficCounters(String counterTitle)
             throws MalformedURLException, JSONException, IOException, RuntimeException {
         String mountPoint = "/wm/core/counter/" + counterTitle + "/json";
-        return new JSONObject(RestUtils.doGet(uriPrefix + mountPoint));
+        return getJSONObject(mountPoint);
     }
 
     /**
@@ -213,7 +602,7 @@ public class FloodlightClient {
     public JSONObject getSwitchTrafficCounters(String switchId, String counterName)
             throws MalformedURLException, IOException, RuntimeException, JSONException {
         String mountPoint = "/wm/core/counter/" + switchId + "/" + counterName + "/json";
-        return new JSONObject(RestUtils.doGet(uriPrefix + mountPoint));
+        return getJSONObject(mountPoint);
     }
 
     /**
@@ -229,7 +618,7 @@ public class FloodlightClient {
     public JSONObject getControllerMemoryUsage() throws MalformedURLException,
             JSONException, IOException, RuntimeException {
         String mountPoint = "/wm/core/memory/json";
-        return new JSONObject(RestUtils.doGet(uriPrefix + mountPoint));
+        return getJSONObject(mountPoint);
     }
 
     /**
@@ -246,7 +635,7 @@ public class FloodlightClient {
     public JSONObject getRestApiHealthStatus() throws MalformedURLException,
             JSONException, IOException, RuntimeException {
         String mountPoint = "/wm/core/health/json";
-        return new JSONObject(RestUtils.doGet(uriPrefix + mountPoint));
+        return getJSONObject(mountPoint);
     }
 
     /**
@@ -278,7 +667,7 @@ public class FloodlightClient {
     public JSONObject getSystemUptime() throws MalformedURLException, JSONException,
             IOException, RuntimeException {
         String mountPoint = "/wm/core/system/uptime/json";
-        return new JSONObject(RestUtils.doGet(uriPrefix + mountPoint));
+        return getJSONObject(mountPoint);
     }
 
     /**
@@ -311,7 +700,23 @@ public class FloodlightClient {
     public JSONArray getInterSwitchLinks() throws MalformedURLException, IOException,
             RuntimeException, JSONException {
         String mountPoint = "/wm/topology/links/json";
-        return new JSONArray(RestUtils.doGet(uriPrefix + mountPoint));
+        return get(Region.LINKS, mountPoint, ResponseParser.JSON_ARRAY);
+    }
+
+    /**
+     * List all the inter-switch links, decoded into typed entries.
+     * 
+     * @return all the inter-switch links
+     * 
+     * @throws MalformedURLException
+     * @throws IOException
+     * @throws RuntimeException
+     * @throws JSONException
+     */
+    public List<Link> getInterSwitchLinkList() throws MalformedURLException,
+            IOException, RuntimeException, JSONException {
+        String mountPoint = "/wm/topology/links/json";
+        return get(Region.LINKS, mountPoint, listParser(Link::read));
     }
 
     /**
@@ -328,7 +733,7 @@ public class FloodlightClient {
     public JSONObject getSwitchClusters() throws MalformedURLException, IOException,
             RuntimeException, JSONException {
         String mountPoint = "/wm/topology/switchclusters/json";
-        return new JSONObject(RestUtils.doGet(uriPrefix + mountPoint));
+        return get(Region.LINKS, mountPoint, ResponseParser.JSON_OBJECT);
     }
 
     /**
@@ -345,7 +750,7 @@ public class FloodlightClient {
     public JSONArray getExternalLinks() throws MalformedURLException, IOException,
             RuntimeException, JSONException {
         String mountPoint = "/wm/topology/external-links/json";
-        return new JSONArray(RestUtils.doGet(uriPrefix + mountPoint));
+        return get(Region.LINKS, mountPoint, ResponseParser.JSON_ARRAY);
     }
 
     // FIXME: check mount point periodly for correctness
@@ -362,7 +767,7 @@ public class FloodlightClient {
     public JSONArray getDirectAndTunnelLinks() throws MalformedURLException, IOException,
             RuntimeException, JSONException {
         String mountPoint = "/wm/topology/links/json";
-        return new JSONArray(RestUtils.doGet(uriPrefix + mountPoint));
+        return get(Region.LINKS, mountPoint, ResponseParser.JSON_ARRAY);
     }
 
     /**
@@ -388,7 +793,7 @@ public class FloodlightClient {
             RuntimeException {
         String mountPoint = "/wm/topology/route/" + srcId + "/" + srcPort + "/" + dstId
                 + "/" + dstPort + "/json";
-        return new JSONArray(RestUtils.doGet(uriPrefix + mountPoint));
+        return get(Region.ROUTES, mountPoint, ResponseParser.JSON_ARRAY);
     }
 
     /**
@@ -415,7 +820,9 @@ public class FloodlightClient {
     public JSONArray getDevices(Map<String, String> paraMap)
             throws MalformedURLException, IOException, RuntimeException, JSONException {
         String mountPoint = "/wm/device/";
-        return new JSONArray(RestUtils.doGet(uriPrefix + mountPoint, paraMap));
+        return get(Region.DEVICES, mountPoint + "?"
+                + RestUtils.prepareGetParameterString(paraMap),
+                ResponseParser.JSON_ARRAY);
     }
 
     /**
@@ -451,6 +858,65 @@ public class FloodlightClient {
         return getDevices(paraMap);
     }
 
+    /**
+     * List of devices tracked by the controller, decoded into typed entries.
+     * 
+     * @param paraMap
+     *            Map of parameters to filter the devices, see getDevices(Map)
+     * 
+     * @return devices tracked by the controller
+     * 
+     * @throws MalformedURLException
+     * @throws IOException
+     * @throws RuntimeException
+     * @throws JSONException
+     */
+    public List<Device> getDeviceList(Map<String, String> paraMap)
+            throws MalformedURLException, IOException, RuntimeException, JSONException {
+        String mountPoint = "/wm/device/";
+        return get(Region.DEVICES, mountPoint + "?"
+                + RestUtils.prepareGetParameterString(paraMap), listParser(Device::read));
+    }
+
+    /**
+     * List of devices tracked by the controller, decoded into typed entries.
+     * 
+     * @param key
+     *            Parameter key to filter the devices, see getDevices(String,
+     *            String)
+     * @param value
+     *            Parameter value to filter the devices
+     * 
+     * @return devices tracked by the controller
+     * 
+     * @throws MalformedURLException
+     * @throws IOException
+     * @throws RuntimeException
+     * @throws JSONException
+     */
+    public List<Device> getDeviceList(String key, String value)
+            throws MalformedURLException, IOException, RuntimeException, JSONException {
+        Map<String, String> paraMap = new HashMap<String, String>();
+        paraMap.put(key, value);
+
+        return getDeviceList(paraMap);
+    }
+
+    /**
+     * List of all devices tracked by the controller, decoded into typed entries.
+     * 
+     * @return all devices tracked by the controller
+     * 
+     * @throws MalformedURLException
+     * @throws IOException
+     * @throws RuntimeException
+     * @throws JSONException
+     */
+    public List<Device> getDeviceList() throws MalformedURLException, IOException,
+            RuntimeException, JSONException {
+        return getDeviceList(new HashMap<String, String>());
+    }
+
     /**
      * General method to add a static flow entry
      * 
@@ -476,8 +942,66 @@ public class FloodlightClient {
         // If already provided in paraMap, just replace it with the one in para
         paraMap.put("name", name);
 
-        return new JSONObject(RestUtils.doPost(uriPrefix + mountPoint,
-                toJSONString(paraMap)));
+        try {
+            HttpEntity body = toJSONEntity(paraMap);
+
+            return write(baseUri -> transport.doPost(baseUri + mountPoint, body,
+                    ResponseParser.JSON_OBJECT));
+        }
+        finally {
+            invalidate(Region.FLOWS);
+        }
+    }
+
+    /**
+     * Add a static flow entry built with a FlowSpec
+     * 
+     * @param name
+     *            Name of the flow entry, this is the primary key, it MUST be unique
+     * @param spec
+     *            switch, match, actions and other fields of the entry
+     * 
+     * @return if add OK, return JSONObject {"status":"Entry pushed"}
+     * 
+     * @throws MalformedURLException
+     * @throws IOException
+     * @throws RuntimeException
+     * @throws JSONException
+     */
+    public JSONObject addFlow(String name, FlowSpec spec) throws MalformedURLException,
+            IOException, RuntimeException, JSONException {
+        return addFlow(name, spec.toParameters());
+    }
+
+    /**
+     * Add the static flow entry of a FlowTemplate encoder with its current
+     * values, without building a map. <br>
+     * The body is encoded on the calling thread and copied, the encoder may be
+     * changed as soon as this returns.
+     * 
+     * @param encoder
+     *            encoder with the name and all variable fields set
+     * 
+     * @return if add OK, return JSONObject {"status":"Entry pushed"}
+     * 
+     * @throws MalformedURLException
+     * @throws IOException
+     * @throws RuntimeException
+     * @throws JSONException
+     */
+    public JSONObject addFlow(FlowTemplate.Encoder encoder) throws MalformedURLException,
+            IOException, RuntimeException, JSONException {
+        String mountPoint = "/wm/staticflowentrypusher/json";
+
+        try {
+            HttpEntity body = encoder.encode().toEntity();
+
+            return write(baseUri -> transport.doPost(baseUri + mountPoint, body,
+                    ResponseParser.JSON_OBJECT));
+        }
+        finally {
+            invalidate(Region.FLOWS);
+        }
     }
 
     /**
@@ -509,17 +1033,12 @@ public class FloodlightClient {
             String dstIp, int outputPort, int priority) throws MalformedURLException,
             IOException,
             RuntimeException, JSONException {
-        Map<String, String> paraMap;
-        paraMap = new TreeMap<String, String>();
-
-        paraMap.put("switch", switchId);
-        paraMap.put("ether-type", ETHER_TYPE_IPV4);
-        paraMap.put("src-ip", srcIp);
-        paraMap.put("dst-ip", dstIp);
-        paraMap.put("actions", "output=" + outputPort);
-        paraMap.put("priority", String.valueOf(priority));
-
-        return addFlow(name, paraMap);
+        return addFlow(IPV4_FLOW_ENCODER.get().setName(name)
+                .set(FlowTemplate.Field.SWITCH, switchId)
+                .set(FlowTemplate.Field.SRC_IP, srcIp)
+                .set(FlowTemplate.Field.DST_IP, dstIp)
+                .set(FlowTemplate.Field.OUTPUT, outputPort)
+                .set(FlowTemplate.Field.PRIORITY, priority));
     }
 
     /**
@@ -550,9 +1069,24 @@ public class FloodlightClient {
         return addIPv4Flow(name, switchId, srcIp, dstIp, outputPort, DEFAULT_PRIORITY);
     }
 
+    /**
+     * Create a batch to push many static flow entries over concurrent pooled
+     * connections, see FlowBatch.
+     * 
+     * @param windowSize
+     *            maximum number of pushes in flight at the same time
+     * 
+     * @return an empty batch pushing with this client
+     */
+    public FlowBatch newFlowBatch(int windowSize) {
+        return new FlowBatch(this, windowSize);
+    }
+
     /**
      * Push circuit between two hosts according to their IPs, <br>
      * using the getRoute method to get the route from controller. <br>
+     * All flow entries are pushed in parallel, if one fails the whole circuit
+     * is removed again and the error is thrown. <br>
      * <br>
      * The name of each flow entries will be generated in the format of
      * circuit_namePrefix_switchId_direction. <br>
@@ -575,45 +1109,84 @@ public class FloodlightClient {
      */
     public JSONArray pushCircuit(String namePrefix, String srcIp, String dstIp)
             throws MalformedURLException, JSONException, IOException, RuntimeException {
-        JSONObject srcAp, dstAp;
-        JSONArray route, results;
-
-        // init results
-        results = new JSONArray();
-
-        // get attachmentPoints of these hosts
-        srcAp = getDevices("ipv4", srcIp).getJSONObject(0).getJSONArray(
-                "attachmentPoint").getJSONObject(0);
-        dstAp = getDevices("ipv4", dstIp).getJSONObject(0).getJSONArray(
-                "attachmentPoint").getJSONObject(0);
-
-        // get default route between these attachmentPoints
-        route = getRoute(srcAp.getString("switchDPID"), srcAp.getInt("port"),
-                dstAp.getString("switchDPID"), dstAp.getInt("port"));
-
-        // add IPv4 flow entries along the path
-        for (int i = 0; i < route.length(); i += 2) {
-            String flowName, switchId;
-            JSONObject result, fnc, rnc;    // nc means nodeConnector in Opendaylight
-
-            // read data from default route
-            rnc = route.getJSONObject(i);
-            fnc = route.getJSONObject(i + 1);
-
-            // set forward flow entry
-            switchId = fnc.getString("switch");
-            flowName = "circuit_" + namePrefix + "_" + switchId + "_forward";
-            result = addIPv4Flow(flowName, switchId, srcIp, dstIp, fnc.getInt("port"));
-            results.put(result);
+        CircuitResult circuitResult;
 
-            // set reverse flow entry
-            switchId = rnc.getString("switch");
-            flowName = "circuit_" + namePrefix + "_" + switchId + "_reverse";
-            result = addIPv4Flow(flowName, switchId, dstIp, srcIp, rnc.getInt("port"));
-            results.put(result);
+        try {
+            circuitResult = pushCircuitTransactional(namePrefix, srcIp, dstIp);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while pushing circuit "
+                    + namePrefix);
         }
 
-        return results;
+        if (!circuitResult.isSuccess())
+            rethrow(circuitResult.getError());
+
+        return circuitResult.getResults();
+    }
+
+    /**
+     * Push circuit between two hosts as one transaction. <br>
+     * Both attachment points are resolved concurrently and all flow entries
+     * along the path are pushed in parallel. If any of them fails, the flow
+     * entries of the circuit are deleted again. <br>
+     * Flow names are the same as in pushCircuit().
+     * 
+     * @param namePrefix
+     *            name of the circuit
+     * @param srcIp
+     *            xx.xx.xx.xx
+     * @param dstIp
+     *            xx.xx.xx.xx
+     * 
+     * @return pushed flow entries or the failure, with per phase latency
+     * 
+     * @throws InterruptedException
+     */
+    public CircuitResult pushCircuitTransactional(String namePrefix, String srcIp,
+            String dstIp) throws InterruptedException {
+        return circuitInstaller.install(namePrefix, srcIp, dstIp);
+    }
+
+    /**
+     * Push many circuits in parallel on the fan-out of this client, each of
+     * them as one transaction like pushCircuitTransactional().
+     * 
+     * @param namePrefixes
+     *            names of the circuits, unique
+     * @param srcIps
+     *            source host of each circuit, xx.xx.xx.xx
+     * @param dstIps
+     *            destination host of each circuit, xx.xx.xx.xx
+     * 
+     * @return name to outcome or timeout of every circuit
+     * 
+     * @throws InterruptedException
+     */
+    public FanOutResult<CircuitResult> pushCircuits(List<String> namePrefixes,
+            List<String> srcIps, List<String> dstIps) throws InterruptedException {
+        return circuitInstaller.installAll(namePrefixes, srcIps, dstIps);
+    }
+
+    /**
+     * Planner to set up many circuits with shared device and route lookups
+     * and per switch pushes, see CircuitPlanner.
+     * 
+     * @return new planner using this client
+     */
+    public CircuitPlanner newCircuitPlanner() {
+        return new CircuitPlanner(this);
+    }
+
+    /**
+     * Deletion of all static flow entries selected by name, cookie or switch
+     * over concurrent pooled connections, see FlowDeletion.
+     * 
+     * @return new deletion using this client, nothing selected yet
+     */
+    public FlowDeletion newFlowDeletion() {
+        return new FlowDeletion(this);
     }
 
     /**
@@ -632,18 +1205,31 @@ public class FloodlightClient {
      */
     public JSONObject addARPFloodFlow(String switchId) throws MalformedURLException,
             IOException, RuntimeException, JSONException {
-        Map<String, String> paraMap;
-        paraMap = new TreeMap<String, String>();
-
-        paraMap.put("switch", switchId);
-        paraMap.put("ether-type", ETHER_TYPE_ARP);
-        paraMap.put("actions", "output=flood");
+        return addFlow(ARP_FLOOD_FLOW_ENCODER.get().setName(arpFloodFlowName(switchId))
+                .set(FlowTemplate.Field.SWITCH, switchId));
+    }
 
-        return addFlow(switchId + "_ARP_flood", paraMap);
+    /**
+     * Add static ARP flow entries with flood action on the given switches in
+     * parallel.
+     * 
+     * @param switchIds
+     *            Valid Switch DPIDs (XX:XX:XX:XX:XX:XX:XX:XX)
+     * 
+     * @return JSONObject {"status":"Entry pushed"} or error of every switch
+     * 
+     * @throws InterruptedException
+     */
+    public FanOutResult<JSONObject> addARPFloodFlows(List<String> switchIds)
+            throws InterruptedException {
+        return fanOut.run(switchIds, this::addARPFloodFlow);
     }
 
     /**
-     * Add static ARP flow entries with flood action on all switches
+     * Add static ARP flow entries with flood action on all switches <br>
+     * Switches are handled in parallel, all of them are tried even if some fail.
+     * Use addARPFloodFlows(List) to get a per switch report instead of the first
+     * error.
      * 
      * @return an JSONArray of many JSONObject {"status":"Entry pushed"}
      * 
@@ -654,11 +1240,23 @@ public class FloodlightClient {
      */
     public JSONArray addAllARPFloodFlows() throws MalformedURLException, JSONException,
             IOException, RuntimeException {
+        FanOutResult<JSONObject> fanOutResult;
         JSONArray results = new JSONArray();
         List<String> switchIds = getAllSwitchDPIDs();
 
-        for (String switchId : switchIds) {
-            JSONObject result = addARPFloodFlow(switchId);
+        try {
+            fanOutResult = addARPFloodFlows(switchIds);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while adding ARP flood flows");
+        }
+
+        for (Throwable error : fanOutResult.getErrors().values()) {
+            rethrow(error);
+        }
+
+        for (JSONObject result : fanOutResult.getResults().values()) {
             results.put(result);
         }
 
@@ -686,8 +1284,15 @@ public class FloodlightClient {
         paraMap = new HashMap<String, String>();
         paraMap.put("name", name);
 
-        return new JSONObject(RestUtils.doDelete(uriPrefix + mountPoint,
-                toJSONString(paraMap)));
+        try {
+            HttpEntity body = toJSONEntity(paraMap);
+
+            return new JSONObject(this.<String> write(baseUri -> transport.doDelete(
+                    baseUri + mountPoint, body)));
+        }
+        finally {
+            invalidate(Region.FLOWS);
+        }
     }
 
     /**
@@ -706,7 +1311,48 @@ public class FloodlightClient {
     public JSONObject getFlows(String switchId) throws MalformedURLException,
             IOException, RuntimeException, JSONException {
         String mountPoint = "/wm/staticflowentrypusher/list/" + switchId + "/json";
-        return new JSONObject(RestUtils.doGet(uriPrefix + mountPoint));
+        return get(Region.FLOWS, mountPoint, ResponseParser.JSON_OBJECT);
+    }
+
+    /**
+     * Stream static flows for a switch or all switches into a visitor. <br>
+     * The listing is read once from one controller, never from the cache, and
+     * a failure is not retried on another one.
+     * 
+     * @param switchId
+     *            Valid Switch DPID (XX:XX:XX:XX:XX:XX:XX:XX) or "all"
+     * @param visitor
+     *            receives every token of the flow entries
+     * 
+     * @throws MalformedURLException
+     * @throws IOException
+     * @throws RuntimeException
+     * @throws JSONException
+     */
+    public void getFlows(String switchId, JsonVisitor visitor)
+            throws MalformedURLException, IOException, RuntimeException, JSONException {
+        String mountPoint = "/wm/staticflowentrypusher/list/" + switchId + "/json";
+        visit(mountPoint, visitor);
+    }
+
+    /**
+     * List static flows for a switch or all switches, decoded into typed
+     * entries.
+     * 
+     * @param switchId
+     *            Valid Switch DPID (XX:XX:XX:XX:XX:XX:XX:XX) or "all"
+     * 
+     * @return static flow entries on a switch or all switches
+     * 
+     * @throws MalformedURLException
+     * @throws IOException
+     * @throws RuntimeException
+     * @throws JSONException
+     */
+    public List<StaticFlowEntry> getStaticFlowEntries(String switchId)
+            throws MalformedURLException, IOException, RuntimeException, JSONException {
+        String mountPoint = "/wm/staticflowentrypusher/list/" + switchId + "/json";
+        return get(Region.FLOWS, mountPoint, STATIC_FLOW_PARSER);
     }
 
     /**
@@ -723,7 +1369,31 @@ public class FloodlightClient {
     public void clearFlows(String switchId) throws MalformedURLException, IOException,
             RuntimeException, JSONException {
         String mountPoint = "/wm/staticflowentrypusher/clear/" + switchId + "/json";
-        RestUtils.doGet(uriPrefix + mountPoint);
+
+        try {
+            write(baseUri -> transport.doGet(baseUri + mountPoint));
+        }
+        finally {
+            invalidate(Region.FLOWS);
+        }
+    }
+
+    /**
+     * Clear static flows for many switches in parallel
+     * 
+     * @param switchIds
+     *            Valid Switch DPIDs (XX:XX:XX:XX:XX:XX:XX:XX)
+     * 
+     * @return success (null) or error of every switch
+     * 
+     * @throws InterruptedException
+     */
+    public FanOutResult<Void> clearFlows(List<String> switchIds)
+            throws InterruptedException {
+        return fanOut.run(switchIds, switchId -> {
+            clearFlows(switchId);
+            return null;
+        });
     }
 
     // TODO: refactoring below when needed
@@ -737,18 +1407,23 @@ public class FloodlightClient {
     // current version: 20130522
     public JSONObject createVirtualNetwork(String networkId, String gatewayIp)
             throws JSONException, ClientProtocolException, IOException {
-        String paraString;
+        HttpEntity paraEntity;
         HashMap<String, String> paraMap;
 
         paraMap = new HashMap<String, String>();
         paraMap.put("gateway", gatewayIp);
         paraMap.put("name", networkId);
 
-        paraString = toJSONString("network", paraMap);
+        paraEntity = toJSONEntity("network", paraMap);
 
-        return new JSONObject(RestUtils.doPost("http://" + controllerIp
-                + ":8080/networkService/v1.1/tenants/default/networks/" + networkId,
-                paraString));
+        try {
+            return new JSONObject(this.<String> writeOnce(baseUri -> transport.doPost(
+                    baseUri + "/networkService/v1.1/tenants/default/networks/"
+                            + networkId, paraEntity)));
+        }
+        finally {
+            invalidate(Region.VIRTUAL_NETWORKS);
+        }
     }
 
     // /networkService/v1.1/tenants/{tenant}/networks/{network}
@@ -772,18 +1447,23 @@ public class FloodlightClient {
     // current version: 20130522
     public JSONObject updateVirtualNetwork(String networkId, String gatewayIp)
             throws JSONException, ClientProtocolException, IOException {
-        String paraString;
+        HttpEntity paraEntity;
         HashMap<String, String> paraMap;
 
         paraMap = new HashMap<String, String>();
         paraMap.put("gateway", gatewayIp);
         paraMap.put("name", networkId);
 
-        paraString = toJSONString("network", paraMap);
+        paraEntity = toJSONEntity("network", paraMap);
 
-        return new JSONObject(RestUtils.doPut("http://" + controllerIp
-                + ":8080/networkService/v1.1/tenants/default/networks/" + networkId,
-                paraString));
+        try {
+            return new JSONObject(this.<String> write(baseUri -> transport.doPut(
+                    baseUri + "/networkService/v1.1/tenants/default/networks/"
+                            + networkId, paraEntity)));
+        }
+        finally {
+            invalidate(Region.VIRTUAL_NETWORKS);
+        }
     }
 
     // /networkService/v1.1/tenants/{tenant}/networks/{network}
@@ -804,8 +1484,14 @@ public class FloodlightClient {
     // current version: 20130522
     public JSONObject deleteVirtualNetwork(String networkId)
             throws ClientProtocolException, JSONException, IOException {
-        return new JSONObject(RestUtils.doDelete("http://" + controllerIp
-                + ":8080/networkService/v1.1/tenants/default/networks/" + networkId));
+        try {
+            return new JSONObject(this.<String> write(baseUri -> transport.doDelete(
+                    baseUri + "/networkService/v1.1/tenants/default/networks/"
+                            + networkId)));
+        }
+        finally {
+            invalidate(Region.VIRTUAL_NETWORKS);
+        }
     }
 
     // /networkService/v1.1/tenants/{tenant}/networks/{network}/ports/{port}/attachment
@@ -816,18 +1502,23 @@ public class FloodlightClient {
     // current version: 20130522
     public JSONObject attachHostToVirtualNetwork(String networkId, int logicalPort,
             String hostMac) throws JSONException, ClientProtocolException, IOException {
-        String paraString;
+        HttpEntity paraEntity;
         HashMap<String, String> paraMap;
 
         paraMap = new HashMap<String, String>();
         paraMap.put("id", networkId);
         paraMap.put("mac", hostMac);
 
-        paraString = toJSONString("attachment", paraMap);
+        paraEntity = toJSONEntity("attachment", paraMap);
 
-        return new JSONObject(RestUtils.doPut("http://" + controllerIp
-                + ":8080/networkService/v1.1/tenants/default/networks/" + networkId
-                + "/ports/" + logicalPort + "/attachment", paraString));
+        try {
+            return new JSONObject(this.<String> write(baseUri -> transport.doPut(
+                    baseUri + "/networkService/v1.1/tenants/default/networks/" + networkId
+                    + "/ports/" + logicalPort + "/attachment", paraEntity)));
+        }
+        finally {
+            invalidate(Region.VIRTUAL_NETWORKS);
+        }
     }
 
     // /networkService/v1.1/tenants/{tenant}/networks/{network}/ports/{port}/attachment
@@ -837,9 +1528,14 @@ public class FloodlightClient {
     // current version: 20130522
     public JSONObject detachHostFromVirtualNetwork(String networkId, int logicalPort)
             throws JSONException, ClientProtocolException, IOException {
-        return new JSONObject(RestUtils.doDelete("http://" + controllerIp
-                + ":8080/networkService/v1.1/tenants/default/networks/" + networkId
-                + "/ports/" + logicalPort + "/attachment"));
+        try {
+            return new JSONObject(this.<String> write(baseUri -> transport.doDelete(
+                    baseUri + "/networkService/v1.1/tenants/default/networks/" + networkId
+                    + "/ports/" + logicalPort + "/attachment")));
+        }
+        finally {
+            invalidate(Region.VIRTUAL_NETWORKS);
+        }
     }
 
     // /networkService/v1.1/tenants/{tenant}/networks
@@ -847,26 +1543,261 @@ public class FloodlightClient {
     // current version: 20130522
     public JSONArray getAllVirtualNetworks() throws MalformedURLException, IOException,
             RuntimeException, JSONException {
-        return new JSONArray(RestUtils.doGet("http://" + controllerIp
-                + ":8080/networkService/v1.1/tenants/default/networks"));
+        return get(Region.VIRTUAL_NETWORKS,
+                "/networkService/v1.1/tenants/default/networks",
+                ResponseParser.JSON_ARRAY);
     }
 
     // --------------
     // helper methods
     // --------------
 
-    private String toJSONString(Map<String, String> paraMap) {
-        return new JSONObject(paraMap).toString();
+    // flat static flow body, encoded as UTF-8 when sent
+    private HttpEntity toJSONEntity(Map<String, String> paraMap) {
+        return JsonBodyEncoder.entity(null, paraMap);
     }
 
-    // type: network or attachment
-    private String toJSONString(String type, Map<String, String> paraMap)
-            throws JSONException {
-        JSONObject result;
+    // key/value pairs of a static IPv4 flow entry
+    static Map<String, String> ipv4FlowParameters(String switchId, String srcIp,
+            String dstIp, int outputPort, int priority) {
+        Map<String, String> paraMap;
+        paraMap = new TreeMap<String, String>();
+
+        paraMap.put("switch", switchId);
+        paraMap.put("ether-type", ETHER_TYPE_IPV4);
+        paraMap.put("src-ip", srcIp);
+        paraMap.put("dst-ip", dstIp);
+        paraMap.put("actions", "output=" + outputPort);
+        paraMap.put("priority", String.valueOf(priority));
+
+        return paraMap;
+    }
+
+    // key/value pairs of a static ARP flow entry with flood action
+    static Map<String, String> arpFloodFlowParameters(String switchId) {
+        Map<String, String> paraMap;
+        paraMap = new TreeMap<String, String>();
+
+        paraMap.put("switch", switchId);
+        paraMap.put("ether-type", ETHER_TYPE_ARP);
+        paraMap.put("actions", "output=flood");
+
+        return paraMap;
+    }
+
+    static String arpFloodFlowName(String switchId) {
+        return switchId + "_ARP_flood";
+    }
+
+    // GET responses are parsed straight from the connection
+    private JSONObject getJSONObject(String mountPoint) throws IOException,
+            RuntimeException, JSONException {
+        return read(mountPoint, ResponseParser.JSON_OBJECT);
+    }
+
+    // GET from the least loaded controller, others are tried on I/O errors
+    private <T> T read(String mountPoint, ResponseParser<T> parser) throws IOException,
+            RuntimeException, JSONException {
+        return retry(RetryPolicy.Idempotency.READ, () -> cluster.read(
+                baseUri -> transport.doGet(baseUri + mountPoint, parser)));
+    }
+
+    // GET through the cache if one is set and caches the region, a cached body
+    // is parsed again for every caller
+    private <T> T get(Region region, String mountPoint, ResponseParser<T> parser)
+            throws IOException, RuntimeException, JSONException {
+        ResponseCache cache = this.cache;
+        String body;
+
+        if (cache == null || !cache.isEnabled(region))
+            return read(mountPoint, parser);
+
+        body = cache.get(region, mountPoint, () -> {
+            try {
+                return retry(RetryPolicy.Idempotency.READ, () -> cluster.read(
+                        baseUri -> transport.doGet(baseUri + mountPoint)));
+            }
+            catch (JSONException e) {
+                // reading into a String never parses JSON
+                throw new IllegalStateException(e);
+            }
+        });
+        return parser.parse(new StringReader(body));
+    }
+
+    // idempotent writes go to the leader, through the admission control if one
+    // is set, every retry is admitted again
+    private <T> T write(ControllerCluster.Call<T> call) throws IOException,
+            RuntimeException, JSONException {
+        return retry(RetryPolicy.Idempotency.IDEMPOTENT, () -> admit(call));
+    }
+
+    // writes that must not be applied twice, retried only if not sent
+    private <T> T writeOnce(ControllerCluster.Call<T> call) throws IOException,
+            RuntimeException, JSONException {
+        return retry(RetryPolicy.Idempotency.NON_IDEMPOTENT, () -> admit(call));
+    }
+
+    private <T> T admit(ControllerCluster.Call<T> call) throws IOException,
+            RuntimeException, JSONException {
+        WriteAdmission writeAdmission = this.writeAdmission;
+
+        if (writeAdmission == null)
+            return cluster.write(call);
+        return writeAdmission.call(() -> cluster.write(call));
+    }
+
+    private <T> T retry(RetryPolicy.Idempotency idempotency,
+            RetryPolicy.Attempt<T> attempt) throws IOException, RuntimeException,
+            JSONException {
+        RetryPolicy retryPolicy = this.retryPolicy;
+
+        if (retryPolicy == null)
+            return attempt.run();
+        return retryPolicy.call(idempotency, attempt);
+    }
+
+    // drop cached lookups a mutating call may have changed
+    private void invalidate(Region region) {
+        ResponseCache cache = this.cache;
+
+        if (cache != null)
+            cache.invalidate(region);
+    }
+
+    // streamed from the connection, never through the cache
+    private void visit(String mountPoint, JsonVisitor visitor) throws IOException,
+            RuntimeException, JSONException {
+        // the visitor already saw the tokens of a failed attempt, no failover,
+        // no retry and no hedge parsing into it at the same time
+        cluster.readOnce(baseUri -> transport.doGet(baseUri + mountPoint,
+                ResponseParser.visit(visitor)));
+    }
+
+    // decoders of typed entries
+    private interface EntryReader<T> {
+        T read(JsonStreamReader in) throws IOException, JSONException;
+    }
+
+    private interface SwitchEntryReader<T> {
+        T read(JsonStreamReader in, long dpid) throws IOException, JSONException;
+    }
+
+    // [entry, entry, ...]
+    private static <T> ResponseParser<List<T>> listParser(EntryReader<T> entryReader) {
+        return reader -> {
+            JsonStreamReader in = new JsonStreamReader(reader);
+            List<T> result = new ArrayList<T>();
+
+            in.beginArray();
+            while (in.hasNext()) {
+                result.add(entryReader.read(in));
+            }
+            in.endArray();
+
+            return result;
+        };
+    }
+
+    // {"dpid": [entry, entry, ...], ...}
+    private static <T> ResponseParser<List<T>> perSwitchParser(
+            SwitchEntryReader<T> entryReader) {
+        return reader -> {
+            JsonStreamReader in = new JsonStreamReader(reader);
+            List<T> result = new ArrayList<T>();
+
+            in.beginObject();
+            while (in.hasNext()) {
+                long dpid = AddressUtils.parseDpid(in.nextName());
+
+                if (in.skipNull())
+                    continue;
+
+                in.beginArray();
+                while (in.hasNext()) {
+                    result.add(entryReader.read(in, dpid));
+                }
+                in.endArray();
+            }
+            in.endObject();
+
+            return result;
+        };
+    }
+
+    // {"dpid": {"name": flowMod, ...}, ...}, newer controllers list
+    // {"dpid": [{"name": flowMod}, ...], ...}
+    private static final ResponseParser<List<StaticFlowEntry>> STATIC_FLOW_PARSER =
+            reader -> {
+        JsonStreamReader in = new JsonStreamReader(reader);
+        List<StaticFlowEntry> result = new ArrayList<StaticFlowEntry>();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            long dpid = AddressUtils.parseDpid(in.nextName());
+
+            if (in.skipNull())
+                continue;
+
+            if (in.peek() == JsonStreamReader.Token.BEGIN_ARRAY) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    readStaticFlows(in, dpid, result);
+                }
+                in.endArray();
+            }
+            else {
+                readStaticFlows(in, dpid, result);
+            }
+        }
+        in.endObject();
+
+        return result;
+    };
+
+    private static void readStaticFlows(JsonStreamReader in, long dpid,
+            List<StaticFlowEntry> result) throws IOException, JSONException {
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
 
-        result = new JSONObject();
-        result.put(type, paraMap);
+            if (!in.skipNull())
+                result.add(StaticFlowEntry.read(in, name, dpid));
+        }
+        in.endObject();
+    }
 
-        return result.toString();
+    // mark a controller up or down by its REST API health
+    private void checkHealth(ControllerCluster.ControllerNode node) {
+        boolean healthy;
+
+        try {
+            healthy = transport.doGet(node.getBaseUri() + "/wm/core/health/json",
+                    ResponseParser.JSON_OBJECT).getBoolean("healthy");
+        }
+        catch (Exception e) {
+            healthy = false;
+        }
+
+        cluster.setUp(node, healthy);
+    }
+
+    // rethrow a fan-out error with the exceptions declared by this client
+    private static void rethrow(Throwable error) throws IOException, JSONException {
+        if (error instanceof IOException)
+            throw (IOException) error;
+        else if (error instanceof JSONException)
+            throw (JSONException) error;
+        else if (error instanceof RuntimeException)
+            throw (RuntimeException) error;
+        else if (error instanceof Error)
+            throw (Error) error;
+        else
+            throw new IOException(error.getMessage(), error);
+    }
+
+    // type: network or attachment
+    private HttpEntity toJSONEntity(String type, Map<String, String> paraMap) {
+        return JsonBodyEncoder.entity(type, paraMap);
     }
 }
@@ -0,0 +1,170 @@
+package jFloodlightPlus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects static flow entries and pushes them to the static flow pusher with a
+ * window of concurrent requests. <br>
+ * Each request of the window runs on its own pooled keep-alive connection, a
+ * new flow is only sent when a response of the window came back, so the
+ * controller never sees more than windowSize outstanding pushes. The window
+ * runs on the client's fan-out, on virtual threads if it uses them, and
+ * should not exceed the per-route connection limit of the client's transport. <br>
+ * <br>
+ * A batch is not thread safe, add all flows from one thread and execute() it
+ * once.
+ *
+ * @author KmnTree
+ *
+ */
+public class FlowBatch {
+    public static final int DEFAULT_WINDOW_SIZE = 8;
+
+    private final FloodlightClient client;
+    private final int windowSize;
+    private final List<String> names;
+    private final List<Map<String, String>> paraMaps;
+
+    /**
+     * @param client
+     *            client to push the flows with
+     * @param windowSize
+     *            maximum number of pushes in flight at the same time
+     */
+    public FlowBatch(FloodlightClient client, int windowSize) {
+        if (windowSize < 1)
+            throw new IllegalArgumentException("windowSize must be positive: "
+                    + windowSize);
+
+        this.client = client;
+        this.windowSize = windowSize;
+        this.names = new ArrayList<String>();
+        this.paraMaps = new ArrayList<Map<String, String>>();
+    }
+
+    /**
+     * @param client
+     *            client to push the flows with
+     */
+    public FlowBatch(FloodlightClient client) {
+        this(client, DEFAULT_WINDOW_SIZE);
+    }
+
+    // ---------------
+    // collecting flows
+    // ---------------
+
+    /**
+     * Add a general static flow entry, see FloodlightClient.addFlow()
+     *
+     * @param name
+     *            Name of the flow entry, this is the primary key, it MUST be unique
+     * @param paraMap
+     *            key/value pairs for flow entry
+     *
+     * @return this batch
+     */
+    public FlowBatch addFlow(String name, Map<String, String> paraMap) {
+        names.add(name);
+        paraMaps.add(new TreeMap<String, String>(paraMap));
+        return this;
+    }
+
+    /**
+     * Add a static flow entry built with a FlowSpec
+     *
+     * @param name
+     *            Name of the flow entry, this is the primary key, it MUST be unique
+     * @param spec
+     *            switch, match, actions and other fields of the entry
+     *
+     * @return this batch
+     */
+    public FlowBatch addFlow(String name, FlowSpec spec) {
+        names.add(name);
+        paraMaps.add(spec.toParameters());
+        return this;
+    }
+
+    /**
+     * Add a static IPv4 flow entry, see FloodlightClient.addIPv4Flow()
+     *
+     * @return this batch
+     */
+    public FlowBatch addIPv4Flow(String name, String switchId, String srcIp,
+            String dstIp, int outputPort, int priority) {
+        names.add(name);
+        paraMaps.add(FloodlightClient.ipv4FlowParameters(switchId, srcIp, dstIp,
+                outputPort, priority));
+        return this;
+    }
+
+    /**
+     * Add a static IPv4 flow entry with default priority
+     *
+     * @return this batch
+     */
+    public FlowBatch addIPv4Flow(String name, String switchId, String srcIp,
+            String dstIp, int outputPort) {
+        return addIPv4Flow(name, switchId, srcIp, dstIp, outputPort,
+                FloodlightClient.DEFAULT_PRIORITY);
+    }
+
+    /**
+     * Add a static ARP flow entry with flood action, see
+     * FloodlightClient.addARPFloodFlow()
+     *
+     * @return this batch
+     */
+    public FlowBatch addARPFloodFlow(String switchId) {
+        names.add(FloodlightClient.arpFloodFlowName(switchId));
+        paraMaps.add(FloodlightClient.arpFloodFlowParameters(switchId));
+        return this;
+    }
+
+    /**
+     * @return number of collected flows
+     */
+    public int size() {
+        return names.size();
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    // -------
+    // pushing
+    // -------
+
+    /**
+     * Push all collected flows and wait until every push is answered or failed.
+     * A failing flow does not stop the others.
+     *
+     * @return per flow result and aggregate throughput
+     *
+     * @throws InterruptedException
+     *             if the calling thread is interrupted while waiting
+     */
+    public FlowBatchResult execute() throws InterruptedException {
+        int count = names.size();
+        FlowBatchResult result = new FlowBatchResult();
+        FlowWindow window = FlowWindow.execute(client.getFanOut(), "flow-batch",
+                windowSize, count, i -> client.addFlow(names.get(i), paraMaps.get(i)));
+
+        // collect in insertion order
+        for (int i = 0; i < count; i++) {
+            if (window.getError(i) != null)
+                result.putError(names.get(i), window.getError(i));
+            else
+                result.putResult(names.get(i), window.getResponse(i));
+        }
+        result.setTiming(window.getElapsedNanos(), window.getTotalLatencyNanos(),
+                window.getMaxLatencyNanos());
+
+        return result;
+    }
+}
@@ -0,0 +1,112 @@
+package jFloodlightPlus;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.json.JSONObject;
+
+/**
+ * Outcome of a FlowBatch. <br>
+ * Every flow name is mapped either to the controller response or to its error,
+ * in the order the flows were added, together with aggregate throughput
+ * figures of the whole batch.
+ */
+public class FlowBatchResult {
+    private final Map<String, JSONObject> results;
+    private final Map<String, Throwable> errors;
+    private long elapsedNanos;
+    private long totalLatencyNanos;
+    private long maxLatencyNanos;
+
+    FlowBatchResult() {
+        this.results = new LinkedHashMap<String, JSONObject>();
+        this.errors = new LinkedHashMap<String, Throwable>();
+    }
+
+    void putResult(String name, JSONObject result) {
+        results.put(name, result);
+    }
+
+    void putError(String name, Throwable error) {
+        errors.put(name, error);
+    }
+
+    void setTiming(long elapsedNanos, long totalLatencyNanos, long maxLatencyNanos) {
+        this.elapsedNanos = elapsedNanos;
+        this.totalLatencyNanos = totalLatencyNanos;
+        this.maxLatencyNanos = maxLatencyNanos;
+    }
+
+    /**
+     * @return flow name to response {"status":"Entry pushed"} of all pushed flows
+     */
+    public Map<String, JSONObject> getResults() {
+        return Collections.unmodifiableMap(results);
+    }
+
+    /**
+     * @return flow name to error of all failed flows
+     */
+    public Map<String, Throwable> getErrors() {
+        return Collections.unmodifiableMap(errors);
+    }
+
+    public boolean isAllSucceeded() {
+        return errors.isEmpty();
+    }
+
+    public int getSuccessCount() {
+        return results.size();
+    }
+
+    public int getErrorCount() {
+        return errors.size();
+    }
+
+    /**
+     * @return wall clock time of the whole batch
+     */
+    public long getElapsedMillis() {
+        return elapsedNanos / 1000000;
+    }
+
+    /**
+     * @return flows (pushed or failed) per second over the whole batch
+     */
+    public double getFlowsPerSecond() {
+        int count = results.size() + errors.size();
+
+        if (elapsedNanos == 0)
+            return 0;
+
+        return count * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return mean round trip time of a single flow push
+     */
+    public double getMeanLatencyMillis() {
+        int count = results.size() + errors.size();
+
+        if (count == 0)
+            return 0;
+
+        return totalLatencyNanos / 1e6 / count;
+    }
+
+    /**
+     * @return slowest round trip time of a single flow push
+     */
+    public double getMaxLatencyMillis() {
+        return maxLatencyNanos / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FlowBatchResult [pushed=%d, failed=%d, elapsedMillis=%d, "
+                + "flowsPerSecond=%.1f, meanLatencyMillis=%.2f, maxLatencyMillis=%.2f]",
+                results.size(), errors.size(), getElapsedMillis(), getFlowsPerSecond(),
+                getMeanLatencyMillis(), getMaxLatencyMillis());
+    }
+}
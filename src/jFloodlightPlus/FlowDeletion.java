@@ -0,0 +1,392 @@
+package jFloodlightPlus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Deletes all static flow entries matching a selection, with a window of
+ * concurrent requests. <br>
+ * <br>
+ * Entries are selected by name prefix, name pattern, cookie and switch, all
+ * criteria given must match. The candidates come from one listing of all
+ * switches, from listings of the selected switches in parallel on the
+ * client's fan-out, or from a FlowTableMirror without any listing. The
+ * selected entries are then deleted like a FlowBatch pushes: each request of
+ * the window runs on its own pooled keep-alive connection and takes the next
+ * entry once its delete was answered. A mirror used as source is updated for
+ * every entry deleted. <br>
+ * <br>
+ * At least one criterion is required, use clearFlows() to delete everything.
+ * A deletion is not thread safe, configure it on one thread; execute() may be
+ * called again and selects anew.
+ *
+ * @author KmnTree
+ *
+ */
+public class FlowDeletion {
+    public static final int DEFAULT_WINDOW_SIZE =
+            RestTransport.DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+
+    private final FloodlightClient client;
+    private final int windowSize;
+    private final List<String> namePrefixes;
+    private final List<Pattern> namePatterns;
+    private final Set<Long> dpids;
+    private final Map<CircuitPlanResult, Set<String>> plannedCircuits;
+    private Set<String> plannedFlowNames;
+    private boolean byCookie;
+    private long cookie;
+    private long cookieMask;
+    private FlowTableMirror mirror;
+
+    /**
+     * @param client
+     *            client to list and delete the flows with
+     * @param windowSize
+     *            maximum number of deletes in flight at the same time
+     */
+    public FlowDeletion(FloodlightClient client, int windowSize) {
+        if (windowSize < 1)
+            throw new IllegalArgumentException("windowSize must be positive: "
+                    + windowSize);
+
+        this.client = client;
+        this.windowSize = windowSize;
+        this.namePrefixes = new ArrayList<String>();
+        this.namePatterns = new ArrayList<Pattern>();
+        this.dpids = new LinkedHashSet<Long>();
+        this.plannedCircuits = new LinkedHashMap<CircuitPlanResult, Set<String>>();
+    }
+
+    /**
+     * @param client
+     *            client to list and delete the flows with
+     */
+    public FlowDeletion(FloodlightClient client) {
+        this(client, DEFAULT_WINDOW_SIZE);
+    }
+
+    // ---------
+    // selection
+    // ---------
+
+    /**
+     * Select entries whose name starts with a prefix. Given more than once,
+     * any of the prefixes may match.
+     *
+     * @return this
+     */
+    public FlowDeletion namePrefix(String prefix) {
+        namePrefixes.add(prefix);
+        return this;
+    }
+
+    /**
+     * Select entries whose whole name matches a regular expression. Given more
+     * than once, any of the patterns may match.
+     *
+     * @return this
+     */
+    public FlowDeletion nameMatches(String regex) {
+        return nameMatches(Pattern.compile(regex));
+    }
+
+    public FlowDeletion nameMatches(Pattern pattern) {
+        namePatterns.add(pattern);
+        return this;
+    }
+
+    /**
+     * Select the forward and reverse entries of a circuit set up by
+     * pushCircuit(), pushCircuits() or a CircuitPlanner, by name. Entries a
+     * CircuitPlanner shared with later circuits are named after this one and
+     * deleted with it although the later circuits still rely on them; delete
+     * planned circuits with circuit(String, CircuitPlanResult) instead.
+     *
+     * @param namePrefix
+     *            name of the circuit
+     *
+     * @return this
+     */
+    public FlowDeletion circuit(String namePrefix) {
+        return nameMatches(Pattern.quote("circuit_" + namePrefix + "_")
+                + "[0-9a-fA-F:]+_(forward|reverse)");
+    }
+
+    /**
+     * Select the entries of a circuit set up by a CircuitPlanner, except those
+     * other circuits of the plan still rely on. The circuit is released in
+     * the plan once all its entries were deleted, so a shared entry goes with
+     * the last circuit relying on it. A circuit with a failed delete, or whose
+     * entries a failed or partial listing may have missed, stays in the plan
+     * and may be deleted again.
+     *
+     * @param namePrefix
+     *            name of the circuit
+     * @param plan
+     *            result of the push that set up the circuit
+     *
+     * @return this
+     */
+    public FlowDeletion circuit(String namePrefix, CircuitPlanResult plan) {
+        plannedCircuits.computeIfAbsent(plan, k -> new LinkedHashSet<String>()).add(
+                namePrefix);
+        return this;
+    }
+
+    /**
+     * Select entries with a cookie, see StaticFlowEntry.getCookie().
+     *
+     * @return this
+     */
+    public FlowDeletion cookie(long cookie) {
+        return cookie(cookie, -1L);
+    }
+
+    /**
+     * Select entries whose cookie has the given bits, e.g. the upper bits an
+     * application keeps its ID in.
+     *
+     * @param cookie
+     *            bits to match
+     * @param mask
+     *            bits of the cookie compared
+     *
+     * @return this
+     */
+    public FlowDeletion cookie(long cookie, long mask) {
+        this.byCookie = true;
+        this.cookie = cookie & mask;
+        this.cookieMask = mask;
+        return this;
+    }
+
+    /**
+     * Select entries of some switches only, only these switches are listed.
+     *
+     * @param switchIds
+     *            Valid Switch DPIDs (XX:XX:XX:XX:XX:XX:XX:XX)
+     *
+     * @return this
+     */
+    public FlowDeletion switches(Collection<String> switchIds) {
+        for (String switchId : switchIds) {
+            dpids.add(AddressUtils.parseDpid(switchId));
+        }
+        return this;
+    }
+
+    /**
+     * Select from a mirror instead of listing the flows of the controller.
+     *
+     * @param mirror
+     *            mirror kept up to date by the caller, null to list
+     *
+     * @return this
+     */
+    public FlowDeletion from(FlowTableMirror mirror) {
+        this.mirror = mirror;
+        return this;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    // ---------
+    // execution
+    // ---------
+
+    /**
+     * List, select and delete. Blocks until every delete was answered or
+     * failed, a failing delete does not stop the others.
+     *
+     * @return per flow result, listing errors and timing
+     *
+     * @throws IllegalStateException
+     *             if no criterion was given
+     * @throws InterruptedException
+     *             if the calling thread is interrupted while waiting
+     */
+    public FlowDeletionResult execute() throws InterruptedException {
+        FlowDeletionResult result = new FlowDeletionResult();
+        List<StaticFlowEntry> listed;
+        List<StaticFlowEntry> selected = new ArrayList<StaticFlowEntry>();
+        long start = System.nanoTime();
+
+        if (namePrefixes.isEmpty() && namePatterns.isEmpty()
+                && plannedCircuits.isEmpty() && !byCookie && dpids.isEmpty())
+            throw new IllegalStateException("No flows selected, use clearFlows() to "
+                    + "delete all");
+
+        plannedFlowNames = new HashSet<String>();
+        for (Map.Entry<CircuitPlanResult, Set<String>> plan : plannedCircuits
+                .entrySet()) {
+            plannedFlowNames.addAll(plan.getKey().getUnsharedFlowNames(plan.getValue()));
+        }
+
+        listed = list(result);
+        for (StaticFlowEntry entry : listed) {
+            if (isSelected(entry))
+                selected.add(entry);
+        }
+        result.setSelection(listed.size(), System.nanoTime() - start);
+
+        delete(selected, result);
+        release(listed, result);
+
+        return result;
+    }
+
+    // --------------
+    // helper methods
+    // --------------
+
+    private List<StaticFlowEntry> list(FlowDeletionResult result)
+            throws InterruptedException {
+        List<StaticFlowEntry> listed = new ArrayList<StaticFlowEntry>();
+        List<String> switchIds = new ArrayList<String>();
+        FanOutResult<List<StaticFlowEntry>> fetched;
+
+        if (mirror != null) {
+            for (String switchId : mirror.getSwitchIds()) {
+                if (dpids.isEmpty() || dpids.contains(AddressUtils.parseDpid(switchId)))
+                    listed.addAll(mirror.getEntries(switchId));
+            }
+            return listed;
+        }
+
+        if (dpids.isEmpty()) {
+            try {
+                listed.addAll(client.getStaticFlowEntries("all"));
+            }
+            catch (IOException | JSONException | RuntimeException e) {
+                result.putListError("all", e);
+            }
+            return listed;
+        }
+
+        for (long dpid : dpids) {
+            switchIds.add(AddressUtils.dpidToString(dpid));
+        }
+        fetched = client.getFanOut().run(switchIds, client::getStaticFlowEntries);
+
+        // in the order the switches were given
+        for (String switchId : switchIds) {
+            List<StaticFlowEntry> entries = fetched.getResults().get(switchId);
+
+            if (entries != null)
+                listed.addAll(entries);
+        }
+        for (Map.Entry<String, Throwable> error : fetched.getErrors().entrySet()) {
+            result.putListError(error.getKey(), error.getValue());
+        }
+
+        return listed;
+    }
+
+    private boolean isSelected(StaticFlowEntry entry) {
+        if (!dpids.isEmpty() && !dpids.contains(entry.getDpid()))
+            return false;
+        if (byCookie && (entry.getCookie() & cookieMask) != cookie)
+            return false;
+        if (!namePrefixes.isEmpty() || !namePatterns.isEmpty()
+                || !plannedCircuits.isEmpty())
+            return isNameSelected(entry.getName());
+
+        return true;
+    }
+
+    private boolean isNameSelected(String name) {
+        if (plannedFlowNames.contains(name))
+            return true;
+        for (String prefix : namePrefixes) {
+            if (name.startsWith(prefix))
+                return true;
+        }
+        for (Pattern pattern : namePatterns) {
+            if (pattern.matcher(name).matches())
+                return true;
+        }
+
+        return false;
+    }
+
+    // a planned circuit is released only if none of its own entries is left:
+    // each was deleted now, or was not listed at all by a listing of every
+    // switch without errors
+    private void release(List<StaticFlowEntry> listed, FlowDeletionResult result) {
+        Set<String> listedNames = new HashSet<String>();
+        boolean complete = dpids.isEmpty() && result.getListErrors().isEmpty();
+
+        for (StaticFlowEntry entry : listed) {
+            listedNames.add(entry.getName());
+        }
+
+        for (Map.Entry<CircuitPlanResult, Set<String>> plan : plannedCircuits
+                .entrySet()) {
+            for (String namePrefix : plan.getValue()) {
+                if (isDeleted(plan.getKey().getFlowNames(namePrefix), listedNames,
+                        complete, result))
+                    plan.getKey().release(namePrefix);
+            }
+        }
+    }
+
+    private boolean isDeleted(List<String> names, Set<String> listedNames,
+            boolean complete, FlowDeletionResult result) {
+        for (String name : names) {
+            // still shared with a circuit kept
+            if (!plannedFlowNames.contains(name))
+                continue;
+            if (result.getResults().containsKey(name))
+                continue;
+            if (complete && !listedNames.contains(name))
+                continue;
+
+            return false;
+        }
+
+        return true;
+    }
+
+    // windowed like FlowBatch.execute()
+    private void delete(List<StaticFlowEntry> selected, FlowDeletionResult result)
+            throws InterruptedException {
+        int count = selected.size();
+        FlowWindow window;
+
+        if (count == 0)
+            return;
+
+        window = FlowWindow.execute(client.getFanOut(), "flow-deletion", windowSize,
+                count, i -> {
+                    StaticFlowEntry entry = selected.get(i);
+                    JSONObject response = client.deleteFlow(entry.getName());
+
+                    if (mirror != null)
+                        mirror.removed(entry);
+                    return response;
+                });
+
+        for (int i = 0; i < count; i++) {
+            if (window.getError(i) != null)
+                result.putError(selected.get(i).getName(), window.getError(i));
+            else
+                result.putResult(selected.get(i).getName(), window.getResponse(i));
+        }
+        result.setTiming(window.getElapsedNanos(), window.getTotalLatencyNanos(),
+                window.getMaxLatencyNanos());
+    }
+}
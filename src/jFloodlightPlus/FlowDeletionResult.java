@@ -0,0 +1,162 @@
+package jFloodlightPlus;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.json.JSONObject;
+
+/**
+ * Outcome of a FlowDeletion. <br>
+ * Every selected flow name is mapped either to the controller response or to
+ * its error, in listing order, together with the time spent selecting and
+ * deleting. Listings that failed are reported per switch; their flows were
+ * not selected.
+ *
+ * @author KmnTree
+ *
+ */
+public class FlowDeletionResult {
+    private final Map<String, JSONObject> results;
+    private final Map<String, Throwable> errors;
+    private final Map<String, Throwable> listErrors;
+    private int listedCount;
+    private long selectNanos;
+    private long deleteNanos;
+    private long totalLatencyNanos;
+    private long maxLatencyNanos;
+
+    FlowDeletionResult() {
+        this.results = new LinkedHashMap<String, JSONObject>();
+        this.errors = new LinkedHashMap<String, Throwable>();
+        this.listErrors = new LinkedHashMap<String, Throwable>();
+    }
+
+    void putResult(String name, JSONObject result) {
+        results.put(name, result);
+    }
+
+    void putError(String name, Throwable error) {
+        errors.put(name, error);
+    }
+
+    void putListError(String switchId, Throwable error) {
+        listErrors.put(switchId, error);
+    }
+
+    void setSelection(int listedCount, long selectNanos) {
+        this.listedCount = listedCount;
+        this.selectNanos = selectNanos;
+    }
+
+    void setTiming(long deleteNanos, long totalLatencyNanos, long maxLatencyNanos) {
+        this.deleteNanos = deleteNanos;
+        this.totalLatencyNanos = totalLatencyNanos;
+        this.maxLatencyNanos = maxLatencyNanos;
+    }
+
+    /**
+     * @return flow name to response {"status":"Entry ... deleted"} of all
+     *         deleted flows
+     */
+    public Map<String, JSONObject> getResults() {
+        return Collections.unmodifiableMap(results);
+    }
+
+    /**
+     * @return flow name to error of all flows that could not be deleted
+     */
+    public Map<String, Throwable> getErrors() {
+        return Collections.unmodifiableMap(errors);
+    }
+
+    /**
+     * @return switch ID ("all" for a listing of all switches) to error of
+     *         every listing that failed
+     */
+    public Map<String, Throwable> getListErrors() {
+        return Collections.unmodifiableMap(listErrors);
+    }
+
+    /**
+     * @return true if every listing and every delete succeeded
+     */
+    public boolean isAllSucceeded() {
+        return errors.isEmpty() && listErrors.isEmpty();
+    }
+
+    public int getDeletedCount() {
+        return results.size();
+    }
+
+    public int getErrorCount() {
+        return errors.size();
+    }
+
+    /**
+     * @return number of flow entries the selection looked at
+     */
+    public int getListedCount() {
+        return listedCount;
+    }
+
+    /**
+     * @return number of flow entries selected for deletion
+     */
+    public int getSelectedCount() {
+        return results.size() + errors.size();
+    }
+
+    /**
+     * @return time to list and select the flow entries
+     */
+    public double getSelectMillis() {
+        return selectNanos / 1e6;
+    }
+
+    /**
+     * @return wall clock time of all deletes
+     */
+    public double getDeleteMillis() {
+        return deleteNanos / 1e6;
+    }
+
+    /**
+     * @return flows (deleted or failed) per second over all deletes
+     */
+    public double getFlowsPerSecond() {
+        if (deleteNanos == 0)
+            return 0;
+
+        return getSelectedCount() * 1e9 / deleteNanos;
+    }
+
+    /**
+     * @return mean round trip time of a single delete
+     */
+    public double getMeanLatencyMillis() {
+        int count = getSelectedCount();
+
+        if (count == 0)
+            return 0;
+
+        return totalLatencyNanos / 1e6 / count;
+    }
+
+    /**
+     * @return slowest round trip time of a single delete
+     */
+    public double getMaxLatencyMillis() {
+        return maxLatencyNanos / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FlowDeletionResult [listed=%d, deleted=%d, failed=%d, "
+                + "listErrors=%d, selectMillis=%.2f, deleteMillis=%.2f, "
+                + "flowsPerSecond=%.1f, meanLatencyMillis=%.2f, maxLatencyMillis=%.2f]",
+                listedCount, results.size(), errors.size(), listErrors.size(),
+                getSelectMillis(), getDeleteMillis(), getFlowsPerSecond(),
+                getMeanLatencyMillis(), getMaxLatencyMillis());
+    }
+}
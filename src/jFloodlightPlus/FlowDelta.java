@@ -0,0 +1,87 @@
+package jFloodlightPlus;
+
+/**
+ * Traffic of one flow entry between two polls of a StatsPoller.
+ *
+ * @author KmnTree
+ *
+ */
+public class FlowDelta {
+    private final FlowStat stat;
+    private final long packetDelta;
+    private final long byteDelta;
+    private final long intervalNanos;
+    private final boolean added;
+    private final boolean reset;
+
+    FlowDelta(FlowStat stat, long packetDelta, long byteDelta, long intervalNanos,
+            boolean added, boolean reset) {
+        this.stat = stat;
+        this.packetDelta = packetDelta;
+        this.byteDelta = byteDelta;
+        this.intervalNanos = intervalNanos;
+        this.added = added;
+        this.reset = reset;
+    }
+
+    /**
+     * @return current stats of the flow entry
+     */
+    public FlowStat getStat() {
+        return stat;
+    }
+
+    public long getPacketDelta() {
+        return packetDelta;
+    }
+
+    public long getByteDelta() {
+        return byteDelta;
+    }
+
+    /**
+     * @return time the deltas were counted in, for new flows their lifetime if
+     *         shorter than the poll interval
+     */
+    public long getIntervalMillis() {
+        return intervalNanos / 1000000;
+    }
+
+    public double getPacketsPerSecond() {
+        return rate(packetDelta);
+    }
+
+    public double getBytesPerSecond() {
+        return rate(byteDelta);
+    }
+
+    /**
+     * @return true if the flow was not there at the last poll
+     */
+    public boolean isAdded() {
+        return added;
+    }
+
+    /**
+     * @return true if the counters restarted, e.g. the flow was installed again
+     *         or the switch reconnected, the deltas count since the restart
+     */
+    public boolean isReset() {
+        return reset;
+    }
+
+    @Override
+    public String toString() {
+        return "FlowDelta [dpid=" + AddressUtils.dpidToString(stat.getDpid())
+                + ", networkSource=" + AddressUtils.ipv4ToString(stat.getNetworkSource())
+                + ", networkDestination="
+                + AddressUtils.ipv4ToString(stat.getNetworkDestination())
+                + ", packetDelta=" + packetDelta + ", byteDelta=" + byteDelta
+                + ", bytesPerSecond=" + getBytesPerSecond() + ", added=" + added
+                + ", reset=" + reset + "]";
+    }
+
+    private double rate(long delta) {
+        return intervalNanos > 0 ? delta * 1e9 / intervalNanos : 0;
+    }
+}
@@ -0,0 +1,95 @@
+package jFloodlightPlus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Static flow entries to push and delete to bring the switches to a desired
+ * state, as computed by FlowTableMirror. <br>
+ * Entries already installed as desired are not part of the diff.
+ *
+ * @author KmnTree
+ *
+ */
+public class FlowDiff {
+    private final List<StaticFlowEntry> adds;
+    private final List<StaticFlowEntry> modifies;
+    private final List<StaticFlowEntry> deletes;
+    private final int unchangedCount;
+
+    FlowDiff(List<StaticFlowEntry> adds, List<StaticFlowEntry> modifies,
+            List<StaticFlowEntry> deletes, int unchangedCount) {
+        this.adds = Collections.unmodifiableList(adds);
+        this.modifies = Collections.unmodifiableList(modifies);
+        this.deletes = Collections.unmodifiableList(deletes);
+        this.unchangedCount = unchangedCount;
+    }
+
+    /**
+     * @return desired entries whose name is not installed yet
+     */
+    public List<StaticFlowEntry> getAdds() {
+        return adds;
+    }
+
+    /**
+     * @return desired entries installed under the same name with another flow,
+     *         pushed again to replace it
+     */
+    public List<StaticFlowEntry> getModifies() {
+        return modifies;
+    }
+
+    /**
+     * @return installed entries not in the desired state
+     */
+    public List<StaticFlowEntry> getDeletes() {
+        return deletes;
+    }
+
+    /**
+     * @return number of desired entries already installed as desired
+     */
+    public int getUnchangedCount() {
+        return unchangedCount;
+    }
+
+    /**
+     * @return number of addFlow and deleteFlow calls needed
+     */
+    public int size() {
+        return adds.size() + modifies.size() + deletes.size();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return DPIDs of all switches with calls to make, sorted
+     */
+    public List<String> getSwitchIds() {
+        Set<String> result = new TreeSet<String>();
+
+        for (StaticFlowEntry entry : adds) {
+            result.add(entry.getSwitchId());
+        }
+        for (StaticFlowEntry entry : modifies) {
+            result.add(entry.getSwitchId());
+        }
+        for (StaticFlowEntry entry : deletes) {
+            result.add(entry.getSwitchId());
+        }
+
+        return new ArrayList<String>(result);
+    }
+
+    @Override
+    public String toString() {
+        return "FlowDiff [adds=" + adds.size() + ", modifies=" + modifies.size()
+                + ", deletes=" + deletes.size() + ", unchanged=" + unchangedCount + "]";
+    }
+}
@@ -0,0 +1,377 @@
+package jFloodlightPlus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Typed builder of a static flow entry: switch, match fields, priority,
+ * timeouts, cookie, active flag and any number of actions. <br>
+ * <br>
+ * Values are checked and formatted as the static flow pusher expects when
+ * they are set. Match fields not set are wildcarded, actions are applied in
+ * the order they were added. toParameters() gives the key/value pairs of
+ * addFlow(), compile() a FlowTemplate encoding many flows that differ only in
+ * a few fields without building a map per flow. <br>
+ * A spec is not thread safe, build it on one thread. The name of the entry is
+ * not part of the spec, it is given when the entry is pushed.
+ *
+ * @author KmnTree
+ *
+ */
+public class FlowSpec {
+    public static final int ETHER_TYPE_IPV4 = 0x0800;
+    public static final int ETHER_TYPE_ARP = 0x0806;
+    public static final int PROTOCOL_ICMP = 1;
+    public static final int PROTOCOL_TCP = 6;
+    public static final int PROTOCOL_UDP = 17;
+
+    private final Map<String, String> fields = new TreeMap<String, String>();
+    private final List<String> actions = new ArrayList<String>();
+
+    // ----------------
+    // entry properties
+    // ----------------
+
+    /**
+     * @param switchId
+     *            xx:xx:xx:xx:xx:xx:xx:xx
+     *
+     * @return this
+     */
+    public FlowSpec switchId(String switchId) {
+        return switchId(AddressUtils.parseDpid(switchId));
+    }
+
+    public FlowSpec switchId(long dpid) {
+        return put(FlowTemplate.Field.SWITCH, AddressUtils.dpidToString(dpid));
+    }
+
+    /**
+     * @param priority
+     *            0 to 32767, FloodlightClient uses 32767 if not set
+     *
+     * @return this
+     */
+    public FlowSpec priority(int priority) {
+        return put(FlowTemplate.Field.PRIORITY, checkRange("priority", priority, 32767));
+    }
+
+    /**
+     * @param seconds
+     *            idle time before the entry expires, 0 for never
+     *
+     * @return this
+     */
+    public FlowSpec idleTimeout(int seconds) {
+        return put(FlowTemplate.Field.IDLE_TIMEOUT, checkRange("idleTimeout", seconds,
+                0xffff));
+    }
+
+    /**
+     * @param seconds
+     *            lifetime of the entry, 0 for unlimited
+     *
+     * @return this
+     */
+    public FlowSpec hardTimeout(int seconds) {
+        return put(FlowTemplate.Field.HARD_TIMEOUT, checkRange("hardTimeout", seconds,
+                0xffff));
+    }
+
+    public FlowSpec cookie(long cookie) {
+        return put(FlowTemplate.Field.COOKIE, Long.toString(cookie));
+    }
+
+    /**
+     * @param active
+     *            false to store the entry without installing it
+     *
+     * @return this
+     */
+    public FlowSpec active(boolean active) {
+        return put(FlowTemplate.Field.ACTIVE, Boolean.toString(active));
+    }
+
+    // ------------
+    // match fields
+    // ------------
+
+    public FlowSpec ingressPort(int port) {
+        return put(FlowTemplate.Field.INGRESS_PORT, checkRange("ingressPort", port,
+                0xffff));
+    }
+
+    /**
+     * @param mac
+     *            xx:xx:xx:xx:xx:xx
+     *
+     * @return this
+     */
+    public FlowSpec srcMac(String mac) {
+        return put(FlowTemplate.Field.SRC_MAC, macToString(mac));
+    }
+
+    /**
+     * @param mac
+     *            xx:xx:xx:xx:xx:xx
+     *
+     * @return this
+     */
+    public FlowSpec dstMac(String mac) {
+        return put(FlowTemplate.Field.DST_MAC, macToString(mac));
+    }
+
+    public FlowSpec vlanId(int vlanId) {
+        return put(FlowTemplate.Field.VLAN_ID, checkRange("vlanId", vlanId, 0xfff));
+    }
+
+    public FlowSpec vlanPriority(int priority) {
+        return put(FlowTemplate.Field.VLAN_PRIORITY, checkRange("vlanPriority",
+                priority, 7));
+    }
+
+    /**
+     * @param etherType
+     *            e.g. ETHER_TYPE_IPV4
+     *
+     * @return this
+     */
+    public FlowSpec etherType(int etherType) {
+        checkRange("etherType", etherType, 0xffff);
+        return put(FlowTemplate.Field.ETHER_TYPE, String.format("0x%04x", etherType));
+    }
+
+    public FlowSpec tosBits(int tosBits) {
+        return put(FlowTemplate.Field.TOS_BITS, checkRange("tosBits", tosBits, 0xff));
+    }
+
+    /**
+     * @param protocol
+     *            IP protocol, e.g. PROTOCOL_TCP
+     *
+     * @return this
+     */
+    public FlowSpec protocol(int protocol) {
+        return put(FlowTemplate.Field.PROTOCOL, checkRange("protocol", protocol, 0xff));
+    }
+
+    /**
+     * @param ip
+     *            xx.xx.xx.xx or xx.xx.xx.xx/prefix
+     *
+     * @return this
+     */
+    public FlowSpec srcIp(String ip) {
+        return put(FlowTemplate.Field.SRC_IP, checkIpv4(ip));
+    }
+
+    /**
+     * @param ip
+     *            xx.xx.xx.xx or xx.xx.xx.xx/prefix
+     *
+     * @return this
+     */
+    public FlowSpec dstIp(String ip) {
+        return put(FlowTemplate.Field.DST_IP, checkIpv4(ip));
+    }
+
+    public FlowSpec srcPort(int port) {
+        return put(FlowTemplate.Field.SRC_PORT, checkRange("srcPort", port, 0xffff));
+    }
+
+    public FlowSpec dstPort(int port) {
+        return put(FlowTemplate.Field.DST_PORT, checkRange("dstPort", port, 0xffff));
+    }
+
+    // -------
+    // actions
+    // -------
+
+    public FlowSpec output(int port) {
+        return action("output=" + checkRange("port", port, 0xffff));
+    }
+
+    public FlowSpec outputFlood() {
+        return action("output=flood");
+    }
+
+    public FlowSpec outputAll() {
+        return action("output=all");
+    }
+
+    public FlowSpec outputController() {
+        return action("output=controller");
+    }
+
+    public FlowSpec outputLocal() {
+        return action("output=local");
+    }
+
+    public FlowSpec outputIngressPort() {
+        return action("output=ingress-port");
+    }
+
+    public FlowSpec outputNormal() {
+        return action("output=normal");
+    }
+
+    public FlowSpec enqueue(int port, int queueId) {
+        if (queueId < 0)
+            throw new IllegalArgumentException("queueId must not be negative: "
+                    + queueId);
+
+        return action("enqueue=" + checkRange("port", port, 0xffff) + ":" + queueId);
+    }
+
+    public FlowSpec stripVlan() {
+        return action("strip-vlan");
+    }
+
+    public FlowSpec setVlanId(int vlanId) {
+        return action("set-vlan-id=" + checkRange("vlanId", vlanId, 0xfff));
+    }
+
+    public FlowSpec setVlanPriority(int priority) {
+        return action("set-vlan-priority=" + checkRange("vlanPriority", priority, 7));
+    }
+
+    public FlowSpec setSrcMac(String mac) {
+        return action("set-src-mac=" + macToString(mac));
+    }
+
+    public FlowSpec setDstMac(String mac) {
+        return action("set-dst-mac=" + macToString(mac));
+    }
+
+    public FlowSpec setTosBits(int tosBits) {
+        return action("set-tos-bits=" + checkRange("tosBits", tosBits, 0xff));
+    }
+
+    public FlowSpec setSrcIp(String ip) {
+        return action("set-src-ip=" + AddressUtils.ipv4ToString(AddressUtils
+                .parseIpv4(ip)));
+    }
+
+    public FlowSpec setDstIp(String ip) {
+        return action("set-dst-ip=" + AddressUtils.ipv4ToString(AddressUtils
+                .parseIpv4(ip)));
+    }
+
+    public FlowSpec setSrcPort(int port) {
+        return action("set-src-port=" + checkRange("port", port, 0xffff));
+    }
+
+    public FlowSpec setDstPort(int port) {
+        return action("set-dst-port=" + checkRange("port", port, 0xffff));
+    }
+
+    /**
+     * Remove all actions, an entry without actions drops matching packets.
+     *
+     * @return this
+     */
+    public FlowSpec clearActions() {
+        actions.clear();
+        return this;
+    }
+
+    // ------
+    // output
+    // ------
+
+    /**
+     * @return key/value pairs for FloodlightClient.addFlow(), a new map
+     *
+     * @throws IllegalStateException
+     *             if the switch is not set
+     */
+    public Map<String, String> toParameters() {
+        Map<String, String> paraMap = new TreeMap<String, String>(fields);
+
+        if (!paraMap.containsKey(FlowTemplate.Field.SWITCH.getKey()))
+            throw new IllegalStateException("Flow spec switch is missing");
+        if (!actions.isEmpty())
+            paraMap.put(FlowTemplate.Field.ACTIONS.getKey(), getActions());
+
+        return paraMap;
+    }
+
+    /**
+     * Pre-encode this spec for many entries differing only in the variable
+     * fields. The name is always variable. Later changes of the spec do not
+     * change the template.
+     *
+     * @param variables
+     *            fields set per entry, their values in this spec are ignored
+     *
+     * @return template encoding an entry per FlowTemplate.Encoder.encode()
+     *
+     * @throws IllegalStateException
+     *             if the switch is neither set nor variable
+     */
+    public FlowTemplate compile(FlowTemplate.Field... variables) {
+        return new FlowTemplate(this, variables);
+    }
+
+    /**
+     * @return value of a field, actions comma separated, null if not set
+     */
+    public String get(FlowTemplate.Field field) {
+        if (field.getKey().equals(FlowTemplate.Field.ACTIONS.getKey()))
+            return actions.isEmpty() ? null : getActions();
+
+        return fields.get(field.getKey());
+    }
+
+    @Override
+    public String toString() {
+        return "FlowSpec " + fields + ", actions=" + actions;
+    }
+
+    // --------------
+    // helper methods
+    // --------------
+
+    private FlowSpec put(FlowTemplate.Field field, String value) {
+        fields.put(field.getKey(), value);
+        return this;
+    }
+
+    private FlowSpec put(FlowTemplate.Field field, int value) {
+        return put(field, String.valueOf(value));
+    }
+
+    private FlowSpec action(String action) {
+        actions.add(action);
+        return this;
+    }
+
+    private String getActions() {
+        return String.join(",", actions);
+    }
+
+    private static int checkRange(String name, int value, int max) {
+        if (value < 0 || value > max)
+            throw new IllegalArgumentException(name + " must be in 0.." + max + ": "
+                    + value);
+
+        return value;
+    }
+
+    private static String macToString(String mac) {
+        return AddressUtils.macToString(AddressUtils.parseMac(mac));
+    }
+
+    // xx.xx.xx.xx/prefix is kept as given once parsed
+    private static String checkIpv4(String ip) {
+        int slash = ip.indexOf('/');
+
+        AddressUtils.parseIpv4(ip);
+        if (slash >= 0)
+            checkRange("prefix", Integer.parseInt(ip.substring(slash + 1).trim()), 32);
+
+        return ip.trim();
+    }
+}
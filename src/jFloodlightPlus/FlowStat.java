@@ -0,0 +1,335 @@
+package jFloodlightPlus;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.json.JSONException;
+
+/**
+ * Flow stats entry of one switch, as returned by
+ * /wm/core/switch/{switchId}/flow/json. <br>
+ * DPID and MACs are kept as long, IPs as int and counters as primitive long.
+ * Only OUTPUT actions are kept (as port numbers), other actions are skipped.
+ *
+ * @author KmnTree
+ *
+ */
+public class FlowStat {
+    private static final int[] NO_PORTS = new int[0];
+
+    private long dpid;
+    private int tableId;
+
+    // match
+    private int inputPort;
+    private long dataLayerSource;
+    private long dataLayerDestination;
+    private int dataLayerType;
+    private int dataLayerVirtualLan;
+    private int dataLayerVirtualLanPriorityCodePoint;
+    private int networkSource;
+    private int networkSourceMaskLen;
+    private int networkDestination;
+    private int networkDestinationMaskLen;
+    private int networkProtocol;
+    private int networkTypeOfService;
+    private int transportSource;
+    private int transportDestination;
+    private int wildcards;
+
+    // stats
+    private long durationSeconds;
+    private long durationNanoseconds;
+    private int priority;
+    private int idleTimeout;
+    private int hardTimeout;
+    private long cookie;
+    private long packetCount;
+    private long byteCount;
+    private int[] outputPorts = NO_PORTS;
+
+    public long getDpid() {
+        return dpid;
+    }
+
+    public int getTableId() {
+        return tableId;
+    }
+
+    public int getInputPort() {
+        return inputPort;
+    }
+
+    public long getDataLayerSource() {
+        return dataLayerSource;
+    }
+
+    public long getDataLayerDestination() {
+        return dataLayerDestination;
+    }
+
+    public int getDataLayerType() {
+        return dataLayerType;
+    }
+
+    public int getDataLayerVirtualLan() {
+        return dataLayerVirtualLan;
+    }
+
+    public int getDataLayerVirtualLanPriorityCodePoint() {
+        return dataLayerVirtualLanPriorityCodePoint;
+    }
+
+    public int getNetworkSource() {
+        return networkSource;
+    }
+
+    public int getNetworkSourceMaskLen() {
+        return networkSourceMaskLen;
+    }
+
+    public int getNetworkDestination() {
+        return networkDestination;
+    }
+
+    public int getNetworkDestinationMaskLen() {
+        return networkDestinationMaskLen;
+    }
+
+    public int getNetworkProtocol() {
+        return networkProtocol;
+    }
+
+    public int getNetworkTypeOfService() {
+        return networkTypeOfService;
+    }
+
+    public int getTransportSource() {
+        return transportSource;
+    }
+
+    public int getTransportDestination() {
+        return transportDestination;
+    }
+
+    public int getWildcards() {
+        return wildcards;
+    }
+
+    public long getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public long getDurationNanoseconds() {
+        return durationNanoseconds;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public int getHardTimeout() {
+        return hardTimeout;
+    }
+
+    public long getCookie() {
+        return cookie;
+    }
+
+    public long getPacketCount() {
+        return packetCount;
+    }
+
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * @return ports of the OUTPUT actions
+     */
+    public int[] getOutputPorts() {
+        return outputPorts.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "FlowStat [dpid=" + AddressUtils.dpidToString(dpid) + ", priority="
+                + priority + ", inputPort=" + inputPort + ", networkSource="
+                + AddressUtils.ipv4ToString(networkSource) + ", networkDestination="
+                + AddressUtils.ipv4ToString(networkDestination) + ", packetCount="
+                + packetCount + ", byteCount=" + byteCount + "]";
+    }
+
+    // --------
+    // decoding
+    // --------
+
+    /**
+     * Decode one flow stats entry.
+     *
+     * @param in
+     *            reader positioned at the entry object
+     * @param dpid
+     *            switch the entry belongs to
+     *
+     * @return the decoded entry
+     */
+    static FlowStat read(JsonStreamReader in, long dpid) throws IOException,
+            JSONException {
+        FlowStat result = new FlowStat();
+        result.dpid = dpid;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+
+            if (in.skipNull())
+                continue;
+
+            switch (name) {
+            case "tableId":
+                result.tableId = in.nextInt();
+                break;
+            case "match":
+                result.readMatch(in);
+                break;
+            case "durationSeconds":
+                result.durationSeconds = in.nextLong();
+                break;
+            case "durationNanoseconds":
+                result.durationNanoseconds = in.nextLong();
+                break;
+            case "priority":
+                result.priority = in.nextInt();
+                break;
+            case "idleTimeout":
+                result.idleTimeout = in.nextInt();
+                break;
+            case "hardTimeout":
+                result.hardTimeout = in.nextInt();
+                break;
+            case "cookie":
+                result.cookie = in.nextLong();
+                break;
+            case "packetCount":
+                result.packetCount = in.nextLong();
+                break;
+            case "byteCount":
+                result.byteCount = in.nextLong();
+                break;
+            case "actions":
+                result.readActions(in);
+                break;
+            default:
+                in.skipValue();
+                break;
+            }
+        }
+        in.endObject();
+
+        return result;
+    }
+
+    private void readMatch(JsonStreamReader in) throws IOException, JSONException {
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+
+            if (in.skipNull())
+                continue;
+
+            switch (name) {
+            case "inputPort":
+                inputPort = in.nextInt();
+                break;
+            case "dataLayerSource":
+                dataLayerSource = in.nextColonHex();
+                break;
+            case "dataLayerDestination":
+                dataLayerDestination = in.nextColonHex();
+                break;
+            case "dataLayerType":
+                dataLayerType = (int) in.nextHexOrDecimal();
+                break;
+            case "dataLayerVirtualLan":
+                dataLayerVirtualLan = in.nextInt();
+                break;
+            case "dataLayerVirtualLanPriorityCodePoint":
+                dataLayerVirtualLanPriorityCodePoint = in.nextInt();
+                break;
+            case "networkSource":
+                networkSource = in.nextIpv4();
+                break;
+            case "networkSourceMaskLen":
+                networkSourceMaskLen = in.nextInt();
+                break;
+            case "networkDestination":
+                networkDestination = in.nextIpv4();
+                break;
+            case "networkDestinationMaskLen":
+                networkDestinationMaskLen = in.nextInt();
+                break;
+            case "networkProtocol":
+                networkProtocol = (int) in.nextHexOrDecimal();
+                break;
+            case "networkTypeOfService":
+                networkTypeOfService = in.nextInt();
+                break;
+            case "transportSource":
+                transportSource = in.nextInt();
+                break;
+            case "transportDestination":
+                transportDestination = in.nextInt();
+                break;
+            case "wildcards":
+                wildcards = in.nextInt();
+                break;
+            default:
+                in.skipValue();
+                break;
+            }
+        }
+        in.endObject();
+    }
+
+    private void readActions(JsonStreamReader in) throws IOException, JSONException {
+        int[] ports = new int[4];
+        int count = 0;
+
+        in.beginArray();
+        while (in.hasNext()) {
+            boolean output = false;
+            int port = 0;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+
+                if (in.skipNull())
+                    continue;
+
+                if (name.equals("type"))
+                    output = in.nextString().equals("OUTPUT");
+                else if (name.equals("port"))
+                    port = in.nextInt();
+                else
+                    in.skipValue();
+            }
+            in.endObject();
+
+            if (output) {
+                if (count == ports.length)
+                    ports = Arrays.copyOf(ports, count * 2);
+                ports[count++] = port;
+            }
+        }
+        in.endArray();
+
+        if (count > 0)
+            outputPorts = Arrays.copyOf(ports, count);
+    }
+}
@@ -0,0 +1,445 @@
+package jFloodlightPlus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.json.JSONException;
+
+/**
+ * In-memory mirror of the static flow entries of all switches, indexed by flow
+ * name and by match. <br>
+ * <br>
+ * Given a desired state, reconcile computes the minimal diff against the
+ * mirror and makes only the addFlow and deleteFlow calls needed, in parallel
+ * across switches. The mirror is updated by every call that succeeded, so it
+ * only has to be loaded with refresh once, and again after failed calls or
+ * changes by other clients.
+ *
+ * @author KmnTree
+ *
+ */
+public class FlowTableMirror {
+    private final FloodlightClient client;
+    private final SwitchFanOut fanOut;
+
+    // guarded by this
+    private final Map<String, SwitchTable> tables;
+    private final Map<String, StaticFlowEntry> byName;
+
+    // flow entries of one switch
+    private static class SwitchTable {
+        final Map<String, StaticFlowEntry> byName =
+                new LinkedHashMap<String, StaticFlowEntry>();
+        final Map<String, StaticFlowEntry> byMatch =
+                new HashMap<String, StaticFlowEntry>();
+    }
+
+    // ------------
+    // constructors
+    // ------------
+
+    /**
+     * Mirror calls run in parallel with the fan-out of the client
+     *
+     * @param client
+     *            client to talk to the controller with
+     */
+    public FlowTableMirror(FloodlightClient client) {
+        this(client, client.getFanOut());
+    }
+
+    /**
+     * Base constructor
+     *
+     * @param client
+     *            client to talk to the controller with
+     * @param fanOut
+     *            runs the calls of different switches in parallel
+     */
+    public FlowTableMirror(FloodlightClient client, SwitchFanOut fanOut) {
+        this.client = client;
+        this.fanOut = fanOut;
+        this.tables = new HashMap<String, SwitchTable>();
+        this.byName = new HashMap<String, StaticFlowEntry>();
+    }
+
+    // -------
+    // loading
+    // -------
+
+    /**
+     * Replace the mirror with the static flow entries of all switches
+     *
+     * @throws IOException
+     * @throws JSONException
+     * @throws RuntimeException
+     */
+    public void refresh() throws IOException, JSONException, RuntimeException {
+        List<StaticFlowEntry> entries = client.getStaticFlowEntries("all");
+
+        synchronized (this) {
+            tables.clear();
+            byName.clear();
+            for (StaticFlowEntry entry : entries) {
+                put(entry);
+            }
+        }
+    }
+
+    /**
+     * Replace the mirror of one switch with its static flow entries
+     *
+     * @param switchId
+     *            Valid Switch DPID (XX:XX:XX:XX:XX:XX:XX:XX)
+     *
+     * @throws IOException
+     * @throws JSONException
+     * @throws RuntimeException
+     */
+    public void refresh(String switchId) throws IOException, JSONException,
+            RuntimeException {
+        List<StaticFlowEntry> entries = client.getStaticFlowEntries(switchId);
+        String key = AddressUtils.dpidToString(AddressUtils.parseDpid(switchId));
+
+        synchronized (this) {
+            SwitchTable table = tables.remove(key);
+
+            if (table != null)
+                byName.keySet().removeAll(table.byName.keySet());
+            for (StaticFlowEntry entry : entries) {
+                put(entry);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        tables.clear();
+        byName.clear();
+    }
+
+    // ------
+    // lookup
+    // ------
+
+    /**
+     * @return DPIDs of all switches with mirrored entries, sorted
+     */
+    public synchronized List<String> getSwitchIds() {
+        return new ArrayList<String>(new TreeSet<String>(tables.keySet()));
+    }
+
+    /**
+     * @param switchId
+     *            Valid Switch DPID (XX:XX:XX:XX:XX:XX:XX:XX)
+     *
+     * @return mirrored entries of the switch
+     */
+    public synchronized List<StaticFlowEntry> getEntries(String switchId) {
+        SwitchTable table = tables.get(AddressUtils.dpidToString(AddressUtils
+                .parseDpid(switchId)));
+
+        if (table == null)
+            return Collections.emptyList();
+        return new ArrayList<StaticFlowEntry>(table.byName.values());
+    }
+
+    /**
+     * @param name
+     *            flow entry name
+     *
+     * @return the mirrored entry, null if there is none
+     */
+    public synchronized StaticFlowEntry getEntry(String name) {
+        return byName.get(name);
+    }
+
+    /**
+     * @param entry
+     *            any entry, its name is ignored
+     *
+     * @return the mirrored entry with the same switch, priority and match, null
+     *         if there is none
+     */
+    public synchronized StaticFlowEntry getEntryByMatch(StaticFlowEntry entry) {
+        SwitchTable table = tables.get(entry.getSwitchId());
+
+        return table == null ? null : table.byMatch.get(entry.getMatchKey());
+    }
+
+    /**
+     * @return number of mirrored entries
+     */
+    public synchronized int size() {
+        return byName.size();
+    }
+
+    // --------------
+    // reconciliation
+    // --------------
+
+    /**
+     * Diff against the switches the desired entries are on. Entries of other
+     * switches are left alone.
+     *
+     * @param desired
+     *            all flow entries that should be installed on their switches
+     *
+     * @return calls needed to install exactly the desired entries
+     *
+     * @throws IllegalArgumentException
+     *             if two desired entries share a name, or a switch, priority
+     *             and match
+     */
+    public FlowDiff diff(Collection<StaticFlowEntry> desired) {
+        return diff(desired, Collections.<String> emptyList());
+    }
+
+    /**
+     * Diff against the switches the desired entries are on and the given
+     * switches. Entries of given switches without desired entries are all
+     * deleted.
+     *
+     * @param desired
+     *            all flow entries that should be installed on their switches
+     * @param switchIds
+     *            Valid Switch DPIDs (XX:XX:XX:XX:XX:XX:XX:XX) to reconcile too
+     *
+     * @return calls needed to install exactly the desired entries
+     *
+     * @throws IllegalArgumentException
+     *             if two desired entries share a name, or a switch, priority
+     *             and match
+     */
+    public FlowDiff diff(Collection<StaticFlowEntry> desired, Collection<String> switchIds) {
+        Map<String, StaticFlowEntry> desiredByName =
+                new HashMap<String, StaticFlowEntry>();
+        Map<String, StaticFlowEntry> desiredByMatch =
+                new HashMap<String, StaticFlowEntry>();
+        Set<String> scope = new TreeSet<String>();
+        List<StaticFlowEntry> adds = new ArrayList<StaticFlowEntry>();
+        List<StaticFlowEntry> modifies = new ArrayList<StaticFlowEntry>();
+        List<StaticFlowEntry> deletes = new ArrayList<StaticFlowEntry>();
+        int unchanged = 0;
+
+        for (StaticFlowEntry entry : desired) {
+            StaticFlowEntry other = desiredByName.put(entry.getName(), entry);
+
+            if (other != null)
+                throw new IllegalArgumentException("Duplicate flow entry name: "
+                        + entry.getName());
+
+            other = desiredByMatch.put(entry.getMatchKey(), entry);
+            if (other != null)
+                throw new IllegalArgumentException("Flow entries " + other.getName()
+                        + " and " + entry.getName() + " have the same match");
+
+            scope.add(entry.getSwitchId());
+        }
+        for (String switchId : switchIds) {
+            scope.add(AddressUtils.dpidToString(AddressUtils.parseDpid(switchId)));
+        }
+
+        synchronized (this) {
+            for (StaticFlowEntry entry : desired) {
+                StaticFlowEntry installed = byName.get(entry.getName());
+
+                if (installed == null)
+                    adds.add(entry);
+                else if (!installed.isSameFlow(entry))
+                    modifies.add(entry);
+                else
+                    unchanged++;
+            }
+
+            // names are global, an entry moved to another switch is replaced by
+            // pushing it and must not be deleted
+            for (String switchId : scope) {
+                SwitchTable table = tables.get(switchId);
+
+                if (table == null)
+                    continue;
+                for (StaticFlowEntry entry : table.byName.values()) {
+                    if (!desiredByName.containsKey(entry.getName()))
+                        deletes.add(entry);
+                }
+            }
+        }
+
+        return new FlowDiff(adds, modifies, deletes, unchanged);
+    }
+
+    /**
+     * Make the calls of a diff, switches in parallel. <br>
+     * On each switch, entries in the way of a push (same priority and match)
+     * are deleted first, then entries are pushed, then the remaining entries
+     * are deleted, so traffic is not left without a flow in between. The first
+     * failing call stops the calls of its switch.
+     *
+     * @param diff
+     *            calls to make
+     *
+     * @return number of calls made or the error of every switch
+     *
+     * @throws InterruptedException
+     *             if the calling thread is interrupted while waiting
+     */
+    public FanOutResult<Integer> apply(FlowDiff diff) throws InterruptedException {
+        Map<String, List<StaticFlowEntry>> pushes =
+                new HashMap<String, List<StaticFlowEntry>>();
+        Map<String, List<StaticFlowEntry>> deletes =
+                new HashMap<String, List<StaticFlowEntry>>();
+
+        for (StaticFlowEntry entry : diff.getAdds()) {
+            bySwitch(pushes, entry);
+        }
+        for (StaticFlowEntry entry : diff.getModifies()) {
+            bySwitch(pushes, entry);
+        }
+        for (StaticFlowEntry entry : diff.getDeletes()) {
+            bySwitch(deletes, entry);
+        }
+
+        return fanOut.run(diff.getSwitchIds(), switchId -> applySwitch(
+                pushes.getOrDefault(switchId, Collections.<StaticFlowEntry> emptyList()),
+                deletes.getOrDefault(switchId, Collections.<StaticFlowEntry> emptyList())));
+    }
+
+    /**
+     * Diff and apply in one go.
+     *
+     * @param desired
+     *            all flow entries that should be installed on their switches
+     *
+     * @return number of calls made or the error of every switch
+     *
+     * @throws InterruptedException
+     *             if the calling thread is interrupted while waiting
+     */
+    public FanOutResult<Integer> reconcile(Collection<StaticFlowEntry> desired)
+            throws InterruptedException {
+        return apply(diff(desired));
+    }
+
+    /**
+     * Diff and apply in one go, entries of given switches without desired
+     * entries are all deleted.
+     *
+     * @param desired
+     *            all flow entries that should be installed on their switches
+     * @param switchIds
+     *            Valid Switch DPIDs (XX:XX:XX:XX:XX:XX:XX:XX) to reconcile too
+     *
+     * @return number of calls made or the error of every switch
+     *
+     * @throws InterruptedException
+     *             if the calling thread is interrupted while waiting
+     */
+    public FanOutResult<Integer> reconcile(Collection<StaticFlowEntry> desired,
+            Collection<String> switchIds) throws InterruptedException {
+        return apply(diff(desired, switchIds));
+    }
+
+    // --------------
+    // helper methods
+    // --------------
+
+    private int applySwitch(List<StaticFlowEntry> pushes, List<StaticFlowEntry> deletes)
+            throws IOException, JSONException {
+        Set<String> pushedMatches = new HashSet<String>();
+        List<StaticFlowEntry> lateDeletes = new ArrayList<StaticFlowEntry>();
+        int calls = 0;
+
+        for (StaticFlowEntry entry : pushes) {
+            pushedMatches.add(entry.getMatchKey());
+        }
+
+        // the controller deletes by match, after the push it would delete the
+        // pushed flow from the switch
+        for (StaticFlowEntry entry : deletes) {
+            if (pushedMatches.contains(entry.getMatchKey())) {
+                client.deleteFlow(entry.getName());
+                removed(entry);
+                calls++;
+            }
+            else {
+                lateDeletes.add(entry);
+            }
+        }
+
+        for (StaticFlowEntry entry : pushes) {
+            client.addFlow(entry.getName(), entry.toParameters());
+            pushed(entry);
+            calls++;
+        }
+
+        for (StaticFlowEntry entry : lateDeletes) {
+            client.deleteFlow(entry.getName());
+            removed(entry);
+            calls++;
+        }
+
+        return calls;
+    }
+
+    private static void bySwitch(Map<String, List<StaticFlowEntry>> entries,
+            StaticFlowEntry entry) {
+        List<StaticFlowEntry> list = entries.get(entry.getSwitchId());
+
+        if (list == null) {
+            list = new ArrayList<StaticFlowEntry>();
+            entries.put(entry.getSwitchId(), list);
+        }
+        list.add(entry);
+    }
+
+    private synchronized void pushed(StaticFlowEntry entry) {
+        StaticFlowEntry replaced = byName.get(entry.getName());
+
+        if (replaced != null)
+            remove(replaced);
+        put(entry);
+    }
+
+    // also called by FlowDeletion for the entries it deleted
+    synchronized void removed(StaticFlowEntry entry) {
+        if (byName.get(entry.getName()) == entry)
+            remove(entry);
+    }
+
+    // callers hold the lock
+    private void put(StaticFlowEntry entry) {
+        SwitchTable table = tables.get(entry.getSwitchId());
+
+        if (table == null) {
+            table = new SwitchTable();
+            tables.put(entry.getSwitchId(), table);
+        }
+
+        table.byName.put(entry.getName(), entry);
+        table.byMatch.put(entry.getMatchKey(), entry);
+        byName.put(entry.getName(), entry);
+    }
+
+    private void remove(StaticFlowEntry entry) {
+        SwitchTable table = tables.get(entry.getSwitchId());
+
+        byName.remove(entry.getName());
+        if (table == null)
+            return;
+
+        table.byName.remove(entry.getName());
+        if (table.byMatch.get(entry.getMatchKey()) == entry)
+            table.byMatch.remove(entry.getMatchKey());
+        if (table.byName.isEmpty())
+            tables.remove(entry.getSwitchId());
+    }
+}
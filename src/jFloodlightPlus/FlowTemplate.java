@@ -0,0 +1,402 @@
+package jFloodlightPlus;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+
+/**
+ * A FlowSpec compiled for many static flow entries that differ only in a few
+ * variable fields, e.g. name, switch and addresses. <br>
+ * <br>
+ * The body is split once into pre-encoded constant pieces with a slot per
+ * variable field between them. An Encoder keeps the values of the slots as
+ * primitives or strings and writes the pieces and the formatted values into
+ * a buffer it reuses, so encoding an entry allocates nothing. Keys are in the
+ * same order as the body of FloodlightClient.addFlow() with the same
+ * parameters. <br>
+ * A template is immutable and shared freely, an Encoder belongs to one
+ * thread.
+ *
+ * @author KmnTree
+ *
+ */
+public class FlowTemplate {
+    /**
+     * Static flow pusher fields a template can leave variable, with the
+     * format of their numeric values.
+     */
+    public enum Field {
+        NAME("name", Format.TEXT),
+        SWITCH("switch", Format.DPID),
+        PRIORITY("priority", Format.DECIMAL),
+        IDLE_TIMEOUT("idle-timeout", Format.DECIMAL),
+        HARD_TIMEOUT("hard-timeout", Format.DECIMAL),
+        COOKIE("cookie", Format.DECIMAL),
+        ACTIVE("active", Format.BOOLEAN),
+        INGRESS_PORT("ingress-port", Format.DECIMAL),
+        SRC_MAC("src-mac", Format.MAC),
+        DST_MAC("dst-mac", Format.MAC),
+        VLAN_ID("vlan-id", Format.DECIMAL),
+        VLAN_PRIORITY("vlan-priority", Format.DECIMAL),
+        ETHER_TYPE("ether-type", Format.HEX16),
+        TOS_BITS("tos-bits", Format.DECIMAL),
+        PROTOCOL("protocol", Format.DECIMAL),
+        SRC_IP("src-ip", Format.IPV4),
+        DST_IP("dst-ip", Format.IPV4),
+        SRC_PORT("src-port", Format.DECIMAL),
+        DST_PORT("dst-port", Format.DECIMAL),
+        /**
+         * all actions, comma separated
+         */
+        ACTIONS("actions", Format.TEXT),
+        /**
+         * actions of a single output to a port number
+         */
+        OUTPUT("actions", Format.OUTPUT);
+
+        private final String key;
+        private final Format format;
+
+        Field(String key, Format format) {
+            this.key = key;
+            this.format = format;
+        }
+
+        /**
+         * @return key in the static flow pusher body
+         */
+        public String getKey() {
+            return key;
+        }
+    }
+
+    // how a numeric value is written
+    private enum Format {
+        TEXT, DECIMAL, BOOLEAN, DPID, MAC, IPV4, HEX16, OUTPUT
+    }
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    private static final byte[] TRUE = "true".getBytes();
+    private static final byte[] FALSE = "false".getBytes();
+    private static final byte[] OUTPUT_PREFIX = "output=".getBytes();
+
+    // constant pieces around the slots, one more than slots
+    private final byte[][] pieces;
+    private final Field[] slots;
+    private final int[] slotOf;
+
+    FlowTemplate(FlowSpec spec, Field... variables) {
+        Map<String, String> constants = new TreeMap<String, String>();
+        Map<String, Field> variableKeys = new TreeMap<String, Field>();
+        TreeSet<String> keys;
+        JsonBodyEncoder out = new JsonBodyEncoder();
+        int slot = 0;
+        boolean first = true;
+
+        variableKeys.put(Field.NAME.getKey(), Field.NAME);
+        for (Field field : variables) {
+            Field other = variableKeys.put(field.getKey(), field);
+
+            if (other != null && other != field)
+                throw new IllegalArgumentException(field + " and " + other
+                        + " are the same field");
+        }
+
+        for (Field field : Field.values()) {
+            String value = spec.get(field);
+
+            if (value != null && !variableKeys.containsKey(field.getKey()))
+                constants.put(field.getKey(), value);
+        }
+        if (!constants.containsKey(Field.SWITCH.getKey())
+                && !variableKeys.containsKey(Field.SWITCH.getKey()))
+            throw new IllegalStateException("Flow spec switch is missing");
+
+        keys = new TreeSet<String>(constants.keySet());
+        keys.addAll(variableKeys.keySet());
+
+        this.pieces = new byte[variableKeys.size() + 1][];
+        this.slots = new Field[variableKeys.size()];
+        this.slotOf = new int[Field.values().length];
+        Arrays.fill(slotOf, -1);
+
+        out.writeByte('{');
+        for (String key : keys) {
+            if (!first)
+                out.writeByte(',');
+            first = false;
+
+            out.writeString(key);
+            out.writeByte(':');
+
+            if (constants.containsKey(key)) {
+                out.writeString(constants.get(key));
+                continue;
+            }
+
+            // the value goes between this piece and the next
+            pieces[slot] = out.toByteArray();
+            slots[slot] = variableKeys.get(key);
+            slotOf[slots[slot].ordinal()] = slot;
+            slot++;
+            out.reset();
+        }
+        out.writeByte('}');
+        pieces[slot] = out.toByteArray();
+    }
+
+    /**
+     * @return true if the field is set per entry
+     */
+    public boolean isVariable(Field field) {
+        return slotOf[field.ordinal()] >= 0;
+    }
+
+    /**
+     * @return a new encoder with no variable field set
+     */
+    public Encoder newEncoder() {
+        return new Encoder(this);
+    }
+
+    /**
+     * Encoder of entries of one template, reusing its buffer and values. <br>
+     * Set every variable field once, then encode() after changing any of them.
+     * Values keep their last setting.
+     */
+    public static final class Encoder {
+        private final FlowTemplate template;
+        private final JsonBodyEncoder out = new JsonBodyEncoder();
+        private final long[] numbers;
+        private final CharSequence[] texts;
+        private final boolean[] assigned;
+        private final boolean[] sequenced;
+        private final byte[] digits = new byte[20];
+
+        private Encoder(FlowTemplate template) {
+            this.template = template;
+            this.numbers = new long[template.slots.length];
+            this.texts = new CharSequence[template.slots.length];
+            this.assigned = new boolean[template.slots.length];
+            this.sequenced = new boolean[template.slots.length];
+        }
+
+        /**
+         * @param name
+         *            Name of the flow entry, this is the primary key, it MUST
+         *            be unique
+         *
+         * @return this
+         */
+        public Encoder setName(CharSequence name) {
+            return set(Field.NAME, name);
+        }
+
+        /**
+         * Name made of a prefix and a number, formatted without a String.
+         *
+         * @return this
+         */
+        public Encoder setName(CharSequence prefix, long sequence) {
+            int slot = slot(Field.NAME);
+
+            texts[slot] = prefix;
+            numbers[slot] = sequence;
+            assigned[slot] = true;
+            sequenced[slot] = true;
+            return this;
+        }
+
+        /**
+         * Set a variable field to a number, written in the format of the
+         * field: DPID and MAC as colon separated hex, IPv4 as dotted decimal
+         * of the low 32 bits, ether-type as 0x hex, active as true if not 0,
+         * output as output=port, all others in decimal.
+         *
+         * @return this
+         *
+         * @throws IllegalArgumentException
+         *             if the field is not variable or takes text only
+         */
+        public Encoder set(Field field, long value) {
+            int slot = slot(field);
+
+            if (field.format == Format.TEXT)
+                throw new IllegalArgumentException(field + " takes text only");
+
+            texts[slot] = null;
+            numbers[slot] = value;
+            assigned[slot] = true;
+            sequenced[slot] = false;
+            return this;
+        }
+
+        /**
+         * Set a variable field to text written as given, e.g. a switch ID
+         * xx:xx:xx:xx:xx:xx:xx:xx or an IP with a /prefix.
+         *
+         * @return this
+         *
+         * @throws IllegalArgumentException
+         *             if the field is not variable
+         */
+        public Encoder set(Field field, CharSequence value) {
+            int slot = slot(field);
+
+            if (value == null)
+                throw new IllegalArgumentException(field + " must not be null");
+
+            texts[slot] = value;
+            assigned[slot] = true;
+            sequenced[slot] = false;
+            return this;
+        }
+
+        /**
+         * Encode the entry with the current values into the buffer.
+         *
+         * @return this
+         *
+         * @throws IllegalStateException
+         *             if a variable field was never set
+         */
+        public Encoder encode() {
+            byte[][] pieces = template.pieces;
+            byte[] last = pieces[pieces.length - 1];
+
+            out.reset();
+            for (int slot = 0; slot < template.slots.length; slot++) {
+                if (!assigned[slot])
+                    throw new IllegalStateException(template.slots[slot] + " is not set");
+
+                out.writeBytes(pieces[slot], 0, pieces[slot].length);
+                writeValue(slot);
+            }
+            out.writeBytes(last, 0, last.length);
+
+            return this;
+        }
+
+        /**
+         * @return length of the body last encoded
+         */
+        public int length() {
+            return out.length();
+        }
+
+        /**
+         * @return UTF-8 body last encoded, a copy owned by the caller
+         */
+        public byte[] toByteArray() {
+            return out.toByteArray();
+        }
+
+        public void writeTo(OutputStream out) throws IOException {
+            this.out.writeTo(out);
+        }
+
+        /**
+         * @return body last encoded as a repeatable entity, e.g. for retries
+         */
+        HttpEntity toEntity() {
+            return new ByteArrayEntity(toByteArray(), ContentType.APPLICATION_JSON);
+        }
+
+        // --------------
+        // helper methods
+        // --------------
+
+        private int slot(Field field) {
+            int slot = template.slotOf[field.ordinal()];
+
+            if (slot < 0)
+                throw new IllegalArgumentException(field + " is not variable");
+
+            return slot;
+        }
+
+        private void writeValue(int slot) {
+            Field field = template.slots[slot];
+            long value = numbers[slot];
+
+            if (texts[slot] != null) {
+                out.writeByte('"');
+                out.writeChars(texts[slot]);
+                if (sequenced[slot])
+                    writeDecimal(value);
+                out.writeByte('"');
+                return;
+            }
+
+            out.writeByte('"');
+            switch (field.format) {
+            case BOOLEAN:
+                out.writeBytes(value != 0 ? TRUE : FALSE, 0, value != 0 ? 4 : 5);
+                break;
+            case DPID:
+                writeColonHex(value, 8);
+                break;
+            case MAC:
+                writeColonHex(value, 6);
+                break;
+            case IPV4:
+                writeDecimal(value >>> 24 & 0xff);
+                out.writeByte('.');
+                writeDecimal(value >>> 16 & 0xff);
+                out.writeByte('.');
+                writeDecimal(value >>> 8 & 0xff);
+                out.writeByte('.');
+                writeDecimal(value & 0xff);
+                break;
+            case HEX16:
+                out.writeByte('0');
+                out.writeByte('x');
+                for (int shift = 12; shift >= 0; shift -= 4) {
+                    out.writeByte((char) HEX[(int) (value >>> shift) & 0xf]);
+                }
+                break;
+            case OUTPUT:
+                out.writeBytes(OUTPUT_PREFIX, 0, OUTPUT_PREFIX.length);
+                writeDecimal(value);
+                break;
+            default:
+                writeDecimal(value);
+                break;
+            }
+            out.writeByte('"');
+        }
+
+        private void writeDecimal(long value) {
+            int pos = digits.length;
+            // negative, so Long.MIN_VALUE does not overflow
+            long rest = value < 0 ? value : -value;
+
+            do {
+                digits[--pos] = (byte) ('0' - rest % 10);
+                rest /= 10;
+            } while (rest != 0);
+            if (value < 0)
+                digits[--pos] = '-';
+
+            out.writeBytes(digits, pos, digits.length - pos);
+        }
+
+        private void writeColonHex(long value, int bytes) {
+            for (int i = bytes - 1; i >= 0; i--) {
+                int b = (int) (value >>> i * 8) & 0xff;
+
+                out.writeByte((char) HEX[b >>> 4]);
+                out.writeByte((char) HEX[b & 0xf]);
+                if (i > 0)
+                    out.writeByte(':');
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package jFloodlightPlus;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONObject;
+
+/**
+ * Static flow requests sent with a window of concurrent requests, shared by
+ * FlowBatch and FlowDeletion. <br>
+ * Every worker is one slot of the window and only takes the next request
+ * after its previous one was answered, so the controller never sees more
+ * than windowSize outstanding requests. Workers run on an executor of the
+ * client's fan-out: a fixed pool of platform threads, or a virtual thread per
+ * slot. <br>
+ * Responses, errors and latencies are kept per request index, in the order
+ * the requests were given.
+ *
+ * @author KmnTree
+ *
+ */
+final class FlowWindow {
+    /**
+     * One request of the window, by index.
+     */
+    interface Request {
+        JSONObject send(int index) throws Exception;
+    }
+
+    private final JSONObject[] responses;
+    private final Throwable[] errors;
+    private final long[] latencies;
+    private long elapsedNanos;
+
+    private FlowWindow(int count) {
+        this.responses = new JSONObject[count];
+        this.errors = new Throwable[count];
+        this.latencies = new long[count];
+    }
+
+    /**
+     * Send count requests and wait until every one is answered or failed. A
+     * failing request does not stop the others.
+     *
+     * @param namePrefix
+     *            name of the worker threads
+     *
+     * @throws InterruptedException
+     *             if the calling thread is interrupted while waiting
+     */
+    static FlowWindow execute(SwitchFanOut fanOut, String namePrefix, int windowSize,
+            int count, Request request) throws InterruptedException {
+        FlowWindow window = new FlowWindow(count);
+        AtomicInteger cursor = new AtomicInteger();
+        long start = System.nanoTime();
+        int workers = Math.min(windowSize, count);
+
+        if (count == 0)
+            return window;
+
+        // only one task per slot of the window, also on virtual threads
+        ExecutorService pool = fanOut.newExecutor(namePrefix, workers);
+        try {
+            for (int w = 0; w < workers; w++) {
+                pool.execute(() -> {
+                    int i;
+
+                    while ((i = cursor.getAndIncrement()) < count) {
+                        long begin = System.nanoTime();
+
+                        try {
+                            window.responses[i] = request.send(i);
+                        }
+                        catch (Throwable e) {
+                            window.errors[i] = e;
+                        }
+
+                        window.latencies[i] = System.nanoTime() - begin;
+                    }
+                });
+            }
+
+            pool.shutdown();
+            while (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+                // keep waiting, every request is bounded by the socket timeout
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+
+        window.elapsedNanos = System.nanoTime() - start;
+        return window;
+    }
+
+    /**
+     * @return response of a request, null if it failed
+     */
+    JSONObject getResponse(int index) {
+        return responses[index];
+    }
+
+    /**
+     * @return error of a request, null if it was answered
+     */
+    Throwable getError(int index) {
+        return errors[index];
+    }
+
+    /**
+     * @return wall clock time of all requests
+     */
+    long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    long getTotalLatencyNanos() {
+        long total = 0;
+
+        for (long latency : latencies) {
+            total += latency;
+        }
+        return total;
+    }
+
+    long getMaxLatencyNanos() {
+        long max = 0;
+
+        for (long latency : latencies) {
+            max = Math.max(max, latency);
+        }
+        return max;
+    }
+}
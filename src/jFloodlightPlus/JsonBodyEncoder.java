@@ -0,0 +1,289 @@
+package jFloodlightPlus;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+/**
+ * Encoder of the request bodies of static flow and virtual network writes:
+ * flat JSON objects of string values, optionally wrapped as {type: {...}}. <br>
+ * <br>
+ * Keys and values are encoded as UTF-8 straight into a byte buffer kept per
+ * thread, instead of a JSONObject, its String and a byte[] copy of that per
+ * request. entity() sends the buffer directly to the connection, so the body
+ * of a flow push is never held as a whole. <br>
+ * Not thread-safe, every thread uses its own instance from get(); a
+ * FlowTemplate encoder owns one and writes into it piece by piece.
+ *
+ * @author KmnTree
+ *
+ */
+final class JsonBodyEncoder {
+    static final String CONTENT_TYPE = ContentType.APPLICATION_JSON.toString();
+
+    // buffers grown beyond this by a large body are not kept
+    private static final int INITIAL_CAPACITY = 512;
+    private static final int MAX_RETAINED_CAPACITY = 1 << 16;
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private static final ThreadLocal<JsonBodyEncoder> ENCODER = ThreadLocal
+            .withInitial(JsonBodyEncoder::new);
+
+    private byte[] buf = new byte[INITIAL_CAPACITY];
+    private int count;
+
+    JsonBodyEncoder() {
+    }
+
+    /**
+     * @return the encoder of the calling thread
+     */
+    static JsonBodyEncoder get() {
+        return ENCODER.get();
+    }
+
+    /**
+     * Entity encoding the parameters when it is sent, with explicit UTF-8
+     * Content-Type and Content-Length. The parameters are copied (not their
+     * strings), later changes of the map are not sent.
+     *
+     * @param type
+     *            name of the wrapping object, e.g. network, null for none
+     * @param paraMap
+     *            key/value pairs, null values are sent as null
+     *
+     * @return repeatable entity, may be sent again on retries
+     */
+    static AbstractHttpEntity entity(String type, Map<String, String> paraMap) {
+        return new JsonEntity(type, paraMap);
+    }
+
+    /**
+     * @return UTF-8 body, a copy owned by the caller, e.g. for requests sent
+     *         on another thread
+     */
+    static byte[] toByteArray(String type, Map<String, String> paraMap) {
+        return get().encode(type, paraMap).toByteArray();
+    }
+
+    /**
+     * Encode into the buffer, replacing what it held.
+     *
+     * @return this
+     */
+    JsonBodyEncoder encode(String type, Map<String, String> paraMap) {
+        String[] pairs = toPairs(paraMap);
+
+        return encode(type, pairs);
+    }
+
+    int length() {
+        return count;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buf, count);
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, count);
+    }
+
+    /**
+     * Empty the buffer for writing a body piece by piece.
+     */
+    void reset() {
+        if (buf.length > MAX_RETAINED_CAPACITY)
+            buf = new byte[INITIAL_CAPACITY];
+        count = 0;
+    }
+
+    // already encoded JSON
+    void writeBytes(byte[] bytes, int offset, int length) {
+        ensureCapacity(count + length);
+        System.arraycopy(bytes, offset, buf, count, length);
+        count += length;
+    }
+
+    // --------------
+    // helper methods
+    // --------------
+
+    // keys and values alternating
+    private static String[] toPairs(Map<String, String> paraMap) {
+        String[] pairs = new String[paraMap.size() * 2];
+        int i = 0;
+
+        for (Map.Entry<String, String> entry : paraMap.entrySet()) {
+            pairs[i++] = entry.getKey();
+            pairs[i++] = entry.getValue();
+        }
+
+        return pairs;
+    }
+
+    private JsonBodyEncoder encode(String type, String[] pairs) {
+        reset();
+
+        if (type != null) {
+            writeByte('{');
+            writeString(type);
+            writeByte(':');
+        }
+
+        writeByte('{');
+        for (int i = 0; i < pairs.length; i += 2) {
+            if (i > 0)
+                writeByte(',');
+            writeString(pairs[i]);
+            writeByte(':');
+            if (pairs[i + 1] == null) {
+                writeByte('n');
+                writeByte('u');
+                writeByte('l');
+                writeByte('l');
+            }
+            else
+                writeString(pairs[i + 1]);
+        }
+        writeByte('}');
+
+        if (type != null)
+            writeByte('}');
+
+        return this;
+    }
+
+    // quoted and escaped as JSONObject does, non-ASCII as UTF-8
+    void writeString(CharSequence s) {
+        writeByte('"');
+        writeChars(s);
+        writeByte('"');
+    }
+
+    // escaped without quotes, e.g. the start of a longer string
+    void writeChars(CharSequence s) {
+        int length = s.length();
+
+        // worst case 6 bytes (\\u00xx) per char
+        ensureCapacity(count + length * 6);
+
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+
+            if (c >= 0x20 && c < 0x80) {
+                if (c == '"' || c == '\\')
+                    buf[count++] = '\\';
+                buf[count++] = (byte) c;
+            }
+            else if (c < 0x20)
+                writeControl(c);
+            else if (c < 0x800) {
+                buf[count++] = (byte) (0xc0 | c >> 6);
+                buf[count++] = (byte) (0x80 | c & 0x3f);
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+
+                buf[count++] = (byte) (0xf0 | cp >> 18);
+                buf[count++] = (byte) (0x80 | cp >> 12 & 0x3f);
+                buf[count++] = (byte) (0x80 | cp >> 6 & 0x3f);
+                buf[count++] = (byte) (0x80 | cp & 0x3f);
+            }
+            else if (Character.isSurrogate(c))
+                // unpaired, replaced like String.getBytes() does
+                buf[count++] = '?';
+            else {
+                buf[count++] = (byte) (0xe0 | c >> 12);
+                buf[count++] = (byte) (0x80 | c >> 6 & 0x3f);
+                buf[count++] = (byte) (0x80 | c & 0x3f);
+            }
+        }
+    }
+
+    private void writeControl(char c) {
+        buf[count++] = '\\';
+        switch (c) {
+        case '\b':
+            buf[count++] = 'b';
+            break;
+        case '\t':
+            buf[count++] = 't';
+            break;
+        case '\n':
+            buf[count++] = 'n';
+            break;
+        case '\f':
+            buf[count++] = 'f';
+            break;
+        case '\r':
+            buf[count++] = 'r';
+            break;
+        default:
+            buf[count++] = 'u';
+            buf[count++] = '0';
+            buf[count++] = '0';
+            buf[count++] = HEX[c >> 4];
+            buf[count++] = HEX[c & 0xf];
+        }
+    }
+
+    void writeByte(char c) {
+        ensureCapacity(count + 1);
+        buf[count++] = (byte) c;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buf.length)
+            buf = Arrays.copyOf(buf, Math.max(capacity, buf.length * 2));
+    }
+
+    // encoded once for its length and again by the sending thread into its
+    // own buffer, the pairs hold immutable strings so both match
+    private static final class JsonEntity extends AbstractHttpEntity {
+        private final String type;
+        private final String[] pairs;
+        private final long contentLength;
+
+        JsonEntity(String type, Map<String, String> paraMap) {
+            this.type = type;
+            this.pairs = toPairs(paraMap);
+            this.contentLength = get().encode(type, pairs).length();
+
+            setContentType(CONTENT_TYPE);
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return true;
+        }
+
+        @Override
+        public long getContentLength() {
+            return contentLength;
+        }
+
+        @Override
+        public InputStream getContent() {
+            return new ByteArrayInputStream(get().encode(type, pairs).toByteArray());
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            get().encode(type, pairs).writeTo(out);
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,661 @@
+package jFloodlightPlus;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+import org.json.JSONException;
+
+/**
+ * Pull parser reading JSON tokens straight from a character stream. <br>
+ * Only the current token is held in memory, so responses of any size can be
+ * walked or decoded without building the whole body as a String or as a
+ * JSONObject tree. <br>
+ * Integral numbers are decoded into a primitive long without creating
+ * intermediate objects.
+ *
+ * @author KmnTree
+ *
+ */
+public class JsonStreamReader implements Closeable {
+    /**
+     * Kinds of JSON tokens
+     */
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER,
+        BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    // scopes on the nesting stack
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    private final Reader in;
+    private final char[] buffer = new char[8192];
+    private int pos;
+    private int limit;
+
+    private int[] stack = new int[32];
+    private int stackSize;
+
+    // current token, null if not peeked yet
+    private Token peeked;
+    private final StringBuilder text = new StringBuilder();
+    private boolean peekedBoolean;
+    private long peekedLong;
+    private boolean peekedIntegral;
+
+    // member names repeat in every element of large arrays, reuse their Strings
+    private final String[] nameCache = new String[256];
+
+    /**
+     * @param in
+     *            stream to read JSON text from
+     */
+    public JsonStreamReader(Reader in) {
+        this.in = in;
+        stack[stackSize++] = EMPTY_DOCUMENT;
+    }
+
+    // ---------------
+    // token interface
+    // ---------------
+
+    /**
+     * @return kind of the next token without consuming it
+     *
+     * @throws IOException
+     * @throws JSONException
+     *             if the text is not valid JSON
+     */
+    public Token peek() throws IOException, JSONException {
+        int c;
+
+        if (peeked != null)
+            return peeked;
+
+        switch (stack[stackSize - 1]) {
+        case EMPTY_DOCUMENT:
+            stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+            return readValue(nextNonWhitespace());
+
+        case NONEMPTY_DOCUMENT:
+            c = nextNonWhitespaceOrEof();
+            if (c != -1)
+                throw syntaxError("Expected end of document");
+            return peeked = Token.END_DOCUMENT;
+
+        case EMPTY_ARRAY:
+            c = nextNonWhitespace();
+            if (c == ']')
+                return peeked = Token.END_ARRAY;
+            stack[stackSize - 1] = NONEMPTY_ARRAY;
+            return readValue(c);
+
+        case NONEMPTY_ARRAY:
+            c = nextNonWhitespace();
+            if (c == ']')
+                return peeked = Token.END_ARRAY;
+            if (c != ',')
+                throw syntaxError("Expected ',' or ']'");
+            return readValue(nextNonWhitespace());
+
+        case EMPTY_OBJECT:
+        case NONEMPTY_OBJECT:
+            c = nextNonWhitespace();
+            if (c == '}')
+                return peeked = Token.END_OBJECT;
+            if (stack[stackSize - 1] == NONEMPTY_OBJECT) {
+                if (c != ',')
+                    throw syntaxError("Expected ',' or '}'");
+                c = nextNonWhitespace();
+            }
+            if (c != '"')
+                throw syntaxError("Expected name");
+            readString();
+            stack[stackSize - 1] = DANGLING_NAME;
+            return peeked = Token.NAME;
+
+        case DANGLING_NAME:
+            if (nextNonWhitespace() != ':')
+                throw syntaxError("Expected ':'");
+            stack[stackSize - 1] = NONEMPTY_OBJECT;
+            return readValue(nextNonWhitespace());
+
+        default:
+            throw new IllegalStateException("Unknown scope");
+        }
+    }
+
+    /**
+     * @return true if the current array or object has another element
+     */
+    public boolean hasNext() throws IOException, JSONException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY
+                && token != Token.END_DOCUMENT;
+    }
+
+    public void beginObject() throws IOException, JSONException {
+        expect(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() throws IOException, JSONException {
+        expect(Token.END_OBJECT);
+        stackSize--;
+    }
+
+    public void beginArray() throws IOException, JSONException {
+        expect(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() throws IOException, JSONException {
+        expect(Token.END_ARRAY);
+        stackSize--;
+    }
+
+    public String nextName() throws IOException, JSONException {
+        int hash = 0, index;
+        String cached;
+
+        expect(Token.NAME);
+
+        for (int i = 0; i < text.length(); i++)
+            hash = 31 * hash + text.charAt(i);
+        index = (hash ^ (hash >>> 16)) & (nameCache.length - 1);
+
+        cached = nameCache[index];
+        if (cached != null && cached.contentEquals(text))
+            return cached;
+
+        return nameCache[index] = text.toString();
+    }
+
+    /**
+     * @return the next string, numbers are returned as their literal text
+     */
+    public String nextString() throws IOException, JSONException {
+        Token token = peek();
+
+        if (token != Token.STRING && token != Token.NUMBER)
+            throw syntaxError("Expected STRING but was " + token);
+
+        peeked = null;
+        return text.toString();
+    }
+
+    /**
+     * @return the next number as long, strings holding a number are accepted
+     *         too
+     */
+    public long nextLong() throws IOException, JSONException {
+        String number;
+
+        if (peek() == Token.NUMBER && peekedIntegral) {
+            peeked = null;
+            return peekedLong;
+        }
+
+        number = nextString();
+        try {
+            return Long.parseLong(number);
+        }
+        catch (NumberFormatException e) {
+            return (long) parseDouble(number);
+        }
+    }
+
+    public int nextInt() throws IOException, JSONException {
+        return (int) nextLong();
+    }
+
+    /**
+     * @return the next number as double, strings holding a number are accepted
+     *         too
+     */
+    public double nextDouble() throws IOException, JSONException {
+        if (peek() == Token.NUMBER && peekedIntegral) {
+            peeked = null;
+            return peekedLong;
+        }
+
+        return parseDouble(nextString());
+    }
+
+    /**
+     * @return the next colon separated hex string (DPID or MAC) as long,
+     *         without creating a String
+     */
+    public long nextColonHex() throws IOException, JSONException {
+        if (peek() == Token.NUMBER && peekedIntegral)
+            return nextLong();
+
+        expect(Token.STRING);
+        try {
+            return AddressUtils.parseColonHex(text);
+        }
+        catch (IllegalArgumentException e) {
+            throw syntaxError(e.getMessage());
+        }
+    }
+
+    /**
+     * @return the next dotted decimal IPv4 address as int, without creating a
+     *         String
+     */
+    public int nextIpv4() throws IOException, JSONException {
+        if (peek() == Token.NUMBER)
+            return nextInt();
+
+        expect(Token.STRING);
+        try {
+            return AddressUtils.parseIpv4(text);
+        }
+        catch (IllegalArgumentException e) {
+            throw syntaxError(e.getMessage());
+        }
+    }
+
+    /**
+     * @return the next number, or string holding a decimal or 0x prefixed hex
+     *         number (e.g. "0x0800")
+     */
+    public long nextHexOrDecimal() throws IOException, JSONException {
+        if (peek() == Token.NUMBER)
+            return nextLong();
+
+        expect(Token.STRING);
+        try {
+            return AddressUtils.parseHexOrDecimal(text);
+        }
+        catch (NumberFormatException e) {
+            throw syntaxError(e.getMessage());
+        }
+    }
+
+    /**
+     * Consume the next value if it is null.
+     *
+     * @return true if a null was consumed
+     */
+    public boolean skipNull() throws IOException, JSONException {
+        if (peek() != Token.NULL)
+            return false;
+
+        peeked = null;
+        return true;
+    }
+
+    public boolean nextBoolean() throws IOException, JSONException {
+        expect(Token.BOOLEAN);
+        return peekedBoolean;
+    }
+
+    public void nextNull() throws IOException, JSONException {
+        expect(Token.NULL);
+    }
+
+    /**
+     * Skip the next value, including all nested arrays and objects.
+     */
+    public void skipValue() throws IOException, JSONException {
+        int depth = 0;
+
+        do {
+            switch (peek()) {
+            case BEGIN_OBJECT:
+                beginObject();
+                depth++;
+                break;
+            case BEGIN_ARRAY:
+                beginArray();
+                depth++;
+                break;
+            case END_OBJECT:
+                endObject();
+                depth--;
+                break;
+            case END_ARRAY:
+                endArray();
+                depth--;
+                break;
+            case END_DOCUMENT:
+                throw syntaxError("Unexpected end of document");
+            default:
+                // names, strings, numbers, literals
+                peeked = null;
+                break;
+            }
+        } while (depth > 0);
+    }
+
+    /**
+     * Walk the next value and report it to the visitor.
+     *
+     * @param visitor
+     *            receives one event per token
+     */
+    public void accept(JsonVisitor visitor) throws IOException, JSONException {
+        int depth = 0;
+
+        do {
+            switch (peek()) {
+            case BEGIN_OBJECT:
+                beginObject();
+                visitor.startObject();
+                depth++;
+                break;
+            case END_OBJECT:
+                endObject();
+                visitor.endObject();
+                depth--;
+                break;
+            case BEGIN_ARRAY:
+                beginArray();
+                visitor.startArray();
+                depth++;
+                break;
+            case END_ARRAY:
+                endArray();
+                visitor.endArray();
+                depth--;
+                break;
+            case NAME:
+                visitor.key(nextName());
+                break;
+            case STRING:
+                visitor.stringValue(nextString());
+                break;
+            case NUMBER:
+                if (peekedIntegral)
+                    visitor.longValue(nextLong());
+                else
+                    visitor.doubleValue(nextDouble());
+                break;
+            case BOOLEAN:
+                visitor.booleanValue(nextBoolean());
+                break;
+            case NULL:
+                nextNull();
+                visitor.nullValue();
+                break;
+            case END_DOCUMENT:
+                throw syntaxError("Unexpected end of document");
+            }
+        } while (depth > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // --------------
+    // helper methods
+    // --------------
+
+    private void expect(Token expected) throws IOException, JSONException {
+        Token token = peek();
+
+        if (token != expected)
+            throw syntaxError("Expected " + expected + " but was " + token);
+
+        peeked = null;
+    }
+
+    private double parseDouble(String number) throws JSONException {
+        try {
+            return Double.parseDouble(number);
+        }
+        catch (NumberFormatException e) {
+            throw syntaxError("Expected a number but was " + number);
+        }
+    }
+
+    private void push(int scope) {
+        if (stackSize == stack.length) {
+            int[] grown = new int[stackSize * 2];
+            System.arraycopy(stack, 0, grown, 0, stackSize);
+            stack = grown;
+        }
+        stack[stackSize++] = scope;
+    }
+
+    private Token readValue(int c) throws IOException, JSONException {
+        switch (c) {
+        case '{':
+            return peeked = Token.BEGIN_OBJECT;
+        case '[':
+            return peeked = Token.BEGIN_ARRAY;
+        case '"':
+            readString();
+            return peeked = Token.STRING;
+        case 't':
+            readLiteral("rue");
+            peekedBoolean = true;
+            return peeked = Token.BOOLEAN;
+        case 'f':
+            readLiteral("alse");
+            peekedBoolean = false;
+            return peeked = Token.BOOLEAN;
+        case 'n':
+            readLiteral("ull");
+            return peeked = Token.NULL;
+        default:
+            if (c == '-' || (c >= '0' && c <= '9')) {
+                readNumber(c);
+                return peeked = Token.NUMBER;
+            }
+            throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    private void readLiteral(String rest) throws IOException, JSONException {
+        for (int i = 0; i < rest.length(); i++) {
+            if (read() != rest.charAt(i))
+                throw syntaxError("Unexpected literal");
+        }
+    }
+
+    // the first character is already consumed, the number must match
+    // -?(0|[1-9][0-9]*)(\.[0-9]+)?([eE][+-]?[0-9]+)?
+    private void readNumber(int first) throws IOException, JSONException {
+        boolean negative = first == '-';
+        // accumulate negatively, so Long.MIN_VALUE fits
+        long value;
+        boolean integral = true, overflow = false;
+        int c;
+
+        text.setLength(0);
+        text.append((char) first);
+
+        if (negative) {
+            first = peekChar();
+            if (!isDigit(first))
+                throw syntaxError("Expected a digit");
+            text.append((char) first);
+            pos++;
+        }
+
+        value = -(first - '0');
+        // no leading zeros
+        while (first != '0' && isDigit(c = peekChar())) {
+            long next = value * 10 - (c - '0');
+
+            if (value < Long.MIN_VALUE / 10 || next > value)
+                overflow = true;
+            else if (!overflow)
+                value = next;
+            text.append((char) c);
+            pos++;
+        }
+
+        c = peekChar();
+        if (c == '.') {
+            integral = false;
+            text.append((char) c);
+            pos++;
+            readDigits();
+            c = peekChar();
+        }
+        if (c == 'e' || c == 'E') {
+            integral = false;
+            text.append((char) c);
+            pos++;
+            c = peekChar();
+            if (c == '+' || c == '-') {
+                text.append((char) c);
+                pos++;
+            }
+            readDigits();
+            c = peekChar();
+        }
+        if (isDigit(c) || c == '.' || c == '-' || c == '+' || c == 'e' || c == 'E')
+            throw syntaxError("Malformed number " + text + (char) c);
+
+        if (!negative) {
+            if (value == Long.MIN_VALUE)
+                overflow = true;
+            value = -value;
+        }
+
+        peekedIntegral = integral && !overflow;
+        peekedLong = value;
+    }
+
+    // at least one
+    private void readDigits() throws IOException, JSONException {
+        int c = peekChar();
+
+        if (!isDigit(c))
+            throw syntaxError("Expected a digit");
+        do {
+            text.append((char) c);
+            pos++;
+        }
+        while (isDigit(c = peekChar()));
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // the opening quote is already consumed
+    private void readString() throws IOException, JSONException {
+        int c;
+
+        text.setLength(0);
+
+        while (true) {
+            // fast path: copy runs of plain characters
+            int start = pos;
+            while (pos < limit) {
+                char ch = buffer[pos];
+                if (ch == '"' || ch == '\\')
+                    break;
+                pos++;
+            }
+            text.append(buffer, start, pos - start);
+
+            c = read();
+            if (c == -1)
+                throw syntaxError("Unterminated string");
+            if (c == '"')
+                return;
+            if (c == '\\') {
+                text.append(readEscape());
+            }
+            else {
+                // buffer was exhausted, c is a plain character
+                text.append((char) c);
+            }
+        }
+    }
+
+    private char readEscape() throws IOException, JSONException {
+        int c = read();
+
+        switch (c) {
+        case 'b':
+            return '\b';
+        case 'f':
+            return '\f';
+        case 'n':
+            return '\n';
+        case 'r':
+            return '\r';
+        case 't':
+            return '\t';
+        case 'u':
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                int digit = Character.digit(read(), 16);
+                if (digit < 0)
+                    throw syntaxError("Malformed unicode escape");
+                value = (value << 4) | digit;
+            }
+            return (char) value;
+        case '"':
+        case '\\':
+        case '/':
+            return (char) c;
+        default:
+            throw syntaxError("Invalid escape sequence");
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException, JSONException {
+        int c = nextNonWhitespaceOrEof();
+
+        if (c == -1)
+            throw syntaxError("Unexpected end of document");
+
+        return c;
+    }
+
+    private int nextNonWhitespaceOrEof() throws IOException {
+        int c;
+
+        do {
+            c = read();
+        } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+
+        return c;
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill())
+            return -1;
+
+        return buffer[pos++];
+    }
+
+    private int peekChar() throws IOException {
+        if (pos == limit && !fill())
+            return -1;
+
+        return buffer[pos];
+    }
+
+    private boolean fill() throws IOException {
+        int count = in.read(buffer, 0, buffer.length);
+
+        if (count <= 0)
+            return false;
+
+        pos = 0;
+        limit = count;
+        return true;
+    }
+
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + " at depth " + (stackSize - 1));
+    }
+}
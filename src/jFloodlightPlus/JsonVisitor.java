@@ -0,0 +1,32 @@
+package jFloodlightPlus;
+
+/**
+ * Receives the tokens of a JSON document one by one while it is streamed from
+ * the controller, see JsonStreamReader.accept(). <br>
+ * Integral numbers are reported as primitive long, other numbers as double.
+ */
+public interface JsonVisitor {
+    void startObject();
+
+    void endObject();
+
+    void startArray();
+
+    void endArray();
+
+    /**
+     * @param name
+     *            name of the next object member
+     */
+    void key(String name);
+
+    void stringValue(String value);
+
+    void longValue(long value);
+
+    void doubleValue(double value);
+
+    void booleanValue(boolean value);
+
+    void nullValue();
+}
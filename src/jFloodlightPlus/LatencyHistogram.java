@@ -0,0 +1,129 @@
+package jFloodlightPlus;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of nanosecond values with log-linear buckets, in the
+ * style of HdrHistogram. <br>
+ * Every power of two range is split into 64 buckets, so a recorded value is
+ * off by less than 1.6% from its percentile. Values up to about 18 minutes are
+ * resolved, larger ones fall into the last bucket.
+ *
+ * @author KmnTree
+ *
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_VALUE_BITS = 40;
+    private static final int BUCKETS = (MAX_VALUE_BITS - SUB_BUCKET_BITS)
+            * SUB_BUCKETS + 2 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalValue = new LongAdder();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    /**
+     * @param nanos
+     *            value to record, negative values count as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos), max;
+
+        counts.incrementAndGet(indexOf(value));
+        totalCount.increment();
+        totalValue.add(value);
+
+        max = maxValue.get();
+        while (value > max && !maxValue.compareAndSet(max, value)) {
+            max = maxValue.get();
+        }
+    }
+
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxValue.get();
+    }
+
+    public double getMeanNanos() {
+        long count = totalCount.sum();
+        return count == 0 ? 0 : (double) totalValue.sum() / count;
+    }
+
+    /**
+     * @param percentile
+     *            0 to 100, e.g. 99.9
+     *
+     * @return the highest value of the bucket holding the percentile, 0 if
+     *         nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = 0, target;
+
+        target = (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100
+                * totalCount.sum());
+        if (target == 0)
+            return 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+            if (count >= target)
+                return Math.min(highestValueOf(i), maxValue.get());
+        }
+
+        return maxValue.get();
+    }
+
+    /**
+     * Forget all values. Values recorded concurrently may be lost or counted
+     * partly.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.reset();
+        totalValue.reset();
+        maxValue.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LatencyHistogram [count=%d, meanMillis=%.3f, "
+                + "p50Millis=%.3f, p99Millis=%.3f, maxMillis=%.3f]", getCount(),
+                getMeanNanos() / 1e6, getValueAtPercentile(50) / 1e6,
+                getValueAtPercentile(99) / 1e6, getMaxNanos() / 1e6);
+    }
+
+    // --------------
+    // helper methods
+    // --------------
+
+    // values below 128 have their own bucket, above that 64 buckets per
+    // power of two
+    static int indexOf(long value) {
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+
+        if (shift <= 0)
+            return (int) value;
+        if (shift > MAX_VALUE_BITS - SUB_BUCKET_BITS)
+            return BUCKETS - 1;
+
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    static long highestValueOf(int index) {
+        int shift = index / SUB_BUCKETS - 1;
+
+        if (shift <= 0)
+            return index;
+
+        return (((long) (index - shift * SUB_BUCKETS) + 1) << shift) - 1;
+    }
+}
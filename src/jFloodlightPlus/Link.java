@@ -0,0 +1,100 @@
+package jFloodlightPlus;
+
+import java.io.IOException;
+
+import org.json.JSONException;
+
+/**
+ * Inter-switch link, as returned by /wm/topology/links/json.
+ *
+ * @author KmnTree
+ *
+ */
+public class Link {
+    private long srcSwitch;
+    private int srcPort;
+    private long dstSwitch;
+    private int dstPort;
+    private String type;
+    private String direction;
+
+    public long getSrcSwitch() {
+        return srcSwitch;
+    }
+
+    public int getSrcPort() {
+        return srcPort;
+    }
+
+    public long getDstSwitch() {
+        return dstSwitch;
+    }
+
+    public int getDstPort() {
+        return dstPort;
+    }
+
+    /**
+     * @return link type, e.g. internal or external
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return bidirectional or unidirectional
+     */
+    public String getDirection() {
+        return direction;
+    }
+
+    @Override
+    public String toString() {
+        return "Link [" + AddressUtils.dpidToString(srcSwitch) + "/" + srcPort + " -> "
+                + AddressUtils.dpidToString(dstSwitch) + "/" + dstPort + ", type=" + type
+                + ", direction=" + direction + "]";
+    }
+
+    // --------
+    // decoding
+    // --------
+
+    static Link read(JsonStreamReader in) throws IOException, JSONException {
+        Link result = new Link();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+
+            if (in.skipNull())
+                continue;
+
+            switch (name) {
+            case "src-switch":
+                result.srcSwitch = in.nextColonHex();
+                break;
+            case "src-port":
+                result.srcPort = in.nextInt();
+                break;
+            case "dst-switch":
+                result.dstSwitch = in.nextColonHex();
+                break;
+            case "dst-port":
+                result.dstPort = in.nextInt();
+                break;
+            case "type":
+                result.type = in.nextString();
+                break;
+            case "direction":
+                result.direction = in.nextString();
+                break;
+            default:
+                in.skipValue();
+                break;
+            }
+        }
+        in.endObject();
+
+        return result;
+    }
+}
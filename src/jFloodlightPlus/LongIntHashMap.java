@@ -0,0 +1,104 @@
+package jFloodlightPlus;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map from long keys (DPIDs) to non-negative int values (node
+ * ids), without boxing. <br>
+ * Not thread-safe, readers may share an instance that is no longer modified.
+ *
+ * @author KmnTree
+ *
+ */
+class LongIntHashMap {
+    static final int MISSING = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    LongIntHashMap(int expectedSize) {
+        int capacity = 8;
+
+        while (capacity * 3 < expectedSize * 4)
+            capacity <<= 1;
+
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+    }
+
+    private LongIntHashMap(LongIntHashMap other) {
+        keys = other.keys.clone();
+        values = other.values.clone();
+        size = other.size;
+    }
+
+    /**
+     * @return the value of key, MISSING if there is none
+     */
+    int get(long key) {
+        int mask = keys.length - 1;
+
+        for (int i = slot(key, mask);; i = (i + 1) & mask) {
+            if (values[i] == MISSING)
+                return MISSING;
+            if (keys[i] == key)
+                return values[i];
+        }
+    }
+
+    /**
+     * @param value
+     *            non-negative value
+     */
+    void put(long key, int value) {
+        int mask = keys.length - 1;
+
+        if (value < 0)
+            throw new IllegalArgumentException("value must not be negative: " + value);
+
+        for (int i = slot(key, mask);; i = (i + 1) & mask) {
+            if (values[i] == MISSING) {
+                keys[i] = key;
+                values[i] = value;
+                if (++size * 4 > keys.length * 3)
+                    resize();
+                return;
+            }
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    LongIntHashMap copy() {
+        return new LongIntHashMap(this);
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        Arrays.fill(values, MISSING);
+        size = 0;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != MISSING)
+                put(oldKeys[i], oldValues[i]);
+        }
+    }
+
+    // DPIDs differ mostly in the low bytes, mix before masking
+    private static int slot(long key, int mask) {
+        long h = key * 0x9e3779b97f4a7c15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
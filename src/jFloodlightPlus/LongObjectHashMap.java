@@ -0,0 +1,93 @@
+package jFloodlightPlus;
+
+/**
+ * Open addressing map from long keys (IPs, MACs, DPIDs) to objects, without
+ * boxing the keys. <br>
+ * Not thread-safe, readers may share an instance that is no longer modified.
+ *
+ * @param <V>
+ *            value type, null values are not allowed
+ *
+ * @author KmnTree
+ *
+ */
+class LongObjectHashMap<V> {
+    private long[] keys;
+    private Object[] values;
+    private int size;
+
+    LongObjectHashMap(int expectedSize) {
+        int capacity = 8;
+
+        while (capacity * 3 < expectedSize * 4)
+            capacity <<= 1;
+
+        keys = new long[capacity];
+        values = new Object[capacity];
+    }
+
+    /**
+     * @return the value of key, null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        int mask = keys.length - 1;
+
+        for (int i = slot(key, mask);; i = (i + 1) & mask) {
+            if (values[i] == null)
+                return null;
+            if (keys[i] == key)
+                return (V) values[i];
+        }
+    }
+
+    /**
+     * @param value
+     *            value, not null
+     */
+    void put(long key, V value) {
+        int mask = keys.length - 1;
+
+        if (value == null)
+            throw new NullPointerException("value");
+
+        for (int i = slot(key, mask);; i = (i + 1) & mask) {
+            if (values[i] == null) {
+                keys[i] = key;
+                values[i] = value;
+                if (++size * 4 > keys.length * 3)
+                    resize();
+                return;
+            }
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void resize() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+
+        keys = new long[oldKeys.length * 2];
+        values = new Object[oldValues.length * 2];
+        size = 0;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null)
+                put(oldKeys[i], (V) oldValues[i]);
+        }
+    }
+
+    // same mixing as LongIntHashMap
+    private static int slot(long key, int mask) {
+        long h = key * 0x9e3779b97f4a7c15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,116 @@
+package jFloodlightPlus;
+
+/**
+ * Traffic of one switch port between two polls of a StatsPoller.
+ *
+ * @author KmnTree
+ *
+ */
+public class PortDelta {
+    private final PortStat stat;
+    private final long receivePackets;
+    private final long transmitPackets;
+    private final long receiveBytes;
+    private final long transmitBytes;
+    private final long receiveDropped;
+    private final long transmitDropped;
+    private final long receiveErrors;
+    private final long transmitErrors;
+    private final long intervalNanos;
+    private final boolean reset;
+
+    PortDelta(PortStat stat, long[] deltas, long intervalNanos, boolean reset) {
+        this.stat = stat;
+        this.receivePackets = deltas[0];
+        this.transmitPackets = deltas[1];
+        this.receiveBytes = deltas[2];
+        this.transmitBytes = deltas[3];
+        this.receiveDropped = deltas[4];
+        this.transmitDropped = deltas[5];
+        this.receiveErrors = deltas[6];
+        this.transmitErrors = deltas[7];
+        this.intervalNanos = intervalNanos;
+        this.reset = reset;
+    }
+
+    /**
+     * @return current stats of the port
+     */
+    public PortStat getStat() {
+        return stat;
+    }
+
+    public long getReceivePackets() {
+        return receivePackets;
+    }
+
+    public long getTransmitPackets() {
+        return transmitPackets;
+    }
+
+    public long getReceiveBytes() {
+        return receiveBytes;
+    }
+
+    public long getTransmitBytes() {
+        return transmitBytes;
+    }
+
+    public long getReceiveDropped() {
+        return receiveDropped;
+    }
+
+    public long getTransmitDropped() {
+        return transmitDropped;
+    }
+
+    public long getReceiveErrors() {
+        return receiveErrors;
+    }
+
+    public long getTransmitErrors() {
+        return transmitErrors;
+    }
+
+    public long getIntervalMillis() {
+        return intervalNanos / 1000000;
+    }
+
+    public double getReceiveBytesPerSecond() {
+        return rate(receiveBytes);
+    }
+
+    public double getTransmitBytesPerSecond() {
+        return rate(transmitBytes);
+    }
+
+    public double getReceivePacketsPerSecond() {
+        return rate(receivePackets);
+    }
+
+    public double getTransmitPacketsPerSecond() {
+        return rate(transmitPackets);
+    }
+
+    /**
+     * @return true if the counters restarted, e.g. the switch reconnected, the
+     *         deltas count since the restart
+     */
+    public boolean isReset() {
+        return reset;
+    }
+
+    @Override
+    public String toString() {
+        return "PortDelta [dpid=" + AddressUtils.dpidToString(stat.getDpid())
+                + ", portNumber=" + stat.getPortNumber() + ", receiveBytes="
+                + receiveBytes + ", transmitBytes=" + transmitBytes
+                + ", receiveBytesPerSecond=" + getReceiveBytesPerSecond()
+                + ", transmitBytesPerSecond=" + getTransmitBytesPerSecond()
+                + ", reset=" + reset + "]";
+    }
+
+    private double rate(long delta) {
+        return intervalNanos > 0 ? delta * 1e9 / intervalNanos : 0;
+    }
+}
@@ -0,0 +1,170 @@
+package jFloodlightPlus;
+
+import java.io.IOException;
+
+import org.json.JSONException;
+
+/**
+ * Port stats entry of one switch port, as returned by
+ * /wm/core/switch/{switchId}/port/json. <br>
+ * All counters are primitive long.
+ *
+ * @author KmnTree
+ *
+ */
+public class PortStat {
+    private long dpid;
+    private int portNumber;
+    private long receivePackets;
+    private long transmitPackets;
+    private long receiveBytes;
+    private long transmitBytes;
+    private long receiveDropped;
+    private long transmitDropped;
+    private long receiveErrors;
+    private long transmitErrors;
+    private long receiveFrameErrors;
+    private long receiveOverrunErrors;
+    private long receiveCRCErrors;
+    private long collisions;
+
+    public long getDpid() {
+        return dpid;
+    }
+
+    public int getPortNumber() {
+        return portNumber;
+    }
+
+    public long getReceivePackets() {
+        return receivePackets;
+    }
+
+    public long getTransmitPackets() {
+        return transmitPackets;
+    }
+
+    public long getReceiveBytes() {
+        return receiveBytes;
+    }
+
+    public long getTransmitBytes() {
+        return transmitBytes;
+    }
+
+    public long getReceiveDropped() {
+        return receiveDropped;
+    }
+
+    public long getTransmitDropped() {
+        return transmitDropped;
+    }
+
+    public long getReceiveErrors() {
+        return receiveErrors;
+    }
+
+    public long getTransmitErrors() {
+        return transmitErrors;
+    }
+
+    public long getReceiveFrameErrors() {
+        return receiveFrameErrors;
+    }
+
+    public long getReceiveOverrunErrors() {
+        return receiveOverrunErrors;
+    }
+
+    public long getReceiveCRCErrors() {
+        return receiveCRCErrors;
+    }
+
+    public long getCollisions() {
+        return collisions;
+    }
+
+    @Override
+    public String toString() {
+        return "PortStat [dpid=" + AddressUtils.dpidToString(dpid) + ", portNumber="
+                + portNumber + ", receivePackets=" + receivePackets
+                + ", transmitPackets=" + transmitPackets + ", receiveBytes="
+                + receiveBytes + ", transmitBytes=" + transmitBytes + "]";
+    }
+
+    // --------
+    // decoding
+    // --------
+
+    /**
+     * Decode one port stats entry.
+     *
+     * @param in
+     *            reader positioned at the entry object
+     * @param dpid
+     *            switch the port belongs to
+     *
+     * @return the decoded entry
+     */
+    static PortStat read(JsonStreamReader in, long dpid) throws IOException,
+            JSONException {
+        PortStat result = new PortStat();
+        result.dpid = dpid;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+
+            if (in.skipNull())
+                continue;
+
+            switch (name) {
+            case "portNumber":
+                result.portNumber = in.nextInt();
+                break;
+            case "receivePackets":
+                result.receivePackets = in.nextLong();
+                break;
+            case "transmitPackets":
+                result.transmitPackets = in.nextLong();
+                break;
+            case "receiveBytes":
+                result.receiveBytes = in.nextLong();
+                break;
+            case "transmitBytes":
+                result.transmitBytes = in.nextLong();
+                break;
+            case "receiveDropped":
+                result.receiveDropped = in.nextLong();
+                break;
+            case "transmitDropped":
+                result.transmitDropped = in.nextLong();
+                break;
+            case "receiveErrors":
+                result.receiveErrors = in.nextLong();
+                break;
+            case "transmitErrors":
+                result.transmitErrors = in.nextLong();
+                break;
+            case "receiveFrameErrors":
+                result.receiveFrameErrors = in.nextLong();
+                break;
+            case "receiveOverrunErrors":
+                result.receiveOverrunErrors = in.nextLong();
+                break;
+            case "receiveCRCErrors":
+                result.receiveCRCErrors = in.nextLong();
+                break;
+            case "collisions":
+                result.collisions = in.nextLong();
+                break;
+            default:
+                in.skipValue();
+                break;
+            }
+        }
+        in.endObject();
+
+        return result;
+    }
+}
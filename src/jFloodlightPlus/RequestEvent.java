@@ -0,0 +1,111 @@
+package jFloodlightPlus;
+
+/**
+ * What a RestTransport measured for one REST call.
+ *
+ * @author KmnTree
+ *
+ */
+public class RequestEvent {
+    /** status code of calls failing before a response arrived */
+    public static final int NO_RESPONSE = -1;
+
+    private final String method;
+    private final String endpoint;
+    private final long requestBytes;
+    int statusCode = NO_RESPONSE;
+    long responseBytes;
+    long wireBytes;
+    long latencyNanos;
+    long poolWaitNanos;
+    int retryCount;
+    Throwable error;
+
+    RequestEvent(String method, String endpoint, long requestBytes) {
+        this.method = method;
+        this.endpoint = endpoint;
+        this.requestBytes = requestBytes;
+    }
+
+    /**
+     * @return GET, POST, PUT or DELETE
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return mount point with DPIDs, ports and other ids replaced by {}, e.g.
+     *         /wm/core/switch/{}/flow/json
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * @return HTTP status code, NO_RESPONSE if the call failed before
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    /**
+     * @return body bytes handed to the parser, decompressed, or the cached body
+     *         of a 304 Not Modified
+     */
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    /**
+     * @return body bytes received from the controller, compressed, 0 for a 304
+     *         Not Modified
+     */
+    public long getWireBytes() {
+        return wireBytes;
+    }
+
+    /**
+     * @return time from sending the request until the response was parsed
+     */
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    /**
+     * @return part of the latency spent waiting for a pooled connection
+     */
+    public long getPoolWaitNanos() {
+        return poolWaitNanos;
+    }
+
+    /**
+     * @return how often the request was sent again: by HttpClient after an
+     *         I/O error, plus one for the first request of a retry or hedge of
+     *         the client's RetryPolicy
+     */
+    public int getRetryCount() {
+        return retryCount;
+    }
+
+    /**
+     * @return why the call failed, null on success
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "RequestEvent [" + method + " " + endpoint + ", statusCode="
+                + statusCode + ", latencyMicros=" + latencyNanos / 1000
+                + ", poolWaitMicros=" + poolWaitNanos / 1000 + ", requestBytes="
+                + requestBytes + ", responseBytes=" + responseBytes + ", wireBytes="
+                + wireBytes + ", retries="
+                + retryCount + (error != null ? ", error=" + error : "") + "]";
+    }
+}
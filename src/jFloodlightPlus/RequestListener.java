@@ -0,0 +1,14 @@
+package jFloodlightPlus;
+
+/**
+ * Receives one event per REST call of a RestTransport, e.g. ClientMetrics.
+ * <br>
+ * Called on the thread of the request after the response was read, keep it
+ * short. Exceptions thrown by the listener are ignored.
+ *
+ * @author KmnTree
+ *
+ */
+public interface RequestListener {
+    void onRequest(RequestEvent event);
+}
@@ -0,0 +1,196 @@
+package jFloodlightPlus;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import org.apache.http.client.methods.HttpUriRequest;
+
+/**
+ * Requests sent on behalf of one task, so a timeout or cancellation of the
+ * task can abort them. <br>
+ * <br>
+ * HttpClient 4.2 blocks in connection leases and socket reads without
+ * noticing interrupts. Aborting a request closes its connection, the call
+ * then fails with an IOException right away instead of holding its thread
+ * until the socket timeout. RestTransport registers every request with the
+ * scope of the calling thread; requests started after abort() fail before
+ * they are sent. A scope nested in a parent is aborted with it, but may also
+ * be aborted alone.
+ *
+ * @author KmnTree
+ *
+ */
+final class RequestScope {
+    private static final ThreadLocal<RequestScope> CURRENT =
+            new ThreadLocal<RequestScope>();
+
+    private final RequestScope parent;
+    private final Set<HttpUriRequest> requests = new HashSet<HttpUriRequest>();
+    private boolean aborted;
+
+    /**
+     * Default constructor for a scope of its own
+     */
+    RequestScope() {
+        this(null);
+    }
+
+    /**
+     * @param parent
+     *            scope whose abort() also aborts the requests of this one, null
+     *            for none
+     */
+    RequestScope(RequestScope parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * @return scope of the calling thread, null outside of any task
+     */
+    static RequestScope current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Run a task with this scope on the calling thread.
+     */
+    void run(Runnable task) {
+        RequestScope previous = enter();
+
+        try {
+            task.run();
+        }
+        finally {
+            exit(previous);
+        }
+    }
+
+    /**
+     * Make this the scope of the calling thread until exit().
+     *
+     * @return the scope to restore with exit()
+     */
+    RequestScope enter() {
+        RequestScope previous = CURRENT.get();
+
+        CURRENT.set(this);
+        return previous;
+    }
+
+    static void exit(RequestScope previous) {
+        CURRENT.set(previous);
+    }
+
+    /**
+     * @return the call run with the scope of the calling thread, for calls
+     *         handed to other threads; the call itself if there is none
+     */
+    static <T> Callable<T> propagate(Callable<T> call) {
+        RequestScope scope = CURRENT.get();
+
+        if (scope == null)
+            return call;
+
+        return () -> {
+            RequestScope previous = CURRENT.get();
+
+            CURRENT.set(scope);
+            try {
+                return call.call();
+            }
+            finally {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    /**
+     * @return the call run outside of any scope, for requests that must not
+     *         be aborted with the calling task, e.g. a rollback
+     */
+    static <T> Callable<T> detach(Callable<T> call) {
+        return () -> {
+            RequestScope previous = CURRENT.get();
+
+            CURRENT.remove();
+            try {
+                return call.call();
+            }
+            finally {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    /**
+     * @return true if the scope of the calling thread was aborted, so its
+     *         requests failed by the will of the caller, not the controller
+     */
+    static boolean isCurrentAborted() {
+        RequestScope scope = CURRENT.get();
+
+        return scope != null && scope.isAborted();
+    }
+
+    /**
+     * @return true once this scope or one of its parents was aborted
+     */
+    boolean isAborted() {
+        synchronized (this) {
+            if (aborted)
+                return true;
+        }
+
+        return parent != null && parent.isAborted();
+    }
+
+    /**
+     * @throws InterruptedIOException
+     *             if the scope is already aborted
+     */
+    void begin(HttpUriRequest request) throws InterruptedIOException {
+        if (parent != null)
+            parent.begin(request);
+
+        synchronized (this) {
+            if (!aborted) {
+                requests.add(request);
+                return;
+            }
+        }
+
+        if (parent != null)
+            parent.end(request);
+        throw new InterruptedIOException("Request aborted: " + request.getURI());
+    }
+
+    void end(HttpUriRequest request) {
+        synchronized (this) {
+            requests.remove(request);
+        }
+
+        if (parent != null)
+            parent.end(request);
+    }
+
+    /**
+     * Abort all running requests and fail all later ones.
+     */
+    void abort() {
+        List<HttpUriRequest> running;
+
+        synchronized (this) {
+            aborted = true;
+            running = new ArrayList<HttpUriRequest>(requests);
+        }
+
+        // outside the lock, abort() closes sockets
+        for (HttpUriRequest request : running) {
+            request.abort();
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package jFloodlightPlus;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size bounded LRU cache of GET response bodies with a TTL per region. <br>
+ * <br>
+ * Concurrent requests for the same missing entry share one load, so many
+ * threads asking for the same route cause only one REST call. <br>
+ * Bodies are cached as String and parsed again on every hit, so callers never
+ * share the mutable JSONObjects. <br>
+ * A region is invalidated by FloodlightClient after each call that changes
+ * it. Loads started before the invalidation are neither stored nor joined by
+ * later callers, which start a load of their own.
+ *
+ * @author KmnTree
+ *
+ */
+public class ResponseCache {
+    /**
+     * Group of endpoints sharing one TTL and invalidated together.
+     */
+    public enum Region {
+        /** /wm/core/controller/switches/json */
+        SWITCHES,
+        /** inter-switch links, external links and switch clusters */
+        LINKS,
+        /** /wm/topology/route/... */
+        ROUTES,
+        /** /wm/device/ */
+        DEVICES,
+        /** /wm/staticflowentrypusher/list/... */
+        FLOWS,
+        /** /networkService/v1.1/tenants/default/networks */
+        VIRTUAL_NETWORKS
+    }
+
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+    public static final long DEFAULT_TTL_MILLIS = 1000;
+
+    /**
+     * Loads a response body on a cache miss.
+     */
+    public interface Loader {
+        String load() throws IOException;
+    }
+
+    private static class Entry {
+        final Region region;
+        final String body;
+        final long expiresAt;
+
+        Entry(Region region, String body, long expiresAt) {
+            this.region = region;
+            this.body = body;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    // one running load of a key, no longer current once the key was
+    // invalidated
+    private static class Load {
+        final Region region;
+        final CompletableFuture<String> result = new CompletableFuture<String>();
+        boolean current = true;
+
+        Load(Region region) {
+            this.region = region;
+        }
+    }
+
+    private final int maxEntries;
+    private final long[] ttlNanos;
+    private final LinkedHashMap<String, Entry> entries;
+    // guarded by this, like entries
+    private final Map<String, Load> loading;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    // ------------
+    // constructors
+    // ------------
+
+    /**
+     * Default constructor, every region is cached for DEFAULT_TTL_MILLIS
+     */
+    public ResponseCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Base constructor, every region is cached for DEFAULT_TTL_MILLIS
+     *
+     * @param maxEntries
+     *            least recently used bodies are dropped beyond this size
+     */
+    public ResponseCache(int maxEntries) {
+        if (maxEntries < 1)
+            throw new IllegalArgumentException("maxEntries must be positive: "
+                    + maxEntries);
+
+        this.maxEntries = maxEntries;
+        this.ttlNanos = new long[Region.values().length];
+        this.loading = new HashMap<String, Load>();
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > ResponseCache.this.maxEntries;
+            }
+        };
+
+        for (Region region : Region.values()) {
+            setTtl(region, DEFAULT_TTL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // -------------
+    // configuration
+    // -------------
+
+    /**
+     * @param region
+     *            endpoints to configure
+     * @param ttl
+     *            how long a body is served from the cache, 0 disables caching
+     *            of the region
+     * @param unit
+     *            unit of ttl
+     *
+     * @return this cache
+     */
+    public synchronized ResponseCache setTtl(Region region, long ttl, TimeUnit unit) {
+        if (ttl < 0)
+            throw new IllegalArgumentException("ttl must not be negative: " + ttl);
+
+        ttlNanos[region.ordinal()] = unit.toNanos(ttl);
+        if (ttl == 0)
+            invalidate(region);
+
+        return this;
+    }
+
+    public synchronized long getTtlMillis(Region region) {
+        return TimeUnit.NANOSECONDS.toMillis(ttlNanos[region.ordinal()]);
+    }
+
+    public synchronized boolean isEnabled(Region region) {
+        return ttlNanos[region.ordinal()] > 0;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    // ------
+    // access
+    // ------
+
+    /**
+     * Cached body of a key, loaded if missing or expired. <br>
+     * Only one load per key runs at a time, concurrent callers wait for it.
+     *
+     * @param region
+     *            region the key belongs to
+     * @param key
+     *            e.g. the mount point
+     * @param loader
+     *            fetches the body on a miss
+     *
+     * @return the body
+     *
+     * @throws IOException
+     *             if the load failed, InterruptedIOException if interrupted
+     *             while waiting for another thread's load
+     * @throws RuntimeException
+     */
+    public String get(Region region, String key, Loader loader) throws IOException,
+            RuntimeException {
+        Load load = null, running;
+
+        synchronized (this) {
+            Entry entry = entries.get(key);
+
+            if (entry != null && entry.expiresAt - System.nanoTime() > 0) {
+                hitCount.incrementAndGet();
+                return entry.body;
+            }
+
+            // single flight: the first caller loads, everyone else waits on it
+            running = loading.get(key);
+            if (running == null) {
+                load = new Load(region);
+                running = load;
+                loading.put(key, load);
+            }
+        }
+        missCount.incrementAndGet();
+
+        if (load != null)
+            load(key, loader, load);
+
+        try {
+            return running.result.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for " + key);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            else if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            else if (cause instanceof Error)
+                throw (Error) cause;
+            else
+                throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Drop all bodies of a region, loads of the region running right now are
+     * neither stored nor joined.
+     *
+     * @param region
+     *            region to drop
+     */
+    public synchronized void invalidate(Region region) {
+        Iterator<Entry> it = entries.values().iterator();
+        Iterator<Load> loads = loading.values().iterator();
+
+        while (it.hasNext()) {
+            if (it.next().region == region)
+                it.remove();
+        }
+        while (loads.hasNext()) {
+            Load load = loads.next();
+
+            if (load.region == region) {
+                load.current = false;
+                loads.remove();
+            }
+        }
+    }
+
+    /**
+     * Drop one body, a load of it running right now is neither stored nor
+     * joined.
+     *
+     * @param key
+     *            key given to get()
+     */
+    public synchronized void invalidate(String key) {
+        Load load = loading.remove(key);
+
+        entries.remove(key);
+        if (load != null)
+            load.current = false;
+    }
+
+    /**
+     * Drop all bodies of all regions.
+     */
+    public synchronized void invalidateAll() {
+        for (Load load : loading.values()) {
+            load.current = false;
+        }
+        loading.clear();
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ResponseCache [size=" + size() + ", maxEntries=" + maxEntries
+                + ", hits=" + getHitCount() + ", misses=" + getMissCount() + "]";
+    }
+
+    // --------------
+    // helper methods
+    // --------------
+
+    // run by the first caller, the others wait on the result
+    private void load(String key, Loader loader, Load load) {
+        try {
+            String body = loader.load();
+
+            synchronized (this) {
+                long ttl = ttlNanos[load.region.ordinal()];
+
+                // skip bodies that may predate an invalidation
+                if (ttl > 0 && load.current)
+                    entries.put(key, new Entry(load.region, body, System.nanoTime()
+                            + ttl));
+            }
+            load.result.complete(body);
+        }
+        catch (Throwable e) {
+            load.result.completeExceptionally(e);
+        }
+        finally {
+            synchronized (this) {
+                loading.remove(key, load);
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package jFloodlightPlus;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * Consumes a response body straight from the connection, see
+ * RestTransport.doGet(String, ResponseParser).
+ *
+ * @param <T>
+ *            type decoded from the body
+ */
+public interface ResponseParser<T> {
+    /**
+     * Parse the body into a JSONObject without reading it into a String first
+     */
+    ResponseParser<JSONObject> JSON_OBJECT = reader -> new JSONObject(new JSONTokener(reader));
+
+    /**
+     * Parse the body into a JSONArray without reading it into a String first
+     */
+    ResponseParser<JSONArray> JSON_ARRAY = reader -> new JSONArray(new JSONTokener(reader));
+
+    /**
+     * Read the whole body into a String
+     */
+    ResponseParser<String> STRING = reader -> {
+        StringBuilder result = new StringBuilder();
+        char[] buffer = new char[4096];
+        int count;
+
+        while ((count = reader.read(buffer)) != -1) {
+            result.append(buffer, 0, count);
+        }
+
+        return result.toString();
+    };
+
+    /**
+     * @param reader
+     *            the response body, decoded with the response charset
+     * 
+     * @return the decoded body
+     * 
+     * @throws IOException
+     * @throws JSONException
+     */
+    T parse(Reader reader) throws IOException, JSONException;
+
+    /**
+     * @return true if the parser hands out what it read right away, e.g. to a
+     *         JsonVisitor; its body is never kept for conditional GETs
+     */
+    default boolean isStreaming() {
+        return false;
+    }
+
+    /**
+     * @param visitor
+     *            receives every token of the body
+     * 
+     * @return parser streaming the body into the visitor
+     */
+    static ResponseParser<Void> visit(JsonVisitor visitor) {
+        return new ResponseParser<Void>() {
+            @Override
+            public Void parse(Reader reader) throws IOException, JSONException {
+                new JsonStreamReader(reader).accept(visitor);
+                return null;
+            }
+
+            @Override
+            public boolean isStreaming() {
+                return true;
+            }
+        };
+    }
+}
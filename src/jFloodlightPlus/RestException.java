@@ -0,0 +1,37 @@
+package jFloodlightPlus;
+
+/**
+ * Thrown when the controller answers a GET or POST with another status than
+ * 200 or 204. <br>
+ * The message is the same as before, "Failed: HTTP error code : xxx", so
+ * callers catching RuntimeException keep working.
+ *
+ * @author KmnTree
+ *
+ */
+public class RestException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+    private final String url;
+
+    public RestException(int statusCode, String url) {
+        super("Failed: HTTP error code : " + statusCode);
+        this.statusCode = statusCode;
+        this.url = url;
+    }
+
+    /**
+     * @return HTTP status code of the response
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return requested URL
+     */
+    public String getUrl() {
+        return url;
+    }
+}
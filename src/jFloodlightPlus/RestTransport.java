@@ -0,0 +1,854 @@
+package jFloodlightPlus;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.io.StringReader;
+import java.lang.ref.WeakReference;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.HttpRequestRetryHandler;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.RequestAcceptEncoding;
+import org.apache.http.client.protocol.ResponseContentEncoding;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import org.json.JSONException;
+
+/**
+ * HTTP transport shared by all REST verbs. <br>
+ * Keeps a pool of keep-alive connections to the controller, so consecutive
+ * calls reuse the same sockets instead of doing a TCP handshake per request. <br>
+ * Responses may be gzip or deflate compressed and are decompressed while
+ * parsed. Optionally, small GET responses carrying an ETag or Last-Modified
+ * are kept, the next GET of the URL is conditional and a 304 Not Modified is
+ * answered from the kept body. <br>
+ * One transport is owned by each FloodlightClient, call close() to release the
+ * pooled connections. Idle connections are closed by a shared background
+ * thread, requests do not pay for it. The thread holds the pool weakly, a
+ * transport dropped without close() is still collected.
+ *
+ * @author KmnTree
+ *
+ */
+public class RestTransport implements Closeable {
+    public static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 64;
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 16;
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 5000;
+    public static final int DEFAULT_SOCKET_TIMEOUT_MILLIS = 30000;
+    public static final int DEFAULT_CONDITIONAL_GET_ENTRIES = 32;
+    public static final int DEFAULT_CONDITIONAL_GET_MAX_BODY_BYTES = 256 * 1024;
+
+    // pooled connections idle longer than this are closed in the background
+    private static final long IDLE_CONNECTION_MILLIS = 5000;
+    private static final ScheduledExecutorService IDLE_EVICTOR = Executors
+            .newSingleThreadScheduledExecutor(SwitchFanOut
+                    .daemonThreadFactory("rest-idle-evictor"));
+
+    private static final String CHARSET = "UTF-8";
+    private static final Charset UTF_8 = Charset.forName(CHARSET);
+
+    // HttpContext attribute holding the RequestEvent of a measured call
+    private static final String EVENT_ATTRIBUTE = "jFloodlightPlus.event";
+
+    // time the calling thread waited for a pooled connection
+    private static final ThreadLocal<long[]> POOL_WAIT_NANOS = ThreadLocal
+            .withInitial(() -> new long[1]);
+
+    private final PoolingClientConnectionManager connectionManager;
+    private final DefaultHttpClient httpClient;
+    private final ScheduledFuture<?> idleEviction;
+    private volatile RequestListener requestListener;
+    // off unless asked for, kept bodies are held in memory
+    private volatile ValidatedBodies validatedBodies;
+
+    // ------------
+    // constructors
+    // ------------
+
+    /**
+     * Default constructor with default pool size and timeouts
+     */
+    public RestTransport() {
+        this(DEFAULT_MAX_TOTAL_CONNECTIONS, DEFAULT_MAX_CONNECTIONS_PER_ROUTE,
+                DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_SOCKET_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Base constructor
+     *
+     * @param maxTotalConnections
+     *            maximum number of pooled connections over all routes
+     * @param maxConnectionsPerRoute
+     *            maximum number of pooled connections to one controller
+     * @param connectTimeoutMillis
+     *            timeout to establish a connection, 0 means infinite
+     * @param socketTimeoutMillis
+     *            timeout waiting for data on an established connection, 0 means
+     *            infinite
+     */
+    public RestTransport(int maxTotalConnections, int maxConnectionsPerRoute,
+            int connectTimeoutMillis, int socketTimeoutMillis) {
+        HttpParams params;
+
+        connectionManager = new TimedConnectionManager();
+        connectionManager.setMaxTotal(maxTotalConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+
+        httpClient = new DefaultHttpClient(connectionManager);
+
+        params = httpClient.getParams();
+        HttpConnectionParams.setConnectionTimeout(params, connectTimeoutMillis);
+        HttpConnectionParams.setSoTimeout(params, socketTimeoutMillis);
+        HttpConnectionParams.setTcpNoDelay(params, true);
+
+        // the stale check costs a blocking read per request, evict idle
+        // connections instead before the controller closes them
+        HttpConnectionParams.setStaleCheckingEnabled(params, false);
+        idleEviction = IdleEviction.schedule(connectionManager);
+
+        // count the retries HttpClient does on I/O errors
+        final HttpRequestRetryHandler retryHandler = httpClient
+                .getHttpRequestRetryHandler();
+        httpClient.setHttpRequestRetryHandler((exception, executionCount, context) -> {
+            boolean retry = retryHandler.retryRequest(exception, executionCount, context);
+            RequestEvent event = (RequestEvent) context.getAttribute(EVENT_ATTRIBUTE);
+
+            if (retry && event != null)
+                event.retryCount++;
+
+            return retry;
+        });
+
+        // ask for compressed responses, count their bytes on the wire before
+        // they are decompressed
+        httpClient.addRequestInterceptor(new RequestAcceptEncoding());
+        httpClient.addResponseInterceptor((response, context) -> {
+            RequestEvent event = (RequestEvent) context.getAttribute(EVENT_ATTRIBUTE);
+
+            if (event != null && response.getEntity() != null)
+                response.setEntity(new WireCountingEntity(response.getEntity(), event));
+        });
+        httpClient.addResponseInterceptor(new ResponseContentEncoding());
+    }
+
+    /**
+     * Measure every call and report it to the listener, e.g. ClientMetrics.
+     * 
+     * @param requestListener
+     *            receives one event per call, null turns measuring off
+     */
+    public void setRequestListener(RequestListener requestListener) {
+        this.requestListener = requestListener;
+    }
+
+    public RequestListener getRequestListener() {
+        return requestListener;
+    }
+
+    /**
+     * Keep the bodies of GET responses with an ETag or Last-Modified for
+     * conditional GETs, each up to DEFAULT_CONDITIONAL_GET_MAX_BODY_BYTES.
+     * 
+     * @param maxEntries
+     *            number of URLs to keep, 0 turns conditional GETs off
+     */
+    public void setConditionalGetEntries(int maxEntries) {
+        setConditionalGet(maxEntries, DEFAULT_CONDITIONAL_GET_MAX_BODY_BYTES);
+    }
+
+    /**
+     * Keep the bodies of GET responses with an ETag or Last-Modified for
+     * conditional GETs, off by default. The least recently used URL is dropped
+     * beyond maxEntries, so at most maxEntries * maxBodyBytes are held. Larger
+     * bodies and bodies streamed into a JsonVisitor are never kept.
+     * 
+     * @param maxEntries
+     *            number of URLs to keep, 0 turns conditional GETs off
+     * @param maxBodyBytes
+     *            largest body kept, after decompression
+     */
+    public void setConditionalGet(int maxEntries, int maxBodyBytes) {
+        if (maxEntries < 0)
+            throw new IllegalArgumentException("maxEntries must not be negative: "
+                    + maxEntries);
+        if (maxBodyBytes < 1)
+            throw new IllegalArgumentException("maxBodyBytes must be positive: "
+                    + maxBodyBytes);
+
+        validatedBodies = maxEntries == 0 ? null : new ValidatedBodies(maxEntries,
+                maxBodyBytes);
+    }
+
+    /**
+     * @return number of URLs kept for conditional GETs, 0 if off
+     */
+    public int getConditionalGetEntries() {
+        ValidatedBodies validatedBodies = this.validatedBodies;
+
+        return validatedBodies == null ? 0 : validatedBodies.maxEntries;
+    }
+
+    /**
+     * @return largest body kept for conditional GETs, 0 if off
+     */
+    public int getConditionalGetMaxBodyBytes() {
+        ValidatedBodies validatedBodies = this.validatedBodies;
+
+        return validatedBodies == null ? 0 : validatedBodies.maxBodyBytes;
+    }
+
+    // -------------------
+    // GET Method
+    // -------------------
+
+    // base GET method
+    public String doGet(String urlString) throws IOException, RuntimeException {
+        HttpGet getRequest = new HttpGet(urlString);
+        getRequest.setHeader("Accept", "application/json");
+
+        return execute(getRequest, true);
+    }
+
+    /**
+     * GET with the response body streamed into the parser, the body is never
+     * held as a whole String.
+     * 
+     * @param urlString
+     * @param parser
+     *            consumes the response body
+     * 
+     * @return what the parser decoded from the body
+     * 
+     * @throws IOException
+     * @throws JSONException
+     * @throws RuntimeException
+     */
+    public <T> T doGet(String urlString, ResponseParser<T> parser) throws IOException,
+            JSONException, RuntimeException {
+        HttpGet getRequest = new HttpGet(urlString);
+        getRequest.setHeader("Accept", "application/json");
+
+        return execute(getRequest, true, parser);
+    }
+
+    public String doGet(String urlString, Map<String, String> paraMap)
+            throws IOException, RuntimeException {
+        return doGet(urlString + "?" + RestUtils.prepareGetParameterString(paraMap));
+    }
+
+    // --------------------
+    // POST method
+    // --------------------
+
+    public String doPost(String urlString, String parameterString) throws IOException,
+            RuntimeException {
+        return doPost(urlString, jsonEntity(parameterString));
+    }
+
+    /**
+     * POST of an entity, e.g. from JsonBodyEncoder, written straight to the
+     * connection.
+     * 
+     * @param urlString
+     * @param entity
+     *            request body with its Content-Type, repeatable to allow
+     *            retries
+     * 
+     * @return response body
+     * 
+     * @throws IOException
+     * @throws RuntimeException
+     */
+    public String doPost(String urlString, HttpEntity entity) throws IOException,
+            RuntimeException {
+        HttpPost postRequest = new HttpPost(urlString);
+        postRequest.setHeader("Accept", "application/json");
+        postRequest.setEntity(entity);
+
+        return execute(postRequest, true);
+    }
+
+    // POST with the response body streamed into the parser
+    public <T> T doPost(String urlString, String parameterString,
+            ResponseParser<T> parser) throws IOException, JSONException,
+            RuntimeException {
+        return doPost(urlString, jsonEntity(parameterString), parser);
+    }
+
+    public <T> T doPost(String urlString, HttpEntity entity, ResponseParser<T> parser)
+            throws IOException, JSONException, RuntimeException {
+        HttpPost postRequest = new HttpPost(urlString);
+        postRequest.setHeader("Accept", "application/json");
+        postRequest.setEntity(entity);
+
+        return execute(postRequest, true, parser);
+    }
+
+    // ----------------------
+    // DELETE method
+    // ----------------------
+
+    // HTTP DELETE with source id in URI version(Normal Delete)
+    public String doDelete(String urlString) throws ClientProtocolException, IOException {
+        return execute(new HttpDelete(urlString), false);
+    }
+
+    // HTTP DELTE with String entity
+    public String doDelete(String urlString, String paraString)
+            throws ClientProtocolException, IOException {
+        return doDelete(urlString, jsonEntity(paraString));
+    }
+
+    public String doDelete(String urlString, HttpEntity entity)
+            throws ClientProtocolException, IOException {
+        HttpDeleteWithEntity deleteRequest = new HttpDeleteWithEntity(urlString);
+        deleteRequest.setEntity(entity);
+
+        return execute(deleteRequest, false);
+    }
+
+    // -------------------
+    // PUT method
+    // -------------------
+
+    public String doPut(String urlString, String paraString)
+            throws ClientProtocolException, IOException {
+        return doPut(urlString, jsonEntity(paraString));
+    }
+
+    public String doPut(String urlString, HttpEntity entity)
+            throws ClientProtocolException, IOException {
+        HttpPut putRequest = new HttpPut(urlString);
+        putRequest.setEntity(entity);
+
+        return execute(putRequest, false);
+    }
+
+    /**
+     * Release all pooled connections, the transport can not be used afterwards.
+     */
+    @Override
+    public void close() {
+        idleEviction.cancel(false);
+        connectionManager.shutdown();
+    }
+
+    // --------------
+    // helper methods
+    // --------------
+
+    // bodies are JSON, sent as UTF-8 with an explicit Content-Type
+    private static HttpEntity jsonEntity(String body) {
+        return new StringEntity(body, ContentType.APPLICATION_JSON);
+    }
+
+    private String execute(HttpUriRequest request, boolean checkStatus)
+            throws IOException, RuntimeException {
+        try {
+            return execute(request, checkStatus, ResponseParser.STRING);
+        }
+        catch (JSONException e) {
+            // reading into a String never parses JSON
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // a timed out or cancelled task aborts its requests, see RequestScope
+    private <T> T execute(HttpUriRequest request, boolean checkStatus,
+            ResponseParser<T> parser) throws IOException, JSONException,
+            RuntimeException {
+        RequestScope scope = RequestScope.current();
+
+        if (scope == null)
+            return measure(request, checkStatus, parser);
+
+        scope.begin(request);
+        try {
+            return measure(request, checkStatus, parser);
+        }
+        finally {
+            scope.end(request);
+        }
+    }
+
+    private <T> T measure(HttpUriRequest request, boolean checkStatus,
+            ResponseParser<T> parser) throws IOException, JSONException,
+            RuntimeException {
+        RequestListener listener = requestListener;
+        RequestEvent event;
+        long[] poolWait;
+        long start;
+
+        // nothing is measured without a listener
+        if (listener == null)
+            return execute(request, checkStatus, parser, null);
+
+        event = new RequestEvent(request.getMethod(), endpointOf(request.getURI()
+                .getRawPath()), requestBytesOf(request));
+        if (RetryPolicy.takeResend())
+            event.retryCount++;
+        poolWait = POOL_WAIT_NANOS.get();
+        poolWait[0] = 0;
+        start = System.nanoTime();
+        try {
+            return execute(request, checkStatus, parser, event);
+        }
+        catch (Throwable e) {
+            event.error = e;
+            throw e;
+        }
+        finally {
+            event.latencyNanos = System.nanoTime() - start;
+            event.poolWaitNanos = poolWait[0];
+            try {
+                listener.onRequest(event);
+            }
+            catch (RuntimeException ignored) {
+                // a broken listener must not fail the call
+            }
+        }
+    }
+
+    // checkStatus: GET/POST only accept 200 (and 204 as empty content),
+    // PUT/DELETE return whatever the controller answers
+    private <T> T execute(HttpUriRequest request, boolean checkStatus,
+            ResponseParser<T> parser, RequestEvent event) throws IOException,
+            JSONException, RuntimeException {
+        HttpResponse response;
+        HttpEntity responseEntity;
+        HttpContext context = null;
+        ValidatedBodies validatedBodies = null;
+        ValidatedBody validated = null;
+        int statusCode;
+        T result;
+
+        if (event != null) {
+            context = new BasicHttpContext();
+            context.setAttribute(EVENT_ATTRIBUTE, event);
+        }
+
+        if (request instanceof HttpGet && !parser.isStreaming()) {
+            validatedBodies = this.validatedBodies;
+            if (validatedBodies != null)
+                validated = validatedBodies.get(request.getURI().toString());
+            if (validated != null)
+                validated.addConditions(request);
+        }
+
+        response = httpClient.execute(request, context);
+        responseEntity = response.getEntity();
+        statusCode = response.getStatusLine().getStatusCode();
+
+        if (event != null)
+            event.statusCode = statusCode;
+
+        try {
+            result = parseResponse(request, response, checkStatus, parser, event,
+                    validatedBodies, validated);
+        }
+        catch (Throwable e) {
+            // neither drain a large body nor hide the error behind a failing
+            // drain, the connection is closed instead of pooled
+            request.abort();
+            throw e;
+        }
+        finally {
+            if (event != null && responseEntity != null)
+                event.responseBytes = Math.max(event.responseBytes,
+                        responseEntity.getContentLength());
+        }
+
+        // drain what the parser left and hand the connection back to the pool
+        EntityUtils.consume(responseEntity);
+
+        return result;
+    }
+
+    private <T> T parseResponse(HttpUriRequest request, HttpResponse response,
+            boolean checkStatus, ResponseParser<T> parser, RequestEvent event,
+            ValidatedBodies validatedBodies, ValidatedBody validated)
+            throws IOException, JSONException, RuntimeException {
+        HttpEntity responseEntity = response.getEntity();
+        int statusCode = response.getStatusLine().getStatusCode();
+        InputStream content;
+
+        if (statusCode == HttpStatus.SC_NOT_MODIFIED && validated != null) {
+            // unchanged since the kept response
+            if (event != null)
+                event.responseBytes = validated.body.length;
+
+            return parser.parse(new InputStreamReader(new ByteArrayInputStream(
+                    validated.body), validated.charset));
+        }
+
+        if (checkStatus) {
+            if (statusCode == HttpStatus.SC_NO_CONTENT) {
+                // no content but OK, just no response entity
+                // for clear static flow entries
+                return parser.parse(new StringReader(""));
+            }
+            else if (statusCode != HttpStatus.SC_OK) {
+                // NOT OK
+                throw new RestException(statusCode, request.getURI().toString());
+            }
+        }
+
+        // stream content into the parser
+        if (responseEntity != null) {
+            if (validatedBodies != null && statusCode == HttpStatus.SC_OK) {
+                validated = ValidatedBody.of(response);
+                if (validated != null)
+                    return parseValidated(request, validatedBodies, validated,
+                            responseEntity, parser, event);
+            }
+
+            content = responseEntity.getContent();
+            if (event != null)
+                content = new CountingInputStream(content, event);
+
+            return parser.parse(new InputStreamReader(content,
+                    getCharset(responseEntity)));
+        }
+        else {
+            return checkStatus ? parser.parse(new StringReader("")) : null;
+        }
+    }
+
+    // a body that can be validated is kept for the next GET if it is small
+    // enough, larger ones are streamed into the parser like any other
+    private <T> T parseValidated(HttpUriRequest request,
+            ValidatedBodies validatedBodies, ValidatedBody validated,
+            HttpEntity responseEntity, ResponseParser<T> parser, RequestEvent event)
+            throws IOException, JSONException {
+        InputStream content = responseEntity.getContent();
+        Charset charset = getCharset(responseEntity);
+        int maxBodyBytes = validatedBodies.maxBodyBytes;
+        byte[] head;
+
+        if (event != null)
+            content = new CountingInputStream(content, event);
+
+        if (responseEntity.getContentLength() > maxBodyBytes)
+            return parser.parse(new InputStreamReader(content, charset));
+
+        // the length is unknown when chunked or compressed
+        head = readAtMost(content, maxBodyBytes + 1);
+        if (head.length > maxBodyBytes)
+            return parser.parse(new InputStreamReader(new SequenceInputStream(
+                    new ByteArrayInputStream(head), content), charset));
+
+        validated.body = head;
+        validated.charset = charset;
+        validatedBodies.put(request.getURI().toString(), validated);
+
+        return parser.parse(new InputStreamReader(new ByteArrayInputStream(head),
+                charset));
+    }
+
+    private static byte[] readAtMost(InputStream in, int limit) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(limit, 8192));
+        byte[] buffer = new byte[8192];
+        int count;
+
+        while (out.size() < limit
+                && (count = in.read(buffer, 0, Math.min(buffer.length,
+                        limit - out.size()))) != -1) {
+            out.write(buffer, 0, count);
+        }
+
+        return out.toByteArray();
+    }
+
+    private static long requestBytesOf(HttpUriRequest request) {
+        HttpEntity entity;
+
+        if (request instanceof HttpEntityEnclosingRequestBase) {
+            entity = ((HttpEntityEnclosingRequestBase) request).getEntity();
+            if (entity != null)
+                return Math.max(0, entity.getContentLength());
+        }
+
+        return 0;
+    }
+
+    /**
+     * Mount point with DPIDs, numbers and network ids replaced by {}, so all
+     * calls of one endpoint are counted together.
+     * 
+     * @param path
+     *            e.g. /wm/core/switch/00:00:00:00:00:00:00:01/flow/json
+     * 
+     * @return e.g. /wm/core/switch/{}/flow/json
+     */
+    static String endpointOf(String path) {
+        StringBuilder sb = new StringBuilder(path.length());
+        String previous = "";
+        int start = 1;
+
+        if (path.isEmpty())
+            return "/";
+
+        while (start <= path.length()) {
+            int end = path.indexOf('/', start);
+            String segment;
+
+            if (end < 0)
+                end = path.length();
+            segment = path.substring(start, end);
+
+            sb.append('/');
+            if (isId(segment) || previous.equals("networks")
+                    || previous.equals("tenants"))
+                sb.append("{}");
+            else
+                sb.append(segment);
+
+            previous = segment;
+            start = end + 1;
+        }
+
+        return sb.toString();
+    }
+
+    // DPIDs, MACs, port numbers and IPs
+    private static boolean isId(String segment) {
+        if (segment.isEmpty())
+            return false;
+
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+
+            if (c == ':' || c == '.')
+                return true;
+            if (c < '0' || c > '9')
+                return false;
+        }
+
+        return true;
+    }
+
+    // pool of connections measuring how long a caller waits for one
+    private final class TimedConnectionManager extends PoolingClientConnectionManager {
+        @Override
+        public ClientConnectionRequest requestConnection(HttpRoute route, Object state) {
+            final ClientConnectionRequest request = super.requestConnection(route, state);
+
+            if (requestListener == null)
+                return request;
+
+            return new ClientConnectionRequest() {
+                @Override
+                public ManagedClientConnection getConnection(long timeout, TimeUnit unit)
+                        throws InterruptedException, ConnectionPoolTimeoutException {
+                    long start = System.nanoTime();
+
+                    try {
+                        return request.getConnection(timeout, unit);
+                    }
+                    finally {
+                        POOL_WAIT_NANOS.get()[0] += System.nanoTime() - start;
+                    }
+                }
+
+                @Override
+                public void abortRequest() {
+                    request.abortRequest();
+                }
+            };
+        }
+    }
+
+    // closes idle connections of a pool until it is collected, callers of the
+    // constructors predating close() just drop their client
+    private static final class IdleEviction implements Runnable {
+        private final WeakReference<PoolingClientConnectionManager> connectionManager;
+        private volatile ScheduledFuture<?> future;
+
+        private IdleEviction(PoolingClientConnectionManager connectionManager) {
+            this.connectionManager = new WeakReference<PoolingClientConnectionManager>(
+                    connectionManager);
+        }
+
+        static ScheduledFuture<?> schedule(PoolingClientConnectionManager manager) {
+            IdleEviction task = new IdleEviction(manager);
+
+            task.future = IDLE_EVICTOR.scheduleWithFixedDelay(task,
+                    IDLE_CONNECTION_MILLIS / 2, IDLE_CONNECTION_MILLIS / 2,
+                    TimeUnit.MILLISECONDS);
+            return task.future;
+        }
+
+        @Override
+        public void run() {
+            PoolingClientConnectionManager manager = connectionManager.get();
+
+            if (manager != null) {
+                manager.closeIdleConnections(IDLE_CONNECTION_MILLIS,
+                        TimeUnit.MILLISECONDS);
+            }
+            else if (future != null) {
+                // the pool shuts itself down when finalized
+                future.cancel(false);
+            }
+        }
+    }
+
+    // body of a GET response and its validators
+    private static final class ValidatedBody {
+        final String etag;
+        final String lastModified;
+        byte[] body;
+        Charset charset;
+
+        private ValidatedBody(String etag, String lastModified) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        // null if the response has no validator
+        static ValidatedBody of(HttpResponse response) {
+            Header etag = response.getFirstHeader("ETag");
+            Header lastModified = response.getFirstHeader("Last-Modified");
+
+            if (etag == null && lastModified == null)
+                return null;
+
+            return new ValidatedBody(etag == null ? null : etag.getValue(),
+                    lastModified == null ? null : lastModified.getValue());
+        }
+
+        void addConditions(HttpUriRequest request) {
+            if (etag != null)
+                request.setHeader("If-None-Match", etag);
+            if (lastModified != null)
+                request.setHeader("If-Modified-Since", lastModified);
+        }
+    }
+
+    // least recently used validated bodies by URL
+    private static final class ValidatedBodies {
+        final int maxEntries;
+        final int maxBodyBytes;
+        private final LinkedHashMap<String, ValidatedBody> bodies;
+
+        ValidatedBodies(int maxEntries, int maxBodyBytes) {
+            this.maxEntries = maxEntries;
+            this.maxBodyBytes = maxBodyBytes;
+            this.bodies = new LinkedHashMap<String, ValidatedBody>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ValidatedBody> e) {
+                    return size() > ValidatedBodies.this.maxEntries;
+                }
+            };
+        }
+
+        synchronized ValidatedBody get(String url) {
+            return bodies.get(url);
+        }
+
+        synchronized void put(String url, ValidatedBody validated) {
+            bodies.put(url, validated);
+        }
+    }
+
+    // counts the response bytes as received, i.e. before decompression
+    private static final class WireCountingEntity extends HttpEntityWrapper {
+        private final RequestEvent event;
+
+        WireCountingEntity(HttpEntity entity, RequestEvent event) {
+            super(entity);
+            this.event = event;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            return new FilterInputStream(super.getContent()) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0)
+                        event.wireBytes++;
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int n = super.read(b, off, len);
+                    if (n > 0)
+                        event.wireBytes += n;
+                    return n;
+                }
+            };
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private final RequestEvent event;
+
+        CountingInputStream(InputStream in, RequestEvent event) {
+            super(in);
+            this.event = event;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0)
+                event.responseBytes++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0)
+                event.responseBytes += n;
+            return n;
+        }
+    }
+
+    private static Charset getCharset(HttpEntity entity) {
+        ContentType contentType = ContentType.get(entity);
+
+        if (contentType == null || contentType.getCharset() == null)
+            return UTF_8;
+        else
+            return contentType.getCharset();
+    }
+}
@@ -0,0 +1,475 @@
+package jFloodlightPlus;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.conn.ConnectTimeoutException;
+import org.json.JSONException;
+
+/**
+ * Retries of transient failures, so one hiccup does not fail a whole batch. <br>
+ * <br>
+ * Retried are I/O errors and timeouts and 5xx, 408 and 429 statuses, after an
+ * exponential backoff with full jitter. Whether a call may be retried at all
+ * depends on its idempotency: reads and idempotent writes (PUT, static flow
+ * push and delete by name, clear) are, other writes only if the request
+ * could not be sent. Reads streaming into a JsonVisitor never go through a
+ * policy. <br>
+ * A retry budget keeps retries from multiplying the load on a failing
+ * controller: every call adds budgetRatio of a retry, every second adds
+ * minRetriesPerSecond, every retry or hedge takes one. <br>
+ * <br>
+ * Reads still running after the hedge percentile of recent read latencies get
+ * a second, hedged request; the first answer wins. The first request runs on
+ * the calling thread, only the hedge runs on a small shared pool and is
+ * dropped while all of its threads are busy. The losing request is aborted,
+ * which closes its connection; ControllerCluster neither marks its controller
+ * down for that nor tries it on another one. Calls whose caller was aborted
+ * are not retried.
+ *
+ * @author KmnTree
+ *
+ */
+public class RetryPolicy {
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_BASE_DELAY_MILLIS = 50;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 2000;
+    public static final double DEFAULT_BUDGET_RATIO = 0.1;
+    public static final int DEFAULT_MIN_RETRIES_PER_SECOND = 10;
+    public static final double DEFAULT_HEDGE_PERCENTILE = 95;
+
+    // reads needed before hedging starts, and how often the delay is updated
+    private static final int MIN_HEDGE_SAMPLES = 100;
+    private static final int HEDGE_UPDATE_MASK = 63;
+    // latencies are forgotten after this many reads to follow the controller
+    private static final int HEDGE_WINDOW = 10000;
+    // the budget holds at most this many seconds of minRetriesPerSecond
+    private static final int BUDGET_SECONDS = 10;
+
+    // hedges are dropped while this many are running
+    private static final int MAX_HEDGE_THREADS = 8;
+    private static final ScheduledExecutorService HEDGE_TIMER = Executors
+            .newSingleThreadScheduledExecutor(
+                    SwitchFanOut.daemonThreadFactory("retry-hedge-timer"));
+    private static final ExecutorService HEDGE_POOL = new ThreadPoolExecutor(0,
+            MAX_HEDGE_THREADS, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+            SwitchFanOut.daemonThreadFactory("retry-hedge"));
+
+    // set while a retry or hedge runs on this thread, until RestTransport took
+    // it for the RequestEvent of its first request
+    private static final ThreadLocal<boolean[]> RESEND = ThreadLocal
+            .withInitial(() -> new boolean[1]);
+
+    /**
+     * Whether a call may be sent twice.
+     */
+    public enum Idempotency {
+        /** GET, may also be hedged */
+        READ,
+        /** write with the same effect when applied twice */
+        IDEMPOTENT,
+        /** write retried only if it could not be sent */
+        NON_IDEMPOTENT
+    }
+
+    /**
+     * One attempt of a call.
+     */
+    public interface Attempt<T> {
+        T run() throws IOException, JSONException;
+    }
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private volatile double hedgePercentile = DEFAULT_HEDGE_PERCENTILE;
+
+    // retry budget, guarded by this
+    private double budgetRatio = DEFAULT_BUDGET_RATIO;
+    private int minRetriesPerSecond = DEFAULT_MIN_RETRIES_PER_SECOND;
+    private double balance;
+    private long refillNanos;
+
+    private final LatencyHistogram readLatency = new LatencyHistogram();
+    private volatile long hedgeDelayNanos;
+
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong hedgeCount = new AtomicLong();
+    private final AtomicLong budgetExhaustedCount = new AtomicLong();
+
+    // ------------
+    // constructors
+    // ------------
+
+    /**
+     * Default constructor with default attempts and delays
+     */
+    public RetryPolicy() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    /**
+     * Base constructor
+     *
+     * @param maxAttempts
+     *            attempts of a call including the first one
+     * @param baseDelayMillis
+     *            backoff before the first retry is up to this, doubling for
+     *            each further retry
+     * @param maxDelayMillis
+     *            backoff is never more than this
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        if (maxAttempts < 1)
+            throw new IllegalArgumentException("maxAttempts must be positive: "
+                    + maxAttempts);
+        if (baseDelayMillis < 0 || maxDelayMillis < baseDelayMillis)
+            throw new IllegalArgumentException("invalid delays: " + baseDelayMillis
+                    + ".." + maxDelayMillis);
+
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.balance = BUDGET_SECONDS * minRetriesPerSecond;
+        this.refillNanos = System.nanoTime();
+    }
+
+    /**
+     * @param budgetRatio
+     *            retries earned per call, e.g. 0.1 allows 10% more requests
+     * @param minRetriesPerSecond
+     *            retries allowed per second regardless of the call rate
+     */
+    public synchronized void setBudget(double budgetRatio, int minRetriesPerSecond) {
+        if (budgetRatio < 0 || minRetriesPerSecond < 0)
+            throw new IllegalArgumentException("budget must not be negative: "
+                    + budgetRatio + ", " + minRetriesPerSecond);
+
+        this.budgetRatio = budgetRatio;
+        this.minRetriesPerSecond = minRetriesPerSecond;
+        this.balance = Math.min(balance, maxBalance());
+    }
+
+    /**
+     * @param hedgePercentile
+     *            read latency percentile after which a hedged request is sent,
+     *            0 turns hedging off
+     */
+    public void setHedgePercentile(double hedgePercentile) {
+        if (hedgePercentile < 0 || hedgePercentile >= 100)
+            throw new IllegalArgumentException("hedgePercentile must be in [0, 100): "
+                    + hedgePercentile);
+
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @return retries made so far
+     */
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    /**
+     * @return hedged requests sent so far
+     */
+    public long getHedgeCount() {
+        return hedgeCount.get();
+    }
+
+    /**
+     * @return retries and hedges skipped because the budget was used up
+     */
+    public long getBudgetExhaustedCount() {
+        return budgetExhaustedCount.get();
+    }
+
+    /**
+     * @return current delay before a read is hedged, 0 if reads are not
+     *         hedged (yet)
+     */
+    public long getHedgeDelayNanos() {
+        return hedgePercentile == 0 ? 0 : hedgeDelayNanos;
+    }
+
+    // -----
+    // calls
+    // -----
+
+    /**
+     * Run a call, retrying transient failures its idempotency allows.
+     *
+     * @param idempotency
+     *            whether the call may be sent twice
+     * @param attempt
+     *            one attempt of the call
+     *
+     * @return result of the first successful attempt
+     *
+     * @throws IOException
+     * @throws JSONException
+     * @throws RuntimeException
+     *             the error of the last attempt
+     */
+    public <T> T call(Idempotency idempotency, Attempt<T> attempt) throws IOException,
+            JSONException, RuntimeException {
+        deposit();
+
+        for (int attempts = 1;; attempts++) {
+            RESEND.get()[0] = attempts > 1;
+            try {
+                return idempotency == Idempotency.READ ? read(attempt) : attempt.run();
+            }
+            catch (IOException | RuntimeException e) {
+                if (attempts >= maxAttempts || !isRetryable(e, idempotency))
+                    throw e;
+                if (!withdraw())
+                    throw e;
+
+                retryCount.incrementAndGet();
+                sleep(backoffMillis(attempts), e);
+            }
+            finally {
+                RESEND.get()[0] = false;
+            }
+        }
+    }
+
+    /**
+     * @return true for the first request of a retry or hedge running on the
+     *         calling thread, false for all others
+     */
+    static boolean takeResend() {
+        boolean[] resend = RESEND.get();
+        boolean result = resend[0];
+
+        resend[0] = false;
+        return result;
+    }
+
+    // --------------
+    // helper methods
+    // --------------
+
+    /**
+     * @return true if the error is transient and the call may be sent again
+     */
+    static boolean isRetryable(Throwable error, Idempotency idempotency) {
+        // the caller gave up, a retry would fail right away
+        if (RequestScope.isCurrentAborted())
+            return false;
+        // nothing was sent, safe for any call
+        if (error instanceof ConnectException || error instanceof ConnectTimeoutException)
+            return true;
+        if (idempotency == Idempotency.NON_IDEMPOTENT)
+            return false;
+
+        if (error instanceof RestException) {
+            int status = ((RestException) error).getStatusCode();
+            return status >= 500 || status == 408 || status == 429;
+        }
+        if (error instanceof InterruptedIOException)
+            // a socket timeout, unless the thread was interrupted
+            return !Thread.currentThread().isInterrupted();
+        return error instanceof IOException;
+    }
+
+    // full jitter: uniform in [0, min(max, base * 2^(attempts - 1))]
+    private long backoffMillis(int attempts) {
+        long ceiling = baseDelayMillis << Math.min(attempts - 1, 30);
+
+        if (ceiling <= 0 || ceiling > maxDelayMillis)
+            ceiling = maxDelayMillis;
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static void sleep(long millis, Exception cause) throws InterruptedIOException {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        }
+        catch (InterruptedException e) {
+            InterruptedIOException interrupted = new InterruptedIOException(
+                    "interrupted while waiting to retry");
+
+            Thread.currentThread().interrupt();
+            interrupted.addSuppressed(cause);
+            throw interrupted;
+        }
+    }
+
+    private synchronized void deposit() {
+        refill();
+        balance = Math.min(maxBalance(), balance + budgetRatio);
+    }
+
+    private synchronized boolean withdraw() {
+        refill();
+        if (balance < 1) {
+            budgetExhaustedCount.incrementAndGet();
+            return false;
+        }
+
+        balance -= 1;
+        return true;
+    }
+
+    // callers hold the lock
+    private void refill() {
+        long now = System.nanoTime();
+
+        balance = Math.min(maxBalance(), balance + (now - refillNanos) / 1e9
+                * minRetriesPerSecond);
+        refillNanos = now;
+    }
+
+    private double maxBalance() {
+        return Math.max(1, BUDGET_SECONDS * minRetriesPerSecond);
+    }
+
+    // a read on the calling thread, hedged once the hedge delay is known
+    private <T> T read(Attempt<T> attempt) throws IOException, JSONException {
+        long delay = getHedgeDelayNanos();
+
+        if (delay == 0)
+            return timed(attempt);
+
+        RequestScope caller = RequestScope.current();
+        RequestScope primary = new RequestScope(caller);
+        Hedge<T> hedge = new Hedge<T>(attempt, caller, primary);
+        Future<?> trigger = HEDGE_TIMER.schedule(hedge::start, delay,
+                TimeUnit.NANOSECONDS);
+        RequestScope previous = primary.enter();
+
+        try {
+            return timed(attempt);
+        }
+        catch (IOException | JSONException | RuntimeException e) {
+            // aborted because the hedge won, or the hedge may still succeed
+            if (!hedge.close())
+                throw e;
+            try {
+                return hedge.task.get();
+            }
+            catch (ExecutionException other) {
+                throw e;
+            }
+            catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+                e.addSuppressed(interrupted);
+                throw e;
+            }
+        }
+        finally {
+            RequestScope.exit(previous);
+            trigger.cancel(false);
+            if (hedge.close())
+                hedge.abort();
+        }
+    }
+
+    /**
+     * Second request of a read, started on the hedge pool once the delay
+     * passed. Its requests are nested in the scope of the caller, so
+     * aborting the caller aborts them too.
+     */
+    private final class Hedge<T> {
+        private final FutureTask<T> task;
+        private final RequestScope scope;
+        // guarded by this
+        private boolean closed;
+        private boolean started;
+
+        Hedge(Attempt<T> attempt, RequestScope caller, RequestScope primary) {
+            this.scope = new RequestScope(caller);
+            this.task = new FutureTask<T>(() -> {
+                RequestScope previous = scope.enter();
+
+                RESEND.get()[0] = true;
+                try {
+                    T result = timed(attempt);
+
+                    // the primary lost, free its connection and its caller
+                    primary.abort();
+                    return result;
+                }
+                finally {
+                    RESEND.get()[0] = false;
+                    RequestScope.exit(previous);
+                }
+            });
+        }
+
+        // on the timer thread
+        void start() {
+            synchronized (this) {
+                if (closed)
+                    return;
+            }
+            if (!withdraw())
+                return;
+
+            synchronized (this) {
+                if (closed)
+                    return;
+                try {
+                    HEDGE_POOL.execute(task);
+                }
+                catch (RejectedExecutionException e) {
+                    // all hedge threads busy, the primary goes on alone
+                    return;
+                }
+                started = true;
+            }
+            hedgeCount.incrementAndGet();
+        }
+
+        /**
+         * Keep the hedge from starting any more.
+         *
+         * @return true if it was started before
+         */
+        synchronized boolean close() {
+            closed = true;
+            return started;
+        }
+
+        void abort() {
+            scope.abort();
+            task.cancel(false);
+        }
+    }
+
+    // successful read latencies set the hedge delay
+    private <T> T timed(Attempt<T> attempt) throws IOException, JSONException {
+        long start = System.nanoTime();
+        T result = attempt.run();
+        long count;
+
+        readLatency.record(System.nanoTime() - start);
+        count = readLatency.getCount();
+
+        if (count >= HEDGE_WINDOW)
+            readLatency.reset();
+        else if (count >= MIN_HEDGE_SAMPLES && (count & HEDGE_UPDATE_MASK) == 0)
+            hedgeDelayNanos = readLatency.getValueAtPercentile(hedgePercentile);
+
+        return result;
+    }
+}
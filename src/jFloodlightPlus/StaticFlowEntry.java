@@ -0,0 +1,626 @@
+package jFloodlightPlus;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.json.JSONException;
+
+/**
+ * One static flow entry, either to be pushed or as listed by
+ * /wm/staticflowentrypusher/list/{switchId}/json. <br>
+ * <br>
+ * Besides the key/value pairs given to addFlow, every entry keeps a canonical
+ * form of them: numbers in decimal, MACs and DPIDs in lower case, IPs with
+ * prefix length, defaults filled in and keys that do not change the flow
+ * (name, wildcards, cookie) dropped. Active defaults to true, an inactive
+ * entry differs from the active one listed. The OFFlowMod listed by the
+ * controller is decoded into the same form, so an entry to be pushed can be
+ * compared with the one already on the switch.
+ *
+ * @author KmnTree
+ *
+ */
+public class StaticFlowEntry {
+    // keys of the match fields, wildcarded when missing
+    private static final String[] MATCH_KEYS = { "ingress-port", "src-mac", "dst-mac",
+            "vlan-id", "vlan-priority", "ether-type", "tos-bits", "protocol", "src-ip",
+            "dst-ip", "src-port", "dst-port" };
+
+    // OF 1.0 wildcard bits
+    private static final int OFPFW_IN_PORT = 1 << 0;
+    private static final int OFPFW_DL_VLAN = 1 << 1;
+    private static final int OFPFW_DL_SRC = 1 << 2;
+    private static final int OFPFW_DL_DST = 1 << 3;
+    private static final int OFPFW_DL_TYPE = 1 << 4;
+    private static final int OFPFW_NW_PROTO = 1 << 5;
+    private static final int OFPFW_TP_SRC = 1 << 6;
+    private static final int OFPFW_TP_DST = 1 << 7;
+    private static final int OFPFW_NW_SRC_SHIFT = 8;
+    private static final int OFPFW_NW_DST_SHIFT = 14;
+    private static final int OFPFW_DL_VLAN_PCP = 1 << 20;
+    private static final int OFPFW_NW_TOS = 1 << 21;
+
+    // OF 1.0 reserved ports
+    private static final int OFPP_IN_PORT = 0xfff8;
+    private static final int OFPP_NORMAL = 0xfffa;
+    private static final int OFPP_FLOOD = 0xfffb;
+    private static final int OFPP_ALL = 0xfffc;
+    private static final int OFPP_CONTROLLER = 0xfffd;
+    private static final int OFPP_LOCAL = 0xfffe;
+
+    private final String name;
+    private final long dpid;
+    private final Map<String, String> parameters;
+    private final Map<String, String> canonical;
+    private final String matchKey;
+    private final long cookie;
+
+    /**
+     * @param name
+     *            Name of the flow entry, the primary key over all switches
+     * @param parameters
+     *            key/value pairs as given to addFlow, "switch" is required
+     *
+     * @throws IllegalArgumentException
+     *             if the switch is missing or a known value cannot be parsed
+     */
+    public StaticFlowEntry(String name, Map<String, String> parameters) {
+        this(name, new TreeMap<String, String>(parameters), canonicalize(parameters),
+                parameters.containsKey("cookie") ? AddressUtils.parseHexOrDecimal(
+                        parameters.get("cookie").trim()) : 0);
+    }
+
+    private StaticFlowEntry(String name, Map<String, String> parameters,
+            Map<String, String> canonical, long cookie) {
+        if (name == null || name.isEmpty())
+            throw new IllegalArgumentException("Flow entry name is missing");
+
+        parameters.remove("name");
+
+        this.name = name;
+        this.dpid = AddressUtils.parseDpid(canonical.get("switch"));
+        this.parameters = Collections.unmodifiableMap(parameters);
+        this.canonical = Collections.unmodifiableMap(canonical);
+        this.matchKey = matchKey(canonical);
+        this.cookie = cookie;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getDpid() {
+        return dpid;
+    }
+
+    /**
+     * @return DPID in lower case, XX:XX:XX:XX:XX:XX:XX:XX
+     */
+    public String getSwitchId() {
+        return canonical.get("switch");
+    }
+
+    /**
+     * Not part of the flow, see isSameFlow(). The controller may list a cookie
+     * of its own instead of the one given to addFlow.
+     *
+     * @return cookie as given or as listed by the controller, 0 if none
+     */
+    public long getCookie() {
+        return cookie;
+    }
+
+    /**
+     * @return key/value pairs as given, without the name
+     */
+    public Map<String, String> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * @return key/value pairs in canonical form
+     */
+    public Map<String, String> getCanonicalParameters() {
+        return canonical;
+    }
+
+    /**
+     * Switch, priority and match fields. Two entries with the same match key are
+     * the same flow on the switch, pushing one overwrites the other.
+     *
+     * @return match key of this entry
+     */
+    public String getMatchKey() {
+        return matchKey;
+    }
+
+    /**
+     * @return a new modifiable copy of the key/value pairs for addFlow
+     */
+    public Map<String, String> toParameters() {
+        return new TreeMap<String, String>(parameters);
+    }
+
+    /**
+     * @param other
+     *            entry to compare with
+     *
+     * @return true if both entries install the same flow, names are ignored
+     */
+    public boolean isSameFlow(StaticFlowEntry other) {
+        return canonical.equals(other.canonical);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof StaticFlowEntry))
+            return false;
+
+        StaticFlowEntry other = (StaticFlowEntry) obj;
+        return name.equals(other.name) && canonical.equals(other.canonical);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * name.hashCode() + canonical.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "StaticFlowEntry [name=" + name + ", " + canonical + "]";
+    }
+
+    // --------------
+    // canonical form
+    // --------------
+
+    static Map<String, String> canonicalize(Map<String, String> parameters) {
+        Map<String, String> result = new TreeMap<String, String>();
+
+        for (Map.Entry<String, String> entry : parameters.entrySet()) {
+            String key = entry.getKey();
+            String value = entry.getValue().trim();
+
+            switch (key) {
+            case "name":
+            case "wildcards":
+            case "cookie":
+                break;
+            case "switch":
+                result.put(key, AddressUtils.dpidToString(AddressUtils.parseDpid(value)));
+                break;
+            case "src-mac":
+            case "dst-mac":
+                result.put(key, AddressUtils.macToString(AddressUtils.parseMac(value)));
+                break;
+            case "src-ip":
+            case "dst-ip":
+                putPrefix(result, key, AddressUtils.parseIpv4(value), prefixLength(value));
+                break;
+            case "vlan-priority":
+            case "tos-bits":
+            case "protocol":
+                result.put(key, String.valueOf(AddressUtils.parseHexOrDecimal(value) & 0xff));
+                break;
+            case "ingress-port":
+            case "vlan-id":
+            case "ether-type":
+            case "src-port":
+            case "dst-port":
+            case "priority":
+            case "idle-timeout":
+            case "hard-timeout":
+                putShort(result, key, AddressUtils.parseHexOrDecimal(value));
+                break;
+            case "actions":
+                result.put(key, canonicalActions(value));
+                break;
+            case "active":
+                // parsed like the controller does, anything else is false
+                result.put(key, String.valueOf(Boolean.parseBoolean(value)));
+                break;
+            default:
+                // not understood, kept as given so it is never taken as unchanged
+                result.put(key, value);
+                break;
+            }
+        }
+
+        if (!result.containsKey("switch"))
+            throw new IllegalArgumentException("Flow entry switch is missing");
+        if (!result.containsKey("priority"))
+            result.put("priority", String.valueOf(FloodlightClient.DEFAULT_PRIORITY));
+        if (!result.containsKey("actions"))
+            result.put("actions", "");
+        if (!result.containsKey("active"))
+            result.put("active", "true");
+
+        return result;
+    }
+
+    private static String matchKey(Map<String, String> canonical) {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(canonical.get("switch")).append('|').append(canonical.get("priority"));
+        for (String key : MATCH_KEYS) {
+            String value = canonical.get(key);
+
+            if (value != null)
+                sb.append('|').append(key).append('=').append(value);
+        }
+
+        return sb.toString();
+    }
+
+    // timeouts of 0 are the default and left out
+    private static void putShort(Map<String, String> result, String key, long value) {
+        int masked = (int) value & 0xffff;
+
+        if (masked != 0 || !key.endsWith("-timeout"))
+            result.put(key, String.valueOf(masked));
+    }
+
+    // a prefix of 0 is a wildcard and left out
+    private static void putPrefix(Map<String, String> result, String key, int ip,
+            int prefixLength) {
+        if (prefixLength <= 0)
+            return;
+
+        int mask = prefixLength >= 32 ? -1 : ~(-1 >>> prefixLength);
+        result.put(key, AddressUtils.ipv4ToString(ip & mask) + "/" + prefixLength);
+    }
+
+    private static int prefixLength(String ip) {
+        int slash = ip.indexOf('/');
+
+        return slash < 0 ? 32 : Integer.parseInt(ip.substring(slash + 1).trim());
+    }
+
+    // output=1,set-vlan-id=5 -> same actions with canonical values
+    private static String canonicalActions(String actions) {
+        StringBuilder sb = new StringBuilder();
+
+        for (String action : actions.split(",")) {
+            int eq = action.indexOf('=');
+            String key = (eq < 0 ? action : action.substring(0, eq)).trim().toLowerCase();
+            String value = eq < 0 ? "" : action.substring(eq + 1).trim();
+
+            if (key.isEmpty())
+                continue;
+            if (sb.length() > 0)
+                sb.append(',');
+            sb.append(key);
+
+            switch (key) {
+            case "strip-vlan":
+                break;
+            case "output":
+                sb.append('=').append(portName(value));
+                break;
+            case "enqueue":
+                int colon = value.indexOf(':');
+                if (colon < 0)
+                    throw new IllegalArgumentException("Invalid enqueue action: " + value);
+                sb.append('=').append(portName(value.substring(0, colon))).append(':')
+                        .append(AddressUtils.parseHexOrDecimal(value.substring(colon + 1)
+                                .trim()));
+                break;
+            case "set-src-mac":
+            case "set-dst-mac":
+                sb.append('=').append(AddressUtils.macToString(AddressUtils.parseMac(value)));
+                break;
+            case "set-src-ip":
+            case "set-dst-ip":
+                sb.append('=').append(AddressUtils.ipv4ToString(AddressUtils.parseIpv4(value)));
+                break;
+            case "set-vlan-id":
+            case "set-vlan-priority":
+            case "set-tos-bits":
+            case "set-src-port":
+            case "set-dst-port":
+                sb.append('=').append(AddressUtils.parseHexOrDecimal(value));
+                break;
+            default:
+                sb.append('=').append(value);
+                break;
+            }
+        }
+
+        return sb.toString();
+    }
+
+    // reserved ports by name, all others in decimal
+    private static String portName(String port) {
+        port = port.trim().toLowerCase();
+
+        switch (port) {
+        case "ingress-port":
+        case "normal":
+        case "flood":
+        case "all":
+        case "controller":
+        case "local":
+            return port;
+        default:
+            return portName((int) AddressUtils.parseHexOrDecimal(port));
+        }
+    }
+
+    private static String portName(int port) {
+        switch (port & 0xffff) {
+        case OFPP_IN_PORT:
+            return "ingress-port";
+        case OFPP_NORMAL:
+            return "normal";
+        case OFPP_FLOOD:
+            return "flood";
+        case OFPP_ALL:
+            return "all";
+        case OFPP_CONTROLLER:
+            return "controller";
+        case OFPP_LOCAL:
+            return "local";
+        default:
+            return String.valueOf(port & 0xffff);
+        }
+    }
+
+    // --------
+    // decoding
+    // --------
+
+    /**
+     * Decode one listed OFFlowMod into its canonical key/value pairs.
+     *
+     * @param in
+     *            reader positioned at the OFFlowMod object
+     * @param name
+     *            name of the flow entry
+     * @param dpid
+     *            switch the entry belongs to
+     *
+     * @return the decoded entry
+     */
+    static StaticFlowEntry read(JsonStreamReader in, String name, long dpid)
+            throws IOException, JSONException {
+        Map<String, String> result = new TreeMap<String, String>();
+        long cookie = 0;
+
+        result.put("switch", AddressUtils.dpidToString(dpid));
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String key = in.nextName();
+
+            if (in.skipNull())
+                continue;
+
+            switch (key) {
+            case "match":
+                readMatch(in, result);
+                break;
+            case "priority":
+                putShort(result, "priority", in.nextLong());
+                break;
+            case "idleTimeout":
+                putShort(result, "idle-timeout", in.nextLong());
+                break;
+            case "hardTimeout":
+                putShort(result, "hard-timeout", in.nextLong());
+                break;
+            case "actions":
+                result.put("actions", readActions(in));
+                break;
+            case "cookie":
+                cookie = in.nextLong();
+                break;
+            default:
+                in.skipValue();
+                break;
+            }
+        }
+        in.endObject();
+
+        if (!result.containsKey("priority"))
+            result.put("priority", String.valueOf(FloodlightClient.DEFAULT_PRIORITY));
+        if (!result.containsKey("actions"))
+            result.put("actions", "");
+        // only active entries are installed and listed
+        result.put("active", "true");
+
+        return new StaticFlowEntry(name, new TreeMap<String, String>(result), result,
+                cookie);
+    }
+
+    // fields are read first, the wildcards then decide which of them are set
+    private static void readMatch(JsonStreamReader in, Map<String, String> result)
+            throws IOException, JSONException {
+        Map<String, String> fields = new TreeMap<String, String>();
+        int networkSource = 0, networkDestination = 0;
+        int wildcards = 0;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String key = in.nextName();
+
+            if (in.skipNull())
+                continue;
+
+            switch (key) {
+            case "inputPort":
+                putShort(fields, "ingress-port", in.nextLong());
+                break;
+            case "dataLayerSource":
+                fields.put("src-mac", AddressUtils.macToString(in.nextColonHex()));
+                break;
+            case "dataLayerDestination":
+                fields.put("dst-mac", AddressUtils.macToString(in.nextColonHex()));
+                break;
+            case "dataLayerVirtualLan":
+                putShort(fields, "vlan-id", in.nextLong());
+                break;
+            case "dataLayerVirtualLanPriorityCodePoint":
+                fields.put("vlan-priority", String.valueOf(in.nextLong() & 0xff));
+                break;
+            case "dataLayerType":
+                putShort(fields, "ether-type", in.nextHexOrDecimal());
+                break;
+            case "networkTypeOfService":
+                fields.put("tos-bits", String.valueOf(in.nextLong() & 0xff));
+                break;
+            case "networkProtocol":
+                fields.put("protocol", String.valueOf(in.nextHexOrDecimal() & 0xff));
+                break;
+            case "networkSource":
+                networkSource = in.nextIpv4();
+                break;
+            case "networkDestination":
+                networkDestination = in.nextIpv4();
+                break;
+            case "transportSource":
+                putShort(fields, "src-port", in.nextLong());
+                break;
+            case "transportDestination":
+                putShort(fields, "dst-port", in.nextLong());
+                break;
+            case "wildcards":
+                wildcards = (int) in.nextLong();
+                break;
+            default:
+                in.skipValue();
+                break;
+            }
+        }
+        in.endObject();
+
+        copyUnlessWildcarded(fields, result, "ingress-port", wildcards, OFPFW_IN_PORT);
+        copyUnlessWildcarded(fields, result, "vlan-id", wildcards, OFPFW_DL_VLAN);
+        copyUnlessWildcarded(fields, result, "src-mac", wildcards, OFPFW_DL_SRC);
+        copyUnlessWildcarded(fields, result, "dst-mac", wildcards, OFPFW_DL_DST);
+        copyUnlessWildcarded(fields, result, "ether-type", wildcards, OFPFW_DL_TYPE);
+        copyUnlessWildcarded(fields, result, "protocol", wildcards, OFPFW_NW_PROTO);
+        copyUnlessWildcarded(fields, result, "src-port", wildcards, OFPFW_TP_SRC);
+        copyUnlessWildcarded(fields, result, "dst-port", wildcards, OFPFW_TP_DST);
+        copyUnlessWildcarded(fields, result, "vlan-priority", wildcards,
+                OFPFW_DL_VLAN_PCP);
+        copyUnlessWildcarded(fields, result, "tos-bits", wildcards, OFPFW_NW_TOS);
+        putPrefix(result, "src-ip", networkSource,
+                32 - Math.min(32, (wildcards >>> OFPFW_NW_SRC_SHIFT) & 0x3f));
+        putPrefix(result, "dst-ip", networkDestination,
+                32 - Math.min(32, (wildcards >>> OFPFW_NW_DST_SHIFT) & 0x3f));
+    }
+
+    private static void copyUnlessWildcarded(Map<String, String> fields,
+            Map<String, String> result, String key, int wildcards, int bit) {
+        String value = fields.get(key);
+
+        if ((wildcards & bit) == 0 && value != null)
+            result.put(key, value);
+    }
+
+    // [{"type":"OUTPUT","port":1,...}, ...] -> output=1,...
+    private static String readActions(JsonStreamReader in) throws IOException,
+            JSONException {
+        StringBuilder sb = new StringBuilder();
+
+        in.beginArray();
+        while (in.hasNext()) {
+            String type = null, address = null;
+            long port = 0, queueId = 0, value = 0;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                String key = in.nextName();
+
+                if (in.skipNull())
+                    continue;
+
+                switch (key) {
+                case "type":
+                    type = in.nextString();
+                    break;
+                case "port":
+                    port = in.nextLong();
+                    break;
+                case "queueId":
+                    queueId = in.nextLong();
+                    break;
+                case "dataLayerAddress":
+                    address = in.nextString();
+                    break;
+                case "virtualLanIdentifier":
+                case "virtualLanPriorityCodePoint":
+                case "networkAddress":
+                case "networkTypeOfService":
+                case "transportPort":
+                    value = in.nextLong();
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+                }
+            }
+            in.endObject();
+
+            if (sb.length() > 0)
+                sb.append(',');
+            sb.append(actionString(type, port, queueId, value, address));
+        }
+        in.endArray();
+
+        return sb.toString();
+    }
+
+    private static String actionString(String type, long port, long queueId,
+            long value, String address) {
+        switch (type == null ? "" : type) {
+        case "OUTPUT":
+            return "output=" + portName((int) port);
+        case "OPAQUE_ENQUEUE":
+            return "enqueue=" + portName((int) port) + ":" + queueId;
+        case "STRIP_VLAN":
+            return "strip-vlan";
+        case "SET_VLAN_ID":
+            return "set-vlan-id=" + (value & 0xffff);
+        case "SET_VLAN_PCP":
+            return "set-vlan-priority=" + (value & 0xff);
+        case "SET_NW_TOS":
+            return "set-tos-bits=" + (value & 0xff);
+        case "SET_TP_SRC":
+            return "set-src-port=" + (value & 0xffff);
+        case "SET_TP_DST":
+            return "set-dst-port=" + (value & 0xffff);
+        case "SET_NW_SRC":
+            return "set-src-ip=" + AddressUtils.ipv4ToString((int) value);
+        case "SET_NW_DST":
+            return "set-dst-ip=" + AddressUtils.ipv4ToString((int) value);
+        case "SET_DL_SRC":
+            return "set-src-mac=" + macOf(address);
+        case "SET_DL_DST":
+            return "set-dst-mac=" + macOf(address);
+        default:
+            // not understood, never equal to an action given to addFlow
+            return "unknown=" + type;
+        }
+    }
+
+    // byte arrays are listed base64 encoded
+    private static String macOf(String address) {
+        long mac = 0;
+
+        if (address == null)
+            return "";
+        if (address.indexOf(':') >= 0)
+            return AddressUtils.macToString(AddressUtils.parseMac(address));
+
+        for (byte b : Base64.getDecoder().decode(address)) {
+            mac = (mac << 8) | (b & 0xff);
+        }
+        return AddressUtils.macToString(mac);
+    }
+}
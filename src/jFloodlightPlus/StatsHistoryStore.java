@@ -0,0 +1,622 @@
+package jFloodlightPlus;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Append-only time series of flow and port counters, kept in memory-mapped
+ * segment files so it survives restarts without any JSON. <br>
+ * <br>
+ * Every row holds kind, DPID, key (port number or flowKey()), time and
+ * COUNTERS counters as fixed-width primitives. A segment file stores a fixed
+ * number of rows column by column, a header holds the committed row count and
+ * the time range of the segment. Rows are written column by column and then
+ * committed by raising the row count, so a crash loses at most the row being
+ * written. New segment files get their name only once their header is
+ * written. Full segments are never written again; scans skip segments
+ * outside the requested time range and read only the columns they compare
+ * until a row matches. <br>
+ * <br>
+ * Rows are written by appendPorts() and appendFlows(), e.g. with the lists of
+ * getAggregatePortStats() and getAggregateFlowStats(), or by adding the store
+ * as listener of a StatsPoller, which writes only the entries that moved.
+ * Appends are serialized, scans run concurrently with them and see every row
+ * committed before they reached its segment.
+ *
+ * @author KmnTree
+ *
+ */
+public class StatsHistoryStore implements StatsListener, Closeable {
+    /**
+     * What a row counts, and the meaning of its counter columns.
+     */
+    public enum Kind {
+        /**
+         * receive packets, transmit packets, receive bytes, transmit bytes
+         */
+        PORT,
+        /**
+         * packet count, byte count, duration seconds, duration nanoseconds
+         */
+        FLOW
+    }
+
+    public static final int COUNTERS = 4;
+    public static final int DEFAULT_SEGMENT_ROWS = 1 << 16;
+
+    private static final String SUFFIX = ".seg";
+    // appended to a segment being created, dropped once its header is written
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int MAGIC = 0x4a465348;
+    private static final int VERSION = 1;
+
+    // magic, version, capacity, rows, min time, max time
+    private static final int HEADER_BYTES = 64;
+    private static final int ROWS_OFFSET = 12;
+    private static final int MIN_TIME_OFFSET = 16;
+    private static final int MAX_TIME_OFFSET = 24;
+
+    // time, DPID, key and counters as long, kind as int
+    private static final int ROW_BYTES = (3 + COUNTERS) * 8 + 4;
+
+    // a mapping is at most 2 GB
+    private static final int MAX_SEGMENT_ROWS = (Integer.MAX_VALUE - HEADER_BYTES)
+            / ROW_BYTES;
+
+    private final File directory;
+    private final int segmentRows;
+    private final List<Segment> segments;
+    private Segment active;
+    private long nextSequence;
+    private boolean closed;
+
+    // ------------
+    // constructors
+    // ------------
+
+    /**
+     * Default constructor with DEFAULT_SEGMENT_ROWS rows per new segment
+     *
+     * @param directory
+     *            directory of the segment files, created if missing
+     *
+     * @throws IOException
+     *             if the directory or a segment in it cannot be opened
+     */
+    public StatsHistoryStore(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_ROWS);
+    }
+
+    /**
+     * Base constructor, opens all segments in the directory.
+     *
+     * @param directory
+     *            directory of the segment files, created if missing
+     * @param segmentRows
+     *            rows per new segment, existing segments keep their size
+     *
+     * @throws IOException
+     *             if the directory or a segment in it cannot be opened
+     */
+    public StatsHistoryStore(File directory, int segmentRows) throws IOException {
+        File[] files;
+
+        if (segmentRows <= 0 || segmentRows > MAX_SEGMENT_ROWS)
+            throw new IllegalArgumentException("segmentRows must be in 1.."
+                    + MAX_SEGMENT_ROWS + ": " + segmentRows);
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create directory " + directory);
+
+        this.directory = directory;
+        this.segmentRows = segmentRows;
+        this.segments = new CopyOnWriteArrayList<Segment>();
+
+        // left over by a crash while creating a segment, it holds no rows
+        for (File file : directory.listFiles((dir, name) -> name.endsWith(SUFFIX
+                + TEMP_SUFFIX))) {
+            Files.delete(file.toPath());
+        }
+
+        files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        Arrays.sort(files);
+        for (File file : files) {
+            Segment segment = Segment.open(file);
+
+            segments.add(segment);
+            nextSequence = Math.max(nextSequence, segment.sequence + 1);
+        }
+
+        if (!segments.isEmpty() && !segments.get(segments.size() - 1).isFull())
+            active = segments.get(segments.size() - 1);
+    }
+
+    // ------
+    // writes
+    // ------
+
+    /**
+     * Append one row per port.
+     *
+     * @param stats
+     *            port stats, e.g. from getAggregatePortStats()
+     * @param timeMillis
+     *            time of the stats in msec since epoch
+     *
+     * @throws IOException
+     *             if a new segment cannot be created
+     */
+    public synchronized void appendPorts(List<PortStat> stats, long timeMillis)
+            throws IOException {
+        for (PortStat stat : stats) {
+            append(Kind.PORT, stat.getDpid(), stat.getPortNumber(), timeMillis,
+                    stat.getReceivePackets(), stat.getTransmitPackets(),
+                    stat.getReceiveBytes(), stat.getTransmitBytes());
+        }
+    }
+
+    /**
+     * Append one row per flow entry, keyed by flowKey().
+     *
+     * @param stats
+     *            flow stats, e.g. from getAggregateFlowStats()
+     * @param timeMillis
+     *            time of the stats in msec since epoch
+     *
+     * @throws IOException
+     *             if a new segment cannot be created
+     */
+    public synchronized void appendFlows(List<FlowStat> stats, long timeMillis)
+            throws IOException {
+        for (FlowStat stat : stats) {
+            append(Kind.FLOW, stat.getDpid(), flowKey(stat), timeMillis,
+                    stat.getPacketCount(), stat.getByteCount(),
+                    stat.getDurationSeconds(), stat.getDurationNanoseconds());
+        }
+    }
+
+    /**
+     * Append the flows that moved since the last poll of a StatsPoller. A
+     * failed append throws IllegalStateException, which the poller reports
+     * to onPollFailed().
+     */
+    @Override
+    public void onFlowDeltas(List<FlowDelta> deltas) {
+        List<FlowStat> stats = new ArrayList<FlowStat>(deltas.size());
+
+        for (FlowDelta delta : deltas) {
+            stats.add(delta.getStat());
+        }
+        try {
+            appendFlows(stats, System.currentTimeMillis());
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Append the ports that moved since the last poll of a StatsPoller. A
+     * failed append throws IllegalStateException, which the poller reports
+     * to onPollFailed().
+     */
+    @Override
+    public void onPortDeltas(List<PortDelta> deltas) {
+        List<PortStat> stats = new ArrayList<PortStat>(deltas.size());
+
+        for (PortDelta delta : deltas) {
+            stats.add(delta.getStat());
+        }
+        try {
+            appendPorts(stats, System.currentTimeMillis());
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Force all committed rows to disk. Without, they survive a crash of the
+     * process but not of the machine.
+     */
+    public synchronized void flush() {
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+    }
+
+    /**
+     * Delete all segments holding only rows older than a time, to bound the
+     * disk space used. The segment being written is kept.
+     *
+     * @param timeMillis
+     *            msec since epoch
+     *
+     * @return number of segments deleted
+     */
+    public synchronized int deleteBefore(long timeMillis) {
+        int count = 0;
+
+        for (Segment segment : segments) {
+            if (segment == active || segment.maxTime() >= timeMillis)
+                continue;
+
+            // unmapped once unreachable, scans still holding it read on
+            segments.remove(segment);
+            segment.file.delete();
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Flush and stop writing, later appends fail.
+     */
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            flush();
+            closed = true;
+        }
+    }
+
+    // -----
+    // reads
+    // -----
+
+    /**
+     * All rows of one port or flow entry in a time range.
+     *
+     * @param kind
+     *            PORT or FLOW
+     * @param dpid
+     *            switch DPID
+     * @param key
+     *            port number, or flowKey() of the flow entry
+     * @param fromMillis
+     *            first time included, msec since epoch
+     * @param toMillis
+     *            first time excluded, msec since epoch
+     *
+     * @return samples in the order they were appended
+     */
+    public StatsSeries scan(Kind kind, long dpid, long key, long fromMillis,
+            long toMillis) {
+        Series series = new Series();
+
+        for (Segment segment : segments) {
+            segment.scan(kind.ordinal(), dpid, key, fromMillis, toMillis, series);
+        }
+
+        return series.toStatsSeries(dpid, key);
+    }
+
+    /**
+     * Rows of one port or flow entry in a time range, only the last row of
+     * every bucket. Counters are cumulative, so the last row keeps everything
+     * counted in the bucket and rates between buckets stay exact.
+     *
+     * @param kind
+     *            PORT or FLOW
+     * @param dpid
+     *            switch DPID
+     * @param key
+     *            port number, or flowKey() of the flow entry
+     * @param fromMillis
+     *            start of the first bucket, msec since epoch
+     * @param toMillis
+     *            first time excluded, msec since epoch
+     * @param bucketMillis
+     *            length of a bucket
+     *
+     * @return one sample per non-empty bucket, with the time it was taken
+     */
+    public StatsSeries downsample(Kind kind, long dpid, long key, long fromMillis,
+            long toMillis, long bucketMillis) {
+        StatsSeries all = scan(kind, dpid, key, fromMillis, toMillis);
+        Series series = new Series();
+        long[] row = new long[1 + COUNTERS];
+
+        if (bucketMillis <= 0)
+            throw new IllegalArgumentException("bucketMillis must be positive: "
+                    + bucketMillis);
+
+        for (int i = 0; i < all.size(); i++) {
+            long bucket = (all.getTimeMillis(i) - fromMillis) / bucketMillis;
+            boolean last = i + 1 == all.size()
+                    || (all.getTimeMillis(i + 1) - fromMillis) / bucketMillis != bucket;
+
+            if (!last)
+                continue;
+
+            row[0] = all.getTimeMillis(i);
+            for (int c = 0; c < COUNTERS; c++) {
+                row[1 + c] = all.getCounter(i, c);
+            }
+            series.add(row);
+        }
+
+        return series.toStatsSeries(dpid, key);
+    }
+
+    /**
+     * @return number of committed rows in all segments
+     */
+    public long getRowCount() {
+        long count = 0;
+
+        for (Segment segment : segments) {
+            count += segment.rows;
+        }
+
+        return count;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * 64 bit key of a flow entry, from its match, priority and table. Stable
+     * across restarts of the client and the controller.
+     *
+     * @return key of the rows of the flow entry
+     */
+    public static long flowKey(FlowStat stat) {
+        long h = stat.getDataLayerSource();
+
+        h = mix(h, stat.getDataLayerDestination());
+        h = mix(h, stat.getPriority());
+        h = mix(h, stat.getTableId());
+        h = mix(h, stat.getInputPort());
+        h = mix(h, stat.getDataLayerType());
+        h = mix(h, stat.getDataLayerVirtualLan());
+        h = mix(h, stat.getDataLayerVirtualLanPriorityCodePoint());
+        h = mix(h, (long) stat.getNetworkSource() << 8 | stat.getNetworkSourceMaskLen());
+        h = mix(h, (long) stat.getNetworkDestination() << 8
+                | stat.getNetworkDestinationMaskLen());
+        h = mix(h, stat.getNetworkProtocol());
+        h = mix(h, stat.getNetworkTypeOfService());
+        h = mix(h, stat.getTransportSource());
+        h = mix(h, stat.getTransportDestination());
+        h = mix(h, stat.getWildcards());
+
+        return h;
+    }
+
+    // --------------
+    // helper methods
+    // --------------
+
+    private void append(Kind kind, long dpid, long key, long timeMillis, long c0,
+            long c1, long c2, long c3) throws IOException {
+        if (closed)
+            throw new IllegalStateException("closed");
+
+        if (active == null || active.isFull()) {
+            active = Segment.create(new File(directory, String.format("%016d%s",
+                    nextSequence, SUFFIX)), nextSequence, segmentRows);
+            nextSequence++;
+            segments.add(active);
+        }
+
+        active.append(kind.ordinal(), dpid, key, timeMillis, c0, c1, c2, c3);
+    }
+
+    // murmur3 finalizer over the running hash and the next field
+    private static long mix(long h, long value) {
+        h = (h ^ value) * 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ h >>> 33;
+    }
+
+    // rows matched by a scan, growing like an ArrayList
+    private static final class Series {
+        long[] times = new long[16];
+        long[][] counters = new long[COUNTERS][16];
+        int size;
+
+        // time followed by the counters
+        void add(long[] row) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                for (int c = 0; c < COUNTERS; c++) {
+                    counters[c] = Arrays.copyOf(counters[c], size * 2);
+                }
+            }
+
+            times[size] = row[0];
+            for (int c = 0; c < COUNTERS; c++) {
+                counters[c][size] = row[1 + c];
+            }
+            size++;
+        }
+
+        StatsSeries toStatsSeries(long dpid, long key) {
+            return new StatsSeries(dpid, key, times, counters, size);
+        }
+    }
+
+    // one mapped segment file, its columns as views of the mapping
+    private static final class Segment {
+        final File file;
+        final long sequence;
+        final int capacity;
+        final MappedByteBuffer buffer;
+        final LongBuffer times;
+        final LongBuffer dpids;
+        final LongBuffer keys;
+        final LongBuffer[] counters = new LongBuffer[COUNTERS];
+        final IntBuffer kinds;
+
+        // committed rows, written by the appending thread only
+        volatile int rows;
+
+        private Segment(File file, long sequence, int capacity,
+                MappedByteBuffer buffer) {
+            int offset = HEADER_BYTES;
+
+            this.file = file;
+            this.sequence = sequence;
+            this.capacity = capacity;
+            this.buffer = buffer;
+
+            times = column(offset, capacity * 8).asLongBuffer();
+            offset += capacity * 8;
+            dpids = column(offset, capacity * 8).asLongBuffer();
+            offset += capacity * 8;
+            keys = column(offset, capacity * 8).asLongBuffer();
+            offset += capacity * 8;
+            for (int c = 0; c < COUNTERS; c++) {
+                counters[c] = column(offset, capacity * 8).asLongBuffer();
+                offset += capacity * 8;
+            }
+            kinds = column(offset, capacity * 4).asIntBuffer();
+
+            rows = buffer.getInt(ROWS_OFFSET);
+        }
+
+        // written under a temporary name, a crash never leaves a file without
+        // header behind
+        static Segment create(File file, long sequence, int capacity) throws IOException {
+            File temp = new File(file.getParentFile(), file.getName() + TEMP_SUFFIX);
+            MappedByteBuffer buffer = map(temp, HEADER_BYTES + (long) capacity
+                    * ROW_BYTES);
+
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, capacity);
+            buffer.putInt(ROWS_OFFSET, 0);
+            buffer.putLong(MIN_TIME_OFFSET, Long.MAX_VALUE);
+            buffer.putLong(MAX_TIME_OFFSET, Long.MIN_VALUE);
+            buffer.force();
+
+            // the mapping follows the file
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+
+            return new Segment(file, sequence, capacity, buffer);
+        }
+
+        static Segment open(File file) throws IOException {
+            String name = file.getName();
+            MappedByteBuffer buffer = map(file, -1);
+            int capacity;
+            long sequence;
+
+            try {
+                sequence = Long.parseLong(name.substring(0, name.length()
+                        - SUFFIX.length()));
+            }
+            catch (NumberFormatException e) {
+                throw new IOException("Not a segment file " + file);
+            }
+
+            if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC
+                    || buffer.getInt(4) != VERSION)
+                throw new IOException("Not a segment file " + file);
+
+            capacity = buffer.getInt(8);
+            if (buffer.capacity() != HEADER_BYTES + (long) capacity * ROW_BYTES
+                    || buffer.getInt(ROWS_OFFSET) > capacity)
+                throw new IOException("Corrupt segment file " + file);
+
+            return new Segment(file, sequence, capacity, buffer);
+        }
+
+        // length -1 for the length of the file
+        private static MappedByteBuffer map(File file, long length) throws IOException {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                FileChannel channel = raf.getChannel();
+
+                if (length >= 0)
+                    raf.setLength(length);
+                // the mapping stays valid after the channel is closed
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            }
+        }
+
+        private ByteBuffer column(int offset, int length) {
+            ByteBuffer column = buffer.duplicate();
+
+            column.position(offset);
+            column.limit(offset + length);
+            return column.slice();
+        }
+
+        boolean isFull() {
+            return rows >= capacity;
+        }
+
+        long maxTime() {
+            return buffer.getLong(MAX_TIME_OFFSET);
+        }
+
+        void append(int kind, long dpid, long key, long timeMillis, long c0, long c1,
+                long c2, long c3) {
+            int row = rows;
+
+            times.put(row, timeMillis);
+            dpids.put(row, dpid);
+            keys.put(row, key);
+            counters[0].put(row, c0);
+            counters[1].put(row, c1);
+            counters[2].put(row, c2);
+            counters[3].put(row, c3);
+            kinds.put(row, kind);
+
+            if (timeMillis < buffer.getLong(MIN_TIME_OFFSET))
+                buffer.putLong(MIN_TIME_OFFSET, timeMillis);
+            if (timeMillis > buffer.getLong(MAX_TIME_OFFSET))
+                buffer.putLong(MAX_TIME_OFFSET, timeMillis);
+
+            // commit
+            buffer.putInt(ROWS_OFFSET, row + 1);
+            rows = row + 1;
+        }
+
+        void scan(int kind, long dpid, long key, long fromMillis, long toMillis,
+                Series series) {
+            int count = rows;
+            long[] row = new long[1 + COUNTERS];
+
+            if (count == 0 || buffer.getLong(MIN_TIME_OFFSET) >= toMillis
+                    || buffer.getLong(MAX_TIME_OFFSET) < fromMillis)
+                return;
+
+            for (int i = 0; i < count; i++) {
+                long time;
+
+                if (keys.get(i) != key || dpids.get(i) != dpid || kinds.get(i) != kind)
+                    continue;
+
+                time = times.get(i);
+                if (time < fromMillis || time >= toMillis)
+                    continue;
+
+                row[0] = time;
+                for (int c = 0; c < COUNTERS; c++) {
+                    row[1 + c] = counters[c].get(i);
+                }
+                series.add(row);
+            }
+        }
+    }
+}
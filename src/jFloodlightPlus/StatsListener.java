@@ -0,0 +1,44 @@
+package jFloodlightPlus;
+
+import java.util.List;
+
+/**
+ * Receives what changed between two polls of a StatsPoller. <br>
+ * All callbacks run on the poller thread, one poll after the other, outside
+ * of the poller lock. Entries whose counters did not move are not reported.
+ * An exception thrown by a callback is passed to onPollFailed(), the other
+ * listeners are still called.
+ *
+ * @author KmnTree
+ *
+ */
+public interface StatsListener {
+    /**
+     * @param deltas
+     *            flows that counted traffic or appeared since the last poll
+     */
+    default void onFlowDeltas(List<FlowDelta> deltas) {
+    }
+
+    /**
+     * @param removed
+     *            last seen stats of flows that are gone since the last poll
+     */
+    default void onFlowsRemoved(List<FlowStat> removed) {
+    }
+
+    /**
+     * @param deltas
+     *            ports that counted traffic since the last poll
+     */
+    default void onPortDeltas(List<PortDelta> deltas) {
+    }
+
+    /**
+     * @param error
+     *            why a scheduled poll or a listener failed, the next poll runs
+     *            as planned
+     */
+    default void onPollFailed(Throwable error) {
+    }
+}
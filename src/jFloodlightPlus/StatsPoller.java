@@ -0,0 +1,512 @@
+package jFloodlightPlus;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.json.JSONException;
+
+/**
+ * Polls flow and port stats of all switches and reports only what changed. <br>
+ * <br>
+ * The counters of the previous poll are kept per flow match (DPID, match and
+ * priority) and per port (DPID and port number). Every poll emits the deltas
+ * and rates of the entries whose counters moved, the flows that appeared and
+ * the flows that are gone. The first poll only takes the baseline. <br>
+ * <br>
+ * 32 bit counters wrapping around are detected. Counters going backwards
+ * otherwise, a flow duration going backwards or a changed connect time of the
+ * switch are taken as a restart: the entry is flagged as reset and the delta
+ * counts from zero.
+ *
+ * @author KmnTree
+ *
+ */
+public class StatsPoller implements Closeable {
+    public static final long DEFAULT_INTERVAL_MILLIS = 5000;
+
+    private static final long COUNTER_32_RANGE = 1L << 32;
+    // returned by counterDelta() for a restarted counter
+    static final long RESET = -1;
+    private static final int PORT_COUNTERS = 8;
+
+    private final FloodlightClient client;
+    private final long intervalMillis;
+    private final List<StatsListener> listeners;
+    // held while notifying, so the changes of two polls never interleave
+    private final ReentrantLock notifying = new ReentrantLock();
+    private volatile boolean trackReconnects = true;
+    private ScheduledExecutorService scheduler;
+
+    // previous snapshot
+    private final Map<FlowKey, FlowEntry> flows;
+    private final Map<PortKey, PortEntry> ports;
+    private final Map<Long, Long> connectedSince;
+    private long flowPollNanos;
+    private long portPollNanos;
+    private int generation;
+
+    // ------------
+    // constructors
+    // ------------
+
+    /**
+     * Default constructor polling every DEFAULT_INTERVAL_MILLIS
+     *
+     * @param client
+     *            client to poll the controller with
+     */
+    public StatsPoller(FloodlightClient client) {
+        this(client, DEFAULT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Base constructor
+     *
+     * @param client
+     *            client to poll the controller with
+     * @param intervalMillis
+     *            time between the starts of two polls
+     */
+    public StatsPoller(FloodlightClient client, long intervalMillis) {
+        if (intervalMillis <= 0)
+            throw new IllegalArgumentException("intervalMillis must be positive: "
+                    + intervalMillis);
+
+        this.client = client;
+        this.intervalMillis = intervalMillis;
+        this.listeners = new CopyOnWriteArrayList<StatsListener>();
+        this.flows = new HashMap<FlowKey, FlowEntry>();
+        this.ports = new HashMap<PortKey, PortEntry>();
+        this.connectedSince = new HashMap<Long, Long>();
+    }
+
+    public void addListener(StatsListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(StatsListener listener) {
+        listeners.remove(listener);
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    /**
+     * Compare the connect time of every switch on each poll to detect
+     * reconnects, costs one more GET per poll. On by default.
+     *
+     * @param trackReconnects
+     *            false to rely on counters going backwards only
+     */
+    public void setTrackReconnects(boolean trackReconnects) {
+        this.trackReconnects = trackReconnects;
+    }
+
+    // --------
+    // schedule
+    // --------
+
+    /**
+     * Start polling every intervalMillis on a daemon thread, the first poll
+     * runs right away. Failed polls are reported to onPollFailed().
+     */
+    public synchronized void start() {
+        if (scheduler != null)
+            throw new IllegalStateException("already started");
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(SwitchFanOut
+                .daemonThreadFactory("stats-poller"));
+        scheduler.scheduleAtFixedRate(this::pollAndReport, 0, intervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop polling, the previous snapshot is kept for a later start().
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    /**
+     * Forget the previous snapshot, the next poll takes a new baseline.
+     */
+    public synchronized void reset() {
+        flows.clear();
+        ports.clear();
+        connectedSince.clear();
+        flowPollNanos = 0;
+        portPollNanos = 0;
+    }
+
+    /**
+     * Poll once on the calling thread and notify the listeners. The listeners
+     * are called outside of the poller lock, one poll after the other; an
+     * exception thrown by a listener is reported to onPollFailed() and does
+     * not keep the other listeners from being called.
+     *
+     * @throws IOException
+     * @throws JSONException
+     * @throws RuntimeException
+     *             if the stats could not be read, the changes found so far are
+     *             still reported
+     */
+    public void poll() throws IOException, JSONException, RuntimeException {
+        List<FlowStat> removed = new ArrayList<FlowStat>();
+        List<FlowDelta> flowDeltas = new ArrayList<FlowDelta>();
+        List<PortDelta> portDeltas = new ArrayList<PortDelta>();
+        Exception error = null;
+
+        synchronized (this) {
+            try {
+                Set<Long> reconnected = trackReconnects ? pollReconnects()
+                        : Collections.<Long> emptySet();
+
+                pollFlows(reconnected, removed, flowDeltas);
+                pollPorts(reconnected, portDeltas);
+            }
+            catch (IOException | JSONException | RuntimeException e) {
+                error = e;
+            }
+            // taken before the poller lock is released, keeps polls in order
+            notifying.lock();
+        }
+
+        try {
+            if (!removed.isEmpty())
+                notifyListeners(listener -> listener.onFlowsRemoved(removed));
+            if (!flowDeltas.isEmpty())
+                notifyListeners(listener -> listener.onFlowDeltas(flowDeltas));
+            if (!portDeltas.isEmpty())
+                notifyListeners(listener -> listener.onPortDeltas(portDeltas));
+        }
+        finally {
+            notifying.unlock();
+        }
+
+        if (error instanceof IOException)
+            throw (IOException) error;
+        else if (error instanceof JSONException)
+            throw (JSONException) error;
+        else if (error != null)
+            throw (RuntimeException) error;
+    }
+
+    /**
+     * @return number of flow entries in the previous snapshot
+     */
+    public synchronized int getFlowCount() {
+        return flows.size();
+    }
+
+    /**
+     * @return number of ports in the previous snapshot
+     */
+    public synchronized int getPortCount() {
+        return ports.size();
+    }
+
+    // --------------
+    // helper methods
+    // --------------
+
+    private void pollAndReport() {
+        try {
+            poll();
+        }
+        catch (Throwable e) {
+            // an exception would cancel the schedule
+            reportFailure(e);
+        }
+    }
+
+    private void notifyListeners(Consumer<StatsListener> callback) {
+        for (StatsListener listener : listeners) {
+            try {
+                callback.accept(listener);
+            }
+            catch (RuntimeException e) {
+                reportFailure(e);
+            }
+        }
+    }
+
+    private void reportFailure(Throwable error) {
+        for (StatsListener listener : listeners) {
+            try {
+                listener.onPollFailed(error);
+            }
+            catch (RuntimeException ignored) {
+            }
+        }
+    }
+
+    // DPIDs whose connect time changed since the last poll
+    private Set<Long> pollReconnects() throws IOException, JSONException {
+        Set<Long> result = new HashSet<Long>();
+        Set<Long> connected = new HashSet<Long>();
+
+        for (SwitchInfo info : client.getSwitchInfoList()) {
+            Long previous = connectedSince.put(info.getDpid(), info.getConnectedSince());
+
+            connected.add(info.getDpid());
+            if (previous != null && previous != info.getConnectedSince())
+                result.add(info.getDpid());
+        }
+        connectedSince.keySet().retainAll(connected);
+
+        return result;
+    }
+
+    // callers hold the lock, the changes are reported after releasing it
+    private void pollFlows(Set<Long> reconnected, List<FlowStat> removed,
+            List<FlowDelta> deltas) throws IOException, JSONException {
+        List<FlowStat> stats = client.getAggregateFlowStats();
+        long now = System.nanoTime();
+        long intervalNanos = now - flowPollNanos;
+        boolean baseline = flowPollNanos == 0;
+        Iterator<FlowEntry> it;
+
+        generation++;
+        for (FlowStat stat : stats) {
+            FlowKey key = new FlowKey(stat);
+            FlowEntry entry = flows.get(key);
+            long lifetimeNanos = stat.getDurationSeconds() * 1000000000L
+                    + stat.getDurationNanoseconds();
+
+            if (entry == null) {
+                flows.put(key, new FlowEntry(stat, generation));
+                if (!baseline)
+                    deltas.add(new FlowDelta(stat, stat.getPacketCount(),
+                            stat.getByteCount(), Math.min(intervalNanos, lifetimeNanos),
+                            true, false));
+                continue;
+            }
+
+            FlowStat previous = entry.stat;
+            long packets = counterDelta(previous.getPacketCount(), stat.getPacketCount());
+            long bytes = counterDelta(previous.getByteCount(), stat.getByteCount());
+            boolean reset = packets == RESET || bytes == RESET
+                    || reconnected.contains(stat.getDpid())
+                    || stat.getDurationSeconds() < previous.getDurationSeconds();
+
+            if (reset)
+                deltas.add(new FlowDelta(stat, stat.getPacketCount(),
+                        stat.getByteCount(), Math.min(intervalNanos, lifetimeNanos),
+                        false, true));
+            else if (packets != 0 || bytes != 0)
+                deltas.add(new FlowDelta(stat, packets, bytes, intervalNanos, false,
+                        false));
+
+            entry.stat = stat;
+            entry.generation = generation;
+        }
+
+        // entries not seen in this poll are gone
+        it = flows.values().iterator();
+        while (it.hasNext()) {
+            FlowEntry entry = it.next();
+
+            if (entry.generation != generation) {
+                removed.add(entry.stat);
+                it.remove();
+            }
+        }
+        flowPollNanos = now;
+    }
+
+    private void pollPorts(Set<Long> reconnected, List<PortDelta> deltas)
+            throws IOException, JSONException {
+        List<PortStat> stats = client.getAggregatePortStats();
+        long[] current = new long[PORT_COUNTERS];
+        long now = System.nanoTime();
+        long intervalNanos = now - portPollNanos;
+        boolean baseline = portPollNanos == 0;
+
+        generation++;
+        for (PortStat stat : stats) {
+            PortKey key = new PortKey(stat.getDpid(), stat.getPortNumber());
+            PortEntry entry = ports.get(key);
+            long[] delta;
+            boolean reset, changed = false;
+
+            readCounters(stat, current);
+            if (entry == null) {
+                ports.put(key, new PortEntry(current.clone(), generation));
+                continue;
+            }
+
+            delta = new long[PORT_COUNTERS];
+            reset = reconnected.contains(stat.getDpid());
+            for (int i = 0; i < PORT_COUNTERS && !reset; i++) {
+                delta[i] = counterDelta(entry.counters[i], current[i]);
+                reset = delta[i] == RESET;
+                changed |= delta[i] != 0;
+            }
+            if (reset) {
+                System.arraycopy(current, 0, delta, 0, PORT_COUNTERS);
+                changed = true;
+            }
+
+            if (changed && !baseline)
+                deltas.add(new PortDelta(stat, delta, intervalNanos, reset));
+
+            System.arraycopy(current, 0, entry.counters, 0, PORT_COUNTERS);
+            entry.generation = generation;
+        }
+        ports.values().removeIf(entry -> entry.generation != generation);
+        portPollNanos = now;
+    }
+
+    private static void readCounters(PortStat stat, long[] counters) {
+        counters[0] = stat.getReceivePackets();
+        counters[1] = stat.getTransmitPackets();
+        counters[2] = stat.getReceiveBytes();
+        counters[3] = stat.getTransmitBytes();
+        counters[4] = stat.getReceiveDropped();
+        counters[5] = stat.getTransmitDropped();
+        counters[6] = stat.getReceiveErrors();
+        counters[7] = stat.getTransmitErrors();
+    }
+
+    /**
+     * Increase of an unsigned counter between two polls.
+     *
+     * @return the increase, or RESET if the counter restarted
+     */
+    static long counterDelta(long previous, long current) {
+        long wrapped;
+
+        // 64 bit counters are unsigned and never wrap in practice
+        if (Long.compareUnsigned(current, previous) >= 0)
+            return current - previous;
+
+        // some switches have 32 bit counters, a wrap leaves a small increase
+        if ((previous >>> 32) == 0 && (current >>> 32) == 0) {
+            wrapped = current + COUNTER_32_RANGE - previous;
+            if (wrapped < COUNTER_32_RANGE / 2)
+                return wrapped;
+        }
+
+        return RESET;
+    }
+
+    // -------------
+    // snapshot keys
+    // -------------
+
+    private static final class FlowEntry {
+        FlowStat stat;
+        int generation;
+
+        FlowEntry(FlowStat stat, int generation) {
+            this.stat = stat;
+            this.generation = generation;
+        }
+    }
+
+    private static final class PortEntry {
+        final long[] counters;
+        int generation;
+
+        PortEntry(long[] counters, int generation) {
+            this.counters = counters;
+            this.generation = generation;
+        }
+    }
+
+    // a flow entry is identified by its switch, match and priority
+    private static final class FlowKey {
+        private final long dpid;
+        private final long dataLayerSource;
+        private final long dataLayerDestination;
+        private final int[] fields;
+        private final int hash;
+
+        FlowKey(FlowStat stat) {
+            dpid = stat.getDpid();
+            dataLayerSource = stat.getDataLayerSource();
+            dataLayerDestination = stat.getDataLayerDestination();
+            fields = new int[] { stat.getPriority(), stat.getTableId(),
+                    stat.getInputPort(), stat.getDataLayerType(),
+                    stat.getDataLayerVirtualLan(),
+                    stat.getDataLayerVirtualLanPriorityCodePoint(),
+                    stat.getNetworkSource(), stat.getNetworkSourceMaskLen(),
+                    stat.getNetworkDestination(), stat.getNetworkDestinationMaskLen(),
+                    stat.getNetworkProtocol(), stat.getNetworkTypeOfService(),
+                    stat.getTransportSource(), stat.getTransportDestination(),
+                    stat.getWildcards() };
+
+            int h = Long.hashCode(dpid);
+            h = 31 * h + Long.hashCode(dataLayerSource);
+            h = 31 * h + Long.hashCode(dataLayerDestination);
+            hash = 31 * h + Arrays.hashCode(fields);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof FlowKey))
+                return false;
+
+            FlowKey other = (FlowKey) obj;
+            return hash == other.hash && dpid == other.dpid
+                    && dataLayerSource == other.dataLayerSource
+                    && dataLayerDestination == other.dataLayerDestination
+                    && Arrays.equals(fields, other.fields);
+        }
+    }
+
+    private static final class PortKey {
+        private final long dpid;
+        private final int portNumber;
+
+        PortKey(long dpid, int portNumber) {
+            this.dpid = dpid;
+            this.portNumber = portNumber;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(dpid) + portNumber;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof PortKey))
+                return false;
+
+            PortKey other = (PortKey) obj;
+            return dpid == other.dpid && portNumber == other.portNumber;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package jFloodlightPlus;
+
+import java.util.Arrays;
+
+/**
+ * Samples of one port or flow entry read from a StatsHistoryStore, oldest
+ * first. <br>
+ * The meaning of the counter columns depends on the kind, see
+ * StatsHistoryStore.Kind.
+ *
+ * @author KmnTree
+ *
+ */
+public class StatsSeries {
+    private final long dpid;
+    private final long key;
+    private final long[] timeMillis;
+    private final long[][] counters;
+    private final int size;
+
+    StatsSeries(long dpid, long key, long[] timeMillis, long[][] counters, int size) {
+        this.dpid = dpid;
+        this.key = key;
+        this.timeMillis = timeMillis;
+        this.counters = counters;
+        this.size = size;
+    }
+
+    public long getDpid() {
+        return dpid;
+    }
+
+    /**
+     * @return port number, or StatsHistoryStore.flowKey() of the flow entry
+     */
+    public long getKey() {
+        return key;
+    }
+
+    /**
+     * @return number of samples
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return time of the sample in msec since epoch
+     */
+    public long getTimeMillis(int index) {
+        checkIndex(index);
+        return timeMillis[index];
+    }
+
+    /**
+     * @param index
+     *            sample, 0 is the oldest
+     * @param column
+     *            counter column, 0 to StatsHistoryStore.COUNTERS - 1
+     *
+     * @return counter value of the sample
+     */
+    public long getCounter(int index, int column) {
+        checkIndex(index);
+        return counters[column][index];
+    }
+
+    /**
+     * Rate of a counter between the previous sample and this one. A counter
+     * going backwards is taken as a restart, counting from zero.
+     *
+     * @return change per second, 0 for the first sample
+     */
+    public double getRatePerSecond(int index, int column) {
+        long delta;
+        long intervalMillis;
+
+        checkIndex(index);
+        if (index == 0)
+            return 0;
+
+        delta = counters[column][index] - counters[column][index - 1];
+        if (delta < 0)
+            delta = counters[column][index];
+
+        intervalMillis = timeMillis[index] - timeMillis[index - 1];
+        return intervalMillis <= 0 ? 0 : delta * 1000.0 / intervalMillis;
+    }
+
+    /**
+     * @return times of all samples, a copy
+     */
+    public long[] getTimeMillis() {
+        return Arrays.copyOf(timeMillis, size);
+    }
+
+    /**
+     * @return values of one counter for all samples, a copy
+     */
+    public long[] getCounters(int column) {
+        return Arrays.copyOf(counters[column], size);
+    }
+
+    @Override
+    public String toString() {
+        return "StatsSeries [dpid=" + AddressUtils.dpidToString(dpid) + ", key=" + key
+                + ", samples=" + size + (size == 0 ? "" : ", from=" + timeMillis[0]
+                        + ", to=" + timeMillis[size - 1]) + "]";
+    }
+
+    // --------------
+    // helper methods
+    // --------------
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+    }
+}
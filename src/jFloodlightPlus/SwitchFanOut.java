@@ -0,0 +1,374 @@
+package jFloodlightPlus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs one operation across many switches in parallel. <br>
+ * At most parallelism calls are running at the same time, and every single call
+ * is given up after timeoutMillis: its thread is interrupted and its REST
+ * requests are aborted, so the slot is free again right away. A failing switch
+ * never aborts the others, the outcome of each switch is reported in a
+ * FanOutResult. <br>
+ * <br>
+ * Calls run on threads shared by all runs of the fan-out, idle ones are
+ * stopped after a minute. With virtual threads (Java 21+) every call runs on
+ * its own virtual thread, so parallelism can be in the thousands without as
+ * many platform threads; the transport's connection pool then has to be
+ * sized to match. Per-thread buffers, e.g. the body encoders of the client,
+ * are not reused across calls then. On older Java versions platform threads
+ * are used instead.
+ * <br>
+ * A run is a scope: it returns only once no call is running any more. Calls
+ * timed out, or cancelled by the deadline of the run or an interrupt of the
+ * calling thread, have their requests aborted and are waited for; an
+ * operation that neither makes REST calls through the client nor reacts to
+ * interrupts delays the return until it is done.
+ *
+ * @author KmnTree
+ *
+ */
+public class SwitchFanOut {
+    public static final int DEFAULT_PARALLELISM = 16;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 30000;
+    public static final int DEFAULT_VIRTUAL_PARALLELISM = 1024;
+
+    // cancels calls running longer than their timeout
+    private static final ScheduledExecutorService WATCHDOG = Executors
+            .newSingleThreadScheduledExecutor(daemonThreadFactory("switch-fanout-watchdog"));
+
+    private final int parallelism;
+    private final long timeoutMillis;
+    private final boolean virtualThreads;
+    // runs the calls of all runs
+    private final ExecutorService executor;
+
+    // ------------
+    // constructors
+    // ------------
+
+    /**
+     * Default constructor with default parallelism and timeout
+     */
+    public SwitchFanOut() {
+        this(DEFAULT_PARALLELISM, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Base constructor
+     *
+     * @param parallelism
+     *            maximum number of calls running at the same time
+     * @param timeoutMillis
+     *            timeout of a single call, measured from its start
+     */
+    public SwitchFanOut(int parallelism, long timeoutMillis) {
+        this(parallelism, timeoutMillis, false);
+    }
+
+    /**
+     * Base constructor
+     *
+     * @param parallelism
+     *            maximum number of calls running at the same time
+     * @param timeoutMillis
+     *            timeout of a single call, measured from its start
+     * @param virtualThreads
+     *            run every call on its own virtual thread if the JVM supports
+     *            them, platform threads otherwise
+     */
+    public SwitchFanOut(int parallelism, long timeoutMillis, boolean virtualThreads) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be positive: "
+                    + parallelism);
+        if (timeoutMillis <= 0)
+            throw new IllegalArgumentException("timeoutMillis must be positive: "
+                    + timeoutMillis);
+
+        this.parallelism = parallelism;
+        this.timeoutMillis = timeoutMillis;
+        this.virtualThreads = virtualThreads && VirtualThreads.isSupported();
+        this.executor = this.virtualThreads ? VirtualThreads.newPerTaskExecutor(
+                "switch-fanout") : Executors.newCachedThreadPool(daemonThreadFactory(
+                "switch-fanout"));
+    }
+
+    /**
+     * @return fan-out on virtual threads with DEFAULT_VIRTUAL_PARALLELISM and
+     *         the default timeout; if the JVM has no virtual threads, on
+     *         platform threads with DEFAULT_PARALLELISM
+     */
+    public static SwitchFanOut virtual() {
+        // a thousand platform threads per run would exhaust the JVM
+        if (!VirtualThreads.isSupported())
+            return new SwitchFanOut(DEFAULT_PARALLELISM, DEFAULT_TIMEOUT_MILLIS);
+
+        return new SwitchFanOut(DEFAULT_VIRTUAL_PARALLELISM, DEFAULT_TIMEOUT_MILLIS, true);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * @return true if calls run on virtual threads
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Run the operation on every switch and wait until all of them finished,
+     * failed or timed out.
+     *
+     * @param switchIds
+     *            DPIDs to run the operation on
+     * @param operation
+     *            the per-switch operation
+     *
+     * @return result or error of every switch
+     *
+     * @throws InterruptedException
+     *             if the calling thread is interrupted while waiting
+     */
+    public <T> FanOutResult<T> run(List<String> switchIds, SwitchOperation<T> operation)
+            throws InterruptedException {
+        return run(switchIds, operation, 0);
+    }
+
+    /**
+     * Run the operation on every switch and wait until all of them finished,
+     * failed or timed out, at most until the deadline. Calls still waiting or
+     * running at the deadline are cancelled and reported as timed out.
+     *
+     * @param switchIds
+     *            DPIDs to run the operation on
+     * @param operation
+     *            the per-switch operation
+     * @param deadlineMillis
+     *            time for the whole run, 0 for none
+     *
+     * @return result or error of every switch
+     *
+     * @throws InterruptedException
+     *             if the calling thread is interrupted while waiting, all calls
+     *             are cancelled
+     */
+    public <T> FanOutResult<T> run(List<String> switchIds, SwitchOperation<T> operation,
+            long deadlineMillis) throws InterruptedException {
+        FanOutResult<T> result = new FanOutResult<T>();
+        List<Call<T>> calls = new ArrayList<Call<T>>(switchIds.size());
+        AtomicInteger cursor = new AtomicInteger();
+        long start = System.currentTimeMillis();
+        long deadlineNanos = System.nanoTime() + deadlineMillis * 1000000;
+        int workers = Math.min(parallelism, switchIds.size());
+        CountDownLatch finished = new CountDownLatch(workers);
+
+        if (switchIds.isEmpty())
+            return result;
+
+        for (String switchId : switchIds) {
+            calls.add(new Call<T>(() -> operation.apply(switchId)));
+        }
+
+        try {
+            // every worker is one slot of the parallelism, it takes the next
+            // call once its previous one is done
+            for (int w = 0; w < workers; w++) {
+                executor.execute(() -> {
+                    int i;
+
+                    try {
+                        while ((i = cursor.getAndIncrement()) < calls.size()) {
+                            runWithTimeout(calls.get(i));
+                            // a cancelled call may leave the interrupt behind
+                            Thread.interrupted();
+                        }
+                    }
+                    finally {
+                        finished.countDown();
+                    }
+                });
+            }
+
+            // collect outcome in DPID order
+            for (int i = 0; i < switchIds.size(); i++) {
+                String switchId = switchIds.get(i);
+                Call<T> call = calls.get(i);
+
+                try {
+                    if (deadlineMillis > 0)
+                        result.putResult(switchId, call.get(deadlineNanos
+                                - System.nanoTime(), TimeUnit.NANOSECONDS));
+                    else
+                        result.putResult(switchId, call.get());
+                }
+                catch (TimeoutException e) {
+                    call.cancel(true);
+                    result.putError(switchId, new TimeoutException("Switch " + switchId
+                            + " not done by the deadline of " + deadlineMillis + " ms"));
+                }
+                catch (CancellationException e) {
+                    result.putError(switchId, new TimeoutException("Switch " + switchId
+                            + " timed out after " + timeoutMillis + " ms"));
+                }
+                catch (ExecutionException e) {
+                    result.putError(switchId, e.getCause());
+                }
+            }
+        }
+        finally {
+            // cancel what is left, e.g. after an interrupt, and wait until the
+            // aborted calls are out of their requests, so none of them still
+            // pushes or deletes after the run
+            for (Call<T> call : calls) {
+                call.cancel(true);
+            }
+            awaitUninterruptibly(finished);
+        }
+
+        result.setElapsedMillis(System.currentTimeMillis() - start);
+        return result;
+    }
+
+    /**
+     * Run calls on the threads of this fan-out, at most parallelism of them
+     * at the same time, e.g. the requests of one circuit. The calls are not
+     * timed out and run in the RequestScope of the calling thread.
+     *
+     * @param calls
+     *            calls to run
+     * @param parallelism
+     *            maximum number of calls running at the same time
+     *
+     * @return future of every call, in the order of the calls
+     */
+    <T> List<Future<T>> submitAll(List<Callable<T>> calls, int parallelism) {
+        List<Future<T>> futures = new ArrayList<Future<T>>(calls.size());
+        List<FutureTask<T>> tasks = new ArrayList<FutureTask<T>>(calls.size());
+        AtomicInteger cursor = new AtomicInteger();
+        int workers = Math.min(parallelism, calls.size());
+
+        for (Callable<T> call : calls) {
+            FutureTask<T> task = new FutureTask<T>(RequestScope.propagate(call));
+
+            tasks.add(task);
+            futures.add(task);
+        }
+
+        for (int w = 0; w < workers; w++) {
+            executor.execute(() -> {
+                int i;
+
+                while ((i = cursor.getAndIncrement()) < tasks.size()) {
+                    tasks.get(i).run();
+                    // a cancelled call may leave the interrupt behind
+                    Thread.interrupted();
+                }
+            });
+        }
+
+        return futures;
+    }
+
+    /**
+     * @param namePrefix
+     *            name of the threads
+     * @param threads
+     *            number of platform threads, ignored with virtual threads
+     *
+     * @return executor for the calls of a bulk operation: a virtual thread per
+     *         task if this fan-out uses them, else a fixed pool
+     */
+    ExecutorService newExecutor(String namePrefix, int threads) {
+        if (virtualThreads)
+            return VirtualThreads.newPerTaskExecutor(namePrefix);
+        else
+            return Executors.newFixedThreadPool(threads, daemonThreadFactory(namePrefix));
+    }
+
+    // an interrupt of the waiting thread is kept for the caller
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+
+        while (true) {
+            try {
+                latch.await();
+                break;
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    // the timeout starts once the call runs
+    private void runWithTimeout(Call<?> call) {
+        ScheduledFuture<?> timeout;
+
+        if (call.isDone())
+            return;
+
+        timeout = WATCHDOG.schedule(() -> call.cancel(true), timeoutMillis,
+                TimeUnit.MILLISECONDS);
+        try {
+            call.scope.run(call);
+        }
+        finally {
+            timeout.cancel(false);
+        }
+    }
+
+    // a call whose cancellation also aborts its REST requests, which ignore
+    // the interrupt
+    private static final class Call<T> extends FutureTask<T> {
+        final RequestScope scope = new RequestScope();
+
+        Call(Callable<T> callable) {
+            super(callable);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+
+            if (cancelled && mayInterruptIfRunning)
+                scope.abort();
+
+            return cancelled;
+        }
+    }
+
+    static ThreadFactory daemonThreadFactory(final String namePrefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, namePrefix + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
@@ -0,0 +1,119 @@
+package jFloodlightPlus;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.json.JSONException;
+
+/**
+ * Switch connected to the controller, as returned by
+ * /wm/core/controller/switches/json.
+ *
+ * @author KmnTree
+ *
+ */
+public class SwitchInfo {
+    private static final int[] NO_PORTS = new int[0];
+
+    private long dpid;
+    private String inetAddress;
+    private long connectedSince;
+    private int[] portNumbers = NO_PORTS;
+
+    public long getDpid() {
+        return dpid;
+    }
+
+    /**
+     * @return address of the switch connection, e.g. /10.0.0.5:43210
+     */
+    public String getInetAddress() {
+        return inetAddress;
+    }
+
+    /**
+     * @return connect time in msec since epoch, changes when a switch reconnects
+     */
+    public long getConnectedSince() {
+        return connectedSince;
+    }
+
+    public int[] getPortNumbers() {
+        return portNumbers.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "SwitchInfo [dpid=" + AddressUtils.dpidToString(dpid) + ", inetAddress="
+                + inetAddress + ", connectedSince=" + connectedSince + ", ports="
+                + portNumbers.length + "]";
+    }
+
+    // --------
+    // decoding
+    // --------
+
+    static SwitchInfo read(JsonStreamReader in) throws IOException, JSONException {
+        SwitchInfo result = new SwitchInfo();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+
+            if (in.skipNull())
+                continue;
+
+            switch (name) {
+            case "dpid":
+                result.dpid = in.nextColonHex();
+                break;
+            case "inetAddress":
+                result.inetAddress = in.nextString();
+                break;
+            case "connectedSince":
+                result.connectedSince = in.nextLong();
+                break;
+            case "ports":
+                result.readPorts(in);
+                break;
+            default:
+                in.skipValue();
+                break;
+            }
+        }
+        in.endObject();
+
+        return result;
+    }
+
+    private void readPorts(JsonStreamReader in) throws IOException, JSONException {
+        int[] ports = new int[8];
+        int count = 0;
+
+        in.beginArray();
+        while (in.hasNext()) {
+            int port = 0;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+
+                if (in.skipNull())
+                    continue;
+
+                if (name.equals("portNumber"))
+                    port = in.nextInt();
+                else
+                    in.skipValue();
+            }
+            in.endObject();
+
+            if (count == ports.length)
+                ports = Arrays.copyOf(ports, count * 2);
+            ports[count++] = port;
+        }
+        in.endArray();
+
+        portNumbers = Arrays.copyOf(ports, count);
+    }
+}
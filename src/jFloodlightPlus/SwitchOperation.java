@@ -0,0 +1,20 @@
+package jFloodlightPlus;
+
+/**
+ * One REST operation on a single switch, run by SwitchFanOut for every DPID.
+ *
+ * @param <T>
+ *            result type of the operation
+ */
+public interface SwitchOperation<T> {
+    /**
+     * @param switchId
+     *            Valid Switch DPID (XX:XX:XX:XX:XX:XX:XX:XX)
+     * 
+     * @return result of the operation on this switch
+     * 
+     * @throws Exception
+     *             any failure, recorded as the error of this switch
+     */
+    T apply(String switchId) throws Exception;
+}
@@ -0,0 +1,86 @@
+package jFloodlightPlus;
+
+/**
+ * One structural change seen by a TopologyWatcher between two polls.
+ *
+ * @author KmnTree
+ *
+ */
+public class TopologyEvent {
+    /**
+     * Kind of change, tells which of link, switch or device is set.
+     */
+    public enum Type {
+        LINK_UP, LINK_DOWN, SWITCH_JOINED, SWITCH_LEFT, HOST_ADDED, HOST_MOVED,
+        HOST_REMOVED
+    }
+
+    private final Type type;
+    private final long timeMillis;
+    private final Link link;
+    private final SwitchInfo switchInfo;
+    private final Device device;
+    private final AttachmentPoint previousAttachmentPoint;
+
+    TopologyEvent(Type type, long timeMillis, Link link, SwitchInfo switchInfo,
+            Device device, AttachmentPoint previousAttachmentPoint) {
+        this.type = type;
+        this.timeMillis = timeMillis;
+        this.link = link;
+        this.switchInfo = switchInfo;
+        this.device = device;
+        this.previousAttachmentPoint = previousAttachmentPoint;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return time of the poll that saw the change in msec since epoch
+     */
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * @return the link for LINK_UP and LINK_DOWN, its last seen state when
+     *         down, null otherwise
+     */
+    public Link getLink() {
+        return link;
+    }
+
+    /**
+     * @return the switch for SWITCH_JOINED and SWITCH_LEFT, its last seen
+     *         state when left, null otherwise
+     */
+    public SwitchInfo getSwitchInfo() {
+        return switchInfo;
+    }
+
+    /**
+     * @return the device for HOST_ADDED, HOST_MOVED and HOST_REMOVED, its last
+     *         seen state when removed, null otherwise
+     */
+    public Device getDevice() {
+        return device;
+    }
+
+    /**
+     * @return where the host was attached before a HOST_MOVED, null if it had
+     *         no attachment point or for other types
+     */
+    public AttachmentPoint getPreviousAttachmentPoint() {
+        return previousAttachmentPoint;
+    }
+
+    @Override
+    public String toString() {
+        Object subject = link != null ? link : switchInfo != null ? switchInfo : device;
+
+        return "TopologyEvent [" + type + ", " + subject
+                + (type == Type.HOST_MOVED ? ", from=" + previousAttachmentPoint : "")
+                + "]";
+    }
+}
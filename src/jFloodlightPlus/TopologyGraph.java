@@ -0,0 +1,644 @@
+package jFloodlightPlus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * In-memory switch graph answering route queries locally instead of one
+ * getRoute() round trip per query. <br>
+ * <br>
+ * Switches are numbered with int node ids through a primitive DPID map, the
+ * outgoing links of a node are packed into a long[] (neighbour id, source
+ * port, destination port). Queries run lock-free on an immutable snapshot;
+ * refresh only copies the rows of switches whose links changed and keeps node
+ * ids stable. <br>
+ * Paths are shortest in hop count like the controller's, routes are returned
+ * in the getRoute() format consumed by pushCircuit: (ingress, egress) switch
+ * port pairs, one pair per hop.
+ *
+ * @author KmnTree
+ *
+ */
+public class TopologyGraph {
+    private static final long[] NO_EDGES = new long[0];
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal
+            .withInitial(Scratch::new);
+
+    private final FloodlightClient client;
+    private volatile Snapshot snapshot = new Snapshot(new long[0],
+            new LongIntHashMap(0), new long[0][], new int[0], 0, 0);
+
+    // directed links of the current snapshot, guarded by this
+    private Set<Edge> edges = new HashSet<Edge>();
+
+    /**
+     * @param client
+     *            client to load links and switch clusters with
+     */
+    public TopologyGraph(FloodlightClient client) {
+        this.client = client;
+    }
+
+    // -------
+    // loading
+    // -------
+
+    /**
+     * Load links and switch clusters from the controller and apply the changes
+     * since the last refresh. <br>
+     * Switch clusters only add switches without links, they are skipped on
+     * controllers without /wm/topology/switchclusters/json.
+     *
+     * @return true if the graph changed
+     *
+     * @throws IOException
+     * @throws JSONException
+     * @throws RuntimeException
+     */
+    public boolean refresh() throws IOException, JSONException, RuntimeException {
+        List<Link> links = client.getInterSwitchLinkList();
+        List<Long> switches = new ArrayList<Long>();
+
+        try {
+            JSONObject clusters = client.getSwitchClusters();
+
+            for (Iterator<?> it = clusters.keys(); it.hasNext();) {
+                JSONArray members = clusters.getJSONArray((String) it.next());
+
+                for (int i = 0; i < members.length(); i++) {
+                    switches.add(AddressUtils.parseDpid(members.getString(i)));
+                }
+            }
+        }
+        catch (RestException e) {
+            // not available in the 0.8 release
+        }
+
+        return update(links, switches);
+    }
+
+    /**
+     * Apply a link list, e.g. from getInterSwitchLinkList(). Only rows of
+     * switches whose links changed are rebuilt.
+     *
+     * @param links
+     *            all links of the network
+     *
+     * @return true if the graph changed
+     */
+    public boolean update(List<Link> links) {
+        return update(links, Collections.<Long> emptyList());
+    }
+
+    private synchronized boolean update(List<Link> links, Collection<Long> switches) {
+        Snapshot old = snapshot;
+        Set<Edge> current = new HashSet<Edge>();
+        List<Long> newNodes = new ArrayList<Long>();
+
+        for (Link link : links) {
+            current.add(new Edge(link.getSrcSwitch(), link.getSrcPort(),
+                    link.getDstSwitch(), link.getDstPort()));
+            if ("bidirectional".equals(link.getDirection()))
+                current.add(new Edge(link.getDstSwitch(), link.getDstPort(),
+                        link.getSrcSwitch(), link.getSrcPort()));
+        }
+
+        for (Long dpid : switches) {
+            addNewNode(old, newNodes, dpid);
+        }
+        for (Edge edge : current) {
+            addNewNode(old, newNodes, edge.src);
+            addNewNode(old, newNodes, edge.dst);
+        }
+
+        if (newNodes.isEmpty() && current.equals(edges))
+            return false;
+
+        // copy on write, rows of unchanged switches are shared with the old
+        // snapshot
+        int nodeCount = old.nodeCount + newNodes.size();
+        long[] dpids = Arrays.copyOf(old.dpids, nodeCount);
+        long[][] adjacency = Arrays.copyOf(old.adjacency, nodeCount);
+        LongIntHashMap index = newNodes.isEmpty() ? old.index : old.index.copy();
+
+        for (int i = 0; i < newNodes.size(); i++) {
+            int id = old.nodeCount + i;
+
+            dpids[id] = newNodes.get(i);
+            adjacency[id] = NO_EDGES;
+            index.put(dpids[id], id);
+        }
+
+        for (Edge edge : edges) {
+            if (!current.contains(edge)) {
+                int src = index.get(edge.src);
+                adjacency[src] = without(adjacency[src], edge.pack(index));
+            }
+        }
+        for (Edge edge : current) {
+            if (!edges.contains(edge)) {
+                int src = index.get(edge.src);
+                adjacency[src] = with(adjacency[src], edge.pack(index));
+            }
+        }
+
+        edges = current;
+        snapshot = new Snapshot(dpids, index, adjacency, components(nodeCount,
+                adjacency), nodeCount, current.size());
+        return true;
+    }
+
+    // -------
+    // queries
+    // -------
+
+    /**
+     * @return number of known switches
+     */
+    public int getSwitchCount() {
+        return snapshot.nodeCount;
+    }
+
+    /**
+     * @return number of directed links
+     */
+    public int getLinkCount() {
+        return snapshot.linkCount;
+    }
+
+    /**
+     * @param dpid
+     *            64 bit datapath id
+     *
+     * @return true if the switch is known
+     */
+    public boolean containsSwitch(long dpid) {
+        return snapshot.index.get(dpid) != LongIntHashMap.MISSING;
+    }
+
+    /**
+     * @param srcDpid
+     *            first switch
+     * @param dstDpid
+     *            last switch
+     *
+     * @return DPIDs of the switches along a shortest path, null if there is no
+     *         path
+     */
+    public long[] getShortestPath(long srcDpid, long dstDpid) {
+        Snapshot s = snapshot;
+        List<Path> paths = paths(s, srcDpid, dstDpid, 1);
+        long[] result;
+
+        if (paths.isEmpty())
+            return null;
+
+        result = new long[paths.get(0).nodes.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = s.dpids[paths.get(0).nodes[i]];
+        }
+        return result;
+    }
+
+    /**
+     * Shortest route between srcPort on src and dstPort on dst, same as the
+     * controller's getRoute() but computed locally.
+     *
+     * @param srcId
+     *            src Switch DPID
+     * @param srcPort
+     * @param dstId
+     *            dst Switch DPID
+     * @param dstPort
+     *
+     * @return the route, empty if there is none
+     *
+     * @throws JSONException
+     */
+    public JSONArray getRoute(String srcId, int srcPort, String dstId, int dstPort)
+            throws JSONException {
+        List<JSONArray> routes = getRoutes(srcId, srcPort, dstId, dstPort, 1);
+
+        return routes.isEmpty() ? new JSONArray() : routes.get(0);
+    }
+
+    /**
+     * Up to k loopless routes between srcPort on src and dstPort on dst, the
+     * shortest first (Yen's algorithm).
+     *
+     * @param srcId
+     *            src Switch DPID
+     * @param srcPort
+     * @param dstId
+     *            dst Switch DPID
+     * @param dstPort
+     * @param k
+     *            maximum number of routes
+     *
+     * @return routes in getRoute() format, empty if there is none
+     *
+     * @throws JSONException
+     */
+    public List<JSONArray> getRoutes(String srcId, int srcPort, String dstId,
+            int dstPort, int k) throws JSONException {
+        Snapshot s = snapshot;
+        List<JSONArray> result = new ArrayList<JSONArray>();
+
+        for (Path path : paths(s, AddressUtils.parseDpid(srcId),
+                AddressUtils.parseDpid(dstId), k)) {
+            result.add(toRoute(s, path, srcPort, dstPort));
+        }
+        return result;
+    }
+
+    // -----------
+    // path search
+    // -----------
+
+    private static List<Path> paths(Snapshot s, long srcDpid, long dstDpid, int k) {
+        List<Path> result = new ArrayList<Path>();
+        int src = s.index.get(srcDpid);
+        int dst = s.index.get(dstDpid);
+
+        if (k < 1 || src == LongIntHashMap.MISSING || dst == LongIntHashMap.MISSING
+                || s.components[src] != s.components[dst])
+            return result;
+
+        Scratch scratch = SCRATCH.get();
+        scratch.ensure(s.nodeCount);
+
+        Path first = bfs(s, scratch, src, dst, 0, null, 0);
+        if (first == null)
+            return result;
+        result.add(first);
+
+        PriorityQueue<Path> candidates = new PriorityQueue<Path>(Path.ORDER);
+        Set<Path> seen = new HashSet<Path>();
+        long[] removed = new long[k];
+        long sequence = 0;
+
+        seen.add(first);
+        while (result.size() < k) {
+            Path last = result.get(result.size() - 1);
+
+            for (int i = 0; i < last.edges.length; i++) {
+                int blockStamp = scratch.nextBlockStamp();
+                int removedCount = 0;
+
+                // the spur path must not go back through the root
+                for (int j = 0; j < i; j++) {
+                    scratch.blocked[last.nodes[j]] = blockStamp;
+                }
+
+                // nor leave the spur node the way a path with this root did
+                for (Path path : result) {
+                    if (path.edges.length > i && path.sharesRoot(last, i))
+                        removed[removedCount++] = path.edges[i];
+                }
+
+                Path spur = bfs(s, scratch, last.nodes[i], dst, blockStamp, removed,
+                        removedCount);
+                if (spur != null) {
+                    Path candidate = last.join(i, spur, sequence++);
+
+                    if (seen.add(candidate))
+                        candidates.add(candidate);
+                }
+            }
+
+            Path next = candidates.poll();
+            if (next == null)
+                break;
+            result.add(next);
+        }
+
+        return result;
+    }
+
+    // breadth first search, blocked nodes and removed edges of the start node
+    // are skipped
+    private static Path bfs(Snapshot s, Scratch scratch, int src, int dst,
+            int blockStamp, long[] removed, int removedCount) {
+        int stamp = scratch.nextVisitStamp();
+        int head = 0, tail = 0;
+
+        scratch.visited[src] = stamp;
+        scratch.queue[tail++] = src;
+
+        while (head < tail) {
+            int node = scratch.queue[head++];
+
+            if (node == dst)
+                return scratch.path(src, dst);
+
+            for (long edge : s.adjacency[node]) {
+                int next = target(edge);
+
+                if (scratch.visited[next] == stamp)
+                    continue;
+                if (blockStamp != 0 && scratch.blocked[next] == blockStamp)
+                    continue;
+                if (node == src && contains(removed, removedCount, edge))
+                    continue;
+
+                scratch.visited[next] = stamp;
+                scratch.prevNode[next] = node;
+                scratch.prevEdge[next] = edge;
+                scratch.queue[tail++] = next;
+            }
+        }
+
+        return null;
+    }
+
+    // [{"switch":src,"port":srcPort}, {"switch":src,"port":out}, ...,
+    // {"switch":dst,"port":in}, {"switch":dst,"port":dstPort}]
+    private static JSONArray toRoute(Snapshot s, Path path, int srcPort, int dstPort)
+            throws JSONException {
+        JSONArray result = new JSONArray();
+        int port = srcPort;
+
+        for (int i = 0; i < path.edges.length; i++) {
+            long dpid = s.dpids[path.nodes[i]];
+
+            result.put(nodePort(dpid, port));
+            result.put(nodePort(dpid, srcPort(path.edges[i])));
+            port = dstPort(path.edges[i]);
+        }
+
+        long dst = s.dpids[path.nodes[path.nodes.length - 1]];
+        result.put(nodePort(dst, port));
+        result.put(nodePort(dst, dstPort));
+
+        return result;
+    }
+
+    private static JSONObject nodePort(long dpid, int port) throws JSONException {
+        JSONObject result = new JSONObject();
+
+        result.put("switch", AddressUtils.dpidToString(dpid));
+        result.put("port", port);
+
+        return result;
+    }
+
+    // --------------
+    // helper methods
+    // --------------
+
+    // edge: neighbour id (32 bit) | source port (16 bit) | destination port (16 bit)
+    private static long pack(int target, int srcPort, int dstPort) {
+        return ((long) target << 32) | ((srcPort & 0xffffL) << 16) | (dstPort & 0xffffL);
+    }
+
+    private static int target(long edge) {
+        return (int) (edge >>> 32);
+    }
+
+    private static int srcPort(long edge) {
+        return (int) (edge >>> 16) & 0xffff;
+    }
+
+    private static int dstPort(long edge) {
+        return (int) edge & 0xffff;
+    }
+
+    private static boolean contains(long[] edges, int count, long edge) {
+        for (int i = 0; i < count; i++) {
+            if (edges[i] == edge)
+                return true;
+        }
+        return false;
+    }
+
+    private static long[] with(long[] row, long edge) {
+        long[] result = Arrays.copyOf(row, row.length + 1);
+
+        result[row.length] = edge;
+        return result;
+    }
+
+    private static long[] without(long[] row, long edge) {
+        long[] result = new long[row.length];
+        int count = 0;
+
+        for (long e : row) {
+            if (e != edge)
+                result[count++] = e;
+        }
+        return count == 0 ? NO_EDGES : Arrays.copyOf(result, count);
+    }
+
+    private static void addNewNode(Snapshot old, List<Long> newNodes, long dpid) {
+        if (old.index.get(dpid) == LongIntHashMap.MISSING && !newNodes.contains(dpid))
+            newNodes.add(dpid);
+    }
+
+    // weakly connected components, different components mean no path
+    private static int[] components(int nodeCount, long[][] adjacency) {
+        int[] parent = new int[nodeCount];
+
+        for (int i = 0; i < nodeCount; i++) {
+            parent[i] = i;
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            for (long edge : adjacency[node]) {
+                int a = root(parent, node), b = root(parent, target(edge));
+
+                if (a != b)
+                    parent[Math.max(a, b)] = Math.min(a, b);
+            }
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            parent[i] = root(parent, i);
+        }
+
+        return parent;
+    }
+
+    private static int root(int[] parent, int node) {
+        while (parent[node] != node) {
+            parent[node] = parent[parent[node]];
+            node = parent[node];
+        }
+        return node;
+    }
+
+    // immutable graph queries run on
+    private static final class Snapshot {
+        final long[] dpids;
+        final LongIntHashMap index;
+        final long[][] adjacency;
+        final int[] components;
+        final int nodeCount;
+        final int linkCount;
+
+        Snapshot(long[] dpids, LongIntHashMap index, long[][] adjacency,
+                int[] components, int nodeCount, int linkCount) {
+            this.dpids = dpids;
+            this.index = index;
+            this.adjacency = adjacency;
+            this.components = components;
+            this.nodeCount = nodeCount;
+            this.linkCount = linkCount;
+        }
+    }
+
+    // directed link by DPID
+    private static final class Edge {
+        final long src;
+        final int srcPort;
+        final long dst;
+        final int dstPort;
+
+        Edge(long src, int srcPort, long dst, int dstPort) {
+            this.src = src;
+            this.srcPort = srcPort;
+            this.dst = dst;
+            this.dstPort = dstPort;
+        }
+
+        long pack(LongIntHashMap index) {
+            return TopologyGraph.pack(index.get(dst), srcPort, dstPort);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Edge))
+                return false;
+
+            Edge other = (Edge) obj;
+            return src == other.src && srcPort == other.srcPort && dst == other.dst
+                    && dstPort == other.dstPort;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(src) * 31 + Long.hashCode(dst) * 17 + srcPort * 7
+                    + dstPort;
+        }
+    }
+
+    // nodes[i] --edges[i]--> nodes[i + 1]
+    private static final class Path {
+        static final Comparator<Path> ORDER = (a, b) -> a.edges.length != b.edges.length
+                ? Integer.compare(a.edges.length, b.edges.length)
+                : Long.compare(a.sequence, b.sequence);
+
+        final int[] nodes;
+        final long[] edges;
+        final long sequence;
+
+        Path(int[] nodes, long[] edges, long sequence) {
+            this.nodes = nodes;
+            this.edges = edges;
+            this.sequence = sequence;
+        }
+
+        // same first i edges
+        boolean sharesRoot(Path other, int i) {
+            for (int j = 0; j < i; j++) {
+                if (edges[j] != other.edges[j])
+                    return false;
+            }
+            return true;
+        }
+
+        // first i edges of this path, then the spur path
+        Path join(int i, Path spur, long sequence) {
+            int[] n = new int[i + spur.nodes.length];
+            long[] e = new long[i + spur.edges.length];
+
+            System.arraycopy(nodes, 0, n, 0, i);
+            System.arraycopy(spur.nodes, 0, n, i, spur.nodes.length);
+            System.arraycopy(edges, 0, e, 0, i);
+            System.arraycopy(spur.edges, 0, e, i, spur.edges.length);
+
+            return new Path(n, e, sequence);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Path))
+                return false;
+
+            Path other = (Path) obj;
+            return nodes[0] == other.nodes[0] && Arrays.equals(edges, other.edges);
+        }
+
+        @Override
+        public int hashCode() {
+            return nodes[0] * 31 + Arrays.hashCode(edges);
+        }
+    }
+
+    // per thread search arrays, reset by stamping instead of clearing
+    private static final class Scratch {
+        int[] visited = new int[0];
+        int[] blocked = new int[0];
+        int[] prevNode = new int[0];
+        long[] prevEdge = new long[0];
+        int[] queue = new int[0];
+        int visitStamp;
+        int blockStamp;
+
+        void ensure(int nodeCount) {
+            if (visited.length >= nodeCount)
+                return;
+
+            visited = new int[nodeCount];
+            blocked = new int[nodeCount];
+            prevNode = new int[nodeCount];
+            prevEdge = new long[nodeCount];
+            queue = new int[nodeCount];
+        }
+
+        int nextVisitStamp() {
+            if (++visitStamp == Integer.MAX_VALUE) {
+                Arrays.fill(visited, 0);
+                visitStamp = 1;
+            }
+            return visitStamp;
+        }
+
+        int nextBlockStamp() {
+            if (++blockStamp == Integer.MAX_VALUE) {
+                Arrays.fill(blocked, 0);
+                blockStamp = 1;
+            }
+            return blockStamp;
+        }
+
+        Path path(int src, int dst) {
+            int length = 0;
+
+            for (int node = dst; node != src; node = prevNode[node]) {
+                length++;
+            }
+
+            int[] nodes = new int[length + 1];
+            long[] edges = new long[length];
+
+            nodes[length] = dst;
+            for (int i = length - 1; i >= 0; i--) {
+                edges[i] = prevEdge[nodes[i + 1]];
+                nodes[i] = prevNode[nodes[i + 1]];
+            }
+            return new Path(nodes, edges, 0);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package jFloodlightPlus;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded queue of the TopologyEvents of one subscriber of a TopologyWatcher.
+ * <br>
+ * <br>
+ * The watcher thread is the only producer. Events are kept in a ring of fixed
+ * capacity indexed by two counters, offering and polling never lock and never
+ * allocate. When the ring is full, new events are dropped and counted instead
+ * of blocking the watcher, see getDroppedCount(). A subscriber seeing drops
+ * should resync from the client, e.g. getInterSwitchLinkList(). <br>
+ * poll() is safe from any number of threads, take() wakes up only the thread
+ * that waited last, so one thread should take() per subscription.
+ *
+ * @author KmnTree
+ *
+ */
+public class TopologySubscription implements Closeable {
+    private final TopologyWatcher watcher;
+    private final AtomicReferenceArray<TopologyEvent> ring;
+    private final int capacity;
+
+    // next index to poll, next index to offer
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile Thread waiter;
+
+    TopologySubscription(TopologyWatcher watcher, int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+
+        this.watcher = watcher;
+        this.ring = new AtomicReferenceArray<TopologyEvent>(capacity);
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return next event, null if there is none
+     */
+    public TopologyEvent poll() {
+        while (true) {
+            long index = head.get();
+            TopologyEvent event;
+
+            if (index == tail.get())
+                return null;
+
+            event = ring.get(slot(index));
+            if (head.compareAndSet(index, index + 1)) {
+                // not yet reused by offer(), which needs head past the slot
+                ring.compareAndSet(slot(index), event, null);
+                return event;
+            }
+        }
+    }
+
+    /**
+     * Wait for the next event.
+     *
+     * @param timeout
+     *            longest time to wait
+     * @param unit
+     *            unit of timeout
+     *
+     * @return next event, null if none arrived in time
+     *
+     * @throws InterruptedException
+     *             if the calling thread is interrupted while waiting
+     */
+    public TopologyEvent take(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        TopologyEvent event;
+
+        while ((event = poll()) == null) {
+            long remaining = deadline - System.nanoTime();
+
+            if (remaining <= 0)
+                return null;
+
+            waiter = Thread.currentThread();
+            // an offer() between poll() and parking unparks right away
+            if (head.get() == tail.get())
+                LockSupport.parkNanos(this, remaining);
+            waiter = null;
+
+            if (Thread.interrupted())
+                throw new InterruptedException();
+        }
+
+        return event;
+    }
+
+    /**
+     * Move all queued events into a list.
+     *
+     * @param events
+     *            list to add to
+     *
+     * @return number of events added
+     */
+    public int drainTo(List<TopologyEvent> events) {
+        TopologyEvent event;
+        int count = 0;
+
+        while ((event = poll()) != null) {
+            events.add(event);
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * @return number of events queued
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return number of events lost because the queue was full
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Stop receiving events, the events queued can still be polled.
+     */
+    @Override
+    public void close() {
+        watcher.unsubscribe(this);
+    }
+
+    // --------------
+    // helper methods
+    // --------------
+
+    // watcher thread only
+    void offer(TopologyEvent event) {
+        long index = tail.get();
+        Thread waiting;
+
+        if (index - head.get() >= capacity) {
+            dropped.incrementAndGet();
+            return;
+        }
+
+        ring.set(slot(index), event);
+        tail.set(index + 1);
+
+        waiting = waiter;
+        if (waiting != null)
+            LockSupport.unpark(waiting);
+    }
+
+    private int slot(long index) {
+        return (int) (index % capacity);
+    }
+}
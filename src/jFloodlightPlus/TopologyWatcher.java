@@ -0,0 +1,343 @@
+package jFloodlightPlus;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONException;
+
+/**
+ * Watches the links, switches and devices of the controller and pushes what
+ * changed to subscribers as typed events. <br>
+ * <br>
+ * Every poll lists the inter-switch links, the switches and the devices and
+ * compares them with the previous poll: links by both ends, switches by DPID
+ * and connect time, hosts by MAC and attachment point. The first poll only
+ * takes the baseline. Within one poll, removals come first (LINK_DOWN,
+ * HOST_REMOVED, SWITCH_LEFT), then additions (SWITCH_JOINED, LINK_UP,
+ * HOST_ADDED, HOST_MOVED). A switch that reconnected between two polls is
+ * reported as left and joined again. <br>
+ * <br>
+ * The poll interval adapts: after a change the next poll runs after
+ * minIntervalMillis, every poll without a change doubles the interval up to
+ * maxIntervalMillis. Failed polls back off the same way. <br>
+ * Polls go through the response cache of the client, if any; an interval
+ * shorter than the TTL of a region sees the cached listing.
+ *
+ * @author KmnTree
+ *
+ */
+public class TopologyWatcher implements Closeable {
+    public static final long DEFAULT_MIN_INTERVAL_MILLIS = 500;
+    public static final long DEFAULT_MAX_INTERVAL_MILLIS = 8000;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private final FloodlightClient client;
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+    private final List<TopologySubscription> subscriptions;
+    private volatile long intervalMillis;
+    private volatile Throwable lastError;
+    private ScheduledExecutorService scheduler;
+
+    // previous snapshot, null before the baseline
+    private Map<String, Link> links;
+    private Map<Long, SwitchInfo> switches;
+    private Map<Long, Device> hosts;
+
+    // ------------
+    // constructors
+    // ------------
+
+    /**
+     * Default constructor polling every DEFAULT_MIN_INTERVAL_MILLIS to
+     * DEFAULT_MAX_INTERVAL_MILLIS
+     *
+     * @param client
+     *            client to poll the controller with
+     */
+    public TopologyWatcher(FloodlightClient client) {
+        this(client, DEFAULT_MIN_INTERVAL_MILLIS, DEFAULT_MAX_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Base constructor
+     *
+     * @param client
+     *            client to poll the controller with
+     * @param minIntervalMillis
+     *            time between the end of a poll that saw a change and the
+     *            next poll
+     * @param maxIntervalMillis
+     *            longest time between two polls while nothing changes
+     */
+    public TopologyWatcher(FloodlightClient client, long minIntervalMillis,
+            long maxIntervalMillis) {
+        if (minIntervalMillis <= 0)
+            throw new IllegalArgumentException("minIntervalMillis must be positive: "
+                    + minIntervalMillis);
+        if (maxIntervalMillis < minIntervalMillis)
+            throw new IllegalArgumentException("maxIntervalMillis must not be below "
+                    + minIntervalMillis + ": " + maxIntervalMillis);
+
+        this.client = client;
+        this.minIntervalMillis = minIntervalMillis;
+        this.maxIntervalMillis = maxIntervalMillis;
+        this.intervalMillis = minIntervalMillis;
+        this.subscriptions = new CopyOnWriteArrayList<TopologySubscription>();
+    }
+
+    /**
+     * Subscribe with a queue of DEFAULT_QUEUE_CAPACITY events.
+     *
+     * @return queue receiving all events from now on
+     */
+    public TopologySubscription subscribe() {
+        return subscribe(DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param capacity
+     *            events kept until polled, more are dropped
+     *
+     * @return queue receiving all events from now on
+     */
+    public TopologySubscription subscribe(int capacity) {
+        TopologySubscription subscription = new TopologySubscription(this, capacity);
+
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    public void unsubscribe(TopologySubscription subscription) {
+        subscriptions.remove(subscription);
+    }
+
+    public long getMinIntervalMillis() {
+        return minIntervalMillis;
+    }
+
+    public long getMaxIntervalMillis() {
+        return maxIntervalMillis;
+    }
+
+    /**
+     * @return time until the next scheduled poll after the current one
+     */
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    /**
+     * @return error of the last scheduled poll, null if it succeeded
+     */
+    public Throwable getLastError() {
+        return lastError;
+    }
+
+    // --------
+    // schedule
+    // --------
+
+    /**
+     * Start polling on a daemon thread, the first poll runs right away.
+     */
+    public synchronized void start() {
+        if (scheduler != null)
+            throw new IllegalStateException("already started");
+
+        intervalMillis = minIntervalMillis;
+        scheduler = Executors.newSingleThreadScheduledExecutor(SwitchFanOut
+                .daemonThreadFactory("topology-watcher"));
+        schedule(scheduler, 0);
+    }
+
+    /**
+     * Stop polling, the previous snapshot is kept for a later start().
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    /**
+     * Forget the previous snapshot, the next poll takes a new baseline.
+     */
+    public synchronized void reset() {
+        links = null;
+        switches = null;
+        hosts = null;
+    }
+
+    /**
+     * Poll once on the calling thread and push the changes to the
+     * subscribers.
+     *
+     * @return number of changes, 0 for the baseline
+     *
+     * @throws IOException
+     * @throws JSONException
+     * @throws RuntimeException
+     */
+    public synchronized int poll() throws IOException, JSONException,
+            RuntimeException {
+        Map<String, Link> currentLinks = new HashMap<String, Link>();
+        Map<Long, SwitchInfo> currentSwitches = new HashMap<Long, SwitchInfo>();
+        Map<Long, Device> currentHosts = new HashMap<Long, Device>();
+        List<TopologyEvent> removed = new ArrayList<TopologyEvent>();
+        List<TopologyEvent> added = new ArrayList<TopologyEvent>();
+        List<TopologyEvent> switchesLeft = new ArrayList<TopologyEvent>();
+        long now;
+
+        // all three listed before anything is compared, a failure keeps the
+        // previous snapshot whole
+        for (Link link : client.getInterSwitchLinkList()) {
+            currentLinks.put(linkKey(link), link);
+        }
+        for (SwitchInfo info : client.getSwitchInfoList()) {
+            currentSwitches.put(info.getDpid(), info);
+        }
+        for (Device device : client.getDeviceList()) {
+            currentHosts.put(device.getMac(), device);
+        }
+        now = System.currentTimeMillis();
+
+        // switches join before and leave after their links and hosts
+        if (links != null) {
+            diffSwitches(currentSwitches, now, switchesLeft, added);
+            diffLinks(currentLinks, now, removed, added);
+            diffHosts(currentHosts, now, removed, added);
+            removed.addAll(switchesLeft);
+        }
+
+        links = currentLinks;
+        switches = currentSwitches;
+        hosts = currentHosts;
+
+        publish(removed);
+        publish(added);
+
+        return removed.size() + added.size();
+    }
+
+    // --------------
+    // helper methods
+    // --------------
+
+    private void schedule(ScheduledExecutorService owner, long delayMillis) {
+        owner.schedule(() -> pollAndReschedule(owner), delayMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private void pollAndReschedule(ScheduledExecutorService owner) {
+        long next = Math.min(intervalMillis * 2, maxIntervalMillis);
+
+        try {
+            if (poll() > 0)
+                next = minIntervalMillis;
+            lastError = null;
+        }
+        catch (Throwable e) {
+            lastError = e;
+        }
+        intervalMillis = next;
+
+        synchronized (this) {
+            // not if stopped, or stopped and started again meanwhile
+            if (scheduler == owner)
+                schedule(owner, next);
+        }
+    }
+
+    private void diffLinks(Map<String, Link> current, long now,
+            List<TopologyEvent> removed, List<TopologyEvent> added) {
+        for (Map.Entry<String, Link> entry : links.entrySet()) {
+            if (!current.containsKey(entry.getKey()))
+                removed.add(new TopologyEvent(TopologyEvent.Type.LINK_DOWN, now,
+                        entry.getValue(), null, null, null));
+        }
+        for (Map.Entry<String, Link> entry : current.entrySet()) {
+            if (!links.containsKey(entry.getKey()))
+                added.add(new TopologyEvent(TopologyEvent.Type.LINK_UP, now,
+                        entry.getValue(), null, null, null));
+        }
+    }
+
+    private void diffSwitches(Map<Long, SwitchInfo> current, long now,
+            List<TopologyEvent> removed, List<TopologyEvent> added) {
+        for (SwitchInfo previous : switches.values()) {
+            SwitchInfo info = current.get(previous.getDpid());
+
+            if (info == null || info.getConnectedSince() != previous.getConnectedSince())
+                removed.add(new TopologyEvent(TopologyEvent.Type.SWITCH_LEFT, now, null,
+                        previous, null, null));
+        }
+        for (SwitchInfo info : current.values()) {
+            SwitchInfo previous = switches.get(info.getDpid());
+
+            if (previous == null
+                    || info.getConnectedSince() != previous.getConnectedSince())
+                added.add(new TopologyEvent(TopologyEvent.Type.SWITCH_JOINED, now, null,
+                        info, null, null));
+        }
+    }
+
+    private void diffHosts(Map<Long, Device> current, long now,
+            List<TopologyEvent> removed, List<TopologyEvent> added) {
+        for (Map.Entry<Long, Device> entry : hosts.entrySet()) {
+            if (!current.containsKey(entry.getKey()))
+                removed.add(new TopologyEvent(TopologyEvent.Type.HOST_REMOVED, now, null,
+                        null, entry.getValue(), null));
+        }
+        for (Map.Entry<Long, Device> entry : current.entrySet()) {
+            Device previous = hosts.get(entry.getKey());
+            AttachmentPoint from;
+
+            if (previous == null) {
+                added.add(new TopologyEvent(TopologyEvent.Type.HOST_ADDED, now, null,
+                        null, entry.getValue(), null));
+                continue;
+            }
+
+            from = previous.getAttachmentPoint();
+            if (!isSameAttachmentPoint(from, entry.getValue().getAttachmentPoint()))
+                added.add(new TopologyEvent(TopologyEvent.Type.HOST_MOVED, now, null,
+                        null, entry.getValue(), from));
+        }
+    }
+
+    private void publish(List<TopologyEvent> events) {
+        for (TopologySubscription subscription : subscriptions) {
+            for (TopologyEvent event : events) {
+                subscription.offer(event);
+            }
+        }
+    }
+
+    // src DPID/port/dst DPID/port, one entry per direction
+    private static String linkKey(Link link) {
+        return link.getSrcSwitch() + "/" + link.getSrcPort() + "/" + link.getDstSwitch()
+                + "/" + link.getDstPort();
+    }
+
+    private static boolean isSameAttachmentPoint(AttachmentPoint a, AttachmentPoint b) {
+        if (a == null || b == null)
+            return a == b;
+
+        return a.getSwitchDpid() == b.getSwitchDpid() && a.getPort() == b.getPort();
+    }
+}
@@ -0,0 +1,88 @@
+package jFloodlightPlus;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads (Java 21+) while still compiling and running on
+ * older Java versions. <br>
+ * The Thread.ofVirtual() builder and Executors.newThreadPerTaskExecutor() are
+ * looked up by reflection once and a builder is created to try them; where
+ * they are missing, or are a preview API not enabled (Java 19 and 20),
+ * isSupported() is false and callers fall back to platform threads.
+ *
+ * @author KmnTree
+ *
+ */
+final class VirtualThreads {
+    private static final Method OF_VIRTUAL;
+    private static final Method NAME;
+    private static final Method FACTORY;
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        Method ofVirtual = null, name = null, factory = null, newExecutor = null;
+
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+            newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor",
+                    ThreadFactory.class);
+
+            // a preview API on Java 19 and 20, throwing unless enabled
+            factory.invoke(ofVirtual.invoke(null));
+        }
+        catch (ReflectiveOperationException e) {
+            // missing, or the UnsupportedOperationException of a disabled preview
+            ofVirtual = null;
+        }
+
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+        NEW_THREAD_PER_TASK_EXECUTOR = newExecutor;
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return true if this JVM has virtual threads enabled
+     */
+    static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * @param namePrefix
+     *            threads are named namePrefix-1, namePrefix-2, ...
+     *
+     * @return executor starting a new virtual thread per task
+     *
+     * @throws UnsupportedOperationException
+     *             if this JVM has no virtual threads
+     */
+    static ExecutorService newPerTaskExecutor(String namePrefix) {
+        if (!isSupported())
+            throw new UnsupportedOperationException("virtual threads need Java 21+");
+
+        try {
+            Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), namePrefix + "-", 1L);
+            ThreadFactory factory = (ThreadFactory) FACTORY.invoke(builder);
+
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+        }
+        catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package jFloodlightPlus;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.json.JSONException;
+
+/**
+ * Admission control for writes to the static flow pusher and virtual network
+ * endpoints, so bulk jobs run as fast as the controller sustains without
+ * tipping it over. <br>
+ * <br>
+ * A token bucket caps the rate of writes. On top, the number of writes in
+ * flight is limited by AIMD: every fast success raises the limit by 1/limit
+ * (about one per round trip), an overload multiplies it by the backoff
+ * factor. Overload is a 5xx or 429 status, an I/O error or timeout, or a
+ * short-term average latency above latencyTolerance times the long-term
+ * average, i.e. requests starting to queue up. Only writes started after the
+ * last decrease lower the limit again, so a burst of concurrent failures
+ * counts once. <br>
+ * Callers block until both a token and a slot are free.
+ *
+ * @author KmnTree
+ *
+ */
+public class WriteAdmission {
+    public static final double DEFAULT_RATE_PER_SECOND = 200;
+    public static final int DEFAULT_BURST = 20;
+    public static final int DEFAULT_MIN_LIMIT = 1;
+    public static final int DEFAULT_MAX_LIMIT = 64;
+    public static final int DEFAULT_INITIAL_LIMIT = 4;
+    public static final double DEFAULT_BACKOFF = 0.7;
+    public static final double DEFAULT_LATENCY_TOLERANCE = 2.0;
+
+    // averages move by 1/8 and 1/256 of each sample
+    private static final int SHORT_TERM_SHIFT = 3;
+    private static final int LONG_TERM_SHIFT = 8;
+
+    /**
+     * One write, run once admitted.
+     */
+    public interface Write<T> {
+        T run() throws IOException, JSONException;
+    }
+
+    private final double ratePerSecond;
+    private final int burst;
+    private final int minLimit;
+    private final int maxLimit;
+    private volatile double backoff = DEFAULT_BACKOFF;
+    private volatile double latencyTolerance = DEFAULT_LATENCY_TOLERANCE;
+
+    // token bucket, guarded by bucketLock
+    private final Object bucketLock = new Object();
+    private double tokens;
+    private long refillNanos;
+
+    // concurrency limit, guarded by lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private long shortTermNanos;
+    private long longTermNanos;
+    private long lastDecreaseNanos;
+    private long admittedCount;
+    private long overloadCount;
+
+    // ------------
+    // constructors
+    // ------------
+
+    /**
+     * Default constructor with default rate, burst and limits
+     */
+    public WriteAdmission() {
+        this(DEFAULT_RATE_PER_SECOND, DEFAULT_BURST, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT);
+    }
+
+    /**
+     * Base constructor
+     *
+     * @param ratePerSecond
+     *            maximum writes per second on average, 0 for no rate limit
+     * @param burst
+     *            writes allowed at once after an idle period
+     * @param minLimit
+     *            lowest limit of writes in flight
+     * @param maxLimit
+     *            highest limit of writes in flight
+     */
+    public WriteAdmission(double ratePerSecond, int burst, int minLimit, int maxLimit) {
+        if (ratePerSecond < 0)
+            throw new IllegalArgumentException("ratePerSecond must not be negative: "
+                    + ratePerSecond);
+        if (burst < 1)
+            throw new IllegalArgumentException("burst must be positive: " + burst);
+        if (minLimit < 1 || maxLimit < minLimit)
+            throw new IllegalArgumentException("invalid limits: " + minLimit + ".."
+                    + maxLimit);
+
+        this.ratePerSecond = ratePerSecond;
+        this.burst = burst;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tokens = burst;
+        this.refillNanos = System.nanoTime();
+        this.limit = Math.max(minLimit, Math.min(maxLimit, DEFAULT_INITIAL_LIMIT));
+    }
+
+    /**
+     * @param backoff
+     *            factor the limit is multiplied with on overload, 0 < backoff < 1
+     */
+    public void setBackoff(double backoff) {
+        if (backoff <= 0 || backoff >= 1)
+            throw new IllegalArgumentException("backoff must be in (0, 1): " + backoff);
+
+        this.backoff = backoff;
+    }
+
+    /**
+     * @param latencyTolerance
+     *            short-term over long-term average latency taken as
+     *            overload, > 1
+     */
+    public void setLatencyTolerance(double latencyTolerance) {
+        if (latencyTolerance <= 1)
+            throw new IllegalArgumentException("latencyTolerance must be > 1: "
+                    + latencyTolerance);
+
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    // ---------
+    // admission
+    // ---------
+
+    /**
+     * Wait for a token and a slot, run the write and adapt the limit to its
+     * outcome.
+     *
+     * @param write
+     *            the write
+     *
+     * @return result of the write
+     *
+     * @throws InterruptedIOException
+     *             if interrupted while waiting
+     * @throws IOException
+     * @throws JSONException
+     * @throws RuntimeException
+     */
+    public <T> T call(Write<T> write) throws IOException, JSONException,
+            RuntimeException {
+        long start;
+        boolean overload = false;
+        boolean success = false;
+
+        acquire();
+        start = System.nanoTime();
+        try {
+            T result = write.run();
+            success = true;
+            return result;
+        }
+        catch (IOException | RuntimeException e) {
+            overload = isOverload(e);
+            throw e;
+        }
+        finally {
+            release(start, success, overload);
+        }
+    }
+
+    // -------
+    // getters
+    // -------
+
+    public double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    /**
+     * @return current limit of writes in flight
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return writes admitted so far
+     */
+    public long getAdmittedCount() {
+        lock.lock();
+        try {
+            return admittedCount;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return writes that failed because of overload so far
+     */
+    public long getOverloadCount() {
+        lock.lock();
+        try {
+            return overloadCount;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return "WriteAdmission [ratePerSecond=" + ratePerSecond + ", limit="
+                    + (int) limit + ", inFlight=" + inFlight + ", admitted="
+                    + admittedCount + ", overloads=" + overloadCount + "]";
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    // --------------
+    // helper methods
+    // --------------
+
+    /**
+     * @return true if the error means the controller is overloaded: 5xx or 429
+     *         status, I/O error or timeout
+     */
+    static boolean isOverload(Throwable error) {
+        if (error instanceof RestException) {
+            int status = ((RestException) error).getStatusCode();
+            return status >= 500 || status == 429;
+        }
+        return error instanceof IOException;
+    }
+
+    private void acquire() throws InterruptedIOException {
+        try {
+            long waitNanos = reserveToken();
+
+            if (waitNanos > 0)
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+
+            lock.lockInterruptibly();
+            try {
+                while (inFlight >= (int) limit) {
+                    released.await();
+                }
+                inFlight++;
+                admittedCount++;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for admission");
+        }
+    }
+
+    // take a token, the bucket may go negative: the caller then waits until
+    // its token would have been refilled
+    private long reserveToken() {
+        if (ratePerSecond == 0)
+            return 0;
+
+        synchronized (bucketLock) {
+            long now = System.nanoTime();
+
+            tokens = Math.min(burst, tokens + (now - refillNanos) * ratePerSecond / 1e9);
+            refillNanos = now;
+            tokens -= 1;
+
+            return tokens >= 0 ? 0 : (long) (-tokens * 1e9 / ratePerSecond);
+        }
+    }
+
+    private void release(long start, boolean success, boolean overload) {
+        long now = System.nanoTime();
+        long latencyNanos = now - start;
+
+        lock.lock();
+        try {
+            inFlight--;
+
+            if (success) {
+                if (longTermNanos == 0) {
+                    shortTermNanos = latencyNanos;
+                    longTermNanos = latencyNanos;
+                }
+                shortTermNanos += (latencyNanos - shortTermNanos) >> SHORT_TERM_SHIFT;
+                longTermNanos += (latencyNanos - longTermNanos) >> LONG_TERM_SHIFT;
+
+                if (shortTermNanos > longTermNanos * latencyTolerance)
+                    decrease(start, now);
+                else if (inFlight + 1 >= limit / 2)
+                    // only grow while the limit is used, not while callers or
+                    // the connection pool keep writes below it
+                    limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+            else if (overload) {
+                overloadCount++;
+                decrease(start, now);
+            }
+
+            released.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    // multiplicative decrease, writes sent before the last one saw the old
+    // limit and are ignored
+    private void decrease(long start, long now) {
+        if (lastDecreaseNanos != 0 && start - lastDecreaseNanos < 0)
+            return;
+
+        limit = Math.max(minLimit, limit * backoff);
+        lastDecreaseNanos = now;
+    }
+}
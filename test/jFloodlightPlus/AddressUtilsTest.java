@@ -0,0 +1,91 @@
+package jFloodlightPlus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Parsing and printing of DPIDs, MACs and IPv4 addresses.
+ *
+ * @author KmnTree
+ *
+ */
+public class AddressUtilsTest {
+
+    @Test
+    public void parsesColonHex() {
+        assertEquals(0x10aL, AddressUtils.parseDpid("00:00:00:00:00:00:01:0a"));
+        assertEquals(-1L, AddressUtils.parseDpid("ff:ff:ff:ff:ff:ff:ff:ff"));
+        assertEquals(0xaabbccddeeffL, AddressUtils.parseMac("AA:BB:CC:DD:EE:FF"));
+        assertEquals("00:00:00:00:00:00:01:0a", AddressUtils.dpidToString(0x10a));
+        assertEquals("aa:bb:cc:dd:ee:ff", AddressUtils.macToString(0xaabbccddeeffL));
+    }
+
+    @Test
+    public void rejectsMalformedColonHex() {
+        String[] malformed = { "", ":", "00:00:00:00:00:00:00:00:01", "00::01", "00:",
+                ":00", "0g", "00000000000000001" };
+
+        for (String value : malformed) {
+            try {
+                AddressUtils.parseDpid(value);
+                fail("accepted " + value);
+            }
+            catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void parsesIpv4() {
+        assertEquals(0x0a000001, AddressUtils.parseIpv4("10.0.0.1"));
+        assertEquals(0x0a000000, AddressUtils.parseIpv4("10.0.0.0/8"));
+        assertEquals(-1, AddressUtils.parseIpv4("255.255.255.255"));
+        assertEquals("10.0.0.1", AddressUtils.ipv4ToString(0x0a000001));
+    }
+
+    @Test
+    public void rejectsMalformedIpv4() {
+        String[] malformed = { "", "10..0.1", ".10.0.0", "10.0.0.", "10.0.0.1.",
+                "10.0.0", "10.0.0.256", "10.0.0.1.2", "10.0.0.a", "10.0.0./8" };
+
+        for (String ip : malformed) {
+            try {
+                AddressUtils.parseIpv4(ip);
+                fail("accepted " + ip);
+            }
+            catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void parsesHexOrDecimal() {
+        assertEquals(0x0800L, AddressUtils.parseHexOrDecimal("0x0800"));
+        assertEquals(-1L, AddressUtils.parseHexOrDecimal("0xffffffffffffffff"));
+        assertEquals(-42L, AddressUtils.parseHexOrDecimal("-42"));
+        assertEquals(Long.MAX_VALUE, AddressUtils
+                .parseHexOrDecimal("9223372036854775807"));
+        assertEquals(Long.MIN_VALUE, AddressUtils
+                .parseHexOrDecimal("-9223372036854775808"));
+    }
+
+    @Test
+    public void rejectsOverflowingHexOrDecimal() {
+        String[] malformed = { "", "-", "0x", "0x1g", "12a", "0x10000000000000000",
+                "9223372036854775808", "-9223372036854775809", "99999999999999999999" };
+
+        for (String value : malformed) {
+            try {
+                AddressUtils.parseHexOrDecimal(value);
+                fail("accepted " + value);
+            }
+            catch (NumberFormatException e) {
+                // expected
+            }
+        }
+    }
+}
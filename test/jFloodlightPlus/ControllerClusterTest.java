@@ -0,0 +1,228 @@
+package jFloodlightPlus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import jFloodlightPlus.ControllerCluster.ControllerNode;
+
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.junit.Test;
+
+/**
+ * Read failover and leader selection of ControllerCluster.
+ *
+ * @author KmnTree
+ *
+ */
+public class ControllerClusterTest {
+    private static final String A = "http://10.0.0.1:8080";
+    private static final String B = "http://10.0.0.2:8080";
+    private static final String C = "http://10.0.0.3:8080";
+
+    @Test
+    public void normalizesAddresses() {
+        assertEquals(A, ControllerCluster.toBaseUri("10.0.0.1"));
+        assertEquals("http://10.0.0.1:9090", ControllerCluster
+                .toBaseUri(" 10.0.0.1:9090"));
+        assertEquals("https://ctl:8443", ControllerCluster
+                .toBaseUri("https://ctl:8443/"));
+    }
+
+    @Test
+    public void readsSpreadOverIdleNodes() throws Exception {
+        ControllerCluster cluster = cluster();
+        List<String> used = new ArrayList<String>();
+
+        for (int i = 0; i < 6; i++) {
+            used.add(cluster.read(baseUri -> baseUri));
+        }
+
+        for (String baseUri : new String[] { A, B, C }) {
+            assertEquals(baseUri + " in " + used, 2, count(used, baseUri));
+        }
+    }
+
+    @Test
+    public void readFailsOverAndSkipsDownNodes() throws Exception {
+        ControllerCluster cluster = cluster();
+        List<String> tried = new ArrayList<String>();
+
+        for (int i = 0; i < 3; i++) {
+            tried.clear();
+            assertEquals(C, cluster.read(baseUri -> {
+                tried.add(baseUri);
+                if (!baseUri.equals(C))
+                    throw new ConnectException("refused");
+                return baseUri;
+            }));
+            assertEquals(C, tried.get(tried.size() - 1));
+            for (String baseUri : tried.subList(0, tried.size() - 1)) {
+                assertFalse(node(cluster, baseUri).isUp());
+            }
+        }
+        assertFalse(node(cluster, A).isUp());
+        assertFalse(node(cluster, B).isUp());
+        assertTrue(node(cluster, C).isUp());
+
+        // down nodes are left alone until retryDownMillis passed
+        for (int i = 0; i < 3; i++) {
+            assertEquals(C, cluster.read(baseUri -> baseUri));
+        }
+    }
+
+    @Test
+    public void readThrowsLastErrorWhenAllFail() throws Exception {
+        ControllerCluster cluster = cluster();
+        List<String> tried = new ArrayList<String>();
+
+        try {
+            cluster.read(baseUri -> {
+                tried.add(baseUri);
+                throw new IOException(baseUri);
+            });
+            fail("no error");
+        }
+        catch (IOException e) {
+            assertEquals(tried.get(2), e.getMessage());
+        }
+        assertEquals(3, tried.size());
+    }
+
+    @Test
+    public void clientSideFailuresKeepNodesUp() throws Exception {
+        ControllerCluster cluster = cluster();
+        RequestScope scope = new RequestScope();
+        RequestScope previous;
+        List<String> tried = new ArrayList<String>();
+
+        failRead(cluster, new ConnectionPoolTimeoutException("pool exhausted"));
+        failRead(cluster, new RestException(404, "/"));
+        for (ControllerNode node : cluster.getNodes()) {
+            assertTrue(node.isUp());
+        }
+
+        // a cancelled or timed out task neither fails over nor marks down
+        previous = scope.enter();
+        try {
+            scope.abort();
+            cluster.read(baseUri -> {
+                tried.add(baseUri);
+                throw new InterruptedIOException("aborted");
+            });
+            fail("no error");
+        }
+        catch (InterruptedIOException e) {
+            // expected
+        }
+        finally {
+            RequestScope.exit(previous);
+        }
+        assertEquals(1, tried.size());
+        for (ControllerNode node : cluster.getNodes()) {
+            assertTrue(node.isUp());
+        }
+    }
+
+    @Test
+    public void writesStickToTheLeader() throws Exception {
+        ControllerCluster cluster = cluster();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(A, cluster.write(baseUri -> baseUri));
+        }
+        assertEquals(A, cluster.getLeader().getBaseUri());
+    }
+
+    @Test
+    public void leaderMovesOnlyIfItCanNotBeConnected() throws Exception {
+        ControllerCluster cluster = cluster();
+        List<String> tried = new ArrayList<String>();
+
+        // may have been applied, not sent again
+        try {
+            cluster.write(baseUri -> {
+                tried.add(baseUri);
+                throw new IOException("reset");
+            });
+            fail("no error");
+        }
+        catch (IOException e) {
+            assertEquals(Arrays.asList(A), tried);
+        }
+
+        cluster.setUp(node(cluster, A), true);
+        tried.clear();
+        assertEquals(B, cluster.write(baseUri -> {
+            tried.add(baseUri);
+            if (baseUri.equals(A))
+                throw new ConnectException("refused");
+            return baseUri;
+        }));
+        assertEquals(Arrays.asList(A, B), tried);
+        assertEquals(B, cluster.getLeader().getBaseUri());
+
+        // the new leader keeps the writes while it is up
+        cluster.setUp(node(cluster, A), true);
+        assertEquals(B, cluster.write(baseUri -> baseUri));
+    }
+
+    @Test
+    public void downNodesAreTriedAgainAfterRetryDownMillis() throws Exception {
+        ControllerCluster cluster = new ControllerCluster(Arrays.asList(A, B), 0);
+
+        cluster.setUp(node(cluster, A), false);
+        assertEquals(A, cluster.write(baseUri -> baseUri));
+        assertTrue(node(cluster, A).isUp());
+    }
+
+    // --------------
+    // helper methods
+    // --------------
+
+    private static ControllerCluster cluster() {
+        return new ControllerCluster(Arrays.asList("10.0.0.1", "10.0.0.2:8080",
+                "http://10.0.0.3:8080"), 60000);
+    }
+
+    private static ControllerNode node(ControllerCluster cluster, String baseUri) {
+        for (ControllerNode node : cluster.getNodes()) {
+            if (node.getBaseUri().equals(baseUri))
+                return node;
+        }
+        throw new IllegalArgumentException(baseUri);
+    }
+
+    private static void failRead(ControllerCluster cluster, Exception error)
+            throws Exception {
+        try {
+            cluster.read(baseUri -> {
+                if (error instanceof IOException)
+                    throw (IOException) error;
+                throw (RuntimeException) error;
+            });
+        }
+        catch (IOException | RuntimeException e) {
+            return;
+        }
+        fail("no error");
+    }
+
+    private static int count(List<String> list, String value) {
+        int result = 0;
+
+        for (String element : list) {
+            if (element.equals(value))
+                result++;
+        }
+        return result;
+    }
+}
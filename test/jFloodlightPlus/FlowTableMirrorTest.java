@@ -0,0 +1,126 @@
+package jFloodlightPlus;
+
+import static jFloodlightPlus.StaticFlowEntryTest.entry;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Diff of desired static flow entries against a FlowTableMirror.
+ *
+ * @author KmnTree
+ *
+ */
+public class FlowTableMirrorTest {
+    private static final String S1 = "00:00:00:00:00:00:00:01";
+    private static final String S2 = "00:00:00:00:00:00:00:02";
+
+    private final List<StaticFlowEntry> installed = new ArrayList<StaticFlowEntry>();
+
+    // lists the installed entries instead of asking a controller
+    private final FloodlightClient client = new FloodlightClient() {
+        @Override
+        public List<StaticFlowEntry> getStaticFlowEntries(String switchId) {
+            return new ArrayList<StaticFlowEntry>(installed);
+        }
+    };
+
+    @After
+    public void close() {
+        client.close();
+    }
+
+    @Test
+    public void diffsAddsModifiesAndDeletes() throws Exception {
+        FlowTableMirror mirror = mirror(flow("same", S1, "10.0.0.1", "output=1"),
+                flow("changed", S1, "10.0.0.2", "output=1"),
+                flow("stale", S1, "10.0.0.3", "output=1"));
+        FlowDiff diff = mirror.diff(Arrays.asList(
+                flow("same", S1, "10.0.0.1", "output=1"),
+                flow("changed", S1, "10.0.0.2", "output=2"),
+                flow("new", S1, "10.0.0.4", "output=1")));
+
+        assertEquals(names("new"), names(diff.getAdds()));
+        assertEquals(names("changed"), names(diff.getModifies()));
+        assertEquals(names("stale"), names(diff.getDeletes()));
+        assertEquals(1, diff.getUnchangedCount());
+        assertEquals(3, diff.size());
+    }
+
+    @Test
+    public void ignoresNotationOfUnchangedEntries() throws Exception {
+        FlowTableMirror mirror = mirror(flow("a", S1, "10.0.0.1", "output=1"));
+        FlowDiff diff = mirror.diff(Collections.singletonList(entry("a", "switch",
+                S1.toUpperCase(), "dst-ip", "10.0.0.1/32", "ether-type", "2048",
+                "actions", "output=1", "cookie", "5")));
+
+        assertTrue(diff.toString(), diff.isEmpty());
+        assertEquals(1, diff.getUnchangedCount());
+    }
+
+    @Test
+    public void rePushesEntriesSwitchedInactive() throws Exception {
+        FlowTableMirror mirror = mirror(flow("a", S1, "10.0.0.1", "output=1"));
+        FlowDiff diff = mirror.diff(Collections.singletonList(entry("a", "switch", S1,
+                "dst-ip", "10.0.0.1", "ether-type", "0x0800", "actions", "output=1",
+                "active", "false")));
+
+        assertEquals(names("a"), names(diff.getModifies()));
+    }
+
+    @Test
+    public void leavesOtherSwitchesAlone() throws Exception {
+        FlowTableMirror mirror = mirror(flow("a", S1, "10.0.0.1", "output=1"),
+                flow("b", S2, "10.0.0.1", "output=1"));
+        List<StaticFlowEntry> desired = Collections.singletonList(flow("a", S1,
+                "10.0.0.1", "output=1"));
+
+        assertTrue(mirror.diff(desired).isEmpty());
+        assertEquals(names("b"), names(mirror.diff(desired, Arrays.asList(S2))
+                .getDeletes()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsDesiredEntriesWithTheSameMatch() throws Exception {
+        mirror().diff(Arrays.asList(flow("a", S1, "10.0.0.1", "output=1"),
+                flow("b", S1, "10.0.0.1", "output=2")));
+    }
+
+    // --------------
+    // helper methods
+    // --------------
+
+    private FlowTableMirror mirror(StaticFlowEntry... entries) throws Exception {
+        FlowTableMirror mirror = new FlowTableMirror(client);
+
+        installed.addAll(Arrays.asList(entries));
+        mirror.refresh();
+        return mirror;
+    }
+
+    private static StaticFlowEntry flow(String name, String switchId, String dstIp,
+            String actions) {
+        return entry(name, "switch", switchId, "ether-type", "0x0800", "dst-ip", dstIp,
+                "actions", actions);
+    }
+
+    private static List<String> names(String... names) {
+        return Arrays.asList(names);
+    }
+
+    private static List<String> names(List<StaticFlowEntry> entries) {
+        List<String> result = new ArrayList<String>();
+
+        for (StaticFlowEntry entry : entries) {
+            result.add(entry.getName());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,114 @@
+package jFloodlightPlus;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import jFloodlightPlus.FlowTemplate.Field;
+
+import org.junit.Test;
+
+/**
+ * Bodies encoded by FlowTemplate, compared with the ones of addFlow().
+ *
+ * @author KmnTree
+ *
+ */
+public class FlowTemplateTest {
+
+    @Test
+    public void encodesTheBodyOfAddFlow() {
+        FlowTemplate template = spec("00:00:00:00:00:00:00:01", "10.0.0.1").compile(
+                Field.SWITCH, Field.DST_IP);
+        FlowTemplate.Encoder encoder = template.newEncoder();
+
+        assertTrue(template.isVariable(Field.NAME));
+        assertTrue(template.isVariable(Field.DST_IP));
+        assertFalse(template.isVariable(Field.PRIORITY));
+
+        encoder.setName("flow-", 7).set(Field.SWITCH, 0x0a0bL).set(Field.DST_IP,
+                0x0a000105L).encode();
+        assertArrayEquals(body("flow-7", spec("00:00:00:00:00:00:0a:0b", "10.0.1.5")),
+                encoder.toByteArray());
+
+        // values are kept, only the changed one is set again
+        encoder.set(Field.DST_IP, "10.0.0.0/8").encode();
+        assertArrayEquals(body("flow-7", spec("00:00:00:00:00:00:0a:0b", "10.0.0.0/8")),
+                encoder.toByteArray());
+        assertEquals(encoder.toByteArray().length, encoder.length());
+    }
+
+    @Test
+    public void formatsNumericFields() {
+        FlowSpec spec = new FlowSpec().switchId("00:00:00:00:00:00:00:01");
+        FlowTemplate.Encoder encoder = spec.compile(Field.ACTIVE, Field.ETHER_TYPE,
+                Field.SRC_MAC, Field.PRIORITY, Field.OUTPUT).newEncoder();
+
+        encoder.setName("f").set(Field.ACTIVE, 0).set(Field.ETHER_TYPE, 0x800).set(
+                Field.SRC_MAC, 0xaabbccddeeffL).set(Field.PRIORITY, -1).set(
+                Field.OUTPUT, 3).encode();
+
+        assertEquals("{\"actions\":\"output=3\",\"active\":\"false\","
+                + "\"ether-type\":\"0x0800\",\"name\":\"f\",\"priority\":\"-1\","
+                + "\"src-mac\":\"aa:bb:cc:dd:ee:ff\","
+                + "\"switch\":\"00:00:00:00:00:00:00:01\"}", text(encoder));
+    }
+
+    @Test
+    public void escapesText() {
+        FlowTemplate.Encoder encoder = new FlowSpec().switchId("00:00:00:00:00:00:00:01")
+                .compile().newEncoder();
+
+        encoder.setName("a\"b\\c").encode();
+        assertEquals("{\"name\":\"a\\\"b\\\\c\",\"switch\":\"00:00:00:00:00:00:00:01\"}",
+                text(encoder));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void requiresEveryVariable() {
+        spec("00:00:00:00:00:00:00:01", "10.0.0.1").compile(Field.DST_IP).newEncoder()
+                .setName("f").encode();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsConstantFields() {
+        spec("00:00:00:00:00:00:00:01", "10.0.0.1").compile().newEncoder().set(
+                Field.DST_IP, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNumbersForText() {
+        spec("00:00:00:00:00:00:00:01", "10.0.0.1").compile().newEncoder().set(
+                Field.NAME, 1);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void requiresSwitch() {
+        new FlowSpec().dstIp("10.0.0.1").compile();
+    }
+
+    // --------------
+    // helper methods
+    // --------------
+
+    private static FlowSpec spec(String switchId, String dstIp) {
+        return new FlowSpec().switchId(switchId).priority(100).etherType(0x800).dstIp(
+                dstIp).output(2);
+    }
+
+    // as sent by addFlow(name, spec)
+    private static byte[] body(String name, FlowSpec spec) {
+        Map<String, String> parameters = spec.toParameters();
+
+        parameters.put("name", name);
+        return JsonBodyEncoder.toByteArray(null, parameters);
+    }
+
+    private static String text(FlowTemplate.Encoder encoder) {
+        return new String(encoder.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
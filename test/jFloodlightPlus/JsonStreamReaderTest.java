@@ -0,0 +1,114 @@
+package jFloodlightPlus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+/**
+ * Tokens, numbers and addresses of JsonStreamReader.
+ *
+ * @author KmnTree
+ *
+ */
+public class JsonStreamReaderTest {
+
+    @Test
+    public void readsIntegralNumbersAsLong() throws Exception {
+        JsonStreamReader in = reader("[0, -1, 42, 9223372036854775807, "
+                + "-9223372036854775808]");
+
+        in.beginArray();
+        assertEquals(0, in.nextLong());
+        assertEquals(-1, in.nextLong());
+        assertEquals(42, in.nextInt());
+        assertEquals(Long.MAX_VALUE, in.nextLong());
+        assertEquals(Long.MIN_VALUE, in.nextLong());
+        in.endArray();
+        assertEquals(JsonStreamReader.Token.END_DOCUMENT, in.peek());
+    }
+
+    @Test
+    public void readsFractionsAndExponents() throws Exception {
+        JsonStreamReader in = reader("[1.5, -2e3, 1E+2, 0.25e-1, 9223372036854775808]");
+
+        in.beginArray();
+        assertEquals(1.5, in.nextDouble(), 0);
+        assertEquals(-2000, in.nextDouble(), 0);
+        assertEquals(100, in.nextLong());
+        assertEquals(0.025, in.nextDouble(), 1e-12);
+        // too large for a long
+        assertEquals("9223372036854775808", in.nextString());
+        in.endArray();
+    }
+
+    @Test
+    public void rejectsMalformedNumbers() throws Exception {
+        String[] malformed = { "1-2", "1+2", "01", "-", "-a", "1.", "1.e3", "1e", "1e+",
+                "1.2.3", "1e2e3", "--1" };
+
+        for (String number : malformed) {
+            JsonStreamReader in = reader("[" + number + "]");
+
+            in.beginArray();
+            try {
+                in.nextString();
+                fail("accepted " + number);
+            }
+            catch (JSONException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void walksNestedValues() throws Exception {
+        JsonStreamReader in = reader("{\"skipped\": {\"a\": [1, {\"b\": null}, \"x\"]}, "
+                + "\"text\": \"a\\\"b\\n\\u0041\", \"flag\": false, \"none\": null}");
+
+        in.beginObject();
+        assertEquals("skipped", in.nextName());
+        in.skipValue();
+        assertEquals("text", in.nextName());
+        assertEquals("a\"b\nA", in.nextString());
+        assertEquals("flag", in.nextName());
+        assertFalse(in.nextBoolean());
+        assertEquals("none", in.nextName());
+        assertTrue(in.skipNull());
+        assertFalse(in.hasNext());
+        in.endObject();
+    }
+
+    @Test
+    public void readsAddressesWithoutStrings() throws Exception {
+        JsonStreamReader in = reader("[\"00:00:00:00:00:00:01:0a\", "
+                + "\"aa:bb:cc:dd:ee:ff\", \"10.0.0.1\", \"0x0800\", 2048]");
+
+        in.beginArray();
+        assertEquals(0x10aL, in.nextColonHex());
+        assertEquals(0xaabbccddeeffL, in.nextColonHex());
+        assertEquals(0x0a000001, in.nextIpv4());
+        assertEquals(0x800, in.nextHexOrDecimal());
+        assertEquals(0x800, in.nextHexOrDecimal());
+        in.endArray();
+    }
+
+    @Test(expected = JSONException.class)
+    public void rejectsTruncatedDocument() throws Exception {
+        JsonStreamReader in = reader("{\"a\": [1, 2");
+
+        in.beginObject();
+        in.nextName();
+        in.skipValue();
+    }
+
+    private static JsonStreamReader reader(String json) throws IOException {
+        return new JsonStreamReader(new StringReader(json));
+    }
+}
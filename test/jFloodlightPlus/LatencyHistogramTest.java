@@ -0,0 +1,97 @@
+package jFloodlightPlus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Bucket math and percentiles of LatencyHistogram.
+ *
+ * @author KmnTree
+ *
+ */
+public class LatencyHistogramTest {
+    // the last bucket also takes everything too large to resolve
+    private static final int LAST_BUCKET = LatencyHistogram.indexOf(Long.MAX_VALUE);
+
+    @Test
+    public void smallValuesHaveTheirOwnBucket() {
+        for (int value = 0; value < 128; value++) {
+            assertEquals(value, LatencyHistogram.indexOf(value));
+            assertEquals(value, LatencyHistogram.highestValueOf(value));
+        }
+    }
+
+    @Test
+    public void bucketsAreContiguous() {
+        for (int index = 0; index < LAST_BUCKET; index++) {
+            long highest = LatencyHistogram.highestValueOf(index);
+
+            assertEquals("highest of " + index, index, LatencyHistogram.indexOf(highest));
+            assertEquals("after " + index, index + 1, LatencyHistogram
+                    .indexOf(highest + 1));
+        }
+        assertEquals(LAST_BUCKET, LatencyHistogram.indexOf((1L << 41) - 1));
+        assertEquals(LAST_BUCKET, LatencyHistogram.indexOf(1L << 41));
+    }
+
+    @Test
+    public void bucketsAreWithinOnePointSixPercent() {
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100000; i++) {
+            // below 2^40, spread over all powers of two
+            long value = random.nextLong() >>> 24 + random.nextInt(40);
+            long highest = LatencyHistogram.highestValueOf(LatencyHistogram
+                    .indexOf(value));
+
+            assertTrue(value + " above " + highest, value <= highest);
+            assertTrue(value + " off by " + (highest - value), highest - value
+                    <= value / 64);
+        }
+    }
+
+    @Test
+    public void percentilesOfUniformValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        for (long value = 1; value <= 10000; value++) {
+            histogram.record(value * 1000);
+        }
+
+        assertEquals(10000, histogram.getCount());
+        assertEquals(10000000, histogram.getMaxNanos());
+        assertEquals(5000500, histogram.getMeanNanos(), 0.001);
+        assertNear(5000000, histogram.getValueAtPercentile(50));
+        assertNear(9900000, histogram.getValueAtPercentile(99));
+        assertEquals(10000000, histogram.getValueAtPercentile(100));
+        assertNear(1000, histogram.getValueAtPercentile(0.01));
+    }
+
+    @Test
+    public void emptyAndResetHistogramsReportZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0, histogram.getMeanNanos(), 0);
+
+        histogram.record(-5);
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getMaxNanos());
+
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, histogram.getMaxNanos());
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(100));
+    }
+
+    private static void assertNear(long expected, long actual) {
+        assertTrue(actual + " is not near " + expected, actual >= expected
+                && actual - expected <= expected / 64);
+    }
+}
@@ -0,0 +1,192 @@
+package jFloodlightPlus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jFloodlightPlus.ResponseCache.Region;
+
+import org.junit.Test;
+
+/**
+ * TTL, single-flight loads and invalidation of ResponseCache.
+ *
+ * @author KmnTree
+ *
+ */
+public class ResponseCacheTest {
+
+    @Test
+    public void servesBodiesUntilTheyExpire() throws Exception {
+        ResponseCache cache = new ResponseCache();
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.setTtl(Region.LINKS, 50, TimeUnit.MILLISECONDS);
+        assertEquals("1", cache.get(Region.LINKS, "links", () -> "" + loads
+                .incrementAndGet()));
+        assertEquals("1", cache.get(Region.LINKS, "links", () -> "" + loads
+                .incrementAndGet()));
+        assertEquals(1, cache.getHitCount());
+
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertEquals("2", cache.get(Region.LINKS, "links", () -> "" + loads
+                .incrementAndGet()));
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void disabledRegionsAreNotStored() throws Exception {
+        ResponseCache cache = new ResponseCache();
+
+        cache.setTtl(Region.DEVICES, 0, TimeUnit.MILLISECONDS);
+        cache.get(Region.DEVICES, "devices", () -> "[]");
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void dropsLeastRecentlyUsed() throws Exception {
+        ResponseCache cache = new ResponseCache(2);
+
+        cache.get(Region.ROUTES, "a", () -> "a");
+        cache.get(Region.ROUTES, "b", () -> "b");
+        cache.get(Region.ROUTES, "a", () -> "reloaded");
+        cache.get(Region.ROUTES, "c", () -> "c");
+
+        assertEquals(2, cache.size());
+        assertEquals("a", cache.get(Region.ROUTES, "a", () -> "reloaded"));
+        assertEquals("reloaded", cache.get(Region.ROUTES, "b", () -> "reloaded"));
+    }
+
+    @Test
+    public void concurrentMissesShareOneLoad() throws Exception {
+        ResponseCache cache = new ResponseCache();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        List<FutureTask<String>> callers = new ArrayList<FutureTask<String>>();
+
+        for (int i = 0; i < 8; i++) {
+            callers.add(start(() -> cache.get(Region.ROUTES, "route", () -> {
+                loads.incrementAndGet();
+                await(release);
+                return "[]";
+            })));
+        }
+        // let all callers find the running load before it finishes
+        waitForMisses(cache, 8);
+        release.countDown();
+
+        for (FutureTask<String> caller : callers) {
+            assertEquals("[]", caller.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void failedLoadsAreSharedButNotStored() throws Exception {
+        ResponseCache cache = new ResponseCache();
+        IOException error = new IOException("refused");
+        CountDownLatch release = new CountDownLatch(1);
+        FutureTask<String> first = start(() -> cache.get(Region.SWITCHES, "switches",
+                () -> {
+                    await(release);
+                    throw error;
+                }));
+        FutureTask<String> second;
+
+        waitForMisses(cache, 1);
+        second = start(() -> cache.get(Region.SWITCHES, "switches", () -> "joined"));
+        waitForMisses(cache, 2);
+        release.countDown();
+
+        assertSame(error, failure(first));
+        assertSame(error, failure(second));
+        assertEquals("[]", cache.get(Region.SWITCHES, "switches", () -> "[]"));
+    }
+
+    @Test
+    public void invalidationDropsItsRegionOnly() throws Exception {
+        ResponseCache cache = new ResponseCache();
+
+        cache.get(Region.FLOWS, "flows", () -> "old");
+        cache.get(Region.LINKS, "links", () -> "links");
+        cache.invalidate(Region.FLOWS);
+
+        assertEquals("new", cache.get(Region.FLOWS, "flows", () -> "new"));
+        assertEquals("links", cache.get(Region.LINKS, "links", () -> "reloaded"));
+
+        cache.invalidate("links");
+        assertEquals("reloaded", cache.get(Region.LINKS, "links", () -> "reloaded"));
+    }
+
+    @Test
+    public void loadsPredatingAnInvalidationAreNotJoinedOrStored() throws Exception {
+        ResponseCache cache = new ResponseCache();
+        CountDownLatch release = new CountDownLatch(1);
+        FutureTask<String> stale = start(() -> cache.get(Region.FLOWS, "flows", () -> {
+            await(release);
+            return "stale";
+        }));
+
+        waitForMisses(cache, 1);
+        cache.invalidate(Region.FLOWS);
+
+        // a caller after the invalidation loads on its own
+        assertEquals("fresh", cache.get(Region.FLOWS, "flows", () -> "fresh"));
+        release.countDown();
+        assertEquals("stale", stale.get(10, TimeUnit.SECONDS));
+        assertEquals("fresh", cache.get(Region.FLOWS, "flows", () -> "reloaded"));
+    }
+
+    // --------------
+    // helper methods
+    // --------------
+
+    private static void await(CountDownLatch latch) throws InterruptedIOException {
+        try {
+            latch.await();
+        }
+        catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+    }
+
+    private static void waitForMisses(ResponseCache cache, long misses)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+        while (cache.getMissCount() < misses) {
+            if (System.nanoTime() - deadline > 0)
+                fail("only " + cache.getMissCount() + " misses");
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+    }
+
+    private static FutureTask<String> start(Callable<String> task) {
+        FutureTask<String> future = new FutureTask<String>(task);
+
+        new Thread(future).start();
+        return future;
+    }
+
+    private static Throwable failure(FutureTask<String> task) throws Exception {
+        try {
+            task.get(10, TimeUnit.SECONDS);
+        }
+        catch (ExecutionException e) {
+            return e.getCause();
+        }
+        fail("no error");
+        return null;
+    }
+}
@@ -0,0 +1,165 @@
+package jFloodlightPlus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jFloodlightPlus.RetryPolicy.Idempotency;
+
+import org.junit.Test;
+
+/**
+ * Retry budget, retryable errors and hedged reads of RetryPolicy.
+ *
+ * @author KmnTree
+ *
+ */
+public class RetryPolicyTest {
+
+    @Test
+    public void retriesUntilMaxAttempts() throws Exception {
+        RetryPolicy policy = new RetryPolicy(3, 0, 0);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertEquals("ok", policy.call(Idempotency.READ, () -> {
+            if (attempts.incrementAndGet() < 3)
+                throw new IOException("reset");
+            return "ok";
+        }));
+        assertEquals(2, policy.getRetryCount());
+
+        assertEquals(3, failingCall(policy, Idempotency.IDEMPOTENT, new RestException(
+                503, "/")));
+    }
+
+    @Test
+    public void retriesOnlyWhatIdempotencyAllows() throws Exception {
+        RetryPolicy policy = new RetryPolicy(3, 0, 0);
+
+        assertEquals(1, failingCall(policy, Idempotency.NON_IDEMPOTENT, new IOException(
+                "reset")));
+        assertEquals(3, failingCall(policy, Idempotency.NON_IDEMPOTENT,
+                new ConnectException("refused")));
+        assertEquals(1, failingCall(policy, Idempotency.READ, new RestException(404,
+                "/")));
+        assertTrue(RetryPolicy.isRetryable(new RestException(429, "/"),
+                Idempotency.IDEMPOTENT));
+        assertFalse(RetryPolicy.isRetryable(new IllegalStateException(),
+                Idempotency.READ));
+    }
+
+    @Test
+    public void budgetLimitsRetries() throws Exception {
+        RetryPolicy policy = new RetryPolicy(3, 0, 0);
+
+        // a single retry in the bucket, earned back every other call
+        policy.setBudget(0.5, 0);
+        assertEquals(2, failingCall(policy, Idempotency.READ, new IOException("reset")));
+        assertEquals(1, failingCall(policy, Idempotency.READ, new IOException("reset")));
+        assertEquals(2, failingCall(policy, Idempotency.READ, new IOException("reset")));
+        assertEquals(2, policy.getRetryCount());
+        assertEquals(3, policy.getBudgetExhaustedCount());
+    }
+
+    @Test
+    public void abortedCallsAreNotRetried() throws Exception {
+        RetryPolicy policy = new RetryPolicy(3, 0, 0);
+        RequestScope scope = new RequestScope();
+        RequestScope previous = scope.enter();
+
+        try {
+            scope.abort();
+            assertEquals(1, failingCall(policy, Idempotency.READ,
+                    new InterruptedIOException("aborted")));
+        }
+        finally {
+            RequestScope.exit(previous);
+        }
+        assertEquals(0, policy.getRetryCount());
+    }
+
+    @Test
+    public void hedgeDelayFollowsReadLatency() throws Exception {
+        RetryPolicy policy = new RetryPolicy();
+
+        // unknown until enough reads were seen
+        for (int i = 0; i < 99; i++) {
+            policy.call(Idempotency.READ, () -> null);
+        }
+        assertEquals(0, policy.getHedgeDelayNanos());
+
+        warmUp(policy);
+        assertTrue(policy.getHedgeDelayNanos() > 0);
+        assertTrue(policy.getHedgeDelayNanos() < TimeUnit.MILLISECONDS.toNanos(50));
+
+        policy.setHedgePercentile(0);
+        assertEquals(0, policy.getHedgeDelayNanos());
+    }
+
+    @Test
+    public void hedgeAnswersASlowRead() throws Exception {
+        RetryPolicy policy = new RetryPolicy();
+        CountDownLatch hedged = new CountDownLatch(1);
+        AtomicInteger attempts = new AtomicInteger();
+
+        warmUp(policy);
+
+        // the first attempt hangs until the hedge answered, then fails like
+        // an aborted request
+        assertEquals("hedge", policy.call(Idempotency.READ, () -> {
+            if (attempts.incrementAndGet() > 1) {
+                hedged.countDown();
+                return "hedge";
+            }
+            try {
+                if (!hedged.await(10, TimeUnit.SECONDS))
+                    return "primary";
+            }
+            catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            throw new InterruptedIOException("aborted");
+        }));
+        assertEquals(1, policy.getHedgeCount());
+        assertEquals(0, policy.getRetryCount());
+    }
+
+    // --------------
+    // helper methods
+    // --------------
+
+    // 128 fast reads, the hedge delay is set from then on
+    private static void warmUp(RetryPolicy policy) throws Exception {
+        for (int i = 0; i < 128; i++) {
+            policy.call(Idempotency.READ, () -> null);
+        }
+    }
+
+    // attempts of a call failing with error every time
+    private static int failingCall(RetryPolicy policy, Idempotency idempotency,
+            Exception error) throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+
+        try {
+            policy.call(idempotency, () -> {
+                attempts.incrementAndGet();
+                if (error instanceof IOException)
+                    throw (IOException) error;
+                throw (RuntimeException) error;
+            });
+            fail("no error");
+        }
+        catch (IOException | RuntimeException e) {
+            assertEquals(error, e);
+        }
+        return attempts.get();
+    }
+}
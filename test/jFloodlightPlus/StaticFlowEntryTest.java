@@ -0,0 +1,104 @@
+package jFloodlightPlus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Canonical form of StaticFlowEntry, for pushed and listed entries.
+ *
+ * @author KmnTree
+ *
+ */
+public class StaticFlowEntryTest {
+    private static final String SWITCH = "00:00:00:00:00:00:00:0a";
+
+    @Test
+    public void ignoresNotationNameAndCookie() {
+        StaticFlowEntry a = entry("a", "switch", "00:00:00:00:00:00:00:0A", "src-mac",
+                "AA:BB:CC:DD:EE:FF", "ether-type", "0x0800", "dst-ip", "10.0.0.1",
+                "priority", "0x10", "idle-timeout", "0", "actions", "output=2");
+        StaticFlowEntry b = entry("b", "switch", SWITCH, "src-mac", "aa:bb:cc:dd:ee:ff",
+                "ether-type", "2048", "dst-ip", "10.0.0.1/32", "priority", "16", "cookie",
+                "7", "wildcards", "0", "actions", "output=2");
+
+        assertTrue(a.isSameFlow(b));
+        assertEquals(a.getMatchKey(), b.getMatchKey());
+        assertNotEquals(a, b);
+        assertEquals(a.getCanonicalParameters(), b.getCanonicalParameters());
+    }
+
+    @Test
+    public void fillsInDefaults() {
+        Map<String, String> canonical = entry("a", "switch", SWITCH)
+                .getCanonicalParameters();
+
+        assertEquals(String.valueOf(FloodlightClient.DEFAULT_PRIORITY), canonical
+                .get("priority"));
+        assertEquals("", canonical.get("actions"));
+        assertEquals("true", canonical.get("active"));
+        assertTrue(entry("a", "switch", SWITCH).isSameFlow(entry("a", "switch", SWITCH,
+                "active", "TRUE", "hard-timeout", "0")));
+    }
+
+    @Test
+    public void tellsChangedFlowsApart() {
+        StaticFlowEntry entry = entry("a", "switch", SWITCH, "dst-ip", "10.0.0.1",
+                "actions", "output=2");
+        StaticFlowEntry otherAction = entry("a", "switch", SWITCH, "dst-ip", "10.0.0.1",
+                "actions", "output=3");
+        StaticFlowEntry inactive = entry("a", "switch", SWITCH, "dst-ip", "10.0.0.1",
+                "actions", "output=2", "active", "false");
+        StaticFlowEntry otherPrefix = entry("a", "switch", SWITCH, "dst-ip",
+                "10.0.0.1/24", "actions", "output=2");
+
+        assertFalse(entry.isSameFlow(otherAction));
+        assertEquals(entry.getMatchKey(), otherAction.getMatchKey());
+        assertFalse(entry.isSameFlow(inactive));
+        assertEquals(entry.getMatchKey(), inactive.getMatchKey());
+        assertFalse(entry.isSameFlow(otherPrefix));
+        assertNotEquals(entry.getMatchKey(), otherPrefix.getMatchKey());
+        assertEquals("10.0.0.0/24", otherPrefix.getCanonicalParameters().get("dst-ip"));
+    }
+
+    @Test
+    public void decodesListedFlowModLikePushed() throws Exception {
+        // all wildcarded except in port, ether type and a /32 destination
+        String flowMod = "{\"match\": {\"inputPort\": 1, \"dataLayerType\": \"0x0800\", "
+                + "\"dataLayerSource\": \"00:00:00:00:00:01\", "
+                + "\"networkDestination\": \"10.0.0.1\", "
+                + "\"networkSource\": \"10.0.0.9\", "
+                + "\"wildcards\": 3162094}, \"priority\": 100, \"idleTimeout\": 0, "
+                + "\"cookie\": 45035996273704960, \"actions\": [{\"type\": \"OUTPUT\", "
+                + "\"port\": 2, \"maxLength\": 32767, \"length\": 8}]}";
+        StaticFlowEntry listed = StaticFlowEntry.read(new JsonStreamReader(
+                new StringReader(flowMod)), "a", AddressUtils.parseDpid(SWITCH));
+        StaticFlowEntry pushed = entry("a", "switch", SWITCH, "ingress-port", "1",
+                "ether-type", "0x800", "dst-ip", "10.0.0.1", "priority", "100", "actions",
+                "output=2");
+
+        assertTrue(listed.getCanonicalParameters() + "", listed.isSameFlow(pushed));
+        assertEquals(pushed, listed);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void requiresSwitch() {
+        entry("a", "dst-ip", "10.0.0.1");
+    }
+
+    static StaticFlowEntry entry(String name, String... keyValues) {
+        Map<String, String> parameters = new TreeMap<String, String>();
+
+        for (int i = 0; i < keyValues.length; i += 2) {
+            parameters.put(keyValues[i], keyValues[i + 1]);
+        }
+        return new StaticFlowEntry(name, parameters);
+    }
+}
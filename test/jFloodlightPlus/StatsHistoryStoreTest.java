@@ -0,0 +1,144 @@
+package jFloodlightPlus;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import jFloodlightPlus.StatsHistoryStore.Kind;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Reopening the segment files of a StatsHistoryStore.
+ *
+ * @author KmnTree
+ *
+ */
+public class StatsHistoryStoreTest {
+    private static final long DPID = 7;
+    private static final int SEGMENT_ROWS = 10;
+
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("stats-history").toFile();
+    }
+
+    @After
+    public void deleteDirectory() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void reopensAllRows() throws Exception {
+        StatsHistoryStore store = new StatsHistoryStore(directory, SEGMENT_ROWS);
+        StatsSeries before;
+
+        append(store, 0, 25);
+        before = store.scan(Kind.PORT, DPID, 1, 0, Long.MAX_VALUE);
+        store.close();
+
+        store = new StatsHistoryStore(directory, SEGMENT_ROWS);
+        try {
+            StatsSeries after = store.scan(Kind.PORT, DPID, 1, 0, Long.MAX_VALUE);
+
+            assertEquals(25, store.getRowCount());
+            assertEquals(3, store.getSegmentCount());
+            assertArrayEquals(before.getTimeMillis(), after.getTimeMillis());
+            assertArrayEquals(before.getCounters(0), after.getCounters(0));
+            assertEquals(24, after.getCounter(24, 0));
+        }
+        finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void appendsToTheLastSegmentAfterReopen() throws Exception {
+        StatsHistoryStore store = new StatsHistoryStore(directory, SEGMENT_ROWS);
+
+        append(store, 0, 15);
+        store.close();
+
+        // existing segments keep their size
+        store = new StatsHistoryStore(directory, 1000);
+        try {
+            append(store, 15, 5);
+            assertEquals(2, store.getSegmentCount());
+            append(store, 20, 1);
+            assertEquals(3, store.getSegmentCount());
+            assertEquals(21, store.scan(Kind.PORT, DPID, 1, 0, Long.MAX_VALUE).size());
+        }
+        finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void dropsSegmentsLeftHalfCreated() throws Exception {
+        StatsHistoryStore store = new StatsHistoryStore(directory, SEGMENT_ROWS);
+
+        append(store, 0, 5);
+        store.close();
+
+        // a crash before the header of the next segment was written
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory,
+                "0000000000000001.seg.tmp"), "rw")) {
+            file.setLength(4096);
+        }
+
+        store = new StatsHistoryStore(directory, SEGMENT_ROWS);
+        try {
+            assertEquals(5, store.getRowCount());
+            assertEquals(1, store.getSegmentCount());
+            assertFalse(new File(directory, "0000000000000001.seg.tmp").exists());
+        }
+        finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void rejectsForeignFiles() throws Exception {
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory,
+                "0000000000000000.seg"), "rw")) {
+            file.setLength(4096);
+        }
+
+        try {
+            new StatsHistoryStore(directory, SEGMENT_ROWS).close();
+            fail("opened a file without header");
+        }
+        catch (IOException e) {
+            // expected
+        }
+    }
+
+    // one row of port 1 per second, counting up from first
+    private static void append(StatsHistoryStore store, int first, int count)
+            throws Exception {
+        for (int i = first; i < first + count; i++) {
+            String json = "{\"portNumber\": 1, \"receivePackets\": " + i
+                    + ", \"transmitPackets\": 0, \"receiveBytes\": 0, "
+                    + "\"transmitBytes\": 0}";
+            PortStat stat = PortStat.read(new JsonStreamReader(new StringReader(json)),
+                    DPID);
+
+            store.appendPorts(Collections.singletonList(stat), 1000L * (i + 1));
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package jFloodlightPlus;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Counter wrap and reset handling of StatsPoller.
+ *
+ * @author KmnTree
+ *
+ */
+public class StatsPollerTest {
+    private static final long MAX_32 = 0xffffffffL;
+
+    @Test
+    public void increasesAreTheDifference() {
+        assertEquals(15, StatsPoller.counterDelta(10, 25));
+        assertEquals(0, StatsPoller.counterDelta(25, 25));
+        assertEquals(1L << 40, StatsPoller.counterDelta(0, 1L << 40));
+    }
+
+    @Test
+    public void countersAreUnsigned() {
+        // above Long.MAX_VALUE, negative as signed long
+        assertEquals(10, StatsPoller.counterDelta(Long.MIN_VALUE, Long.MIN_VALUE + 10));
+        assertEquals(2, StatsPoller.counterDelta(Long.MAX_VALUE, Long.MIN_VALUE + 1));
+    }
+
+    @Test
+    public void smallDropsOf32BitCountersAreWraps() {
+        assertEquals(0x20, StatsPoller.counterDelta(MAX_32 - 0xf, 0x10));
+        assertEquals(1, StatsPoller.counterDelta(MAX_32, 0));
+        // just below half the range
+        assertEquals((1L << 31) - 1, StatsPoller.counterDelta(1L << 31, MAX_32));
+    }
+
+    @Test
+    public void largeDropsAreResets() {
+        // a 32 bit counter restarting below half its range, from higher up
+        // a wrap is more likely
+        assertEquals(StatsPoller.RESET, StatsPoller.counterDelta(1000000000L, 5));
+        assertEquals(StatsPoller.RESET, StatsPoller.counterDelta(1L << 31, 0));
+        assertEquals(1294967301L, StatsPoller.counterDelta(3000000000L, 5));
+        // 64 bit counters never wrap, any drop is a restart
+        assertEquals(StatsPoller.RESET, StatsPoller.counterDelta(1L << 32, 5));
+        assertEquals(StatsPoller.RESET, StatsPoller.counterDelta(1L << 40, 1L << 39));
+    }
+}
@@ -0,0 +1,167 @@
+package jFloodlightPlus;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+/**
+ * Shortest paths and Yen's k shortest loopless routes of TopologyGraph.
+ *
+ * @author KmnTree
+ *
+ */
+public class TopologyGraphTest {
+
+    @Test
+    public void findsShortestPath() throws Exception {
+        TopologyGraph graph = graph(link(1, 2), link(2, 4), link(1, 3), link(3, 5),
+                link(5, 4));
+
+        assertArrayEquals(new long[] { 1, 2, 4 }, graph.getShortestPath(1, 4));
+        assertArrayEquals(new long[] { 5, 4, 2 }, graph.getShortestPath(5, 2));
+        assertArrayEquals(new long[] { 3 }, graph.getShortestPath(3, 3));
+    }
+
+    @Test
+    public void routesRunFromPortToPort() throws Exception {
+        TopologyGraph graph = graph(link(1, 2), link(2, 3));
+        JSONArray route = graph.getRoute(dpid(1), 7, dpid(3), 9);
+
+        assertEquals(6, route.length());
+        assertHop(route.getJSONObject(0), 1, 7);
+        assertHop(route.getJSONObject(1), 1, 12);
+        assertHop(route.getJSONObject(2), 2, 21);
+        assertHop(route.getJSONObject(3), 2, 23);
+        assertHop(route.getJSONObject(4), 3, 32);
+        assertHop(route.getJSONObject(5), 3, 9);
+    }
+
+    @Test
+    public void ranksLooplessRoutesByLength() throws Exception {
+        TopologyGraph graph = graph(link(1, 2), link(2, 4), link(1, 3), link(3, 5),
+                link(5, 4), link(1, 6), link(6, 7), link(7, 8), link(8, 4));
+        List<JSONArray> routes = graph.getRoutes(dpid(1), 1, dpid(4), 1, 10);
+
+        assertEquals(3, routes.size());
+        assertEquals(3, switches(routes.get(0)).size());
+        assertEquals(4, switches(routes.get(1)).size());
+        assertEquals(5, switches(routes.get(2)).size());
+    }
+
+    // corner to corner of a 3x3 grid: 6 paths of 4 links, then 6 links
+    @Test
+    public void enumeratesAllShortestRoutesOfAGrid() throws Exception {
+        List<Link> links = new ArrayList<Link>();
+        List<JSONArray> routes;
+        Set<List<Long>> distinct = new HashSet<List<Long>>();
+        int previous = 0;
+
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 3; col++) {
+                long node = 1 + row * 3 + col;
+
+                if (col < 2)
+                    links.add(link(node, node + 1));
+                if (row < 2)
+                    links.add(link(node, node + 3));
+            }
+        }
+        routes = graph(links.toArray(new Link[0])).getRoutes(dpid(1), 1, dpid(9), 1, 10);
+
+        assertEquals(10, routes.size());
+        for (int i = 0; i < routes.size(); i++) {
+            List<Long> switches = switches(routes.get(i));
+
+            assertEquals(i < 6 ? 5 : 7, switches.size());
+            assertEquals("loop in " + switches, switches.size(), new HashSet<Long>(
+                    switches).size());
+            assertTrue("not ranked", switches.size() >= previous);
+            assertTrue("duplicate " + switches, distinct.add(switches));
+            previous = switches.size();
+        }
+    }
+
+    @Test
+    public void findsNoRouteBetweenIslands() throws Exception {
+        TopologyGraph graph = graph(link(1, 2), link(3, 4));
+
+        assertNull(graph.getShortestPath(1, 4));
+        assertEquals(0, graph.getRoute(dpid(1), 1, dpid(4), 1).length());
+        assertTrue(graph.getRoutes(dpid(1), 1, dpid(9), 1, 3).isEmpty());
+    }
+
+    @Test
+    public void updatesOnlyOnChange() throws Exception {
+        TopologyGraph graph = graph(link(1, 2));
+        List<Link> links = new ArrayList<Link>();
+
+        links.add(link(1, 2));
+        assertFalse(graph.update(links));
+
+        links.add(link(2, 3));
+        assertTrue(graph.update(links));
+        assertEquals(3, graph.getSwitchCount());
+        assertArrayEquals(new long[] { 1, 2, 3 }, graph.getShortestPath(1, 3));
+
+        links.remove(1);
+        assertTrue(graph.update(links));
+        assertNull(graph.getShortestPath(1, 3));
+    }
+
+    // --------------
+    // helper methods
+    // --------------
+
+    private static TopologyGraph graph(Link... links) {
+        TopologyGraph graph = new TopologyGraph(null);
+        List<Link> list = new ArrayList<Link>();
+
+        for (Link link : links) {
+            list.add(link);
+        }
+        graph.update(list);
+        return graph;
+    }
+
+    // bidirectional, the port on a is 10 * a + b and on b 10 * b + a
+    private static Link link(long a, long b) throws Exception {
+        String json = "{\"src-switch\": \"" + dpid(a) + "\", \"src-port\": "
+                + (10 * a + b) + ", \"dst-switch\": \"" + dpid(b) + "\", \"dst-port\": "
+                + (10 * b + a)
+                + ", \"type\": \"internal\", \"direction\": \"bidirectional\"}";
+
+        return Link.read(new JsonStreamReader(new StringReader(json)));
+    }
+
+    private static String dpid(long dpid) {
+        return AddressUtils.dpidToString(dpid);
+    }
+
+    private static List<Long> switches(JSONArray route) throws Exception {
+        List<Long> result = new ArrayList<Long>();
+
+        for (int i = 0; i < route.length(); i += 2) {
+            String switchId = route.getJSONObject(i).getString("switch");
+
+            result.add(AddressUtils.parseDpid(switchId));
+        }
+        return result;
+    }
+
+    private static void assertHop(JSONObject hop, long dpid, int port) throws Exception {
+        assertEquals(dpid(dpid), hop.getString("switch"));
+        assertEquals(port, hop.getInt("port"));
+    }
+}
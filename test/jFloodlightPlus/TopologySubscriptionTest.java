@@ -0,0 +1,128 @@
+package jFloodlightPlus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import jFloodlightPlus.TopologyEvent.Type;
+
+import org.junit.Test;
+
+/**
+ * Ring buffer of TopologySubscription: order, drops when full and waiting.
+ *
+ * @author KmnTree
+ *
+ */
+public class TopologySubscriptionTest {
+
+    @Test
+    public void keepsOrderAcrossWrapAround() {
+        TopologySubscription subscription = subscription(3);
+        long next = 0;
+
+        for (long sequence = 0; sequence < 100; sequence++) {
+            subscription.offer(event(sequence));
+            if (sequence % 3 == 2) {
+                while (subscription.size() > 0) {
+                    assertEquals(next++, subscription.poll().getTimeMillis());
+                }
+            }
+        }
+        assertEquals(99, next);
+        assertEquals(0, subscription.getDroppedCount());
+        assertEquals(99, subscription.poll().getTimeMillis());
+        assertNull(subscription.poll());
+    }
+
+    @Test
+    public void dropsNewEventsWhenFull() {
+        TopologySubscription subscription = subscription(2);
+        List<TopologyEvent> events = new ArrayList<TopologyEvent>();
+
+        for (long sequence = 0; sequence < 5; sequence++) {
+            subscription.offer(event(sequence));
+        }
+        assertEquals(2, subscription.size());
+        assertEquals(3, subscription.getDroppedCount());
+
+        assertEquals(0, subscription.poll().getTimeMillis());
+        subscription.offer(event(5));
+        assertEquals(2, subscription.drainTo(events));
+        assertEquals(1, events.get(0).getTimeMillis());
+        assertEquals(5, events.get(1).getTimeMillis());
+        assertEquals(0, subscription.size());
+    }
+
+    @Test
+    public void takeWaitsForTheNextEvent() throws Exception {
+        TopologySubscription subscription = subscription(4);
+        FutureTask<TopologyEvent> taker = new FutureTask<TopologyEvent>(
+                () -> subscription.take(10, TimeUnit.SECONDS));
+
+        assertNull(subscription.take(10, TimeUnit.MILLISECONDS));
+
+        new Thread(taker).start();
+        TimeUnit.MILLISECONDS.sleep(50);
+        subscription.offer(event(7));
+        assertEquals(7, taker.get(1, TimeUnit.SECONDS).getTimeMillis());
+    }
+
+    @Test
+    public void concurrentPollersSeeEveryEventOnce() throws Exception {
+        int events = 200000, pollers = 4;
+        TopologySubscription subscription = subscription(64);
+        boolean[] seen = new boolean[events];
+        List<FutureTask<Integer>> tasks = new ArrayList<FutureTask<Integer>>();
+        int received = 0;
+
+        for (int i = 0; i < pollers; i++) {
+            FutureTask<Integer> task = new FutureTask<Integer>(() -> {
+                int count = 0;
+                TopologyEvent event;
+
+                while ((event = subscription.take(1, TimeUnit.SECONDS)) != null) {
+                    int sequence = (int) event.getTimeMillis();
+
+                    synchronized (seen) {
+                        assertTrue("twice " + sequence, !seen[sequence]);
+                        seen[sequence] = true;
+                    }
+                    count++;
+                }
+                return count;
+            });
+
+            tasks.add(task);
+            new Thread(task).start();
+        }
+
+        // the watcher thread is the only producer
+        for (int sequence = 0; sequence < events; sequence++) {
+            subscription.offer(event(sequence));
+        }
+        for (FutureTask<Integer> task : tasks) {
+            received += task.get(30, TimeUnit.SECONDS);
+        }
+
+        assertEquals(events, received + subscription.getDroppedCount());
+    }
+
+    // --------------
+    // helper methods
+    // --------------
+
+    private static TopologySubscription subscription(int capacity) {
+        return new TopologyWatcher(null).subscribe(capacity);
+    }
+
+    // the sequence number in place of the time
+    private static TopologyEvent event(long sequence) {
+        return new TopologyEvent(Type.LINK_UP, sequence, null, null, null, null);
+    }
+}
@@ -0,0 +1,207 @@
+package jFloodlightPlus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * AIMD limit and token bucket of WriteAdmission.
+ *
+ * @author KmnTree
+ *
+ */
+public class WriteAdmissionTest {
+
+    @Test
+    public void overloadMultipliesTheLimit() throws Exception {
+        WriteAdmission admission = new WriteAdmission(0, 1, 1, 64);
+
+        assertEquals(WriteAdmission.DEFAULT_INITIAL_LIMIT, admission.getLimit());
+        failWith(admission, new RestException(503, "/"));
+        // 4 * 0.7
+        assertEquals(2, admission.getLimit());
+        failWith(admission, new IOException("reset"));
+        assertEquals(1, admission.getLimit());
+        failWith(admission, new RestException(429, "/"));
+        assertEquals(1, admission.getLimit());
+        assertEquals(3, admission.getOverloadCount());
+    }
+
+    @Test
+    public void otherFailuresKeepTheLimit() throws Exception {
+        WriteAdmission admission = new WriteAdmission(0, 1, 1, 64);
+
+        failWith(admission, new RestException(404, "/"));
+        failWith(admission, new IllegalStateException());
+        assertEquals(WriteAdmission.DEFAULT_INITIAL_LIMIT, admission.getLimit());
+        assertEquals(0, admission.getOverloadCount());
+        assertEquals(0, admission.getInFlight());
+    }
+
+    @Test
+    public void concurrentOverloadsCountOnce() throws Exception {
+        WriteAdmission admission = new WriteAdmission(0, 1, 1, 64);
+        CountDownLatch started = new CountDownLatch(4);
+        List<FutureTask<Void>> threads = new ArrayList<FutureTask<Void>>();
+
+        for (int i = 0; i < 4; i++) {
+            threads.add(start(() -> {
+                try {
+                    admission.call(() -> {
+                        started.countDown();
+                        await(started);
+                        throw new RestException(503, "/");
+                    });
+                }
+                catch (RestException e) {
+                    // expected
+                }
+                return null;
+            }));
+        }
+        join(threads);
+
+        assertEquals(4, admission.getOverloadCount());
+        assertEquals(2, admission.getLimit());
+    }
+
+    @Test
+    public void successesUnderLoadRaiseTheLimit() throws Exception {
+        WriteAdmission admission = new WriteAdmission(0, 1, 1, 16);
+        List<FutureTask<Void>> threads = new ArrayList<FutureTask<Void>>();
+
+        // latency spikes of the test machine must not count as overload
+        admission.setLatencyTolerance(1e9);
+        for (int i = 0; i < 16; i++) {
+            threads.add(start(() -> {
+                for (int j = 0; j < 50; j++) {
+                    admission.call(() -> {
+                        pause();
+                        return null;
+                    });
+                }
+                return null;
+            }));
+        }
+        join(threads);
+
+        assertEquals(16, admission.getLimit());
+        assertEquals(800, admission.getAdmittedCount());
+    }
+
+    @Test
+    public void neverExceedsTheLimit() throws Exception {
+        WriteAdmission admission = new WriteAdmission(0, 1, 1, 2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<FutureTask<Void>> threads = new ArrayList<FutureTask<Void>>();
+
+        for (int i = 0; i < 8; i++) {
+            threads.add(start(() -> {
+                for (int j = 0; j < 20; j++) {
+                    admission.call(() -> {
+                        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        pause();
+                        running.decrementAndGet();
+                        return null;
+                    });
+                }
+                return null;
+            }));
+        }
+        join(threads);
+
+        assertEquals(2, maxRunning.get());
+        assertEquals(0, admission.getInFlight());
+    }
+
+    @Test
+    public void bucketAllowsBurstThenRate() throws Exception {
+        WriteAdmission admission = new WriteAdmission(100, 5, 1, 64);
+        long start = System.nanoTime();
+        long burstMillis;
+
+        for (int i = 0; i < 5; i++) {
+            admission.call(() -> null);
+        }
+        burstMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // 10 more tokens take 100 ms at 100 per second
+        for (int i = 0; i < 10; i++) {
+            admission.call(() -> null);
+        }
+
+        assertTrue("burst took " + burstMillis + " ms", burstMillis < 50);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 90);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidLimits() {
+        new WriteAdmission(10, 1, 4, 2);
+    }
+
+    // --------------
+    // helper methods
+    // --------------
+
+    private static void failWith(WriteAdmission admission, Exception error)
+            throws Exception {
+        try {
+            admission.call(() -> {
+                if (error instanceof IOException)
+                    throw (IOException) error;
+                throw (RuntimeException) error;
+            });
+        }
+        catch (IOException | RuntimeException e) {
+            assertEquals(error, e);
+            return;
+        }
+        fail("no error");
+    }
+
+    // writes may only throw I/O errors
+    private static void await(CountDownLatch latch) throws InterruptedIOException {
+        try {
+            latch.await();
+        }
+        catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+    }
+
+    private static void pause() throws InterruptedIOException {
+        try {
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+        catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+    }
+
+    private static FutureTask<Void> start(Callable<Void> task) {
+        FutureTask<Void> future = new FutureTask<Void>(task);
+
+        new Thread(future).start();
+        return future;
+    }
+
+    // fails with the first error of a task
+    private static void join(List<FutureTask<Void>> tasks) throws Exception {
+        for (FutureTask<Void> task : tasks) {
+            task.get(10, TimeUnit.SECONDS);
+        }
+    }
+}